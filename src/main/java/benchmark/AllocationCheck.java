@@ -0,0 +1,89 @@
+package benchmark;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.results.Result;
+import org.openjdk.jmh.results.RunResult;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.openjdk.jmh.runner.options.TimeValue;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Runs every benchmark in {@link BenchmarkOperations} with JMH's GC profiler and fails if any of them allocate
+ * memory. Allocations in the inner loop are a sign that the JIT failed to intrinsify a vector operation and
+ * fell back on boxing it, or that a function is creating temporary arrays instead of using a {@link Workspace}.
+ *
+ * The normalized allocation rate can be slightly above zero from noise in the measurement, so it's rounded to
+ * the nearest byte before being checked. Exits with a non-zero status if a benchmark allocated.
+ *
+ * Arguments are optional regular expressions which select the benchmarks to check. By default all of them
+ * are checked.
+ *
+ * @author Peter Abeles
+ */
+public class AllocationCheck {
+    public static void main(String[] args) throws RunnerException {
+        var builder = new OptionsBuilder()
+                .addProfiler(GCProfiler.class)
+                .warmupIterations(2)
+                .measurementIterations(2)
+                .warmupTime(TimeValue.seconds(1))
+                .measurementTime(TimeValue.seconds(1));
+
+        if (args.length == 0) {
+            builder.include(BenchmarkOperations.class.getSimpleName());
+        } else {
+            for (String pattern : args) {
+                builder.include(pattern);
+            }
+        }
+
+        Options opt = builder.build();
+        Collection<RunResult> results = new Runner(opt).run();
+
+        List<String> failures = new ArrayList<>();
+        for (RunResult r : results) {
+            double bytesPerOp = allocatedBytesPerOp(r.getSecondaryResults());
+            if (Math.round(bytesPerOp) > 0) {
+                failures.add(String.format("%10.1f B/op  %s", bytesPerOp, describe(r)));
+            }
+        }
+
+        if (failures.isEmpty()) {
+            System.out.println("No allocations in " + results.size() + " benchmarks");
+            return;
+        }
+
+        System.err.println("Benchmarks which allocated memory:");
+        for (String f : failures) {
+            System.err.println("  " + f);
+        }
+        System.exit(1);
+    }
+
+    /**
+     * The name of the result changed between JMH versions, so it's found by its suffix
+     */
+    static double allocatedBytesPerOp(Map<String, Result> secondary) {
+        for (Map.Entry<String, Result> e : secondary.entrySet()) {
+            if (e.getKey().endsWith("gc.alloc.rate.norm"))
+                return e.getValue().getScore();
+        }
+        throw new IllegalStateException("GC profiler results are missing");
+    }
+
+    static String describe(RunResult r) {
+        var params = r.getParams();
+        var text = new StringBuilder(params.getBenchmark());
+        for (String key : params.getParamsKeys()) {
+            text.append(" ").append(key).append("=").append(params.getParam(key));
+        }
+        return text.toString();
+    }
+}
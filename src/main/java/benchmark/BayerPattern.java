@@ -0,0 +1,34 @@
+package benchmark;
+
+/**
+ * Color filter array pattern of a raw Bayer image. The name is the color of the top left 2x2 block, read left to
+ * right and then top to bottom.
+ *
+ * @author Peter Abeles
+ */
+public enum BayerPattern {
+    RGGB(false, true),
+    BGGR(false, false),
+    GRBG(true, true),
+    GBRG(true, false);
+
+    /** If the pixel at (0,0) is green */
+    final boolean greenOrigin;
+    /** If the first row has red pixels. Otherwise it has blue pixels. */
+    final boolean redFirstRow;
+
+    BayerPattern( boolean greenOrigin, boolean redFirstRow ) {
+        this.greenOrigin = greenOrigin;
+        this.redFirstRow = redFirstRow;
+    }
+
+    /** If pixels with an even x-coordinate are green in this row */
+    boolean isGreenEven( int y ) {
+        return greenOrigin ^ (y % 2 == 1);
+    }
+
+    /** If this row has red pixels. Otherwise it has blue pixels. */
+    boolean isRedRow( int y ) {
+        return redFirstRow ^ (y % 2 == 1);
+    }
+}
@@ -0,0 +1,179 @@
+package benchmark;
+
+import boofcv.alg.misc.ImageMiscOps;
+import boofcv.factory.filter.kernel.FactoryKernelGaussian;
+import boofcv.struct.convolve.Kernel1D_F32;
+import boofcv.struct.image.GrayF32;
+import boofcv.struct.image.GrayU8;
+
+import java.util.Random;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Feeds a synthetic 1080p video into a {@link FramePipeline} and prints frames per second and latency. The
+ * pipeline is a horizontal blur, a conversion from float to bytes, a mean, then threshold. It's run three ways:
+ *
+ * <ol>
+ *     <li>Sequential: every operation on one thread, one frame at a time</li>
+ *     <li>Paced: frames arrive at the camera's frame rate and are dropped if the pipeline is full</li>
+ *     <li>Saturated: frames are submitted as fast as the pipeline accepts them</li>
+ * </ol>
+ *
+ * JMH isn't used since what's being measured is a stream of frames across several threads and its tail latency.
+ * Stages only run at the same time when there is a core for each of them.
+ *
+ * Usage: [seconds] [fps]
+ *
+ * @author Peter Abeles
+ */
+public class BenchmarkFramePipeline {
+    static final int WIDTH = 1920;
+    static final int HEIGHT = 1080;
+    // Maximum number of frames inside each stage's pool
+    static final int POOL_SIZE = 4;
+    // Radius of the Gaussian blur, and offset and width of the mean
+    static final int RADIUS = 2;
+    static final int OFFSET = 5;
+    static final int LENGTH = 11;
+
+    public static void main( String[] args ) throws InterruptedException {
+        long seconds = args.length > 0 ? Integer.parseInt(args[0]) : 10;
+        int fps = args.length > 1 ? Integer.parseInt(args[1]) : 60;
+
+        // Frames from the "camera". Several different ones so the cache doesn't always have the input
+        var rand = new Random(234);
+        var camera = new GrayF32[8];
+        for (int i = 0; i < camera.length; i++) {
+            camera[i] = new GrayF32(WIDTH, HEIGHT);
+            ImageMiscOps.fillUniform(camera[i], rand, 0, 255);
+        }
+        Kernel1D_F32 kernel = FactoryKernelGaussian.gaussian1D(GrayF32.class, -1, RADIUS);
+
+        System.out.println(WIDTH + "x" + HEIGHT + " at " + fps + " fps for " + seconds + " s, " +
+                Runtime.getRuntime().availableProcessors() + " processors, vector bits " +
+                VectorShapes.SHAPE.vectorBitSize());
+
+        sequential(kernel, camera, 1000*seconds);
+
+        try (FramePipeline<GrayF32, GrayU8> pipeline = create(kernel)) {
+            // Warm up the JIT
+            saturated(pipeline, camera, 2000);
+            pipeline.flush();
+            pipeline.resetStatistics();
+
+            long dropped = paced(pipeline, camera, fps, 1000*seconds);
+            pipeline.flush();
+            System.out.println();
+            System.out.println("Paced at " + fps + " fps, dropped " + dropped + " frames");
+            print(pipeline);
+            pipeline.resetStatistics();
+
+            saturated(pipeline, camera, 1000*seconds);
+            pipeline.flush();
+            System.out.println();
+            System.out.println("Saturated");
+            print(pipeline);
+        }
+    }
+
+    static FramePipeline<GrayF32, GrayU8> create( Kernel1D_F32 kernel ) {
+        return FramePipeline.builder(POOL_SIZE, () -> new GrayF32(WIDTH, HEIGHT))
+                .then("blur", () -> new GrayF32(WIDTH, HEIGHT),
+                        ( GrayF32 a, GrayF32 b, Workspace work ) -> ImageProcessing.horizontal_vector_v2(kernel, a, b))
+                .then("to U8", () -> new GrayU8(WIDTH, HEIGHT),
+                        ( GrayF32 a, GrayU8 b, Workspace work ) -> BenchmarkStripExecutor.toU8(a, b))
+                .then("mean", () -> new GrayU8(WIDTH, HEIGHT),
+                        ( GrayU8 a, GrayU8 b, Workspace work ) ->
+                                ImageProcessing.mean_vector(a, b, OFFSET, LENGTH, work))
+                .then("threshold", () -> new GrayU8(WIDTH, HEIGHT),
+                        ( GrayU8 a, GrayU8 b, Workspace work ) -> ImageProcessing.threshold_vector_v2(a, b, 125))
+                .build(output -> {});
+    }
+
+    /**
+     * Runs every operation on a single thread with images which are allocated once
+     */
+    static void sequential( Kernel1D_F32 kernel, GrayF32[] camera, long durationMS ) {
+        var input = new GrayF32(WIDTH, HEIGHT);
+        var blurred = new GrayF32(WIDTH, HEIGHT);
+        var bytes = new GrayU8(WIDTH, HEIGHT);
+        var mean = new GrayU8(WIDTH, HEIGHT);
+        var output = new GrayU8(WIDTH, HEIGHT);
+        var work = new Workspace();
+        var latency = new FramePipeline.Latency("sequential");
+        double fps = 0;
+
+        // The first pass warms up the JIT, same as is done for the pipeline
+        for (long duration : new long[]{2000, durationMS}) {
+            latency.reset();
+            long start = System.nanoTime();
+            long end = start + duration*1_000_000L;
+            int frames = 0;
+            long now = start;
+            while (now < end) {
+                input.setTo(camera[frames % camera.length]);
+                long before = System.nanoTime();
+                ImageProcessing.horizontal_vector_v2(kernel, input, blurred);
+                BenchmarkStripExecutor.toU8(blurred, bytes);
+                ImageProcessing.mean_vector(bytes, mean, OFFSET, LENGTH, work);
+                ImageProcessing.threshold_vector_v2(mean, output, 125);
+                now = System.nanoTime();
+                latency.add(now - before);
+                frames++;
+            }
+            fps = frames/((now - start)*1e-9);
+        }
+        System.out.println();
+        System.out.println("Sequential");
+        System.out.printf("  %6.1f fps  latency p50 %6.2f ms  p99 %6.2f ms%n", fps,
+                latency.percentile(0.5)*1e-6, latency.percentile(0.99)*1e-6);
+    }
+
+    /**
+     * Submits a frame every 1/fps seconds. If every input image is in use then the frame is dropped, like a
+     * camera would.
+     *
+     * @return Number of frames which were dropped
+     */
+    static long paced( FramePipeline<GrayF32, GrayU8> pipeline, GrayF32[] camera, int fps, long durationMS )
+            throws InterruptedException {
+        final long period = 1_000_000_000L/fps;
+        long next = System.nanoTime();
+        final long end = next + durationMS*1_000_000L;
+        long dropped = 0;
+        for (int frame = 0; next < end; frame++, next += period) {
+            LockSupport.parkNanos(next - System.nanoTime());
+            GrayF32 image = pipeline.tryAcquire();
+            if (image == null) {
+                dropped++;
+                continue;
+            }
+            image.setTo(camera[frame % camera.length]);
+            pipeline.submit(image);
+        }
+        return dropped;
+    }
+
+    /**
+     * Submits frames as fast as the pipeline will accept them
+     */
+    static void saturated( FramePipeline<GrayF32, GrayU8> pipeline, GrayF32[] camera, long durationMS )
+            throws InterruptedException {
+        final long end = System.nanoTime() + durationMS*1_000_000L;
+        for (int frame = 0; System.nanoTime() < end; frame++) {
+            GrayF32 image = pipeline.acquire();
+            image.setTo(camera[frame % camera.length]);
+            pipeline.submit(image);
+        }
+    }
+
+    static void print( FramePipeline<?, ?> pipeline ) {
+        FramePipeline.Latency total = pipeline.getTotalLatency();
+        System.out.printf("  %6.1f fps  latency p50 %6.2f ms  p99 %6.2f ms%n", pipeline.getFramesPerSecond(),
+                total.percentile(0.5)*1e-6, total.percentile(0.99)*1e-6);
+        for (FramePipeline.Latency stage : pipeline.getStageLatency()) {
+            System.out.printf("    %-16s mean %6.2f ms  p99 %6.2f ms%n", stage.name,
+                    stage.mean()*1e-6, stage.percentile(0.99)*1e-6);
+        }
+    }
+}
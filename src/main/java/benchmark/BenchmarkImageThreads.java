@@ -0,0 +1,109 @@
+package benchmark;
+
+import boofcv.alg.misc.ImageMiscOps;
+import boofcv.concurrency.BoofConcurrency;
+import boofcv.factory.filter.kernel.FactoryKernelGaussian;
+import boofcv.struct.convolve.Kernel1D_F32;
+import boofcv.struct.image.GrayF32;
+import boofcv.struct.image.GrayU16;
+import boofcv.struct.image.GrayU8;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.openjdk.jmh.runner.options.TimeValue;
+
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Sweeps the number of threads used by {@link ImageProcessing_MT} across different image sizes. Cheap
+ * operations like threshold are limited by memory bandwidth and on small images the cost of starting tasks
+ * can be more than the work, so this shows where threads stop helping. threads=1 is the baseline.
+ *
+ * @author Peter Abeles
+ */
+@BenchmarkMode(Mode.AverageTime)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@State(Scope.Benchmark)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(value = 1)
+public class BenchmarkImageThreads {
+    @Param({"1","2","4","8","16","32"})
+    public int threads;
+
+    // VGA, 1080p, and 4K
+    @Param({"640x480","1920x1080","3840x2160"})
+    public String shape;
+
+    ForkJoinPool pool;
+
+    GrayU8 srcU8 = new GrayU8(1, 1);
+    GrayU8 dstU8 = new GrayU8(1, 1);
+    GrayU16 srcU16 = new GrayU16(1, 1);
+    GrayF32 srcF32 = new GrayF32(1, 1);
+    GrayF32 dstF32 = new GrayF32(1, 1);
+
+    int[] histogram = new int[BenchmarkOperations.MAX_PIXEL_U16];
+    Kernel1D_F32 kernel;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        BoofConcurrency.USE_CONCURRENT = false;
+        pool = new ForkJoinPool(threads);
+
+        String[] words = shape.split("x");
+        int width = Integer.parseInt(words[0]);
+        int height = Integer.parseInt(words[1]);
+
+        srcU8.reshape(width, height);
+        dstU8.reshape(width, height);
+        srcU16.reshape(width, height);
+        srcF32.reshape(width, height);
+        dstF32.reshape(width, height);
+
+        Random rand = new Random(345);
+        ImageMiscOps.fillUniform(srcU8, rand, 0, 256);
+        ImageMiscOps.fillUniform(srcU16, rand, 0, BenchmarkOperations.MAX_PIXEL_U16);
+        ImageMiscOps.fillUniform(srcF32, rand, 0, 255);
+
+        kernel = FactoryKernelGaussian.gaussian1D(GrayF32.class, -1, 2);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        pool.shutdown();
+    }
+
+    @Benchmark public void threshold_vector() {
+        ImageProcessing_MT.threshold_vector(srcU8, dstU8, 125, true, 1, pool);
+    }
+
+    @Benchmark public void mean_vector() {
+        ImageProcessing_MT.mean_vector(srcU8, dstU8, 5, 11, pool);
+    }
+
+    @Benchmark public void histogram_vector() {
+        ImageProcessing_MT.histogram_vector(srcU16, 0, histogram, pool);
+    }
+
+    @Benchmark public void convolve_horizontal_vector_v2() {
+        ImageProcessing_MT.horizontal_vector_v2(kernel, srcF32, dstF32, pool);
+    }
+
+    @Benchmark public void convolve_separable_vector() {
+        ImageProcessing_MT.convolveSeparable_vector(kernel, kernel, srcF32, dstF32, pool);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        Options opt = new OptionsBuilder()
+                .include(BenchmarkImageThreads.class.getSimpleName())
+                .warmupTime(TimeValue.seconds(1))
+                .measurementTime(TimeValue.seconds(1))
+                .build();
+        new Runner(opt).run();
+    }
+}
@@ -0,0 +1,108 @@
+package benchmark;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.SplittableRandom;
+
+/**
+ * Measures the sustained throughput of {@link MatrixMultiplication_Mapped} on square matrices which are stored
+ * in files that are larger than the heap, and possibly larger than RAM. JMH isn't used since a single
+ * multiplication can take hours. Instead C is computed one tile at a time for a fixed amount of time, and the
+ * rate is printed after each tile. Input files are generated the first time and reused after that.
+ *
+ * Usage: directory seconds gigabytes...
+ *
+ * To measure the disk instead of the page cache the files need to be larger than RAM, or the page cache needs to
+ * be dropped before running it.
+ *
+ * @author Peter Abeles
+ */
+public class BenchmarkMappedMult {
+    public static void main(String[] args) throws IOException {
+        if (args.length < 1) {
+            System.out.println("Usage: directory [seconds] [gigabytes...]");
+            System.out.println("  Default is 300 seconds for matrices which are 16, 32, and 64 GB");
+            return;
+        }
+
+        Path directory = Paths.get(args[0]);
+        long budgetMS = 1000L*(args.length > 1 ? Integer.parseInt(args[1]) : 300);
+        int[] gigabytes = args.length > 2 ? new int[args.length - 2] : new int[]{16, 32, 64};
+        for (int i = 2; i < args.length; i++) {
+            gigabytes[i - 2] = Integer.parseInt(args[i]);
+        }
+
+        int tileSize = MatrixMultiplication_Mapped.DEFAULT_TILE;
+        System.out.println("Tile size " + tileSize + ", max memory " + Runtime.getRuntime().maxMemory()/(1024*1024) +
+                " MB, vector bits " + VectorShapes.SHAPE.vectorBitSize());
+
+        for (int gb : gigabytes) {
+            // Size of a square matrix which fills the file
+            int N = (int)Math.sqrt(gb*(double)(1L << 30)/Double.BYTES);
+            System.out.println();
+            System.out.println("Matrices are " + N + "x" + N + ", " + gb + " GB each");
+
+            try (DMatrixMapped A = openOrGenerate(directory.resolve("A_" + N + ".bin"), N, 1);
+                 DMatrixMapped B = openOrGenerate(directory.resolve("B_" + N + ".bin"), N, 2);
+                 DMatrixMapped C = DMatrixMapped.create(directory.resolve("C_" + N + ".bin"), N, N)) {
+                run(A, B, C, tileSize, budgetMS);
+            }
+        }
+    }
+
+    /**
+     * Computes tiles of C until the time budget runs out. The budget is checked and the rate is printed after
+     * every tile, since a band of tiles across all of C can take much longer than the budget.
+     */
+    static void run(DMatrixMapped A, DMatrixMapped B, DMatrixMapped C, int tileSize, long budgetMS) {
+        final int K = A.numCols;
+
+        final long start = System.currentTimeMillis();
+        // Total flops and bytes read, and when the previous tile finished
+        final double[] totals = new double[2];
+        final long[] tileStart = {System.nanoTime()};
+        MatrixMultiplication_Mapped.mult(A, B, C, 0, A.numRows, tileSize, (row0, col0, rows, cols) -> {
+            C.flush();
+            long now = System.nanoTime();
+            double seconds = (now - tileStart[0])*1e-9;
+            tileStart[0] = now;
+
+            // A row of tiles from A and a column of tiles from B are read for each tile of C
+            double tileFlops = 2.0*rows*(double)cols*K;
+            double tileBytes = ((double)rows*K + (double)K*cols)*Double.BYTES;
+            totals[0] += tileFlops;
+            totals[1] += tileBytes;
+
+            long elapsed = System.currentTimeMillis() - start;
+            System.out.printf("  tile %6d,%6d  %7.2f GFLOPS  %8.1f MB/s read  total %7.2f GFLOPS %8.1f MB/s%n",
+                    row0, col0, tileFlops/seconds*1e-9, tileBytes/seconds/(1024*1024),
+                    totals[0]/elapsed*1e-6, totals[1]/elapsed*1e3/(1024*1024));
+            return elapsed <= budgetMS;
+        });
+    }
+
+    /**
+     * Opens the file if it already has the correct size, otherwise fills it with random numbers
+     */
+    static DMatrixMapped openOrGenerate(Path file, int N, long seed) throws IOException {
+        if (Files.exists(file) && Files.size(file) == (long)N*N*Double.BYTES)
+            return DMatrixMapped.open(file, N, N);
+
+        System.out.println("  Generating " + file);
+        long start = System.currentTimeMillis();
+        DMatrixMapped matrix = DMatrixMapped.create(file, N, N);
+        var rand = new SplittableRandom(seed);
+        var row = new double[N];
+        for (int i = 0; i < N; i++) {
+            for (int j = 0; j < N; j++) {
+                row[j] = rand.nextDouble(-1.0, 1.0);
+            }
+            matrix.setRow(i, 0, row, 0, N);
+        }
+        matrix.flush();
+        System.out.println("  Took " + (System.currentTimeMillis() - start)/1000 + " s");
+        return matrix;
+    }
+}
@@ -0,0 +1,98 @@
+package benchmark;
+
+import org.ejml.data.DMatrixRMaj;
+import org.ejml.data.ZMatrixRMaj;
+import org.ejml.dense.row.RandomMatrices_DDRM;
+import org.ejml.dense.row.RandomMatrices_ZDRM;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.openjdk.jmh.runner.options.TimeValue;
+
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Sweeps the number of threads used by {@link MatrixMultiplication_MT} to see how well it scales and at what
+ * point memory bandwidth becomes the bottleneck. threads=1 runs the concurrent code in a single thread
+ * and is the baseline.
+ *
+ * @author Peter Abeles
+ */
+@BenchmarkMode(Mode.AverageTime)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@State(Scope.Benchmark)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(value = 1)
+public class BenchmarkMatrixThreads {
+    @Param({"1","2","4","8","16","32"})
+    public int threads;
+
+    @Param({"1000","2048"})
+    public int size;
+
+    ForkJoinPool pool;
+
+    DMatrixRMaj A = new DMatrixRMaj(1, 1);
+    DMatrixRMaj B = new DMatrixRMaj(1, 1);
+    DMatrixRMaj C = new DMatrixRMaj(1, 1);
+
+    ZMatrixRMaj CA = new ZMatrixRMaj(1, 1);
+    ZMatrixRMaj CB = new ZMatrixRMaj(1, 1);
+    ZMatrixRMaj CC = new ZMatrixRMaj(1, 1);
+
+    @Setup(Level.Trial)
+    public void setup() {
+        pool = new ForkJoinPool(threads);
+
+        Random rand = new Random(345);
+
+        A.reshape(size, size);
+        B.reshape(size, size);
+        RandomMatrices_DDRM.fillUniform(A, -1, 1, rand);
+        RandomMatrices_DDRM.fillUniform(B, -1, 1, rand);
+
+        CA.reshape(size, size);
+        CB.reshape(size, size);
+        RandomMatrices_ZDRM.fillUniform(CA, -1, 1, rand);
+        RandomMatrices_ZDRM.fillUniform(CB, -1, 1, rand);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        pool.shutdown();
+    }
+
+    @Benchmark public void matrix_mult_real() {
+        MatrixMultiplication_MT.mult_ikj(A, B, C, pool);
+    }
+
+    @Benchmark public void matrix_mult_real_vectors() {
+        MatrixMultiplication_MT.mult_ikj_vector(A, B, C, pool);
+    }
+
+    @Benchmark public void matrix_mult_real_blocked_vectors() {
+        MatrixMultiplication_MT.mult_blocked_vector(A, B, C, pool);
+    }
+
+    @Benchmark public void matrix_mult_complex() {
+        MatrixMultiplication_MT.mult_ikj(CA, CB, CC, pool);
+    }
+
+    @Benchmark public void matrix_mult_complex_vector() {
+        MatrixMultiplication_MT.mult_ikj_vector(CA, CB, CC, pool);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        Options opt = new OptionsBuilder()
+                .include(BenchmarkMatrixThreads.class.getSimpleName())
+                .warmupTime(TimeValue.seconds(1))
+                .measurementTime(TimeValue.seconds(1))
+                .build();
+        new Runner(opt).run();
+    }
+}
@@ -0,0 +1,155 @@
+package benchmark;
+
+import boofcv.alg.misc.ImageMiscOps;
+import boofcv.factory.filter.kernel.FactoryKernelGaussian;
+import boofcv.struct.convolve.Kernel1D_F32;
+import boofcv.struct.image.GrayF32;
+import boofcv.struct.image.GrayU8;
+import org.ejml.data.DMatrixRMaj;
+import org.ejml.dense.row.RandomMatrices_DDRM;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.openjdk.jmh.runner.options.TimeValue;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the vector code when the input is in a Java array, a direct ByteBuffer, and a memory mapped file.
+ * The "copy" benchmarks copy a direct buffer onto the heap before processing it, which is what you would need to
+ * do without the off heap kernels.
+ *
+ * @author Peter Abeles
+ */
+@BenchmarkMode(Mode.AverageTime)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@State(Scope.Benchmark)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(value = 1)
+public class BenchmarkOffHeap {
+    @Param({"heap","direct","mapped"})
+    public String storage;
+
+    static final int WIDTH = 1920, HEIGHT = 1080;
+    static final int MATRIX_SIZE = 500;
+
+    GrayU8 srcU8 = new GrayU8(WIDTH, HEIGHT);
+    GrayU8 dstU8 = srcU8.createSameShape();
+    GrayF32 srcF32 = new GrayF32(WIDTH, HEIGHT);
+    GrayF32 dstF32 = srcF32.createSameShape();
+    DMatrixRMaj A, B, C = new DMatrixRMaj(MATRIX_SIZE, MATRIX_SIZE);
+
+    DirectGrayU8 directSrcU8, directDstU8;
+    DirectGrayF32 directSrcF32, directDstF32;
+    DMatrixDirect directA, directB, directC;
+
+    Kernel1D_F32 kernel;
+    Path file;
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException {
+        Random rand = new Random(345);
+        ImageMiscOps.fillUniform(srcU8, rand, 0, 256);
+        ImageMiscOps.fillUniform(srcF32, rand, 0, 255);
+        A = RandomMatrices_DDRM.rectangle(MATRIX_SIZE, MATRIX_SIZE, -1, 1, rand);
+        B = RandomMatrices_DDRM.rectangle(MATRIX_SIZE, MATRIX_SIZE, -1, 1, rand);
+        kernel = FactoryKernelGaussian.gaussian1D(GrayF32.class, -1, 2);
+
+        int bytesU8 = WIDTH*HEIGHT;
+        int bytesF32 = WIDTH*HEIGHT*Float.BYTES;
+        int bytesMatrix = MATRIX_SIZE*MATRIX_SIZE*Double.BYTES;
+
+        ByteBuffer[] buffers = new ByteBuffer[7];
+        int[] sizes = {bytesU8, bytesU8, bytesF32, bytesF32, bytesMatrix, bytesMatrix, bytesMatrix};
+        switch (storage) {
+            case "heap", "direct" -> {
+                for (int i = 0; i < sizes.length; i++) {
+                    buffers[i] = ByteBuffer.allocateDirect(sizes[i]);
+                }
+            }
+            case "mapped" -> {
+                file = Files.createTempFile("offheap", ".bin");
+                try (var channel = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+                    long position = 0;
+                    for (int i = 0; i < sizes.length; i++) {
+                        buffers[i] = channel.map(FileChannel.MapMode.READ_WRITE, position, sizes[i]);
+                        position += sizes[i];
+                    }
+                }
+            }
+            default -> throw new IllegalArgumentException("Unknown storage " + storage);
+        }
+
+        directSrcU8 = new DirectGrayU8(buffers[0], 0, WIDTH, WIDTH, HEIGHT);
+        directDstU8 = new DirectGrayU8(buffers[1], 0, WIDTH, WIDTH, HEIGHT);
+        directSrcF32 = new DirectGrayF32(buffers[2], 0, WIDTH, WIDTH, HEIGHT);
+        directDstF32 = new DirectGrayF32(buffers[3], 0, WIDTH, WIDTH, HEIGHT);
+        directA = new DMatrixDirect(buffers[4], MATRIX_SIZE, MATRIX_SIZE);
+        directB = new DMatrixDirect(buffers[5], MATRIX_SIZE, MATRIX_SIZE);
+        directC = new DMatrixDirect(buffers[6], MATRIX_SIZE, MATRIX_SIZE);
+        directSrcU8.setTo(srcU8);
+        directSrcF32.setTo(srcF32);
+        directA.setTo(A);
+        directB.setTo(B);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        // The mapping stays valid until it's garbage collected. Deleting the file only removes its name
+        if (file != null)
+            Files.delete(file);
+    }
+
+    @Benchmark public void threshold_vector() {
+        if (storage.equals("heap")) {
+            ImageProcessing.threshold_vector_v2(srcU8, dstU8, 125);
+        } else {
+            ImageProcessing.threshold_vector_v2(directSrcU8, directDstU8, 125);
+        }
+    }
+
+    @Benchmark public void threshold_vector_copy() {
+        directSrcU8.copyTo(srcU8);
+        ImageProcessing.threshold_vector_v2(srcU8, dstU8, 125);
+    }
+
+    @Benchmark public void convolve_horizontal_vector_v2() {
+        if (storage.equals("heap")) {
+            ImageProcessing.horizontal_vector_v2(kernel, srcF32, dstF32);
+        } else {
+            ImageProcessing.horizontal_vector_v2(kernel, directSrcF32, directDstF32);
+        }
+    }
+
+    @Benchmark public void convolve_horizontal_vector_v2_copy() {
+        directSrcF32.copyTo(srcF32);
+        ImageProcessing.horizontal_vector_v2(kernel, srcF32, dstF32);
+    }
+
+    @Benchmark public void matrix_mult_real_vectors() {
+        if (storage.equals("heap")) {
+            MatrixMultiplication.mult_ikj_vector(A, B, C);
+        } else {
+            MatrixMultiplication.mult_ikj_vector(directA, directB, directC);
+        }
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        Options opt = new OptionsBuilder()
+                .include(BenchmarkOffHeap.class.getSimpleName())
+                .warmupTime(TimeValue.seconds(1))
+                .measurementTime(TimeValue.seconds(1))
+                .build();
+        new Runner(opt).run();
+    }
+}
@@ -1,18 +1,32 @@
 package benchmark;
 
+import boofcv.alg.filter.convolve.ConvolveImage;
 import boofcv.alg.filter.convolve.ConvolveImageNoBorder;
 import boofcv.alg.misc.ImageMiscOps;
+import boofcv.alg.transform.ii.IntegralImageOps;
 import boofcv.concurrency.BoofConcurrency;
+import boofcv.factory.filter.border.FactoryImageBorder;
 import boofcv.factory.filter.kernel.FactoryKernelGaussian;
+import boofcv.struct.border.BorderType;
+import boofcv.struct.border.ImageBorder_F32;
 import boofcv.struct.convolve.Kernel1D_F32;
 import boofcv.struct.image.GrayF32;
+import boofcv.struct.image.GrayF64;
+import boofcv.struct.image.GrayS32;
 import boofcv.struct.image.GrayU16;
 import boofcv.struct.image.GrayU8;
+import boofcv.struct.image.InterleavedU8;
+import boofcv.struct.image.Planar;
 import org.ejml.data.DMatrixRMaj;
+import org.ejml.data.FMatrixRMaj;
 import org.ejml.data.ZMatrixRMaj;
 import org.ejml.dense.row.CommonOps_DDRM;
+import org.ejml.dense.row.CommonOps_FDRM;
+import org.ejml.dense.row.NormOps_DDRM;
 import org.ejml.dense.row.RandomMatrices_DDRM;
+import org.ejml.dense.row.RandomMatrices_FDRM;
 import org.ejml.dense.row.RandomMatrices_ZDRM;
+import org.ejml.dense.row.mult.VectorVectorMult_DDRM;
 import org.openjdk.jmh.annotations.*;
 import org.openjdk.jmh.runner.Runner;
 import org.openjdk.jmh.runner.RunnerException;
@@ -34,7 +48,9 @@ public class BenchmarkOperations {
 
     @State(Scope.Thread)
     public static class MatrixState {
-        @Param({"4","1000"}) // 4x4 matrices are very common in computer vision. 1000 is a medium sized matrix
+        // 4x4 matrices are very common in computer vision. 1000 is a medium sized matrix. 257 and 1001 are not a
+        // multiple of the number of lanes and exercise the edge cases in vectorized code
+        @Param({"4","256","257","1000","1001","2048"})
         public int size;
 
         DMatrixRMaj A = new DMatrixRMaj(1, 1);
@@ -45,6 +61,12 @@ public class BenchmarkOperations {
         ZMatrixRMaj CB = new ZMatrixRMaj(1, 1);
         ZMatrixRMaj CC = new ZMatrixRMaj(1, 1);
 
+        FMatrixRMaj FA = new FMatrixRMaj(1, 1);
+        FMatrixRMaj FB = new FMatrixRMaj(1, 1);
+        FMatrixRMaj FC = new FMatrixRMaj(1, 1);
+
+        Workspace work = new Workspace();
+
         @Setup(Level.Trial)
         public void setup() {
             Random rand = new Random(345);
@@ -62,6 +84,93 @@ public class BenchmarkOperations {
             RandomMatrices_ZDRM.fillUniform(CA, -1, 1, rand);
             RandomMatrices_ZDRM.fillUniform(CB, -1, 1, rand);
             RandomMatrices_ZDRM.fillUniform(CC, -1, 1, rand);
+
+            FA.reshape(size, size);
+            FB.reshape(size, size);
+            FC.reshape(size, size);
+            RandomMatrices_FDRM.fillUniform(FA, -1, 1, rand);
+            RandomMatrices_FDRM.fillUniform(FB, -1, 1, rand);
+            RandomMatrices_FDRM.fillUniform(FC, -1, 1, rand);
+        }
+    }
+
+    /**
+     * A square matrix and vectors for matrix-vector and vector-vector operations
+     */
+    @State(Scope.Thread)
+    public static class MatrixVectorState {
+        @Param({"4","16","64","256","1024","4096"})
+        public int size;
+
+        DMatrixRMaj A = new DMatrixRMaj(1, 1);
+        DMatrixRMaj AT = new DMatrixRMaj(1, 1);
+        DMatrixRMaj x = new DMatrixRMaj(1, 1);
+        DMatrixRMaj y = new DMatrixRMaj(1, 1);
+
+        Workspace work = new Workspace();
+
+        @Setup(Level.Trial)
+        public void setup() {
+            Random rand = new Random(345);
+
+            A.reshape(size, size);
+            x.reshape(size, 1);
+            y.reshape(size, 1);
+            RandomMatrices_DDRM.fillUniform(A, -1, 1, rand);
+            RandomMatrices_DDRM.fillUniform(x, -1, 1, rand);
+            RandomMatrices_DDRM.fillUniform(y, -1, 1, rand);
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class SmallMatrixState {
+        @Param({"2","3","4","5","6"})
+        public int size;
+
+        DMatrixRMaj A = new DMatrixRMaj(1, 1);
+        DMatrixRMaj B = new DMatrixRMaj(1, 1);
+        DMatrixRMaj C = new DMatrixRMaj(1, 1);
+
+        @Setup(Level.Trial)
+        public void setup() {
+            Random rand = new Random(345);
+
+            A.reshape(size, size);
+            B.reshape(size, size);
+            C.reshape(size, size);
+            RandomMatrices_DDRM.fillUniform(A, -1, 1, rand);
+            RandomMatrices_DDRM.fillUniform(B, -1, 1, rand);
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class BatchMatrixState {
+        @Param({"3","4"})
+        public int size;
+
+        @Param({"1000","100000"})
+        public int batch;
+
+        DMatrixRMaj[] A, B, C;
+        DMatrixBatch batchA = new DMatrixBatch();
+        DMatrixBatch batchB = new DMatrixBatch();
+        DMatrixBatch batchC = new DMatrixBatch();
+        Workspace work = new Workspace();
+
+        @Setup(Level.Trial)
+        public void setup() {
+            Random rand = new Random(345);
+
+            A = new DMatrixRMaj[batch];
+            B = new DMatrixRMaj[batch];
+            C = new DMatrixRMaj[batch];
+            for (int i = 0; i < batch; i++) {
+                A[i] = RandomMatrices_DDRM.rectangle(size, size, rand);
+                B[i] = RandomMatrices_DDRM.rectangle(size, size, rand);
+                C[i] = new DMatrixRMaj(size, size);
+            }
+            batchA.setTo(batch, A);
+            batchB.setTo(batch, B);
         }
     }
 
@@ -74,6 +183,8 @@ public class BenchmarkOperations {
         GrayF32 dst = src.createSameShape();
 
         Kernel1D_F32 kernel;
+        Workspace work = new Workspace();
+        ImageBorder_F32 border = FactoryImageBorder.single(GrayF32.class, BorderType.EXTENDED);
 
         @Setup(Level.Trial)
         public void setup() {
@@ -87,10 +198,69 @@ public class BenchmarkOperations {
         }
     }
 
+    @State(Scope.Thread)
+    public static class SeparableImageState {
+        // A typical camera image and a 4K image. The 4K intermediate image no longer fits in cache
+        @Param({"1200x800","3840x2160"})
+        public String shape;
+
+        @Param({"5","31"})
+        public int kernelSize;
+
+        GrayF32 src = new GrayF32(1, 1);
+        GrayF32 tmp = new GrayF32(1, 1);
+        GrayF32 dst = new GrayF32(1, 1);
+
+        Kernel1D_F32 kernel;
+        Workspace work = new Workspace();
+
+        @Setup(Level.Trial)
+        public void setup() {
+            BoofConcurrency.USE_CONCURRENT = false;
+
+            String[] words = shape.split("x");
+            src.reshape(Integer.parseInt(words[0]), Integer.parseInt(words[1]));
+            tmp.reshape(src.width, src.height);
+            dst.reshape(src.width, src.height);
+
+            Random rand = new Random(345);
+            ImageMiscOps.fillUniform(src, rand, 0, 255);
+
+            kernel = FactoryKernelGaussian.gaussian1D(GrayF32.class, -1, kernelSize/2);
+        }
+    }
+
     @State(Scope.Thread)
     public static class ByteImageState {
         GrayU8 src = new GrayU8(1200,800);
         GrayU8 dst = src.createSameShape();
+        Workspace work = new Workspace();
+
+        @Setup(Level.Trial)
+        public void setup() {
+            // When calling a BoofCV function make sure it doesn't run concurrent code
+            BoofConcurrency.USE_CONCURRENT = false;
+
+            Random rand = new Random(345);
+            ImageMiscOps.fillUniform(src, rand, 0, 255);
+        }
+    }
+
+    /**
+     * Local means for several window sizes, e.g. for adaptive thresholding
+     */
+    @State(Scope.Thread)
+    public static class IntegralState {
+        // Radius of each window which is computed
+        static final int[] RADII = {2, 5, 10, 20};
+
+        GrayU8 src = new GrayU8(1200,800);
+        GrayF32 srcF32 = new GrayF32(1200,800);
+        GrayU8 dst = src.createSameShape();
+        GrayF32 dstF32 = srcF32.createSameShape();
+        GrayS32 integral = new GrayS32(1200,800);
+        GrayF64 integralF64 = new GrayF64(1200,800);
+        Workspace work = new Workspace();
 
         @Setup(Level.Trial)
         public void setup() {
@@ -99,14 +269,23 @@ public class BenchmarkOperations {
 
             Random rand = new Random(345);
             ImageMiscOps.fillUniform(src, rand, 0, 255);
+            ImageMiscOps.fillUniform(srcF32, rand, 0, 255);
+            IntegralImageOps.transform(src, integral);
+            ImageProcessing.integral(srcF32, integralF64);
         }
     }
 
     @State(Scope.Thread)
     public static class ShortImageState {
+        // How pixel values are distributed. When the same bin is incremented over and over the histogram
+        // is limited by the store to load dependency
+        @Param({"uniform","peak","constant"})
+        public String distribution;
+
         GrayU16 src = new GrayU16(1200,800);
         GrayU16 dst = src.createSameShape();
         int[] histogram = new int[MAX_PIXEL_U16];
+        Workspace work = new Workspace();
 
         @Setup(Level.Trial)
         public void setup() {
@@ -114,67 +293,497 @@ public class BenchmarkOperations {
             BoofConcurrency.USE_CONCURRENT = false;
 
             Random rand = new Random(345);
-            ImageMiscOps.fillUniform(src, rand, 0, MAX_PIXEL_U16);
-        }
-    }
-
-//    @Benchmark public void matrix_mult_real(MatrixState state) {
-//        MatrixMultiplication.mult_ikj(state.A, state.B, state.C);
-//    }
-//
-//    @Benchmark public void matrix_mult_real_ejml(MatrixState state) {
-//        // There is specialized code for small matrices here and if large enough a block matrix will kick in
-//        CommonOps_DDRM.mult(state.A, state.B, state.C);
-//    }
-//
-//    @Benchmark public void matrix_mult_real_vectors(MatrixState state) {
-//        MatrixMultiplication.mult_ikj_vector(state.A, state.B, state.C);
-//    }
-//
-//    @Benchmark public void matrix_mult_complex(MatrixState state) {
-//        MatrixMultiplication.mult_ikj(state.CA, state.CB, state.CC);
-//    }
-//
-//    @Benchmark public void matrix_mult_complex_vector(MatrixState state) {
-//        MatrixMultiplication.mult_ikj_vector(state.CA, state.CB, state.CC);
-//    }
-//
-//    @Benchmark public void convolve_horizontal(FloatImageState state) {
-//        ImageProcessing.horizontal(state.kernel, state.src, state.dst);
-//    }
-//
-//    @Benchmark public void convolve_horizontal_vector(FloatImageState state) {
-//        ImageProcessing.horizontal_vector(state.kernel, state.src, state.dst);
-//    }
-//
-//    @Benchmark public void convolve_horizontal_boofcv(FloatImageState state) {
-//        // If possible this method will run an unrolled kernel
-//        ConvolveImageNoBorder.horizontal(state.kernel, state.src, state.dst);
-//    }
+            switch (distribution) {
+                case "uniform" -> ImageMiscOps.fillUniform(src, rand, 0, MAX_PIXEL_U16);
+                case "peak" -> ImageMiscOps.fillUniform(src, rand, 1000, 1004);
+                case "constant" -> ImageMiscOps.fill(src, 1000);
+                default -> throw new IllegalArgumentException("Unknown distribution " + distribution);
+            }
+        }
+    }
+
+    /**
+     * A grid of regions of interest (ROI) inside of a 4K image, e.g. tiles or detections. Each ROI is a sub-image
+     * so its rows are not next to each other in memory.
+     */
+    @State(Scope.Thread)
+    public static class RoiState {
+        // Width and height of each ROI. Smaller ROIs spend more of their time at the end of a row
+        @Param({"67","256"})
+        public int roiSize;
+
+        @Param({"5","31"})
+        public int kernelSize;
+
+        GrayF32 src = new GrayF32(3840, 2160);
+        GrayF32 dst = src.createSameShape();
+        GrayU8 srcU8 = new GrayU8(3840, 2160);
+        GrayU8 dstU8 = srcU8.createSameShape();
+
+        GrayF32[] roiSrc, roiDst;
+        GrayU8[] roiSrcU8, roiDstU8;
+
+        // Dense images each ROI is copied into
+        GrayF32 denseSrc = new GrayF32(1, 1);
+        GrayF32 denseDst = new GrayF32(1, 1);
+        GrayU8 denseSrcU8 = new GrayU8(1, 1);
+        GrayU8 denseDstU8 = new GrayU8(1, 1);
+
+        Kernel1D_F32 kernel;
+
+        @Setup(Level.Trial)
+        public void setup() {
+            BoofConcurrency.USE_CONCURRENT = false;
+
+            Random rand = new Random(345);
+            ImageMiscOps.fillUniform(src, rand, 0, 255);
+            ImageMiscOps.fillUniform(srcU8, rand, 0, 256);
+            kernel = FactoryKernelGaussian.gaussian1D(GrayF32.class, -1, kernelSize/2);
+
+            // Leave a gap between ROIs so that they don't start at the same column as a vector
+            int step = roiSize + roiSize/4 + 1;
+            int cols = (src.width - roiSize)/step + 1;
+            int rows = (src.height - roiSize)/step + 1;
+            roiSrc = new GrayF32[rows*cols];
+            roiDst = new GrayF32[rows*cols];
+            roiSrcU8 = new GrayU8[rows*cols];
+            roiDstU8 = new GrayU8[rows*cols];
+            for (int i = 0; i < rows*cols; i++) {
+                int x0 = (i % cols)*step;
+                int y0 = (i / cols)*step;
+                roiSrc[i] = src.subimage(x0, y0, x0 + roiSize, y0 + roiSize);
+                roiDst[i] = dst.subimage(x0, y0, x0 + roiSize, y0 + roiSize);
+                roiSrcU8[i] = srcU8.subimage(x0, y0, x0 + roiSize, y0 + roiSize);
+                roiDstU8[i] = dstU8.subimage(x0, y0, x0 + roiSize, y0 + roiSize);
+            }
+            denseSrc.reshape(roiSize, roiSize);
+            denseDst.reshape(roiSize, roiSize);
+            denseSrcU8.reshape(roiSize, roiSize);
+            denseDstU8.reshape(roiSize, roiSize);
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class YuvState {
+        @Param({"640x480","1920x1080"})
+        public String shape;
+
+        @Param({"I420","NV21"})
+        public YuvFormat format;
+
+        byte[] yuv;
+        InterleavedU8 interleaved = new InterleavedU8(1, 1, 3);
+        Planar<GrayU8> planar = new Planar<>(GrayU8.class, 1, 1, 3);
+        Workspace work = new Workspace();
+
+        @Setup(Level.Trial)
+        public void setup() {
+            String[] words = shape.split("x");
+            int width = Integer.parseInt(words[0]);
+            int height = Integer.parseInt(words[1]);
+            interleaved.reshape(width, height);
+            planar.reshape(width, height);
+
+            // Both formats have a full resolution Y plane and chroma planes which are half the width and height
+            yuv = new byte[width*height + 2*((width + 1)/2)*((height + 1)/2)];
+            new Random(345).nextBytes(yuv);
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class BayerState {
+        // 12 mega pixel sensor
+        GrayU8 src = new GrayU8(4000, 3000);
+        GrayU16 src16 = new GrayU16(4000, 3000);
+        Planar<GrayU8> dst = new Planar<>(GrayU8.class, 4000, 3000, 3);
+        Planar<GrayU16> dst16 = new Planar<>(GrayU16.class, 4000, 3000, 3);
+
+        @Setup(Level.Trial)
+        public void setup() {
+            Random rand = new Random(345);
+            ImageMiscOps.fillUniform(src, rand, 0, 256);
+            // 12-bit sensor
+            ImageMiscOps.fillUniform(src16, rand, 0, 4096);
+        }
+    }
+
+    @Benchmark public void matrix_mult_real(MatrixState state) {
+        MatrixMultiplication.mult_ikj(state.A, state.B, state.C);
+    }
+
+    @Benchmark public void matrix_mult_real_ejml(MatrixState state) {
+        // There is specialized code for small matrices here and if large enough a block matrix will kick in
+        CommonOps_DDRM.mult(state.A, state.B, state.C);
+    }
+
+    @Benchmark public void matrix_mult_real_vectors(MatrixState state) {
+        MatrixMultiplication.mult_ikj_vector(state.A, state.B, state.C);
+    }
+
+    @Benchmark public void matrix_mult_real_blocked_vectors(MatrixState state) {
+        MatrixMultiplication.mult_blocked_vector(state.A, state.B, state.C, state.work);
+    }
+
+    @Benchmark public void matrix_mult_float(MatrixState state) {
+        MatrixMultiplication.mult_ikj(state.FA, state.FB, state.FC);
+    }
+
+    @Benchmark public void matrix_mult_float_ejml(MatrixState state) {
+        CommonOps_FDRM.mult(state.FA, state.FB, state.FC);
+    }
+
+    @Benchmark public void matrix_mult_float_vectors(MatrixState state) {
+        MatrixMultiplication.mult_ikj_vector(state.FA, state.FB, state.FC);
+    }
+
+    @Benchmark public void matrix_mult_float_blocked_vectors(MatrixState state) {
+        MatrixMultiplication.mult_blocked_vector(state.FA, state.FB, state.FC, state.work);
+    }
+
+    @Benchmark public void matrix_mult_mixed(MatrixState state) {
+        // Float inputs with the sums and output in double
+        MatrixMultiplication.mult_ikj_mixed(state.FA, state.FB, state.C);
+    }
+
+    @Benchmark public void matrix_mult_mixed_vectors(MatrixState state) {
+        MatrixMultiplication.mult_ikj_mixed_vector(state.FA, state.FB, state.C);
+    }
+
+    @Benchmark public void mult_vec_ejml(MatrixVectorState state) {
+        CommonOps_DDRM.mult(state.A, state.x, state.y);
+    }
+
+    @Benchmark public void mult_vec_vector(MatrixVectorState state) {
+        MatrixVectorOps.multVec(state.A, state.x, state.y);
+    }
+
+    @Benchmark public void mult_trans_a_vec_ejml(MatrixVectorState state) {
+        CommonOps_DDRM.multTransA(state.A, state.x, state.y);
+    }
+
+    @Benchmark public void mult_trans_a_vec_vector(MatrixVectorState state) {
+        MatrixVectorOps.multTransAVec(state.A, state.x, state.y);
+    }
+
+    @Benchmark public void transpose_ejml(MatrixVectorState state) {
+        CommonOps_DDRM.transpose(state.A, state.AT);
+    }
+
+    @Benchmark public void transpose_vector(MatrixVectorState state) {
+        MatrixVectorOps.transpose(state.A, state.AT, state.work);
+    }
+
+    // The scale factor is small so that A doesn't grow after many iterations
+    @Benchmark public void outer_product_ejml(MatrixVectorState state) {
+        VectorVectorMult_DDRM.addOuterProd(1e-9, state.x, state.y, state.A);
+    }
+
+    @Benchmark public void outer_product_vector(MatrixVectorState state) {
+        MatrixVectorOps.addOuterProduct(1e-9, state.x, state.y, state.A);
+    }
+
+    @Benchmark public double dot_ejml(MatrixVectorState state) {
+        return VectorVectorMult_DDRM.innerProd(state.x, state.y);
+    }
+
+    @Benchmark public double dot_vector(MatrixVectorState state) {
+        return MatrixVectorOps.dot(state.x, state.y);
+    }
+
+    @Benchmark public void axpy_ejml(MatrixVectorState state) {
+        CommonOps_DDRM.addEquals(state.y, 1e-9, state.x);
+    }
+
+    @Benchmark public void axpy_vector(MatrixVectorState state) {
+        MatrixVectorOps.axpy(1e-9, state.x, state.y);
+    }
+
+    @Benchmark public double norm_ejml(MatrixVectorState state) {
+        return NormOps_DDRM.normF(state.x);
+    }
+
+    @Benchmark public double norm_vector(MatrixVectorState state) {
+        return MatrixVectorOps.norm2(state.x);
+    }
+
+    @Benchmark public void small_mult_real(SmallMatrixState state) {
+        MatrixMultiplication.mult_ikj(state.A, state.B, state.C);
+    }
+
+    @Benchmark public void small_mult_real_ejml(SmallMatrixState state) {
+        CommonOps_DDRM.mult(state.A, state.B, state.C);
+    }
+
+    @Benchmark public void small_mult_real_vectors(SmallMatrixState state) {
+        MatrixMultiplication.mult_ikj_vector(state.A, state.B, state.C);
+    }
+
+    @Benchmark public void small_mult_real_fixed(SmallMatrixState state) {
+        MatrixMultiplication.mult_fixed(state.A, state.B, state.C);
+    }
+
+    @Benchmark public void batch_mult_ejml(BatchMatrixState state) {
+        for (int i = 0; i < state.batch; i++) {
+            CommonOps_DDRM.mult(state.A[i], state.B[i], state.C[i]);
+        }
+    }
+
+    @Benchmark public void batch_mult_fixed(BatchMatrixState state) {
+        for (int i = 0; i < state.batch; i++) {
+            MatrixMultiplication.mult_fixed(state.A[i], state.B[i], state.C[i]);
+        }
+    }
+
+    @Benchmark public void batch_mult_vectors(BatchMatrixState state) {
+        MatrixMultiplication.multBatch(state.batchA, state.batchB, state.batchC);
+    }
+
+    @Benchmark public void batch_mult_vectors_convert(BatchMatrixState state) {
+        // Includes the cost of converting to and from DMatrixBatch
+        MatrixMultiplication.multBatch(state.batch, state.A, state.B, state.C, state.work);
+    }
+
+    @Benchmark public void matrix_mult_complex(MatrixState state) {
+        MatrixMultiplication.mult_ikj(state.CA, state.CB, state.CC);
+    }
+
+    @Benchmark public void matrix_mult_complex_vector(MatrixState state) {
+        MatrixMultiplication.mult_ikj_vector(state.CA, state.CB, state.CC);
+    }
+
+    @Benchmark public void convolve_horizontal(FloatImageState state) {
+        ImageProcessing.horizontal(state.kernel, state.src, state.dst);
+    }
+
+    @Benchmark public void convolve_horizontal_vector(FloatImageState state) {
+        ImageProcessing.horizontal_vector(state.kernel, state.src, state.dst);
+    }
+
+    @Benchmark public void convolve_horizontal_vector_v2(FloatImageState state) {
+        ImageProcessing.horizontal_vector_v2(state.kernel, state.src, state.dst);
+    }
+
+    @Benchmark public void convolve_horizontal_boofcv(FloatImageState state) {
+        // If possible this method will run an unrolled kernel
+        ConvolveImageNoBorder.horizontal(state.kernel, state.src, state.dst);
+    }
+
+    // The border variants process the entire image, which is what a caller actually pays for
+    @Benchmark public void convolve_horizontal_vector_border(FloatImageState state) {
+        ImageProcessing.horizontal_vector_border(state.kernel, state.src, state.dst, BorderType.EXTENDED, state.work);
+    }
+
+    @Benchmark public void convolve_horizontal_boofcv_border(FloatImageState state) {
+        ConvolveImage.horizontal(state.kernel, state.src, state.dst, state.border);
+    }
+
+    @Benchmark public void convolve_vertical_vector_border(FloatImageState state) {
+        ImageProcessing.vertical_vector_border(state.kernel, state.src, state.dst, BorderType.EXTENDED);
+    }
+
+    @Benchmark public void convolve_vertical_boofcv_border(FloatImageState state) {
+        ConvolveImage.vertical(state.kernel, state.src, state.dst, state.border);
+    }
+
+    @Benchmark public void convolve_separable_vector(SeparableImageState state) {
+        ImageProcessing.horizontal_vector_v2(state.kernel, state.src, state.tmp);
+        ImageProcessing.vertical_vector(state.kernel, state.tmp, state.dst);
+    }
+
+    @Benchmark public void convolve_separable_vector_fused(SeparableImageState state) {
+        ImageProcessing.convolveSeparable_vector(state.kernel, state.kernel, state.src, state.dst, state.work);
+    }
+
+    @Benchmark public void convolve_separable_boofcv(SeparableImageState state) {
+        ConvolveImageNoBorder.horizontal(state.kernel, state.src, state.tmp);
+        ConvolveImageNoBorder.vertical(state.kernel, state.tmp, state.dst);
+    }
 
     @Benchmark public void mean_horizontal(ByteImageState state) {
         ImageProcessing.mean_horizontal(state.src, state.dst, 5, 11);
     }
 
     @Benchmark public void mean_horizontal_vector(ByteImageState state) {
-        ImageProcessing.mean_horizontal_vector(state.src, state.dst, 5, 11);
-    }
-
-//    @Benchmark public void image_threshold(ByteImageState state) {
-//        ImageProcessing.threshold(state.src, state.dst, 125);
-//    }
-//
-//    @Benchmark public void image_threshold_vector_v1(ByteImageState state) {
-//        ImageProcessing.threshold_vector_v1(state.src, state.dst, 125);
-//    }
-//
-//    @Benchmark public void image_threshold_vector_v2(ByteImageState state) {
-//        ImageProcessing.threshold_vector_v2(state.src, state.dst, 125);
-//    }
-//
-//    @Benchmark public void histogram(ShortImageState state) {
-//        ImageProcessing.histogram(state.src, 0, state.histogram);
-//    }
+        ImageProcessing.mean_horizontal_vector(state.src, state.dst, 5, 11, state.work);
+    }
+
+    @Benchmark public void mean_vertical(ByteImageState state) {
+        ImageProcessing.mean_vertical(state.src, state.dst, 5, 11, state.work);
+    }
+
+    @Benchmark public void mean_vertical_vector(ByteImageState state) {
+        ImageProcessing.mean_vertical_vector(state.src, state.dst, 5, 11, state.work);
+    }
+
+    @Benchmark public void mean(ByteImageState state) {
+        ImageProcessing.mean(state.src, state.dst, 5, 11, state.work);
+    }
+
+    @Benchmark public void mean_vector(ByteImageState state) {
+        ImageProcessing.mean_vector(state.src, state.dst, 5, 11, state.work);
+    }
+
+    @Benchmark public void mean_horizontal_vector_border(ByteImageState state) {
+        ImageProcessing.mean_horizontal_vector_border(state.src, state.dst, 5, 11, BorderType.EXTENDED, state.work);
+    }
+
+    @Benchmark public void integral_boofcv(IntegralState state) {
+        IntegralImageOps.transform(state.src, state.integral);
+    }
+
+    @Benchmark public void integral_vector(IntegralState state) {
+        ImageProcessing.integral_vector(state.src, state.integral);
+    }
+
+    @Benchmark public void integral_f32(IntegralState state) {
+        ImageProcessing.integral(state.srcF32, state.integralF64);
+    }
+
+    @Benchmark public void integral_f32_vector(IntegralState state) {
+        ImageProcessing.integral_vector(state.srcF32, state.integralF64);
+    }
+
+    @Benchmark public void box_mean(IntegralState state) {
+        ImageProcessing.boxMean(state.integral, 5, state.dst);
+    }
+
+    @Benchmark public void box_mean_vector(IntegralState state) {
+        ImageProcessing.boxMean_vector(state.integral, 5, state.dst);
+    }
+
+    @Benchmark public void box_mean_f32(IntegralState state) {
+        ImageProcessing.boxMean(state.integralF64, 5, state.dstF32);
+    }
+
+    @Benchmark public void box_mean_f32_vector(IntegralState state) {
+        ImageProcessing.boxMean_vector(state.integralF64, 5, state.dstF32);
+    }
+
+    @Benchmark public void mean_windows_vector(IntegralState state) {
+        for (int radius : IntegralState.RADII) {
+            ImageProcessing.mean_vector(state.src, state.dst, radius, 2*radius + 1, state.work);
+        }
+    }
+
+    @Benchmark public void mean_windows_integral_vector(IntegralState state) {
+        ImageProcessing.integral_vector(state.src, state.integral);
+        for (int radius : IntegralState.RADII) {
+            ImageProcessing.boxMean_vector(state.integral, radius, state.dst);
+        }
+    }
+
+    @Benchmark public void image_threshold(ByteImageState state) {
+        ImageProcessing.threshold(state.src, state.dst, 125);
+    }
+
+    @Benchmark public void image_threshold_vector_v1(ByteImageState state) {
+        ImageProcessing.threshold_vector_v1(state.src, state.dst, 125, state.work);
+    }
+
+    @Benchmark public void image_threshold_vector_v2(ByteImageState state) {
+        ImageProcessing.threshold_vector_v2(state.src, state.dst, 125);
+    }
+
+    @Benchmark public void image_threshold_vector(ByteImageState state) {
+        ImageProcessing.threshold_vector(state.src, state.dst, 125, false, 255);
+    }
+
+    @Benchmark public void image_threshold_range(ByteImageState state) {
+        ImageProcessing.thresholdRange(state.src, state.dst, 60, 190, 255);
+    }
+
+    @Benchmark public void image_threshold_range_vector(ByteImageState state) {
+        ImageProcessing.thresholdRange_vector(state.src, state.dst, 60, 190, 255);
+    }
+
+    @Benchmark public void roi_convolve_horizontal_vector(RoiState state) {
+        for (int i = 0; i < state.roiSrc.length; i++) {
+            ImageProcessing.horizontal_vector_v2(state.kernel, state.roiSrc[i], state.roiDst[i]);
+        }
+    }
+
+    @Benchmark public void roi_convolve_horizontal_vector_copy(RoiState state) {
+        for (int i = 0; i < state.roiSrc.length; i++) {
+            state.denseSrc.setTo(state.roiSrc[i]);
+            ImageProcessing.horizontal_vector_v2(state.kernel, state.denseSrc, state.denseDst);
+            state.roiDst[i].setTo(state.denseDst);
+        }
+    }
+
+    @Benchmark public void roi_convolve_vertical_vector(RoiState state) {
+        for (int i = 0; i < state.roiSrc.length; i++) {
+            ImageProcessing.vertical_vector(state.kernel, state.roiSrc[i], state.roiDst[i]);
+        }
+    }
+
+    @Benchmark public void roi_convolve_vertical_vector_copy(RoiState state) {
+        for (int i = 0; i < state.roiSrc.length; i++) {
+            state.denseSrc.setTo(state.roiSrc[i]);
+            ImageProcessing.vertical_vector(state.kernel, state.denseSrc, state.denseDst);
+            state.roiDst[i].setTo(state.denseDst);
+        }
+    }
+
+    @Benchmark public void roi_threshold_vector(RoiState state) {
+        for (int i = 0; i < state.roiSrcU8.length; i++) {
+            ImageProcessing.threshold_vector(state.roiSrcU8[i], state.roiDstU8[i], 125, false, 255);
+        }
+    }
+
+    @Benchmark public void roi_threshold_vector_copy(RoiState state) {
+        for (int i = 0; i < state.roiSrcU8.length; i++) {
+            state.denseSrcU8.setTo(state.roiSrcU8[i]);
+            ImageProcessing.threshold_vector(state.denseSrcU8, state.denseDstU8, 125, false, 255);
+            state.roiDstU8[i].setTo(state.denseDstU8);
+        }
+    }
+
+    @Benchmark public void histogram(ShortImageState state) {
+        ImageProcessing.histogram(state.src, 0, state.histogram);
+    }
+
+    @Benchmark public void histogram_vector(ShortImageState state) {
+        ImageProcessing.histogram_vector(state.src, 0, state.histogram, state.work);
+    }
+
+    @Benchmark public void histogram_gather(ShortImageState state) {
+        ImageProcessing.histogram_gather(state.src, 0, state.histogram, state.work);
+    }
+
+    @Benchmark public void yuv_to_rgb(YuvState state) {
+        ImageProcessing.yuv420ToRgb(state.yuv, state.interleaved.width, state.interleaved.height,
+                state.format, state.interleaved);
+    }
+
+    @Benchmark public void yuv_to_rgb_vector(YuvState state) {
+        ImageProcessing.yuv420ToRgb_vector(state.yuv, state.interleaved.width, state.interleaved.height,
+                state.format, state.interleaved, state.work);
+    }
+
+    @Benchmark public void yuv_to_rgb_planar(YuvState state) {
+        ImageProcessing.yuv420ToRgb(state.yuv, state.planar.width, state.planar.height, state.format, state.planar);
+    }
+
+    @Benchmark public void yuv_to_rgb_planar_vector(YuvState state) {
+        ImageProcessing.yuv420ToRgb_vector(state.yuv, state.planar.width, state.planar.height,
+                state.format, state.planar);
+    }
+
+    @Benchmark public void debayer(BayerState state) {
+        ImageProcessing.debayer(state.src, BayerPattern.RGGB, state.dst);
+    }
+
+    @Benchmark public void debayer_vector(BayerState state) {
+        ImageProcessing.debayer_vector(state.src, BayerPattern.RGGB, state.dst);
+    }
+
+    @Benchmark public void debayer_u16(BayerState state) {
+        ImageProcessing.debayer(state.src16, BayerPattern.RGGB, state.dst16);
+    }
+
+    @Benchmark public void debayer_u16_vector(BayerState state) {
+        ImageProcessing.debayer_vector(state.src16, BayerPattern.RGGB, state.dst16);
+    }
 
     public static void main(String[] args) throws RunnerException {
         Options opt = new OptionsBuilder()
@@ -0,0 +1,147 @@
+package benchmark;
+
+import boofcv.alg.misc.ImageMiscOps;
+import boofcv.concurrency.BoofConcurrency;
+import boofcv.factory.filter.kernel.FactoryKernelGaussian;
+import boofcv.struct.convolve.Kernel1D_F32;
+import boofcv.struct.image.GrayF32;
+import boofcv.struct.image.GrayU16;
+import boofcv.struct.image.GrayU8;
+import boofcv.struct.image.Planar;
+import jdk.incubator.vector.VectorShape;
+import org.ejml.data.DMatrixRMaj;
+import org.ejml.data.ZMatrixRMaj;
+import org.ejml.dense.row.RandomMatrices_DDRM;
+import org.ejml.dense.row.RandomMatrices_ZDRM;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.openjdk.jmh.runner.options.TimeValue;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Runs the vector code with each vector shape, e.g. to see if 256-bit vectors avoid the clock speed penalty of
+ * AVX-512 or how code would run on a 128-bit host. The shape can only be selected when the JVM starts, see
+ * {@link VectorShapes}, so {@link #main} launches a separate run for each shape with the matching JVM argument.
+ * Shapes which are larger than the hardware's registers are skipped, and so is the 64-bit shape since a vector
+ * with one double isn't compiled into vector instructions and the results would only measure emulation.
+ *
+ * @author Peter Abeles
+ */
+@BenchmarkMode(Mode.AverageTime)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@State(Scope.Benchmark)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(value = 1)
+public class BenchmarkShapes {
+    @Param({"128","256","512","MAX"})
+    public String vectorBits;
+
+    DMatrixRMaj A = new DMatrixRMaj(1, 1);
+    DMatrixRMaj B = new DMatrixRMaj(1, 1);
+    DMatrixRMaj C = new DMatrixRMaj(1, 1);
+    ZMatrixRMaj CA = new ZMatrixRMaj(1, 1);
+    ZMatrixRMaj CB = new ZMatrixRMaj(1, 1);
+    ZMatrixRMaj CC = new ZMatrixRMaj(1, 1);
+
+    GrayU8 srcU8 = new GrayU8(1920, 1080);
+    GrayU8 dstU8 = srcU8.createSameShape();
+    GrayU16 srcU16 = new GrayU16(1920, 1080);
+    GrayF32 srcF32 = new GrayF32(1920, 1080);
+    GrayF32 dstF32 = srcF32.createSameShape();
+    Planar<GrayU8> rgb = new Planar<>(GrayU8.class, 1920, 1080, 3);
+
+    int[] histogram = new int[BenchmarkOperations.MAX_PIXEL_U16];
+    Kernel1D_F32 kernel;
+    Workspace work = new Workspace();
+
+    @Setup(Level.Trial)
+    public void setup() {
+        // Make sure the results are labeled with the shape that's really being used
+        if (VectorShapes.parse(vectorBits) != VectorShapes.SHAPE)
+            throw new IllegalStateException("Launch with -D" + VectorShapes.PROPERTY + "=" + vectorBits +
+                    " or use main()");
+
+        BoofConcurrency.USE_CONCURRENT = false;
+
+        Random rand = new Random(345);
+        A = RandomMatrices_DDRM.rectangle(1000, 1000, -1, 1, rand);
+        B = RandomMatrices_DDRM.rectangle(1000, 1000, -1, 1, rand);
+        C = new DMatrixRMaj(1000, 1000);
+        CA.reshape(500, 500);
+        CB.reshape(500, 500);
+        CC.reshape(500, 500);
+        RandomMatrices_ZDRM.fillUniform(CA, -1, 1, rand);
+        RandomMatrices_ZDRM.fillUniform(CB, -1, 1, rand);
+
+        ImageMiscOps.fillUniform(srcU8, rand, 0, 256);
+        ImageMiscOps.fillUniform(srcU16, rand, 0, BenchmarkOperations.MAX_PIXEL_U16);
+        ImageMiscOps.fillUniform(srcF32, rand, 0, 255);
+
+        kernel = FactoryKernelGaussian.gaussian1D(GrayF32.class, -1, 5);
+    }
+
+    @Benchmark public void matrix_mult_real_vectors() {
+        MatrixMultiplication.mult_ikj_vector(A, B, C);
+    }
+
+    @Benchmark public void matrix_mult_real_blocked_vectors() {
+        MatrixMultiplication.mult_blocked_vector(A, B, C, work);
+    }
+
+    @Benchmark public void matrix_mult_complex_vector() {
+        MatrixMultiplication.mult_ikj_vector(CA, CB, CC);
+    }
+
+    @Benchmark public void convolve_horizontal_vector_v2() {
+        ImageProcessing.horizontal_vector_v2(kernel, srcF32, dstF32);
+    }
+
+    @Benchmark public void convolve_vertical_vector() {
+        ImageProcessing.vertical_vector(kernel, srcF32, dstF32);
+    }
+
+    @Benchmark public void mean_vector() {
+        ImageProcessing.mean_vector(srcU8, dstU8, 5, 11, work);
+    }
+
+    @Benchmark public void image_threshold_vector() {
+        ImageProcessing.threshold_vector(srcU8, dstU8, 125, true, 1);
+    }
+
+    @Benchmark public void histogram_vector() {
+        ImageProcessing.histogram_vector(srcU16, 0, histogram, work);
+    }
+
+    @Benchmark public void debayer_vector() {
+        ImageProcessing.debayer_vector(srcU8, BayerPattern.RGGB, rgb);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        for (String name : VectorShapes.NAMES) {
+            VectorShape shape = VectorShapes.parse(name);
+            if (!VectorShapes.isSupported(shape)) {
+                System.out.println("Skipping " + name + "-bit vectors. Not supported by this host.");
+                continue;
+            }
+            if (!VectorShapes.isIntrinsic(shape)) {
+                System.out.println("Skipping " + name + "-bit vectors. Vectors with one lane are emulated.");
+                continue;
+            }
+
+            Options opt = new OptionsBuilder()
+                    .include(BenchmarkShapes.class.getSimpleName())
+                    .param("vectorBits", name)
+                    .jvmArgsAppend("-D" + VectorShapes.PROPERTY + "=" + name)
+                    .warmupTime(TimeValue.seconds(1))
+                    .measurementTime(TimeValue.seconds(1))
+                    .build();
+            new Runner(opt).run();
+        }
+    }
+}
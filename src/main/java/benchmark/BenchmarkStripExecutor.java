@@ -0,0 +1,89 @@
+package benchmark;
+
+import boofcv.alg.misc.ImageMiscOps;
+import boofcv.factory.filter.kernel.FactoryKernelGaussian;
+import boofcv.struct.convolve.Kernel1D_F32;
+import boofcv.struct.image.GrayF32;
+import boofcv.struct.image.GrayU8;
+
+import java.util.Random;
+
+/**
+ * Compares running blur, mean, and threshold on strips with {@link StripExecutor} against running each
+ * operation across the whole image. Run it with several strip heights to find the best one for the host's
+ * cache. The working set of a strip is printed next to each height so it can be compared against the size of L2.
+ *
+ * Usage: [width height] [strip heights...]
+ *
+ * @author Peter Abeles
+ */
+public class BenchmarkStripExecutor {
+    // Radius of the Gaussian blur and width of the mean
+    static final int RADIUS = 2;
+    static final int LENGTH = 11;
+    // Bytes per pixel in the scratch images. Two F32 images for the blur and three U8 images
+    static final int SCRATCH_BYTES = 2*4 + 3;
+
+    public static void main( String[] args ) {
+        int width = args.length >= 2 ? Integer.parseInt(args[0]) : 4000;
+        int height = args.length >= 2 ? Integer.parseInt(args[1]) : 3000;
+        int[] stripHeights = {4, 8, 16, 32, 64, 128, 256};
+        if (args.length > 2) {
+            stripHeights = new int[args.length - 2];
+            for (int i = 2; i < args.length; i++) {
+                stripHeights[i - 2] = Integer.parseInt(args[i]);
+            }
+        }
+
+        var input = new GrayF32(width, height);
+        var output = new GrayU8(width, height);
+        ImageMiscOps.fillUniform(input, new Random(234), 0, 255);
+        Kernel1D_F32 kernel = FactoryKernelGaussian.gaussian1D(GrayF32.class, -1, RADIUS);
+
+        System.out.println(width + "x" + height + " blur, mean, threshold. Vector bits " +
+                VectorShapes.SHAPE.vectorBitSize());
+
+        StripExecutor<GrayF32, GrayU8> passes = create(kernel, 1);
+        double timePasses = KernelCalibration.time(() -> passes.processPasses(input, output));
+        System.out.printf("  passes        %8.2f ms%n", timePasses*1e-6);
+
+        for (int stripHeight : stripHeights) {
+            StripExecutor<GrayF32, GrayU8> strips = create(kernel, stripHeight);
+            double time = KernelCalibration.time(() -> strips.process(input, output));
+            long bytes = (long)SCRATCH_BYTES*width*(stripHeight + strips.getRowsAbove() + strips.getRowsBelow());
+            System.out.printf("  strip %5d   %8.2f ms  speedup %5.2f  scratch %7d KB%n", stripHeight, time*1e-6,
+                    timePasses/time, bytes/1024);
+        }
+    }
+
+    static StripExecutor<GrayF32, GrayU8> create( Kernel1D_F32 kernel, int stripHeight ) {
+        final int offset = kernel.getOffset();
+        final int half = LENGTH/2;
+        return StripExecutor.<GrayF32>builder()
+                .then(GrayF32::new, ( GrayF32 a, GrayF32 b, Workspace work ) ->
+                        ImageProcessing.horizontal_vector_v2(kernel, a, b))
+                .then(GrayF32::new, offset, kernel.getWidth() - 1 - offset, ( GrayF32 a, GrayF32 b, Workspace work ) ->
+                        ImageProcessing.vertical_vector(kernel, a, b))
+                .then(GrayU8::new, ( GrayF32 a, GrayU8 b, Workspace work ) -> toU8(a, b))
+                .then(GrayU8::new, ( GrayU8 a, GrayU8 b, Workspace work ) ->
+                        ImageProcessing.mean_horizontal_vector(a, b, half, LENGTH, work))
+                .then(GrayU8::new, half, LENGTH - 1 - half, ( GrayU8 a, GrayU8 b, Workspace work ) ->
+                        ImageProcessing.mean_vertical_vector(a, b, half, LENGTH, work))
+                .then(GrayU8::new, ( GrayU8 a, GrayU8 b, Workspace work ) ->
+                        ImageProcessing.threshold_vector_v2(a, b, 125))
+                .build(stripHeight);
+    }
+
+    /**
+     * Converts the blurred image into bytes. Pixel values are already inside of 0 to 255.
+     */
+    static void toU8( GrayF32 input, GrayU8 output ) {
+        for (int y = 0; y < input.height; y++) {
+            int indexIn = input.startIndex + y*input.stride;
+            int indexOut = output.startIndex + y*output.stride;
+            for (int x = 0; x < input.width; x++) {
+                output.data[indexOut + x] = (byte)(int)input.data[indexIn + x];
+            }
+        }
+    }
+}
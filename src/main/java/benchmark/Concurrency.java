@@ -0,0 +1,71 @@
+package benchmark;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Minimal version of BoofConcurrency/EjmlConcurrency. Work is split into contiguous blocks which are run on
+ * a caller supplied {@link ForkJoinPool}, so the number of threads is controlled by the pool's parallelism.
+ *
+ * @author Peter Abeles
+ */
+public class Concurrency {
+    /**
+     * Splits the range [start, end) into at most pool.getParallelism() blocks and processes each block in
+     * its own task. If there is only one block then it's run in the calling thread.
+     *
+     * @param minBlock Smallest block that will be created. Prevents tiny problems from being split.
+     */
+    public static void loopBlocks(ForkJoinPool pool, int start, int end, int minBlock, IntRangeConsumer consumer) {
+        final int length = end - start;
+        if (length <= 0)
+            return;
+
+        int numBlocks = Math.min(pool.getParallelism(), Math.max(1, length/Math.max(1, minBlock)));
+        if (numBlocks == 1) {
+            consumer.accept(start, end);
+            return;
+        }
+
+        pool.invoke(new IntRangeTask(start, length, numBlocks, 0, numBlocks, consumer));
+    }
+
+    /**
+     * Processes the blocks in [block0, block1). Recursively splits in half until it's down to a single block.
+     */
+    private static class IntRangeTask extends RecursiveAction {
+        final int start, length, numBlocks, block0, block1;
+        final IntRangeConsumer consumer;
+
+        IntRangeTask(int start, int length, int numBlocks, int block0, int block1, IntRangeConsumer consumer) {
+            this.start = start;
+            this.length = length;
+            this.numBlocks = numBlocks;
+            this.block0 = block0;
+            this.block1 = block1;
+            this.consumer = consumer;
+        }
+
+        @Override protected void compute() {
+            if (block1 - block0 == 1) {
+                // Divide the remainder evenly across the blocks
+                int i0 = start + (int)((long)length*block0/numBlocks);
+                int i1 = start + (int)((long)length*block1/numBlocks);
+                consumer.accept(i0, i1);
+            } else {
+                int middle = (block0 + block1)/2;
+                invokeAll(new IntRangeTask(start, length, numBlocks, block0, middle, consumer),
+                        new IntRangeTask(start, length, numBlocks, middle, block1, consumer));
+            }
+        }
+    }
+
+    @FunctionalInterface
+    public interface IntRangeConsumer {
+        /**
+         * @param min Start of the range, inclusive
+         * @param max End of the range, exclusive
+         */
+        void accept(int min, int max);
+    }
+}
@@ -0,0 +1,76 @@
+package benchmark;
+
+import org.ejml.data.DMatrix1Row;
+
+/**
+ * Stores a batch of matrices which all have the same shape in a structure-of-arrays layout. Element (row, col)
+ * from every matrix in the batch is stored contiguously, i.e. element (row, col) of matrix 'm' is at
+ * data[(row*numCols + col)*stride + m]. This lets a vector process a different matrix in each lane.
+ *
+ * The stride is rounded up to a multiple of the preferred number of lanes, so vectorized code never needs
+ * to handle a partial vector. Values in the padding are undefined.
+ *
+ * @author Peter Abeles
+ */
+public class DMatrixBatch {
+    /** Shape of each matrix in the batch */
+    public int numRows, numCols;
+    /** Number of matrices in the batch */
+    public int batchSize;
+    /** Number of elements between consecutive (row, col) elements */
+    public int stride;
+    public double[] data = new double[0];
+
+    public DMatrixBatch(int numRows, int numCols, int batchSize) {
+        reshape(numRows, numCols, batchSize);
+    }
+
+    public DMatrixBatch() {}
+
+    public void reshape(int numRows, int numCols, int batchSize) {
+        this.numRows = numRows;
+        this.numCols = numCols;
+        this.batchSize = batchSize;
+        this.stride = MatrixMultiplication.roundUp(batchSize, MatrixMultiplication.SPECIES.length());
+        int length = numRows*numCols*stride;
+        if (data.length < length)
+            data = new double[length];
+    }
+
+    public double get(int matrix, int row, int col) {
+        return data[(row*numCols + col)*stride + matrix];
+    }
+
+    public void set(int matrix, int row, int col, double value) {
+        data[(row*numCols + col)*stride + matrix] = value;
+    }
+
+    /**
+     * Copies the first 'count' matrices into the batch. All the matrices must have the same shape.
+     */
+    public void setTo(int count, DMatrix1Row[] matrices) {
+        reshape(matrices[0].numRows, matrices[0].numCols, count);
+
+        final int numElements = numRows*numCols;
+        for (int m = 0; m < count; m++) {
+            final double[] src = matrices[m].data;
+            for (int i = 0, index = m; i < numElements; i++, index += stride) {
+                data[index] = src[i];
+            }
+        }
+    }
+
+    /**
+     * Copies the batch into the first batchSize matrices. Each matrix is reshaped to match.
+     */
+    public void copyTo(DMatrix1Row[] matrices) {
+        final int numElements = numRows*numCols;
+        for (int m = 0; m < batchSize; m++) {
+            matrices[m].reshape(numRows, numCols);
+            final double[] dst = matrices[m].data;
+            for (int i = 0, index = m; i < numElements; i++, index += stride) {
+                dst[i] = data[index];
+            }
+        }
+    }
+}
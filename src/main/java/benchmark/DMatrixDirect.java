@@ -0,0 +1,68 @@
+package benchmark;
+
+import org.ejml.data.DMatrix1Row;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.DoubleBuffer;
+
+/**
+ * Row major dense matrix that's stored in a {@link ByteBuffer}, e.g. a direct buffer shared with native code or a
+ * memory mapped file. Doubles are stored in the native byte order and element (row, col) starts at byte
+ * (row*numCols + col)*8. The shape is fixed since the buffer belongs to someone else.
+ *
+ * @author Peter Abeles
+ */
+public class DMatrixDirect {
+    public final int numRows, numCols;
+    /** Same memory as the buffer which was passed in, but with the native byte order */
+    public final ByteBuffer data;
+
+    // View of data as doubles, used for copying
+    private final DoubleBuffer doubles;
+
+    /**
+     * Allocates a new matrix in a direct buffer
+     */
+    public DMatrixDirect(int numRows, int numCols) {
+        this(ByteBuffer.allocateDirect(numRows*numCols*Double.BYTES), numRows, numCols);
+    }
+
+    /**
+     * Wraps the buffer without copying it. The matrix starts at byte 0 and the buffer's position is ignored.
+     * The buffer's byte order isn't modified.
+     */
+    public DMatrixDirect(ByteBuffer data, int numRows, int numCols) {
+        if (numRows*(long)numCols*Double.BYTES > data.limit())
+            throw new IllegalArgumentException("Buffer is too small for the matrix");
+        this.numRows = numRows;
+        this.numCols = numCols;
+        this.data = data.duplicate().position(0).order(ByteOrder.nativeOrder());
+        this.doubles = this.data.asDoubleBuffer();
+    }
+
+    public double get(int row, int col) {
+        return data.getDouble((row*numCols + col)*Double.BYTES);
+    }
+
+    public void set(int row, int col, double value) {
+        data.putDouble((row*numCols + col)*Double.BYTES, value);
+    }
+
+    /**
+     * Copies the matrix into the buffer. Must be the same shape.
+     */
+    public void setTo(DMatrix1Row src) {
+        if (src.numRows != numRows || src.numCols != numCols)
+            throw new IllegalArgumentException("Shapes don't match");
+        doubles.put(0, src.data, 0, numRows*numCols);
+    }
+
+    /**
+     * Copies the buffer into the matrix. The matrix is reshaped to match.
+     */
+    public void copyTo(DMatrix1Row dst) {
+        dst.reshape(numRows, numCols);
+        doubles.get(0, dst.data, 0, numRows*numCols);
+    }
+}
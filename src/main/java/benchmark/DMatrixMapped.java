@@ -0,0 +1,114 @@
+package benchmark;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteOrder;
+import java.nio.DoubleBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Row major dense matrix which is stored in a memory mapped file, so it can be much larger than the heap. The
+ * file is raw doubles in the native byte order with no header. A single mapping is limited to 2 GB, so the file
+ * is mapped as several regions which each contain a whole number of rows. Reads and writes are done a row at a
+ * time by copying to or from an array.
+ *
+ * Reads use absolute indexes, so different threads can read at the same time.
+ *
+ * @author Peter Abeles
+ */
+public class DMatrixMapped implements Closeable {
+    /** Largest region that can be mapped at once */
+    static final long MAX_REGION_BYTES = Integer.MAX_VALUE;
+
+    public final int numRows, numCols;
+
+    final FileChannel channel;
+    final MappedByteBuffer[] mapped;
+    final DoubleBuffer[] regions;
+    final int rowsPerRegion;
+
+    /**
+     * Creates a new file, or overwrites an existing one, which is large enough for the matrix
+     */
+    public static DMatrixMapped create(Path file, int numRows, int numCols) throws IOException {
+        var channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+                StandardOpenOption.READ, StandardOpenOption.WRITE);
+        return new DMatrixMapped(channel, numRows, numCols, MAX_REGION_BYTES);
+    }
+
+    /**
+     * Opens an existing file. It must be at least as large as the matrix.
+     */
+    public static DMatrixMapped open(Path file, int numRows, int numCols) throws IOException {
+        var channel = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        if (channel.size() < numRows*(long)numCols*Double.BYTES) {
+            channel.close();
+            throw new IOException("File is too small for a " + numRows + "x" + numCols + " matrix");
+        }
+        return new DMatrixMapped(channel, numRows, numCols, MAX_REGION_BYTES);
+    }
+
+    /**
+     * @param maxRegionBytes Largest region which will be mapped. Only changed to test files with many regions.
+     */
+    DMatrixMapped(FileChannel channel, int numRows, int numCols, long maxRegionBytes) throws IOException {
+        long rowBytes = (long)numCols*Double.BYTES;
+        if (rowBytes > maxRegionBytes)
+            throw new IllegalArgumentException("A single row is too large to be mapped");
+
+        this.channel = channel;
+        this.numRows = numRows;
+        this.numCols = numCols;
+        this.rowsPerRegion = (int)Math.max(1, Math.min(numRows, maxRegionBytes/Math.max(1, rowBytes)));
+
+        int numRegions = (numRows + rowsPerRegion - 1)/rowsPerRegion;
+        mapped = new MappedByteBuffer[numRegions];
+        regions = new DoubleBuffer[numRegions];
+        for (int i = 0; i < numRegions; i++) {
+            int rows = Math.min(rowsPerRegion, numRows - i*rowsPerRegion);
+            mapped[i] = channel.map(FileChannel.MapMode.READ_WRITE, i*rowsPerRegion*rowBytes, rows*rowBytes);
+            regions[i] = mapped[i].order(ByteOrder.nativeOrder()).asDoubleBuffer();
+        }
+    }
+
+    public double get(int row, int col) {
+        return regions[row/rowsPerRegion].get((row%rowsPerRegion)*numCols + col);
+    }
+
+    public void set(int row, int col, double value) {
+        regions[row/rowsPerRegion].put((row%rowsPerRegion)*numCols + col, value);
+    }
+
+    /**
+     * Copies 'length' elements from a row, starting at col0, into the array
+     */
+    public void getRow(int row, int col0, double[] dst, int offset, int length) {
+        regions[row/rowsPerRegion].get((row%rowsPerRegion)*numCols + col0, dst, offset, length);
+    }
+
+    /**
+     * Copies 'length' elements from the array into a row, starting at col0
+     */
+    public void setRow(int row, int col0, double[] src, int offset, int length) {
+        regions[row/rowsPerRegion].put((row%rowsPerRegion)*numCols + col0, src, offset, length);
+    }
+
+    /**
+     * Writes modified pages back to the file
+     */
+    public void flush() {
+        for (MappedByteBuffer m : mapped) {
+            m.force();
+        }
+    }
+
+    /**
+     * Closes the file. The mapping is released once the buffers are garbage collected.
+     */
+    @Override public void close() throws IOException {
+        channel.close();
+    }
+}
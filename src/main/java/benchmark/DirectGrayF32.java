@@ -0,0 +1,81 @@
+package benchmark;
+
+import boofcv.struct.image.GrayF32;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+
+/**
+ * Gray scale float image that's stored in a {@link ByteBuffer}, see {@link DirectGrayU8}. Floats are stored in
+ * the native byte order. Indexes and the stride are in floats, so the pixel at (x,y) starts at byte
+ * (startIndex + y*stride + x)*4.
+ *
+ * @author Peter Abeles
+ */
+public class DirectGrayF32 {
+    /** Same memory as the buffer which was passed in, but with the native byte order */
+    public final ByteBuffer data;
+    /** Index of the first pixel */
+    public final int startIndex;
+    /** Number of floats between rows */
+    public final int stride;
+    public final int width, height;
+
+    // View of data as floats, used for copying rows
+    private final FloatBuffer floats;
+
+    /**
+     * Allocates a new image in a direct buffer
+     */
+    public DirectGrayF32(int width, int height) {
+        this(ByteBuffer.allocateDirect(width*height*Float.BYTES), 0, width, width, height);
+    }
+
+    /**
+     * Wraps the buffer without copying it. Pixels are read with absolute indexes, so the buffer's position is
+     * ignored. The buffer's byte order isn't modified.
+     */
+    public DirectGrayF32(ByteBuffer data, int startIndex, int stride, int width, int height) {
+        if (stride < width)
+            throw new IllegalArgumentException("stride must be at least the width");
+        if (height > 0 && (startIndex + (height - 1)*stride + width)*(long)Float.BYTES > data.limit())
+            throw new IllegalArgumentException("Buffer is too small for the image");
+        this.data = data.duplicate().position(0).order(ByteOrder.nativeOrder());
+        this.floats = this.data.asFloatBuffer();
+        this.startIndex = startIndex;
+        this.stride = stride;
+        this.width = width;
+        this.height = height;
+    }
+
+    public float get(int x, int y) {
+        return data.getFloat((startIndex + y*stride + x)*Float.BYTES);
+    }
+
+    public void set(int x, int y, float value) {
+        data.putFloat((startIndex + y*stride + x)*Float.BYTES, value);
+    }
+
+    /**
+     * Copies the image into the buffer. Must be the same shape.
+     */
+    public void setTo(GrayF32 src) {
+        if (width != src.width || height != src.height)
+            throw new IllegalArgumentException("Shapes don't match. " +
+                    width + "x" + height + " vs " + src.width + "x" + src.height);
+        for (int y = 0; y < height; y++) {
+            floats.put(startIndex + y*stride, src.data, src.startIndex + y*src.stride, width);
+        }
+    }
+
+    /**
+     * Copies the buffer into the image. The image is reshaped to match.
+     */
+    public void copyTo(GrayF32 dst) {
+        dst.reshape(width, height);
+        for (int y = 0; y < height; y++) {
+            floats.get(startIndex + y*stride, dst.data, dst.startIndex + y*dst.stride, width);
+        }
+    }
+}
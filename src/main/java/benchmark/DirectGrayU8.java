@@ -0,0 +1,79 @@
+package benchmark;
+
+import boofcv.struct.image.GrayU8;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Gray scale image with unsigned bytes that's stored in a {@link ByteBuffer} instead of an array, e.g. a direct
+ * buffer filled in by a native capture library or a memory mapped file. Wrapping the buffer lets a frame be
+ * processed in place without copying it onto the heap. The layout is the same as {@link GrayU8}, the pixel at
+ * (x,y) is the byte at startIndex + y*stride + x.
+ *
+ * @author Peter Abeles
+ */
+public class DirectGrayU8 {
+    public final ByteBuffer data;
+    /** Index of the first pixel */
+    public final int startIndex;
+    /** Number of bytes between rows */
+    public final int stride;
+    public final int width, height;
+
+    /**
+     * Allocates a new image in a direct buffer
+     */
+    public DirectGrayU8(int width, int height) {
+        this(ByteBuffer.allocateDirect(width*height), 0, width, width, height);
+    }
+
+    /**
+     * Wraps the buffer without copying it. Pixels are read with absolute indexes, so the buffer's position is
+     * ignored.
+     */
+    public DirectGrayU8(ByteBuffer data, int startIndex, int stride, int width, int height) {
+        if (stride < width)
+            throw new IllegalArgumentException("stride must be at least the width");
+        if (height > 0 && startIndex + (height - 1)*stride + width > data.limit())
+            throw new IllegalArgumentException("Buffer is too small for the image");
+        this.data = data;
+        this.startIndex = startIndex;
+        this.stride = stride;
+        this.width = width;
+        this.height = height;
+    }
+
+    public int get(int x, int y) {
+        return data.get(startIndex + y*stride + x) & 0xFF;
+    }
+
+    public void set(int x, int y, int value) {
+        data.put(startIndex + y*stride + x, (byte)value);
+    }
+
+    /**
+     * Copies the image into the buffer. Must be the same shape.
+     */
+    public void setTo(GrayU8 src) {
+        checkShape(src.width, src.height);
+        for (int y = 0; y < height; y++) {
+            data.put(startIndex + y*stride, src.data, src.startIndex + y*src.stride, width);
+        }
+    }
+
+    /**
+     * Copies the buffer into the image. The image is reshaped to match.
+     */
+    public void copyTo(GrayU8 dst) {
+        dst.reshape(width, height);
+        for (int y = 0; y < height; y++) {
+            data.get(startIndex + y*stride, dst.data, dst.startIndex + y*dst.stride, width);
+        }
+    }
+
+    void checkShape(int width, int height) {
+        if (this.width != width || this.height != height)
+            throw new IllegalArgumentException("Shapes don't match. " +
+                    this.width + "x" + this.height + " vs " + width + "x" + height);
+    }
+}
@@ -0,0 +1,378 @@
+package benchmark;
+
+import java.io.Closeable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+/**
+ * Runs a stream of frames through a chain of image processing operations, e.g. mean then threshold. Each stage
+ * runs in its own thread, so while one frame is being thresholded the next frame can be filtered on another
+ * core. The output of every stage is written into an image from that stage's {@link ImagePool}, which is
+ * released once the next stage is done with it. The objects which carry a frame between stages are pooled too,
+ * so nothing is allocated per frame.
+ *
+ * Pools are bounded. If a stage falls behind then the stage before it blocks waiting for an output image, and
+ * eventually {@link #acquire} blocks the caller. Use {@link #tryAcquire} to drop frames instead.
+ *
+ * <pre>
+ * var pipeline = FramePipeline.builder(4, () -&gt; new GrayU8(1920, 1080))
+ *         .then("mean", () -&gt; new GrayU8(1920, 1080), (a, b, work) -&gt; ImageProcessing.mean_vector(a, b, 5, 11, work))
+ *         .then("threshold", () -&gt; new GrayU8(1920, 1080), (a, b, work) -&gt; ImageProcessing.threshold_vector_v2(a, b, 125))
+ *         .build(output -&gt; ...);
+ * </pre>
+ *
+ * @author Peter Abeles
+ */
+public class FramePipeline<I, O> implements Closeable {
+    private final ImagePool<Object> inputs;
+    private final List<Stage> stages;
+    private final Consumer<O> sink;
+    // queues[i] holds frames which are waiting for stage i
+    private final List<BlockingQueue<Frame>> queues = new ArrayList<>();
+    // Frames which aren't in the pipeline. Each frame holds one pooled image, so there can't be more frames
+    // than images in all the pools
+    private final BlockingQueue<Frame> unused;
+    private final List<Thread> threads = new ArrayList<>();
+
+    // Time from when a frame is submitted until the sink is done with it
+    private final Latency total = new Latency("total");
+
+    // The first exception thrown by a stage
+    private volatile RuntimeException failure;
+
+    // Guarded by this
+    private long pending;
+    private long completed;
+    private long firstSubmitted;
+    private long lastCompleted;
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private FramePipeline( Builder<I, O> builder, Consumer<O> sink ) {
+        this.inputs = (ImagePool)builder.inputs;
+        this.stages = new ArrayList<>(builder.stages);
+        this.sink = sink;
+        if (stages.isEmpty())
+            throw new IllegalArgumentException("There must be at least one stage");
+
+        for (int i = 0; i < stages.size(); i++) {
+            queues.add(new ArrayBlockingQueue<>(builder.poolSize));
+        }
+        int maxFrames = builder.poolSize*(stages.size() + 1);
+        unused = new ArrayBlockingQueue<>(maxFrames);
+        for (int i = 0; i < maxFrames; i++) {
+            unused.add(new Frame());
+        }
+        for (int i = 0; i < stages.size(); i++) {
+            final int index = i;
+            var thread = new Thread(() -> run(index), "pipeline " + stages.get(i).latency.name);
+            thread.setDaemon(true);
+            threads.add(thread);
+            thread.start();
+        }
+    }
+
+    /**
+     * Starts a pipeline whose input images come from a pool
+     *
+     * @param poolSize Number of images in each pool. Limits how many frames can be in each stage.
+     * @param factory Creates input images
+     */
+    public static <T> Builder<T, T> builder( int poolSize, Supplier<T> factory ) {
+        return new Builder<>(poolSize, factory);
+    }
+
+    /**
+     * Returns an input image which can be filled in and passed to {@link #submit}. Blocks until one is free.
+     */
+    @SuppressWarnings("unchecked")
+    public I acquire() throws InterruptedException {
+        checkFailure();
+        return (I)inputs.acquire();
+    }
+
+    /**
+     * Same as {@link #acquire} but returns null if the pipeline is full
+     */
+    @SuppressWarnings("unchecked")
+    public I tryAcquire() {
+        checkFailure();
+        return (I)inputs.tryAcquire();
+    }
+
+    /**
+     * Adds a frame to the pipeline. The frame must have come from {@link #acquire} and can't be modified
+     * after this is called.
+     */
+    public void submit( I frame ) throws InterruptedException {
+        checkFailure();
+        Frame f = unused.take();
+        f.image = frame;
+        f.submitted = System.nanoTime();
+        synchronized (this) {
+            if (completed == 0 && pending == 0)
+                firstSubmitted = f.submitted;
+            pending++;
+        }
+        queues.get(0).put(f);
+    }
+
+    /**
+     * Blocks until every frame which has been submitted has been passed to the sink
+     */
+    public synchronized void flush() throws InterruptedException {
+        while (pending > 0 && failure == null) {
+            wait();
+        }
+        checkFailure();
+    }
+
+    /**
+     * Stops all the threads. Frames which are still being processed are dropped.
+     */
+    @Override public void close() {
+        for (Thread thread : threads) {
+            thread.interrupt();
+        }
+        for (Thread thread : threads) {
+            try {
+                thread.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+
+    /**
+     * Processing time of each stage, in the same order they were added
+     */
+    public List<Latency> getStageLatency() {
+        var found = new ArrayList<Latency>();
+        for (Stage stage : stages) {
+            found.add(stage.latency);
+        }
+        return Collections.unmodifiableList(found);
+    }
+
+    /**
+     * Time from when a frame was submitted until the sink was done with it
+     */
+    public Latency getTotalLatency() {
+        return total;
+    }
+
+    /**
+     * Frames which have been passed to the sink
+     */
+    public synchronized long getCompleted() {
+        return completed;
+    }
+
+    /**
+     * Completed frames divided by the time from the first submit until the most recent frame was completed
+     */
+    public synchronized double getFramesPerSecond() {
+        if (completed == 0)
+            return 0.0;
+        return completed/((lastCompleted - firstSubmitted)*1e-9);
+    }
+
+    /**
+     * Clears latency and throughput, e.g. after the JIT has warmed up. Call after {@link #flush}.
+     */
+    public synchronized void resetStatistics() {
+        completed = 0;
+        pending = 0;
+        total.reset();
+        for (Stage stage : stages) {
+            stage.latency.reset();
+        }
+    }
+
+    private void checkFailure() {
+        if (failure != null)
+            throw new IllegalStateException("A stage failed", failure);
+    }
+
+    /**
+     * Main loop for the thread of a stage
+     */
+    private void run( int index ) {
+        final Stage stage = stages.get(index);
+        final ImagePool<Object> previous = index == 0 ? inputs : stages.get(index - 1).outputs;
+        final BlockingQueue<Frame> input = queues.get(index);
+        final BlockingQueue<Frame> next = index + 1 < stages.size() ? queues.get(index + 1) : null;
+        // Each thread has its own workspace since they can't be shared
+        final var work = new Workspace();
+
+        try {
+            while (true) {
+                Frame frame = input.take();
+                Object output = stage.outputs.acquire();
+                long start = System.nanoTime();
+                stage.operation.process(frame.image, output, work);
+                stage.latency.add(System.nanoTime() - start);
+
+                previous.release(frame.image);
+                frame.image = output;
+
+                if (next != null) {
+                    next.put(frame);
+                } else {
+                    finish(frame, stage.outputs);
+                }
+            }
+        } catch (InterruptedException ignore) {
+        } catch (RuntimeException e) {
+            synchronized (this) {
+                if (failure == null)
+                    failure = e;
+                notifyAll();
+            }
+        }
+    }
+
+    /**
+     * Passes the final image to the sink and updates the statistics
+     */
+    @SuppressWarnings("unchecked")
+    private void finish( Frame frame, ImagePool<Object> pool ) {
+        sink.accept((O)frame.image);
+        pool.release(frame.image);
+
+        long now = System.nanoTime();
+        total.add(now - frame.submitted);
+        frame.image = null;
+        unused.add(frame);
+        synchronized (this) {
+            completed++;
+            pending = Math.max(0, pending - 1);
+            lastCompleted = now;
+            notifyAll();
+        }
+    }
+
+    /**
+     * Adds stages to a pipeline. O is the image type output by the last stage.
+     */
+    public static class Builder<I, O> {
+        final int poolSize;
+        final ImagePool<I> inputs;
+        final List<Stage> stages = new ArrayList<>();
+
+        Builder( int poolSize, Supplier<I> factory ) {
+            this.poolSize = poolSize;
+            this.inputs = new ImagePool<>(poolSize, factory);
+        }
+
+        /**
+         * Adds a stage which reads the output of the previous stage
+         *
+         * @param name Used to label its statistics
+         * @param factory Creates the images which the stage writes to
+         * @param operation Reads the first image and writes to the second
+         */
+        @SuppressWarnings({"unchecked", "rawtypes"})
+        public <N> Builder<I, N> then( String name, Supplier<N> factory, Operation<O, N> operation ) {
+            stages.add(new Stage(new Latency(name), new ImagePool<>(poolSize, (Supplier)factory),
+                    (Operation)operation));
+            return (Builder<I, N>)this;
+        }
+
+        /**
+         * Starts the threads
+         *
+         * @param sink Called with the output of the last stage, in the order frames were submitted. The image
+         *             is recycled after it returns.
+         */
+        public FramePipeline<I, O> build( Consumer<O> sink ) {
+            return new FramePipeline<>(this, sink);
+        }
+    }
+
+    /**
+     * An operation which reads one image and writes to another
+     */
+    @FunctionalInterface
+    public interface Operation<A, B> {
+        /**
+         * @param work Only used by this stage's thread
+         */
+        void process( A input, B output, Workspace work );
+    }
+
+    /**
+     * Latency in nanoseconds of the most recent frames
+     */
+    public static class Latency {
+        // Number of frames which are saved
+        static final int SAMPLES = 4096;
+
+        public final String name;
+        private final long[] samples = new long[SAMPLES];
+        private long count;
+
+        Latency( String name ) {
+            this.name = name;
+        }
+
+        synchronized void add( long nano ) {
+            samples[(int)(count++ % SAMPLES)] = nano;
+        }
+
+        synchronized void reset() {
+            count = 0;
+        }
+
+        /** Number of frames which have been recorded */
+        public synchronized long getCount() {
+            return count;
+        }
+
+        /**
+         * Latency which the fraction of frames are at or below, e.g. 0.99 for the 99th percentile
+         */
+        public synchronized long percentile( double fraction ) {
+            int n = (int)Math.min(count, SAMPLES);
+            if (n == 0)
+                return 0;
+            long[] sorted = Arrays.copyOf(samples, n);
+            Arrays.sort(sorted);
+            return sorted[Math.max(0, (int)Math.ceil(fraction*n) - 1)];
+        }
+
+        public synchronized double mean() {
+            int n = (int)Math.min(count, SAMPLES);
+            if (n == 0)
+                return 0.0;
+            double sum = 0;
+            for (int i = 0; i < n; i++) {
+                sum += samples[i];
+            }
+            return sum/n;
+        }
+    }
+
+    private static class Stage {
+        final Latency latency;
+        final ImagePool<Object> outputs;
+        final Operation<Object, Object> operation;
+
+        Stage( Latency latency, ImagePool<Object> outputs, Operation<Object, Object> operation ) {
+            this.latency = latency;
+            this.outputs = outputs;
+            this.operation = operation;
+        }
+    }
+
+    private static class Frame {
+        Object image;
+        long submitted;
+    }
+}
@@ -0,0 +1,84 @@
+package benchmark;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.function.Supplier;
+
+/**
+ * A fixed number of images which are recycled instead of allocating a new image for every frame. Images are
+ * created the first time they are needed. Once all of them are in use {@link #acquire} blocks until one is
+ * released, which is how {@link FramePipeline} applies backpressure. Safe to use from multiple threads.
+ *
+ * @author Peter Abeles
+ */
+public class ImagePool<T> {
+    private final Supplier<T> factory;
+    private final int capacity;
+    // Images which have been created and are not in use
+    private final ArrayBlockingQueue<T> free;
+    // Number of images which have been created. Guarded by this.
+    private int created;
+
+    /**
+     * @param capacity Maximum number of images
+     * @param factory Creates a new image
+     */
+    public ImagePool( int capacity, Supplier<T> factory ) {
+        if (capacity <= 0)
+            throw new IllegalArgumentException("Capacity must be positive");
+        this.capacity = capacity;
+        this.factory = factory;
+        this.free = new ArrayBlockingQueue<>(capacity);
+    }
+
+    /**
+     * Returns an image which isn't in use. Blocks if all the images are in use.
+     */
+    public T acquire() throws InterruptedException {
+        T image = free.poll();
+        if (image != null)
+            return image;
+
+        synchronized (this) {
+            if (created < capacity) {
+                created++;
+                return factory.get();
+            }
+        }
+        return free.take();
+    }
+
+    /**
+     * Same as {@link #acquire} but returns null instead of blocking, e.g. so that a camera can drop a frame
+     */
+    public T tryAcquire() {
+        T image = free.poll();
+        if (image != null)
+            return image;
+
+        synchronized (this) {
+            if (created < capacity) {
+                created++;
+                return factory.get();
+            }
+        }
+        return free.poll();
+    }
+
+    /**
+     * Returns an image to the pool. The image must have come from {@link #acquire}.
+     */
+    public void release( T image ) {
+        if (!free.offer(image))
+            throw new IllegalStateException("More images were released than the pool holds");
+    }
+
+    /** Maximum number of images */
+    public int getCapacity() {
+        return capacity;
+    }
+
+    /** Number of images which have been created so far */
+    public synchronized int getCreated() {
+        return created;
+    }
+}
@@ -1,15 +1,61 @@
 package benchmark;
 
+import boofcv.struct.border.BorderType;
 import boofcv.struct.convolve.Kernel1D_F32;
 import boofcv.struct.image.GrayF32;
+import boofcv.struct.image.GrayF64;
 import boofcv.struct.image.GrayI8;
+import boofcv.struct.image.GrayS32;
 import boofcv.struct.image.GrayU16;
 import boofcv.struct.image.GrayU8;
+import boofcv.struct.image.ImageBase;
+import boofcv.struct.image.InterleavedU8;
+import boofcv.struct.image.Planar;
 import jdk.incubator.vector.*;
 
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
 import java.util.Arrays;
 
 public class ImageProcessing {
+    // XOR with this flips the sign bit of a byte
+    static final byte SIGN_BIT = (byte)0x80;
+
+    // Species for images which are processed in their own type. The shape is selected by VectorShapes
+    static final VectorSpecies<Float> F32 = VectorSpecies.of(float.class, VectorShapes.SHAPE);
+    static final VectorSpecies<Byte> U8 = VectorSpecies.of(byte.class, VectorShapes.SHAPE);
+
+    // Used when U8 and U16 images are processed as ints. Bytes are loaded with a smaller shape so that one byte
+    // vector converts into exactly one int vector. There is no 32-bit shape, so with 128-bit ints the byte vector
+    // has extra lanes.
+    static final VectorSpecies<Integer> U8_INTS = VectorSpecies.of(int.class, VectorShapes.SHAPE);
+    static final VectorSpecies<Byte> U8_BYTES = VectorSpecies.of(byte.class,
+            VectorShape.forBitSize(Math.max(64, U8_INTS.vectorBitSize()/4)));
+    // Same idea as above but for U16 images
+    static final VectorSpecies<Short> U16_SHORTS = VectorSpecies.of(short.class,
+            VectorShape.forBitSize(Math.max(64, U8_INTS.vectorBitSize()/2)));
+    static final int MEAN_SHIFT = 22;
+    // Used when F32 images are summed as doubles. Same idea as U8_INTS and U8_BYTES
+    static final VectorSpecies<Double> F32_DOUBLES = VectorSpecies.of(double.class, VectorShapes.SHAPE);
+    static final VectorSpecies<Float> F32_FLOATS = VectorSpecies.of(float.class,
+            VectorShape.forBitSize(Math.max(64, F32_DOUBLES.vectorBitSize()/2)));
+    // Copies the last lane into every lane. Used to carry a prefix sum into the next vector
+    static final VectorShuffle<Integer> LAST_S32 = VectorShuffle.fromOp(U8_INTS, i -> U8_INTS.length() - 1);
+    static final VectorShuffle<Double> LAST_F64 = VectorShuffle.fromOp(F32_DOUBLES, i -> F32_DOUBLES.length() - 1);
+    // Adding this to a positive float less than 2^22 rounds it to an integer, which is stored in the lower bits
+    static final float ROUND_MAGIC = 1 << 23;
+
+    // Used to up sample chroma in YUV 420 images. Each chroma value is copied into two lanes
+    static final VectorShuffle<Integer> YUV_DUPLICATE = VectorShuffle.fromOp(U8_INTS, i -> i/2);
+    static final VectorShuffle<Integer> YUV_EVEN = VectorShuffle.fromOp(U8_INTS, i -> i & ~1);
+    static final VectorShuffle<Integer> YUV_ODD = VectorShuffle.fromOp(U8_INTS, i -> i | 1);
+
+    // Number of sub-histograms used by histogram_vector()
+    static final int HISTOGRAM_K = 4;
+
+    // Byte order of the float images which are stored in a ByteBuffer
+    static final ByteOrder ORDER = ByteOrder.nativeOrder();
+
     public static void horizontal(Kernel1D_F32 kernel,
                                   GrayF32 image, GrayF32 dest ) {
         final float[] dataSrc = image.data;
@@ -50,7 +96,7 @@ public class ImageProcessing {
 
         final int width = image.getWidth();
 
-        VectorSpecies<Float> SPECIES = FloatVector.SPECIES_PREFERRED;
+        VectorSpecies<Float> SPECIES = F32;
 
         for( int i = 0; i < image.height; i++ ) {
             int indexDst = dest.startIndex + i*dest.stride + offset;
@@ -73,6 +119,409 @@ public class ImageProcessing {
         }
     }
 
+    /**
+     * Horizontal convolution which is vectorized across output pixels instead of across the kernel. Each lane
+     * computes a different output pixel. For each element in the kernel its value is broadcast and multiplied
+     * against the input shifted by that element, then added to the sum with fma. This avoids reduceLanes()
+     * and all the lanes are used no matter how small the kernel is. The end of each row is handled with a mask.
+     */
+    public static void horizontal_vector_v2(Kernel1D_F32 kernel,
+                                            GrayF32 image, GrayF32 dest ) {
+        final int offset = kernel.getOffset();
+        final int kernelWidth = kernel.getWidth();
+
+        // Number of output pixels in each row
+        final int count = image.getWidth() - kernelWidth + 1;
+
+        for( int i = 0; i < image.height; i++ ) {
+            final int indexDst = dest.startIndex + i*dest.stride + offset;
+            final int indexSrc = image.startIndex + i*image.stride;
+
+            horizontalRow(kernel.data, kernelWidth, image.data, indexSrc, dest.data, indexDst, count);
+        }
+    }
+
+    /**
+     * Convolves a single row, see {@link #horizontal_vector_v2}.
+     *
+     * @param count Number of output pixels
+     */
+    static void horizontalRow( float[] dataKer, int kernelWidth, float[] dataSrc, int indexSrc,
+                               float[] dataDst, int indexDst, int count ) {
+        final VectorSpecies<Float> SPECIES = F32;
+        final int length = SPECIES.length();
+        final int bound = SPECIES.loopBound(count);
+
+        int x = 0;
+        for (; x < bound; x += length) {
+            var sum = FloatVector.zero(SPECIES);
+            for (int k = 0; k < kernelWidth; k++) {
+                var vsrc = FloatVector.fromArray(SPECIES, dataSrc, indexSrc + x + k);
+                sum = vsrc.fma(FloatVector.broadcast(SPECIES, dataKer[k]), sum);
+            }
+            sum.intoArray(dataDst, indexDst + x);
+        }
+
+        if (x < count && count >= length && dataSrc != dataDst) {
+            // Move the last vector back so that it ends at the end of the row. A few pixels are computed twice
+            // but it avoids a masked store, which is much slower
+            x = count - length;
+            var sum = FloatVector.zero(SPECIES);
+            for (int k = 0; k < kernelWidth; k++) {
+                var vsrc = FloatVector.fromArray(SPECIES, dataSrc, indexSrc + x + k);
+                sum = vsrc.fma(FloatVector.broadcast(SPECIES, dataKer[k]), sum);
+            }
+            sum.intoArray(dataDst, indexDst + x);
+        } else if (x < count) {
+            VectorMask<Float> mask = SPECIES.indexInRange(x, count);
+            var sum = FloatVector.zero(SPECIES);
+            for (int k = 0; k < kernelWidth; k++) {
+                var vsrc = FloatVector.fromArray(SPECIES, dataSrc, indexSrc + x + k, mask);
+                sum = vsrc.fma(FloatVector.broadcast(SPECIES, dataKer[k]), sum);
+            }
+            sum.intoArray(dataDst, indexDst + x, mask);
+        }
+    }
+
+    /**
+     * Same as {@link #horizontal_vector_v2(Kernel1D_F32, GrayF32, GrayF32)} but the images are stored off heap.
+     * Vectors are loaded directly from the buffers.
+     */
+    public static void horizontal_vector_v2(Kernel1D_F32 kernel,
+                                            DirectGrayF32 image, DirectGrayF32 dest ) {
+        final int offset = kernel.getOffset();
+        final int kernelWidth = kernel.getWidth();
+        final int count = image.width - kernelWidth + 1;
+
+        for( int i = 0; i < image.height; i++ ) {
+            final int indexDst = dest.startIndex + i*dest.stride + offset;
+            final int indexSrc = image.startIndex + i*image.stride;
+
+            horizontalRow(kernel.data, kernelWidth, image.data, indexSrc, dest.data, indexDst, count);
+        }
+    }
+
+    /**
+     * Convolves a single row stored in a ByteBuffer. Indexes are in floats, not bytes.
+     */
+    static void horizontalRow( float[] dataKer, int kernelWidth, ByteBuffer dataSrc, int indexSrc,
+                               ByteBuffer dataDst, int indexDst, int count ) {
+        final VectorSpecies<Float> SPECIES = F32;
+        final int length = SPECIES.length();
+        final int bound = SPECIES.loopBound(count);
+
+        int x = 0;
+        for (; x < bound; x += length) {
+            var sum = FloatVector.zero(SPECIES);
+            for (int k = 0; k < kernelWidth; k++) {
+                var vsrc = FloatVector.fromByteBuffer(SPECIES, dataSrc, (indexSrc + x + k)*Float.BYTES, ORDER);
+                sum = vsrc.fma(FloatVector.broadcast(SPECIES, dataKer[k]), sum);
+            }
+            sum.intoByteBuffer(dataDst, (indexDst + x)*Float.BYTES, ORDER);
+        }
+
+        if (x < count) {
+            VectorMask<Float> mask = SPECIES.indexInRange(x, count);
+            var sum = FloatVector.zero(SPECIES);
+            for (int k = 0; k < kernelWidth; k++) {
+                var vsrc = FloatVector.fromByteBuffer(SPECIES, dataSrc, (indexSrc + x + k)*Float.BYTES, ORDER, mask);
+                sum = vsrc.fma(FloatVector.broadcast(SPECIES, dataKer[k]), sum);
+            }
+            sum.intoByteBuffer(dataDst, (indexDst + x)*Float.BYTES, ORDER, mask);
+        }
+    }
+
+    public static void vertical(Kernel1D_F32 kernel,
+                                GrayF32 image, GrayF32 dest ) {
+        final float[] dataSrc = image.data;
+        final float[] dataDst = dest.data;
+        final float[] dataKer = kernel.data;
+
+        final int offset = kernel.getOffset();
+        final int kernelWidth = kernel.getWidth();
+
+        final int width = image.getWidth();
+        final int yEnd = image.height - (kernelWidth - 1);
+
+        //CONCURRENT_BELOW BoofConcurrency.loopFor(0, yEnd, y -> {
+        for( int y = 0; y < yEnd; y++ ) {
+            int indexDst = dest.startIndex + (y + offset)*dest.stride;
+            int indexSrc = image.startIndex + y*image.stride;
+
+            for (int x = 0; x < width; x++, indexSrc++) {
+                float total = 0;
+                for (int k = 0; k < kernelWidth; k++) {
+                    total += dataSrc[indexSrc + k*image.stride]*dataKer[k];
+                }
+                dataDst[indexDst++] = total;
+            }
+        }
+        //CONCURRENT_ABOVE });
+    }
+
+    /**
+     * Vertical convolution which is vectorized across each row of the output. For every element in the kernel
+     * the input row it lines up with is multiplied by the broadcast kernel value and added with fma.
+     */
+    public static void vertical_vector(Kernel1D_F32 kernel,
+                                       GrayF32 image, GrayF32 dest ) {
+        final int offset = kernel.getOffset();
+        final int kernelWidth = kernel.getWidth();
+        final int yEnd = image.height - (kernelWidth - 1);
+
+        for( int y = 0; y < yEnd; y++ ) {
+            int indexDst = dest.startIndex + (y + offset)*dest.stride;
+            int indexSrc = image.startIndex + y*image.stride;
+
+            verticalRow(kernel.data, kernelWidth, image.data, indexSrc, image.stride,
+                    dest.data, indexDst, image.width);
+        }
+    }
+
+    /**
+     * Computes a single row of vertical convolution. Input rows are at indexSrc + k*strideSrc.
+     */
+    static void verticalRow( float[] dataKer, int kernelWidth, float[] dataSrc, int indexSrc, int strideSrc,
+                             float[] dataDst, int indexDst, int width ) {
+        final VectorSpecies<Float> SPECIES = F32;
+        final int length = SPECIES.length();
+        final int bound = SPECIES.loopBound(width);
+
+        int x = 0;
+        for (; x < bound; x += length) {
+            var sum = FloatVector.zero(SPECIES);
+            for (int k = 0, index = indexSrc + x; k < kernelWidth; k++, index += strideSrc) {
+                var vsrc = FloatVector.fromArray(SPECIES, dataSrc, index);
+                sum = vsrc.fma(FloatVector.broadcast(SPECIES, dataKer[k]), sum);
+            }
+            sum.intoArray(dataDst, indexDst + x);
+        }
+
+        if (x < width && width >= length && dataSrc != dataDst) {
+            // Same as horizontalRow(), the last vector is moved back instead of using a masked store
+            x = width - length;
+            var sum = FloatVector.zero(SPECIES);
+            for (int k = 0, index = indexSrc + x; k < kernelWidth; k++, index += strideSrc) {
+                var vsrc = FloatVector.fromArray(SPECIES, dataSrc, index);
+                sum = vsrc.fma(FloatVector.broadcast(SPECIES, dataKer[k]), sum);
+            }
+            sum.intoArray(dataDst, indexDst + x);
+        } else if (x < width) {
+            VectorMask<Float> mask = SPECIES.indexInRange(x, width);
+            var sum = FloatVector.zero(SPECIES);
+            for (int k = 0, index = indexSrc + x; k < kernelWidth; k++, index += strideSrc) {
+                var vsrc = FloatVector.fromArray(SPECIES, dataSrc, index, mask);
+                sum = vsrc.fma(FloatVector.broadcast(SPECIES, dataKer[k]), sum);
+            }
+            sum.intoArray(dataDst, indexDst + x, mask);
+        }
+    }
+
+    public static void convolveSeparable_vector(Kernel1D_F32 horizontal, Kernel1D_F32 vertical,
+                                                GrayF32 src, GrayF32 dst ) {
+        convolveSeparable_vector(horizontal, vertical, src, dst, new Workspace());
+    }
+
+    /**
+     * Separable convolution where the horizontal and vertical passes are fused together. Instead of writing
+     * the horizontal pass to a full intermediate image, the most recent vertical.width horizontally convolved
+     * rows are kept in a ring buffer. As soon as enough rows are in the ring buffer the vertical kernel is
+     * applied and an output row is written. The ring buffer is small enough to stay in L2 cache.
+     *
+     * Only pixels which are inside both kernels are written, same as calling horizontal then vertical.
+     */
+    public static void convolveSeparable_vector(Kernel1D_F32 horizontal, Kernel1D_F32 vertical,
+                                                GrayF32 src, GrayF32 dst, Workspace work ) {
+        final int widthH = horizontal.getWidth();
+        final int widthV = vertical.getWidth();
+        final int offsetH = horizontal.getOffset();
+        final int offsetV = vertical.getOffset();
+
+        // Number of pixels in a row which have been horizontally convolved
+        final int count = src.width - widthH + 1;
+        if (count <= 0 || src.height < widthV)
+            return;
+
+        final float[] ring = work.rowF32(widthV*count);
+        // Vertical kernel reordered so that it lines up with the rows in the ring buffer
+        final float[] kernelRing = work.kernelF32(widthV);
+
+        for (int y = 0; y < src.height; y++) {
+            final int indexSrc = src.startIndex + y*src.stride;
+            horizontalRow(horizontal.data, widthH, src.data, indexSrc, ring, (y % widthV)*count, count);
+
+            final int yOut = y - widthV + 1;
+            if (yOut < 0)
+                continue;
+
+            // Row yOut + k is stored in slot (yOut + k) % widthV. Rotate the kernel instead of the rows so that
+            // the slots can be processed in order
+            for (int k = 0; k < widthV; k++) {
+                kernelRing[(yOut + k) % widthV] = vertical.data[k];
+            }
+
+            final int indexDst = dst.startIndex + (yOut + offsetV)*dst.stride + offsetH;
+            verticalRow(kernelRing, widthV, ring, 0, count, dst.data, indexDst, count);
+        }
+    }
+
+    /**
+     * Horizontal convolution across the entire image, including the border. Each row is copied into a padded
+     * row with the border already applied so that every output pixel is computed by the same vectorized
+     * loop as the inner image.
+     */
+    public static void horizontal_vector_border(Kernel1D_F32 kernel, GrayF32 image, GrayF32 dest,
+                                                BorderType border, Workspace work ) {
+        final int offset = kernel.getOffset();
+        final int kernelWidth = kernel.getWidth();
+        final int width = image.width;
+
+        final float[] padded = work.rowF32(width + kernelWidth - 1);
+
+        for( int y = 0; y < image.height; y++ ) {
+            final int indexSrc = image.startIndex + y*image.stride;
+            final int indexDst = dest.startIndex + y*dest.stride;
+
+            padRow(image.data, indexSrc, width, offset, kernelWidth - 1 - offset, border, padded);
+            horizontalRow(kernel.data, kernelWidth, padded, 0, dest.data, indexDst, width);
+        }
+    }
+
+    /**
+     * Vertical convolution across the entire image, including the border. Inner rows are computed with
+     * {@link #verticalRow}. Rows along the top and bottom look up which input row each element in the kernel
+     * lines up with and add it to the output row one at a time.
+     */
+    public static void vertical_vector_border(Kernel1D_F32 kernel, GrayF32 image, GrayF32 dest,
+                                              BorderType border ) {
+        vertical_vector_border(kernel, image, dest, border, 0, image.height);
+    }
+
+    /**
+     * Only output rows from rowStart to rowEnd are computed
+     */
+    static void vertical_vector_border(Kernel1D_F32 kernel, GrayF32 image, GrayF32 dest,
+                                       BorderType border, int rowStart, int rowEnd ) {
+        final int offset = kernel.getOffset();
+        final int kernelWidth = kernel.getWidth();
+        final int height = image.height;
+
+        // Rows which can be computed without the border
+        final int innerStart = Math.min(offset, height);
+        final int innerEnd = Math.max(innerStart, height - (kernelWidth - 1 - offset));
+
+        for (int y = rowStart; y < rowEnd; y++) {
+            final int indexDst = dest.startIndex + y*dest.stride;
+
+            if (y >= innerStart && y < innerEnd) {
+                int indexSrc = image.startIndex + (y - offset)*image.stride;
+                verticalRow(kernel.data, kernelWidth, image.data, indexSrc, image.stride,
+                        dest.data, indexDst, image.width);
+                continue;
+            }
+
+            Arrays.fill(dest.data, indexDst, indexDst + image.width, 0.0f);
+            for (int k = 0; k < kernelWidth; k++) {
+                int row = borderIndex(border, y - offset + k, height);
+                if (row < 0)
+                    continue;
+                addScaledRow(kernel.data[k], image.data, image.startIndex + row*image.stride,
+                        dest.data, indexDst, image.width);
+            }
+        }
+    }
+
+    /**
+     * dst[i] += scale*src[i] for a single row
+     */
+    static void addScaledRow( float scale, float[] dataSrc, int indexSrc, float[] dataDst, int indexDst, int width ) {
+        final VectorSpecies<Float> SPECIES = F32;
+        final int length = SPECIES.length();
+        final int bound = SPECIES.loopBound(width);
+        final var vscale = FloatVector.broadcast(SPECIES, scale);
+
+        int x = 0;
+        for (; x < bound; x += length) {
+            var vsrc = FloatVector.fromArray(SPECIES, dataSrc, indexSrc + x);
+            var vdst = FloatVector.fromArray(SPECIES, dataDst, indexDst + x);
+            vsrc.fma(vscale, vdst).intoArray(dataDst, indexDst + x);
+        }
+
+        // The destination is accumulated into so the last vector can't be moved back like in horizontalRow.
+        // Masked loads and stores are much slower so the remainder is done one pixel at a time
+        for (; x < width; x++) {
+            dataDst[indexDst + x] += scale*dataSrc[indexSrc + x];
+        }
+    }
+
+    /**
+     * Copies a row into 'padded' with 'left' and 'right' pixels added to each side using the border
+     */
+    static void padRow( float[] dataSrc, int indexSrc, int width, int left, int right,
+                        BorderType border, float[] padded ) {
+        System.arraycopy(dataSrc, indexSrc, padded, left, width);
+        for (int i = 0; i < left; i++) {
+            int x = borderIndex(border, i - left, width);
+            padded[i] = x < 0 ? 0.0f : dataSrc[indexSrc + x];
+        }
+        for (int i = 0; i < right; i++) {
+            int x = borderIndex(border, width + i, width);
+            padded[left + width + i] = x < 0 ? 0.0f : dataSrc[indexSrc + x];
+        }
+    }
+
+    /**
+     * Same as {@link #padRow(float[], int, int, int, int, BorderType, float[])} but for bytes
+     */
+    static void padRow( byte[] dataSrc, int indexSrc, int width, int left, int right,
+                        BorderType border, byte[] padded ) {
+        System.arraycopy(dataSrc, indexSrc, padded, left, width);
+        for (int i = 0; i < left; i++) {
+            int x = borderIndex(border, i - left, width);
+            padded[i] = x < 0 ? 0 : dataSrc[indexSrc + x];
+        }
+        for (int i = 0; i < right; i++) {
+            int x = borderIndex(border, width + i, width);
+            padded[left + width + i] = x < 0 ? 0 : dataSrc[indexSrc + x];
+        }
+    }
+
+    /**
+     * Converts a coordinate which might be outside the image into one inside the image.
+     *
+     * @return index inside the image or -1 if the value is zero
+     */
+    static int borderIndex( BorderType border, int index, int length ) {
+        if (index >= 0 && index < length)
+            return index;
+
+        switch (border) {
+            case EXTENDED:
+                return index < 0 ? 0 : length - 1;
+
+            case REFLECT: {
+                // Mirror around the first and last pixel without repeating them
+                if (length == 1)
+                    return 0;
+                int period = 2*(length - 1);
+                index %= period;
+                if (index < 0)
+                    index += period;
+                return index < length ? index : period - index;
+            }
+
+            case WRAP:
+                index %= length;
+                return index < 0 ? index + length : index;
+
+            case ZERO:
+                return -1;
+
+            default:
+                throw new IllegalArgumentException("Unsupported border " + border);
+        }
+    }
+
     public static void mean_horizontal(GrayU8 input , GrayI8 output, int offset, int length ) {
         final int divisor = length;
         final int halfDivisor = divisor/2;
@@ -103,40 +552,573 @@ public class ImageProcessing {
     }
 
     public static void mean_horizontal_vector(GrayU8 input , GrayI8 output, int offset, int length ) {
-        final int divisor = length;
-        final int halfDivisor = divisor/2;
+        mean_horizontal_vector(input, output, offset, length, new Workspace());
+    }
+
+    /**
+     * Vectorized horizontal mean. A prefix sum of each row is computed and the sum inside each window is the
+     * difference of two prefix sums, which is vectorized. Division is replaced by a fixed-point multiply,
+     * see {@link #meanReciprocal}.
+     *
+     * NOTE: An in-register log-step prefix scan (unslice or masked rearrange) was tried and was slower than the
+     * scalar prefix sum, which is one add per pixel. Combining several narrowed int vectors into one byte vector
+     * was also much slower than storing a smaller byte vector for each int vector.
+     */
+    public static void mean_horizontal_vector(GrayU8 input , GrayI8 output, int offset, int length, Workspace work ) {
+        if (!isMeanVectorSupported(length)) {
+            mean_horizontal(input, output, offset, length);
+            return;
+        }
 
-        short[] tmp = new short[input.width];
+        int[] prefix = work.rowS32(input.width + 1);
 
         //CONCURRENT_BELOW BoofConcurrency.loopFor(0, input.height, y -> {
         for( int y = 0; y < input.height; y++ ) {
             int indexIn = input.startIndex + input.stride*y;
             int indexOut = output.startIndex + output.stride*y + offset;
 
-            int total = 0;
+            meanRow(input.data, indexIn, input.width, length, prefix, output.data, indexOut);
+        }
+        //CONCURRENT_ABOVE });
+    }
 
-            int indexEnd = indexIn + length;
+    /**
+     * Mean across the entire image, including the border. Each row is copied into a padded row with the border
+     * applied and then processed like an inner row. Windows which are too large for the fixed-point divide use
+     * a scalar running sum on the padded row.
+     */
+    public static void mean_horizontal_vector_border(GrayU8 input , GrayI8 output, int offset, int length,
+                                                     BorderType border, Workspace work ) {
+        final boolean vector = isMeanVectorSupported(length);
+        final int paddedWidth = input.width + length - 1;
+        final byte[] padded = work.rowU8(paddedWidth);
+        final int[] prefix = vector ? work.rowS32(paddedWidth + 1) : null;
 
-            for (; indexIn < indexEnd; indexIn++) {
-                total += input.data[indexIn] & 0xFF;
+        for( int y = 0; y < input.height; y++ ) {
+            int indexIn = input.startIndex + input.stride*y;
+            int indexOut = output.startIndex + output.stride*y;
+
+            padRow(input.data, indexIn, input.width, offset, length - 1 - offset, border, padded);
+            if (vector)
+                meanRow(padded, 0, paddedWidth, length, prefix, output.data, indexOut);
+            else
+                meanRowScalar(padded, 0, paddedWidth, length, output.data, indexOut);
+        }
+    }
+
+    /**
+     * Scalar version of {@link #meanRow} which divides with an integer divide, so it works for any length
+     */
+    static void meanRowScalar( byte[] dataIn, int indexIn, int width, int length, byte[] dataOut, int indexOut ) {
+        final int count = width - length + 1;
+        if (count <= 0)
+            return;
+        final int half = length/2;
+
+        int total = 0;
+        for (int i = 0; i < length; i++) {
+            total += dataIn[indexIn + i] & 0xFF;
+        }
+        for (int x = 0; x < count; x++) {
+            dataOut[indexOut + x] = (byte)((total + half)/length);
+            if (x + 1 < count)
+                total += (dataIn[indexIn + x + length] & 0xFF) - (dataIn[indexIn + x] & 0xFF);
+        }
+    }
+
+    /**
+     * Computes the mean of a single row. width-length+1 values are written to the output.
+     *
+     * @param prefix Storage for the prefix sum. Must have at least width+1 elements.
+     */
+    static void meanRow( byte[] dataIn, int indexIn, int width, int length, int[] prefix,
+                         byte[] dataOut, int indexOut ) {
+        final int count = width - length + 1;
+        if (count <= 0)
+            return;
+
+        final int lanes = U8_INTS.length();
+        final int half = length/2;
+        final int reciprocal = meanReciprocal(length);
+
+        // prefix[i] = sum of the first i pixels
+        int total = 0;
+        prefix[0] = 0;
+        for (int i = 0; i < width; i++) {
+            total += dataIn[indexIn + i] & 0xFF;
+            prefix[i + 1] = total;
+        }
+
+        // The sum inside each window is the difference between the prefix at its head and tail
+        int x = 0;
+        for (; x + U8_BYTES.length() <= count; x += lanes) {
+            var head = IntVector.fromArray(U8_INTS, prefix, x + length);
+            var tail = IntVector.fromArray(U8_INTS, prefix, x);
+            narrowU8(divide(head.sub(tail), half, reciprocal)).intoArray(dataOut, indexOut + x);
+        }
+        for (; x < count; x++) {
+            int sum = prefix[x + length] - prefix[x];
+            dataOut[indexOut + x] = (byte)(((sum + half)*reciprocal) >>> MEAN_SHIFT);
+        }
+    }
+
+    public static void mean_vertical(GrayU8 input , GrayI8 output, int offset, int length ) {
+        mean_vertical(input, output, offset, length, new Workspace());
+    }
+
+    /**
+     * Scalar vertical mean. Like BoofCV it goes across each row in order and keeps a running sum for every
+     * column, instead of walking down each column, so that memory is read sequentially.
+     */
+    public static void mean_vertical(GrayU8 input , GrayI8 output, int offset, int length, Workspace work ) {
+        meanVerticalScalar(input, output, 0, input.width, offset, length, work.rowS32(input.width));
+    }
+
+    /**
+     * Scalar vertical mean for columns x0 to x1
+     */
+    static void meanVerticalScalar( GrayU8 input , GrayI8 output, int x0, int x1, int offset, int length,
+                                    int[] sums ) {
+        final int divisor = length;
+        final int halfDivisor = divisor/2;
+        final int yEnd = input.height - length + 1;
+        if (yEnd <= 0)
+            return;
+
+        final int width = x1 - x0;
+        Arrays.fill(sums, 0, width, 0);
+        for (int k = 0; k < length; k++) {
+            final int indexIn = input.startIndex + k*input.stride + x0;
+            for (int x = 0; x < width; x++) {
+                sums[x] += input.data[indexIn + x] & 0xFF;
             }
-            output.data[indexOut++] = (byte)((total+halfDivisor)/divisor);
+        }
 
-            // TODO 1) first pass compute the result of summing the head and the tail. Like the code below
-            //
+        for (int y = 0; y < yEnd; y++) {
+            final int indexOut = output.startIndex + (y + offset)*output.stride + x0;
+            final int indexTail = input.startIndex + y*input.stride + x0;
+            final int indexHead = indexTail + length*input.stride;
+            final boolean update = y + 1 < yEnd;
 
-            final int end = input.width-length;
-            for (int i = 0, idx=indexIn; i < end; i++, idx++) {
-                tmp[i] = (short)((input.data[idx] & 0xFF) - (input.data[idx - length] & 0xFF));
+            for (int x = 0; x < width; x++) {
+                int total = sums[x];
+                output.data[indexOut + x] = (byte)((total+halfDivisor)/divisor);
+                if (update)
+                    sums[x] = total + (input.data[indexHead + x] & 0xFF) - (input.data[indexTail + x] & 0xFF);
             }
+        }
+    }
 
-            indexEnd = indexIn + input.width - length;
-            for (int i = 0; indexIn < indexEnd; i++, indexIn++) {
-                total += tmp[i];
-                output.data[indexOut++] = (byte)((total+halfDivisor)/divisor);
+    public static void mean_vertical_vector(GrayU8 input , GrayI8 output, int offset, int length ) {
+        mean_vertical_vector(input, output, offset, length, new Workspace());
+    }
+
+    /**
+     * Vectorized vertical mean. A running sum for every column is kept in an int array. For each output row
+     * the sums are divided, using a fixed-point multiply, and then the row leaving the window is subtracted
+     * and the row entering the window is added, all in one pass across the row.
+     */
+    public static void mean_vertical_vector(GrayU8 input , GrayI8 output, int offset, int length, Workspace work ) {
+        if (!isMeanVectorSupported(length)) {
+            mean_vertical(input, output, offset, length, work);
+            return;
+        }
+        meanVertical(input, output, 0, input.width, offset, length, work.rowS32(input.width));
+    }
+
+    /**
+     * Vertical mean for columns x0 to x1
+     */
+    static void meanVertical( GrayU8 input , GrayI8 output, int x0, int x1, int offset, int length, int[] sums ) {
+        final int yEnd = input.height - length + 1;
+        if (yEnd <= 0)
+            return;
+
+        final int width = x1 - x0;
+        final int lanes = U8_INTS.length();
+        final int half = length/2;
+        final int reciprocal = meanReciprocal(length);
+        // Reading and writing a byte vector touches U8_BYTES.length() elements
+        final int bound = width - U8_BYTES.length();
+
+        Arrays.fill(sums, 0, width, 0);
+        for (int k = 0; k < length; k++) {
+            final int indexIn = input.startIndex + k*input.stride + x0;
+            int x = 0;
+            for (; x <= bound; x += lanes) {
+                var v = IntVector.fromArray(U8_INTS, sums, x);
+                v.add(loadU8(input.data, indexIn + x)).intoArray(sums, x);
+            }
+            for (; x < width; x++) {
+                sums[x] += input.data[indexIn + x] & 0xFF;
             }
         }
-        //CONCURRENT_ABOVE });
+
+        for (int y = 0; y < yEnd; y++) {
+            final int indexOut = output.startIndex + (y + offset)*output.stride + x0;
+            final int indexTail = input.startIndex + y*input.stride + x0;
+            // After the last row there is nothing to add
+            final boolean update = y + 1 < yEnd;
+            final int indexHead = indexTail + (update ? length*input.stride : 0);
+
+            int x = 0;
+            for (; x <= bound; x += lanes) {
+                var v = IntVector.fromArray(U8_INTS, sums, x);
+                narrowU8(divide(v, half, reciprocal)).intoArray(output.data, indexOut + x);
+                v.add(loadU8(input.data, indexHead + x)).sub(loadU8(input.data, indexTail + x)).intoArray(sums, x);
+            }
+            for (; x < width; x++) {
+                output.data[indexOut + x] = (byte)(((sums[x] + half)*reciprocal) >>> MEAN_SHIFT);
+                sums[x] += (input.data[indexHead + x] & 0xFF) - (input.data[indexTail + x] & 0xFF);
+            }
+        }
+    }
+
+    /**
+     * Square mean filter computed with a horizontal pass and then a vertical pass, like BoofCV does. Only the
+     * inner image is written to. The horizontal pass is stored in the workspace's image.
+     */
+    public static void mean( GrayU8 input, GrayU8 output, int offset, int length, Workspace work ) {
+        if (input.width < length)
+            return;
+        final GrayU8 storage = work.imageU8();
+        storage.reshape(input.width, input.height);
+        mean_horizontal(input, storage, offset, length);
+        meanVerticalScalar(storage, output, offset, offset + input.width - length + 1, offset, length,
+                work.rowS32(input.width));
+    }
+
+    /**
+     * Vectorized version of {@link #mean}
+     */
+    public static void mean_vector( GrayU8 input, GrayU8 output, int offset, int length, Workspace work ) {
+        if (input.width < length)
+            return;
+        if (!isMeanVectorSupported(length)) {
+            mean(input, output, offset, length, work);
+            return;
+        }
+        final GrayU8 storage = work.imageU8();
+        storage.reshape(input.width, input.height);
+        mean_horizontal_vector(input, storage, offset, length, work);
+        meanVertical(storage, output, offset, offset + input.width - length + 1, offset, length,
+                work.rowS32(input.width));
+    }
+
+    /**
+     * Fixed-point reciprocal of the window length. (total + length/2)/length is computed as
+     * ((total + length/2)*reciprocal) &gt;&gt;&gt; MEAN_SHIFT.
+     */
+    static int meanReciprocal( int length ) {
+        return ((1 << MEAN_SHIFT) + length - 1)/length;
+    }
+
+    /**
+     * The fixed-point divide is exact when the error in the reciprocal multiplied by the largest possible sum
+     * is less than one. This is true for windows up to about 128 pixels.
+     */
+    static boolean isMeanVectorSupported( int length ) {
+        if (length <= 0)
+            return false;
+        long error = (long)meanReciprocal(length)*length - (1 << MEAN_SHIFT);
+        long maxSum = 255L*length + length/2;
+        return maxSum*error < (1 << MEAN_SHIFT);
+    }
+
+    /** Loads unsigned bytes and converts them into ints */
+    private static IntVector loadU8( byte[] data, int index ) {
+        var pixels = ByteVector.fromArray(U8_BYTES, data, index);
+        return ((IntVector)pixels.convertShape(VectorOperators.B2I, U8_INTS, 0)).and(0xFF);
+    }
+
+    /**
+     * Converts ints into bytes. Lanes after U8_INTS.length() are zero.
+     */
+    private static ByteVector narrowU8( IntVector values ) {
+        return (ByteVector)values.convertShape(VectorOperators.I2B, U8_BYTES, 0);
+    }
+
+    private static IntVector divide( IntVector sum, int half, int reciprocal ) {
+        return sum.add(half).mul(reciprocal).lanewise(VectorOperators.LSHR, MEAN_SHIFT);
+    }
+
+    /**
+     * Integral image, also known as a summed area table. Each output pixel is the sum of all the input pixels
+     * above and to the left of it, including itself, which is the same as BoofCV's IntegralImageOps. Each row
+     * is a prefix sum plus the row above it.
+     *
+     * The prefix sum is computed inside of a vector with log2(lanes) shift and add steps and the total so far
+     * is carried into the next vector, while the row above is added with one vector add. Unlike
+     * {@link #meanRow} this is faster than a scalar prefix sum, since the scan and the row above are done in
+     * the same pass and nothing is written to a row buffer.
+     *
+     * NOTE: Sums overflow for images which are larger than about 8 mega pixels. The sum inside of a box is
+     * still correct if the box itself doesn't overflow, because ints wrap around.
+     */
+    public static void integral_vector( GrayU8 input, GrayS32 output ) {
+        output.reshape(input.width, input.height);
+        for (int y = 0; y < input.height; y++) {
+            final int indexIn = input.startIndex + y*input.stride;
+            final int indexOut = output.startIndex + y*output.stride;
+            integralRow(input.data, indexIn, input.width, output.data, indexOut, y > 0 ? indexOut - output.stride : -1);
+        }
+    }
+
+    /**
+     * @param indexAbove Index of the row above in the output or -1 if it's the first row
+     */
+    static void integralRow( byte[] dataIn, int indexIn, int width, int[] dataOut, int indexOut, int indexAbove ) {
+        final int lanes = U8_INTS.length();
+        var carry = IntVector.zero(U8_INTS);
+        int x = 0;
+        for (; x + U8_BYTES.length() <= width; x += lanes) {
+            var v = loadU8(dataIn, indexIn + x);
+            for (int shift = 1; shift < lanes; shift <<= 1) {
+                v = v.add(v.unslice(shift));
+            }
+            v = v.add(carry);
+            carry = v.rearrange(LAST_S32);
+            if (indexAbove >= 0)
+                v = v.add(IntVector.fromArray(U8_INTS, dataOut, indexAbove + x));
+            v.intoArray(dataOut, indexOut + x);
+        }
+
+        int total = carry.lane(0);
+        for (; x < width; x++) {
+            total += dataIn[indexIn + x] & 0xFF;
+            dataOut[indexOut + x] = total + (indexAbove >= 0 ? dataOut[indexAbove + x] : 0);
+        }
+    }
+
+    /**
+     * Scalar integral image of a float image with double sums. BoofCV's IntegralImageOps only writes float
+     * images into float integral images, so this uses the same loops as it but with a double output.
+     */
+    public static void integral( GrayF32 input, GrayF64 output ) {
+        output.reshape(input.width, input.height);
+        for (int y = 0; y < input.height; y++) {
+            int indexIn = input.startIndex + y*input.stride;
+            int indexOut = output.startIndex + y*output.stride;
+            int indexAbove = indexOut - output.stride;
+            final int end = indexIn + input.width;
+            double total = 0;
+            for (; indexIn < end; indexIn++) {
+                total += input.data[indexIn];
+                output.data[indexOut++] = y > 0 ? output.data[indexAbove++] + total : total;
+            }
+        }
+    }
+
+    /**
+     * Integral image of a float image. Sums are doubles so that large images don't lose precision. See
+     * {@link #integral_vector(GrayU8, GrayS32)}. The sum inside each vector is added in a different order than
+     * a scalar prefix sum, so results can differ in the last few bits.
+     */
+    public static void integral_vector( GrayF32 input, GrayF64 output ) {
+        output.reshape(input.width, input.height);
+        for (int y = 0; y < input.height; y++) {
+            final int indexIn = input.startIndex + y*input.stride;
+            final int indexOut = output.startIndex + y*output.stride;
+            integralRow(input.data, indexIn, input.width, output.data, indexOut, y > 0 ? indexOut - output.stride : -1);
+        }
+    }
+
+    static void integralRow( float[] dataIn, int indexIn, int width, double[] dataOut, int indexOut, int indexAbove ) {
+        final int lanes = F32_DOUBLES.length();
+        var carry = DoubleVector.zero(F32_DOUBLES);
+        int x = 0;
+        for (; x + F32_FLOATS.length() <= width; x += lanes) {
+            var pixels = FloatVector.fromArray(F32_FLOATS, dataIn, indexIn + x);
+            var v = (DoubleVector)pixels.convertShape(VectorOperators.F2D, F32_DOUBLES, 0);
+            for (int shift = 1; shift < lanes; shift <<= 1) {
+                v = v.add(v.unslice(shift));
+            }
+            v = v.add(carry);
+            carry = v.rearrange(LAST_F64);
+            if (indexAbove >= 0)
+                v = v.add(DoubleVector.fromArray(F32_DOUBLES, dataOut, indexAbove + x));
+            v.intoArray(dataOut, indexOut + x);
+        }
+
+        double total = carry.lane(0);
+        for (; x < width; x++) {
+            total += dataIn[indexIn + x];
+            dataOut[indexOut + x] = total + (indexAbove >= 0 ? dataOut[indexAbove + x] : 0.0);
+        }
+    }
+
+    /**
+     * Mean inside of a square box, computed from an integral image with four look ups. The cost doesn't depend
+     * on the size of the box, so once the integral image has been computed any number of box sizes can be
+     * found. The same pixels are written to as {@link #mean_vector} with an offset of radius and a length of
+     * 2*radius+1, i.e. the inner image.
+     */
+    public static void boxMean( GrayS32 integral, int radius, GrayU8 output ) {
+        final int area = (2*radius + 1)*(2*radius + 1);
+        final int half = area/2;
+
+        for (int y = radius; y < integral.height - radius; y++) {
+            final int indexBottom = integral.startIndex + (y + radius)*integral.stride;
+            final int indexTop = integral.startIndex + (y - radius - 1)*integral.stride;
+            final int indexOut = output.startIndex + y*output.stride;
+
+            for (int x = radius; x < integral.width - radius; x++) {
+                int right = x + radius;
+                int left = x - radius - 1;
+                int sum = integral.data[indexBottom + right];
+                if (left >= 0)
+                    sum -= integral.data[indexBottom + left];
+                if (y > radius) {
+                    sum -= integral.data[indexTop + right];
+                    if (left >= 0)
+                        sum += integral.data[indexTop + left];
+                }
+                output.data[indexOut + x] = (byte)((sum + half)/area);
+            }
+        }
+    }
+
+    /**
+     * Vectorized version of {@link #boxMean(GrayS32, int, GrayU8)}. Division uses a float multiply, which is
+     * off by at most one, and then is corrected using the remainder so the results are exact for any radius.
+     */
+    public static void boxMean_vector( GrayS32 integral, int radius, GrayU8 output ) {
+        final int width = integral.width;
+        if (width < 2*radius + 1)
+            return;
+
+        for (int y = radius; y < integral.height - radius; y++) {
+            final int indexBottom = integral.startIndex + (y + radius)*integral.stride;
+            final int indexTop = y > radius ? integral.startIndex + (y - radius - 1)*integral.stride : -1;
+            final int indexOut = output.startIndex + y*output.stride;
+            boxMeanRow(integral.data, indexBottom, indexTop, width, radius, output.data, indexOut);
+        }
+    }
+
+    /**
+     * Box mean along a single row
+     *
+     * @param indexTop Index of the row above the box or -1 if the box starts at the first row
+     */
+    static void boxMeanRow( int[] data, int indexBottom, int indexTop, int width, int radius,
+                            byte[] dataOut, int indexOut ) {
+        final int lanes = U8_INTS.length();
+        final int length = 2*radius + 1;
+        final int area = length*length;
+        final int half = area/2;
+        final float inverse = 1.0f/area;
+
+        // The box in the first column touches the left edge. After that the box is all differences
+        int x = radius;
+        {
+            int sum = data[indexBottom + x + radius] - (indexTop >= 0 ? data[indexTop + x + radius] : 0);
+            dataOut[indexOut + x] = (byte)((sum + half)/area);
+        }
+        x++;
+
+        // Reading integral values right of x and writing the bytes both stay inside of the row
+        final int end = width - radius;
+        for (; x + U8_BYTES.length() <= end; x += lanes) {
+            var sum = IntVector.fromArray(U8_INTS, data, indexBottom + x + radius)
+                    .sub(IntVector.fromArray(U8_INTS, data, indexBottom + x - radius - 1));
+            if (indexTop >= 0) {
+                sum = sum.sub(IntVector.fromArray(U8_INTS, data, indexTop + x + radius))
+                        .add(IntVector.fromArray(U8_INTS, data, indexTop + x - radius - 1));
+            }
+            // Rounds the quotient by adding 2^23, which leaves it in the lower bits of the float. JDK 17 can't
+            // convert floats to ints with vectors, so a conversion would be done one lane at a time.
+            var n = sum.add(half);
+            var q = ((FloatVector)n.convertShape(VectorOperators.I2F, F32, 0)).fma(inverse, ROUND_MAGIC)
+                    .viewAsIntegralLanes().sub(Float.floatToRawIntBits(ROUND_MAGIC));
+            // The shifts are -1 when the remainder is too large or negative. Masked adds were much slower.
+            var remainder = n.sub(q.mul(area));
+            q = q.sub(remainder.neg().add(area - 1).lanewise(VectorOperators.ASHR, 31))
+                    .add(remainder.lanewise(VectorOperators.ASHR, 31));
+            narrowU8(q).intoArray(dataOut, indexOut + x);
+        }
+        for (; x < end; x++) {
+            int sum = data[indexBottom + x + radius] - data[indexBottom + x - radius - 1];
+            if (indexTop >= 0)
+                sum += data[indexTop + x - radius - 1] - data[indexTop + x + radius];
+            dataOut[indexOut + x] = (byte)((sum + half)/area);
+        }
+    }
+
+    /**
+     * Mean inside of a square box from a float integral image. See {@link #boxMean(GrayS32, int, GrayU8)}.
+     */
+    public static void boxMean( GrayF64 integral, int radius, GrayF32 output ) {
+        final int length = 2*radius + 1;
+        final double inverse = 1.0/(length*length);
+
+        for (int y = radius; y < integral.height - radius; y++) {
+            final int indexBottom = integral.startIndex + (y + radius)*integral.stride;
+            final int indexTop = integral.startIndex + (y - radius - 1)*integral.stride;
+            final int indexOut = output.startIndex + y*output.stride;
+
+            for (int x = radius; x < integral.width - radius; x++) {
+                int right = x + radius;
+                int left = x - radius - 1;
+                double sum = integral.data[indexBottom + right];
+                if (left >= 0)
+                    sum -= integral.data[indexBottom + left];
+                if (y > radius) {
+                    sum -= integral.data[indexTop + right];
+                    if (left >= 0)
+                        sum += integral.data[indexTop + left];
+                }
+                output.data[indexOut + x] = (float)(sum*inverse);
+            }
+        }
+    }
+
+    /**
+     * Vectorized version of {@link #boxMean(GrayF64, int, GrayF32)}
+     */
+    public static void boxMean_vector( GrayF64 integral, int radius, GrayF32 output ) {
+        final int width = integral.width;
+        if (width < 2*radius + 1)
+            return;
+
+        for (int y = radius; y < integral.height - radius; y++) {
+            final int indexBottom = integral.startIndex + (y + radius)*integral.stride;
+            final int indexTop = y > radius ? integral.startIndex + (y - radius - 1)*integral.stride : -1;
+            final int indexOut = output.startIndex + y*output.stride;
+            boxMeanRow(integral.data, indexBottom, indexTop, width, radius, output.data, indexOut);
+        }
+    }
+
+    static void boxMeanRow( double[] data, int indexBottom, int indexTop, int width, int radius,
+                            float[] dataOut, int indexOut ) {
+        final int lanes = F32_DOUBLES.length();
+        final int length = 2*radius + 1;
+        final double inverse = 1.0/(length*length);
+
+        int x = radius;
+        {
+            double sum = data[indexBottom + x + radius];
+            if (indexTop >= 0)
+                sum -= data[indexTop + x + radius];
+            dataOut[indexOut + x] = (float)(sum*inverse);
+        }
+        x++;
+
+        final int end = width - radius;
+        for (; x + F32_FLOATS.length() <= end; x += lanes) {
+            var sum = DoubleVector.fromArray(F32_DOUBLES, data, indexBottom + x + radius)
+                    .sub(DoubleVector.fromArray(F32_DOUBLES, data, indexBottom + x - radius - 1));
+            if (indexTop >= 0) {
+                sum = sum.sub(DoubleVector.fromArray(F32_DOUBLES, data, indexTop + x + radius))
+                        .add(DoubleVector.fromArray(F32_DOUBLES, data, indexTop + x - radius - 1));
+            }
+            ((FloatVector)sum.mul(inverse).convertShape(VectorOperators.D2F, F32_FLOATS, 0)).intoArray(dataOut, indexOut + x);
+        }
+        for (; x < end; x++) {
+            double sum = data[indexBottom + x + radius] - data[indexBottom + x - radius - 1];
+            if (indexTop >= 0)
+                sum = sum - data[indexTop + x + radius] + data[indexTop + x - radius - 1];
+            dataOut[indexOut + x] = (float)(sum*inverse);
+        }
     }
 
     public static GrayU8 threshold( GrayU8 input, GrayU8 output, int threshold ) {
@@ -155,10 +1137,19 @@ public class ImageProcessing {
     }
 
     public static GrayU8 threshold_vector_v1(GrayU8 input, GrayU8 output, int threshold ) {
-        VectorSpecies<Byte> SPECIES = ByteVector.SPECIES_PREFERRED;
+        return threshold_vector_v1(input, output, threshold, new Workspace());
+    }
+
+    public static GrayU8 threshold_vector_v1(GrayU8 input, GrayU8 output, int threshold, Workspace work ) {
+        // The sign bit trick only works when the threshold is a valid unsigned byte
+        if (threshold < 0 || threshold > 255)
+            return threshold(input, output, threshold);
+
+        VectorSpecies<Byte> SPECIES = U8;
 
         // Vector applies threshold by writing to booleans
-        boolean[] tmp = new boolean[input.width];
+        boolean[] tmp = work.rowBool(input.width);
+        final byte flipped = flipSign(threshold);
 
         for( int y = 0; y < input.height; y++ ) {
             int indexIn = input.startIndex + y*input.stride;
@@ -167,8 +1158,7 @@ public class ImageProcessing {
             int i = 0;
             for(; i < SPECIES.loopBound(input.width); i += SPECIES.length() ) {
                 var vinput = ByteVector.fromArray(SPECIES, input.data, indexIn+i);
-                vinput.compare(VectorOperators.LE, threshold).intoArray(tmp, i);
-                // NOTE: This will yield incorrect results because JDK doesn't support unsigned comparisons
+                vinput.lanewise(VectorOperators.XOR, SIGN_BIT).compare(VectorOperators.LE, flipped).intoArray(tmp, i);
             }
             for (int vectorIdx = 0; vectorIdx < i; vectorIdx++) {
                 output.data[indexOut+vectorIdx] = (byte)(tmp[vectorIdx] ? 1 : 0);
@@ -182,29 +1172,280 @@ public class ImageProcessing {
         return output;
     }
 
+    /**
+     * Vectorized threshold which writes the result of the compare with blend(). The end of each row is done
+     * without writing past it, so pixels in a parent image which are outside of a sub-image aren't modified.
+     */
     public static GrayU8 threshold_vector_v2(GrayU8 input, GrayU8 output, int threshold ) {
-        VectorSpecies<Byte> SPECIES = ByteVector.SPECIES_PREFERRED;
+        // The sign bit trick only works when the threshold is a valid unsigned byte
+        if (threshold < 0 || threshold > 255)
+            return threshold(input, output, threshold);
 
-        for( int y = 0; y < input.height; y++ ) {
+        VectorSpecies<Byte> SPECIES = U8;
+        final byte flipped = flipSign(threshold);
+
+        final boolean contiguous = isContiguous(input) && isContiguous(output);
+        final int rows = contiguous ? 1 : input.height;
+        final int width = contiguous ? input.width*input.height : input.width;
+        final int bound = SPECIES.loopBound(width);
+        // Row tails are done by moving the last vector back so that it ends at the end of the row. Pixels in the
+        // overlap are done twice, which only gives the same answer if the output isn't also the input
+        final boolean overlap = width >= SPECIES.length() && input.data != output.data;
+
+        for( int y = 0; y < rows; y++ ) {
             int indexIn = input.startIndex + y*input.stride;
             int indexOut = output.startIndex + y*output.stride;
 
             int i = 0;
-            for(; i < SPECIES.loopBound(input.width); i += SPECIES.length() ) {
+            for(; i < bound; i += SPECIES.length() ) {
                 var vinput = ByteVector.fromArray(SPECIES, input.data, indexIn+i);
-                VectorMask<Byte> compare = vinput.compare(VectorOperators.LE, threshold);
-                // NOTE: This will yield incorrect results because JDK doesn't support unsigned comparisons
+                VectorMask<Byte> compare = vinput.lanewise(VectorOperators.XOR, SIGN_BIT).compare(VectorOperators.LE, flipped);
                 ByteVector.zero(SPECIES).blend(1, compare).intoArray(output.data, indexOut+i);
             }
 
+            if (i < width && overlap) {
+                i = width - SPECIES.length();
+                var vinput = ByteVector.fromArray(SPECIES, input.data, indexIn+i);
+                VectorMask<Byte> compare = vinput.lanewise(VectorOperators.XOR, SIGN_BIT).compare(VectorOperators.LE, flipped);
+                ByteVector.zero(SPECIES).blend(1, compare).intoArray(output.data, indexOut+i);
+            } else if (i < width) {
+                VectorMask<Byte> inside = SPECIES.indexInRange(i, width);
+                var vinput = ByteVector.fromArray(SPECIES, input.data, indexIn+i, inside);
+                VectorMask<Byte> compare = vinput.lanewise(VectorOperators.XOR, SIGN_BIT).compare(VectorOperators.LE, flipped);
+                ByteVector.zero(SPECIES).blend(1, compare).intoArray(output.data, indexOut+i, inside);
+            }
+        }
+
+        return output;
+    }
+
+    /**
+     * Same as {@link #threshold(GrayU8, GrayU8, int)} but the images are stored off heap
+     */
+    public static DirectGrayU8 threshold( DirectGrayU8 input, DirectGrayU8 output, int threshold ) {
+        output.checkShape(input.width, input.height);
+
+        for( int y = 0; y < input.height; y++ ) {
+            int indexIn = input.startIndex + y*input.stride;
+            int indexOut = output.startIndex + y*output.stride;
+
+            for( int i = input.width; i>0; i-- ) {
+                output.data.put(indexOut++, (byte)((input.data.get(indexIn++)& 0xFF) <= threshold ? 1 : 0));
+            }
+        }
+
+        return output;
+    }
+
+    /**
+     * Same as {@link #threshold_vector_v2(GrayU8, GrayU8, int)} but the images are stored off heap. Vectors are
+     * loaded from and stored into the buffers without copying the image onto the heap.
+     */
+    public static DirectGrayU8 threshold_vector_v2( DirectGrayU8 input, DirectGrayU8 output, int threshold ) {
+        if (threshold < 0 || threshold > 255)
+            return threshold(input, output, threshold);
+        output.checkShape(input.width, input.height);
+
+        VectorSpecies<Byte> SPECIES = U8;
+        final byte flipped = flipSign(threshold);
+        final ByteBuffer dataIn = input.data;
+        final ByteBuffer dataOut = output.data;
+
+        for( int y = 0; y < input.height; y++ ) {
+            int indexIn = input.startIndex + y*input.stride;
+            int indexOut = output.startIndex + y*output.stride;
+
+            int i = 0;
+            for(; i < SPECIES.loopBound(input.width); i += SPECIES.length() ) {
+                var vinput = ByteVector.fromByteBuffer(SPECIES, dataIn, indexIn+i, ORDER);
+                VectorMask<Byte> compare = vinput.lanewise(VectorOperators.XOR, SIGN_BIT).compare(VectorOperators.LE, flipped);
+                ByteVector.zero(SPECIES).blend(1, compare).intoByteBuffer(dataOut, indexOut+i, ORDER);
+            }
+
             for(; i < input.width; i++ ) {
-                output.data[indexOut+i] = (byte)((input.data[indexIn+i]& 0xFF) <= threshold ? 1 : 0);
+                dataOut.put(indexOut+i, (byte)((dataIn.get(indexIn+i)& 0xFF) <= threshold ? 1 : 0));
+            }
+        }
+
+        return output;
+    }
+
+    /**
+     * Thresholds the image. If down is true then pixels &le; threshold are set to value, otherwise pixels
+     * &gt; threshold are set to value. All other pixels are set to zero.
+     */
+    public static GrayU8 threshold( GrayU8 input, GrayU8 output, int threshold, boolean down, int value ) {
+        for( int y = 0; y < input.height; y++ ) {
+            int indexIn = input.startIndex + y*input.stride;
+            int indexOut = output.startIndex + y*output.stride;
+
+            for( int i = input.width; i>0; i-- ) {
+                int pixel = input.data[indexIn++]& 0xFF;
+                output.data[indexOut++] = (byte)((down ? pixel <= threshold : pixel > threshold) ? value : 0);
+            }
+        }
+
+        return output;
+    }
+
+    /**
+     * Pixels with lower &le; pixel &le; upper are set to value. All other pixels are set to zero.
+     */
+    public static GrayU8 thresholdRange( GrayU8 input, GrayU8 output, int lower, int upper, int value ) {
+        for( int y = 0; y < input.height; y++ ) {
+            int indexIn = input.startIndex + y*input.stride;
+            int indexOut = output.startIndex + y*output.stride;
+
+            for( int i = input.width; i>0; i-- ) {
+                int pixel = input.data[indexIn++]& 0xFF;
+                output.data[indexOut++] = (byte)(pixel >= lower && pixel <= upper ? value : 0);
+            }
+        }
+
+        return output;
+    }
+
+    public static GrayU8 threshold_vector(GrayU8 input, GrayU8 output, int threshold, boolean down ) {
+        return threshold_vector(input, output, threshold, down, 1);
+    }
+
+    /**
+     * Vectorized version of {@link #threshold(GrayU8, GrayU8, int, boolean, int)}. ByteVector only has signed
+     * comparisons. Flipping the sign bit of both sides maps 0 to 255 onto -128 to 127 in the same order, so
+     * a signed compare of the flipped values is an unsigned compare of the original values. Thresholds outside
+     * of 0 to 255 will either select every pixel or no pixel.
+     */
+    public static GrayU8 threshold_vector(GrayU8 input, GrayU8 output, int threshold, boolean down, int value ) {
+        if (down) {
+            if (threshold < 0)
+                return fill(output, 0);
+            if (threshold >= 255)
+                return fill(output, value);
+        } else {
+            if (threshold < 0)
+                return fill(output, value);
+            if (threshold >= 255)
+                return fill(output, 0);
+        }
+
+        final VectorSpecies<Byte> SPECIES = U8;
+        final byte flipped = flipSign(threshold);
+        // The operator must be a constant or the compare is very slow. GT is handled by swapping what
+        // pixels which are LE and GT are set to
+        final var valueGT = ByteVector.broadcast(SPECIES, (byte)(down ? 0 : value));
+        final byte valueLE = (byte)(down ? value : 0);
+
+        final boolean contiguous = isContiguous(input) && isContiguous(output);
+        final int rows = contiguous ? 1 : input.height;
+        final int width = contiguous ? input.width*input.height : input.width;
+        final int bound = SPECIES.loopBound(width);
+        // Row tails are done by moving the last vector back so that it ends at the end of the row. Pixels in the
+        // overlap are done twice, which only gives the same answer if the output isn't also the input
+        final boolean overlap = width >= SPECIES.length() && input.data != output.data;
+
+        for( int y = 0; y < rows; y++ ) {
+            int indexIn = input.startIndex + y*input.stride;
+            int indexOut = output.startIndex + y*output.stride;
+
+            int i = 0;
+            for(; i < bound; i += SPECIES.length() ) {
+                var vinput = ByteVector.fromArray(SPECIES, input.data, indexIn+i);
+                VectorMask<Byte> compare = vinput.lanewise(VectorOperators.XOR, SIGN_BIT).compare(VectorOperators.LE, flipped);
+                valueGT.blend(valueLE, compare).intoArray(output.data, indexOut+i);
+            }
+
+            if (i < width && overlap) {
+                i = width - SPECIES.length();
+                var vinput = ByteVector.fromArray(SPECIES, input.data, indexIn+i);
+                VectorMask<Byte> compare = vinput.lanewise(VectorOperators.XOR, SIGN_BIT).compare(VectorOperators.LE, flipped);
+                valueGT.blend(valueLE, compare).intoArray(output.data, indexOut+i);
+            } else if (i < width) {
+                VectorMask<Byte> inside = SPECIES.indexInRange(i, width);
+                var vinput = ByteVector.fromArray(SPECIES, input.data, indexIn+i, inside);
+                VectorMask<Byte> compare = vinput.lanewise(VectorOperators.XOR, SIGN_BIT).compare(VectorOperators.LE, flipped);
+                valueGT.blend(valueLE, compare).intoArray(output.data, indexOut+i, inside);
             }
         }
 
         return output;
     }
 
+    /**
+     * Vectorized version of {@link #thresholdRange}. Unsigned compare is done by flipping the sign bit,
+     * see {@link #threshold_vector(GrayU8, GrayU8, int, boolean, int)}.
+     */
+    public static GrayU8 thresholdRange_vector(GrayU8 input, GrayU8 output, int lower, int upper, int value ) {
+        lower = Math.max(0, lower);
+        upper = Math.min(255, upper);
+        if (lower > upper)
+            return fill(output, 0);
+
+        final VectorSpecies<Byte> SPECIES = U8;
+        final byte flippedLower = flipSign(lower);
+        final byte flippedUpper = flipSign(upper);
+        final var zero = ByteVector.zero(SPECIES);
+
+        final boolean contiguous = isContiguous(input) && isContiguous(output);
+        final int rows = contiguous ? 1 : input.height;
+        final int width = contiguous ? input.width*input.height : input.width;
+        final int bound = SPECIES.loopBound(width);
+        // Row tails are done by moving the last vector back so that it ends at the end of the row. Pixels in the
+        // overlap are done twice, which only gives the same answer if the output isn't also the input
+        final boolean overlap = width >= SPECIES.length() && input.data != output.data;
+
+        for( int y = 0; y < rows; y++ ) {
+            int indexIn = input.startIndex + y*input.stride;
+            int indexOut = output.startIndex + y*output.stride;
+
+            int i = 0;
+            for(; i < bound; i += SPECIES.length() ) {
+                var vinput = ByteVector.fromArray(SPECIES, input.data, indexIn+i).lanewise(VectorOperators.XOR, SIGN_BIT);
+                VectorMask<Byte> compare = vinput.compare(VectorOperators.GE, flippedLower).
+                        and(vinput.compare(VectorOperators.LE, flippedUpper));
+                zero.blend((byte)value, compare).intoArray(output.data, indexOut+i);
+            }
+
+            if (i < width && overlap) {
+                i = width - SPECIES.length();
+                var vinput = ByteVector.fromArray(SPECIES, input.data, indexIn+i).lanewise(VectorOperators.XOR, SIGN_BIT);
+                VectorMask<Byte> compare = vinput.compare(VectorOperators.GE, flippedLower).
+                        and(vinput.compare(VectorOperators.LE, flippedUpper));
+                zero.blend((byte)value, compare).intoArray(output.data, indexOut+i);
+            } else if (i < width) {
+                VectorMask<Byte> inside = SPECIES.indexInRange(i, width);
+                var vinput = ByteVector.fromArray(SPECIES, input.data, indexIn+i, inside).lanewise(VectorOperators.XOR, SIGN_BIT);
+                VectorMask<Byte> compare = vinput.compare(VectorOperators.GE, flippedLower).
+                        and(vinput.compare(VectorOperators.LE, flippedUpper));
+                zero.blend((byte)value, compare).intoArray(output.data, indexOut+i, inside);
+            }
+        }
+
+        return output;
+    }
+
+    /**
+     * Converts an unsigned byte into a signed byte with the same ordering
+     */
+    static byte flipSign( int value ) {
+        return (byte)(value ^ 0x80);
+    }
+
+    private static GrayU8 fill( GrayU8 output, int value ) {
+        for( int y = 0; y < output.height; y++ ) {
+            int indexOut = output.startIndex + y*output.stride;
+            Arrays.fill(output.data, indexOut, indexOut + output.width, (byte)value);
+        }
+        return output;
+    }
+
+    /**
+     * True if each row starts right after the previous row ends, i.e. it's not a sub-image. Pixels can then be
+     * processed as if the image was one long row, which only has one tail instead of one for every row.
+     */
+    static boolean isContiguous( ImageBase<?> image ) {
+        return image.stride == image.width;
+    }
+
     public static void histogram(GrayU16 input, int minValue, int[] histogram ) {
         Arrays.fill(histogram,0);
 
@@ -219,27 +1460,580 @@ public class ImageProcessing {
     }
 
     public static void histogram_vector(GrayU16 input, int minValue, int[] histogram ) {
-        Arrays.fill(histogram,0);
+        histogram_vector(input, minValue, histogram, new Workspace());
+    }
 
-        VectorSpecies<Short> SPECIES = ShortVector.SPECIES_PREFERRED;
+    /**
+     * Histogram where pixels are added to HISTOGRAM_K different sub-histograms in a round robin fashion.
+     * When neighboring pixels have the same value, e.g. a narrow peak or a constant image, incrementing the
+     * same element has to wait for the previous increment to be stored. With separate sub-histograms these
+     * increments are independent. The sub-histograms are then added together with vectors.
+     */
+    public static void histogram_vector(GrayU16 input, int minValue, int[] histogram, Workspace work ) {
+        final int bins = histogram.length;
+        final int[] sub = work.histogram(HISTOGRAM_K*bins);
+        Arrays.fill(sub, 0, HISTOGRAM_K*bins, 0);
 
-        for( int y = 0; y < input.height; y++ ) {
-            int index = input.startIndex + y*input.stride;
-            int end = index + input.width;
+        final short[] data = input.data;
+        final int offset0 = -minValue;
+        final int offset1 = bins - minValue;
+        final int offset2 = 2*bins - minValue;
+        final int offset3 = 3*bins - minValue;
 
-            for(; index < SPECIES.loopBound(input.width); index += SPECIES.length() ) {
-                var vinput = ShortVector.fromArray(SPECIES, input.data, index);
-                // NOTE: This will yield incorrect results because JDK doesn't support unsigned comparisons
-                vinput.sub((short)minValue);
+        final boolean contiguous = isContiguous(input);
+        final int rows = contiguous ? 1 : input.height;
+        final int width = contiguous ? input.width*input.height : input.width;
 
-                // can I convert this into a mask? what if the same element is referenced more than once?
+        for( int y = 0; y < rows; y++ ) {
+            int index = input.startIndex + y*input.stride;
+            final int end = index + width;
+            final int endUnrolled = end - (HISTOGRAM_K - 1);
 
-                // TODO is it possible to vectorize incrementing different array elements? I suspect not...
+            for (; index < endUnrolled; index += HISTOGRAM_K) {
+                sub[(data[index    ] & 0xFFFF) + offset0]++;
+                sub[(data[index + 1] & 0xFFFF) + offset1]++;
+                sub[(data[index + 2] & 0xFFFF) + offset2]++;
+                sub[(data[index + 3] & 0xFFFF) + offset3]++;
+            }
+            while( index < end ) {
+                sub[(data[index++] & 0xFFFF) + offset0]++;
             }
+        }
+
+        mergeHistograms(sub, HISTOGRAM_K, histogram);
+    }
 
+    /**
+     * Histogram that uses gather and scatter to increment one bin for every lane at once. If two lanes had the
+     * same value then one increment would be lost, so every lane has its own sub-histogram. The index
+     * for a pixel is its bin plus its lane times the number of bins.
+     */
+    public static void histogram_gather(GrayU16 input, int minValue, int[] histogram, Workspace work ) {
+        final VectorSpecies<Integer> SPECIES = U8_INTS;
+        final int lanes = SPECIES.length();
+        final int bins = histogram.length;
+
+        final int[] sub = work.histogram(lanes*bins);
+        final int[] indexes = work.rowS32(lanes);
+        Arrays.fill(sub, 0, lanes*bins, 0);
+
+        // offset of each lane's sub-histogram with minValue already removed
+        final var laneOffsets = IntVector.zero(SPECIES).addIndex(bins).sub(minValue);
+
+        final boolean contiguous = isContiguous(input);
+        final int rows = contiguous ? 1 : input.height;
+        final int width = contiguous ? input.width*input.height : input.width;
+
+        for( int y = 0; y < rows; y++ ) {
+            int index = input.startIndex + y*input.stride;
+            final int end = index + width;
+
+            for (; index + U16_SHORTS.length() <= end; index += lanes) {
+                var pixels = ShortVector.fromArray(U16_SHORTS, input.data, index);
+                var bin = ((IntVector)pixels.convertShape(VectorOperators.S2I, SPECIES, 0)).and(0xFFFF);
+                bin.add(laneOffsets).intoArray(indexes, 0);
+
+                var counts = IntVector.fromArray(SPECIES, sub, 0, indexes, 0);
+                counts.add(1).intoArray(sub, 0, indexes, 0);
+            }
             while( index < end ) {
-                histogram[(input.data[index++]& 0xFFFF) - minValue ]++;
+                sub[(input.data[index++] & 0xFFFF) - minValue]++;
+            }
+        }
+
+        mergeHistograms(sub, lanes, histogram);
+    }
+
+    /**
+     * Adds 'count' sub-histograms, stored one after another, into 'histogram'
+     */
+    static void mergeHistograms( int[] sub, int count, int[] histogram ) {
+        final VectorSpecies<Integer> SPECIES = U8_INTS;
+        final int bins = histogram.length;
+
+        int i = 0;
+        for (; i < SPECIES.loopBound(bins); i += SPECIES.length()) {
+            var sum = IntVector.fromArray(SPECIES, sub, i);
+            for (int k = 1; k < count; k++) {
+                sum = sum.add(IntVector.fromArray(SPECIES, sub, k*bins + i));
+            }
+            sum.intoArray(histogram, i);
+        }
+        for (; i < bins; i++) {
+            int sum = sub[i];
+            for (int k = 1; k < count; k++) {
+                sum += sub[k*bins + i];
+            }
+            histogram[i] = sum;
+        }
+    }
+
+    /**
+     * Converts a YUV 420 image into an interleaved RGB image. Coefficients are for ITU-R BT.601 with limited
+     * range, which is what most cameras output, in 10-bit fixed point.
+     *
+     * @param yuv Input image. See {@link YuvFormat} for how it's laid out.
+     * @param output Output RGB image. Reshaped to width x height.
+     */
+    public static void yuv420ToRgb( byte[] yuv, int width, int height, YuvFormat format, InterleavedU8 output ) {
+        output.reshape(width, height);
+        for (int y = 0; y < height; y++) {
+            int indexOut = output.startIndex + y*output.stride;
+            yuvRow(yuv, width, height, y, format, 0, width, output.data, indexOut, output.data, indexOut + 1,
+                    output.data, indexOut + 2, 3);
+        }
+    }
+
+    /**
+     * Same as {@link #yuv420ToRgb(byte[], int, int, YuvFormat, InterleavedU8)} but with planar output
+     */
+    public static void yuv420ToRgb( byte[] yuv, int width, int height, YuvFormat format, Planar<GrayU8> output ) {
+        output.reshape(width, height);
+        GrayU8 r = output.getBand(0), g = output.getBand(1), b = output.getBand(2);
+        for (int y = 0; y < height; y++) {
+            yuvRow(yuv, width, height, y, format, 0, width, r.data, r.startIndex + y*r.stride,
+                    g.data, g.startIndex + y*g.stride, b.data, b.startIndex + y*b.stride, 1);
+        }
+    }
+
+    /**
+     * Vectorized version of {@link #yuv420ToRgb(byte[], int, int, YuvFormat, InterleavedU8)}. Each row is
+     * converted into planar rows in the workspace which are then interleaved. There's no good way to interleave
+     * three vectors.
+     */
+    public static void yuv420ToRgb_vector( byte[] yuv, int width, int height, YuvFormat format,
+                                           InterleavedU8 output, Workspace work ) {
+        output.reshape(width, height);
+        final byte[] rgb = work.rowU8(3*width);
+
+        for (int y = 0; y < height; y++) {
+            yuvRow_vector(yuv, width, height, y, format, rgb, 0, rgb, width, rgb, 2*width);
+
+            int indexOut = output.startIndex + y*output.stride;
+            for (int x = 0; x < width; x++) {
+                output.data[indexOut++] = rgb[x];
+                output.data[indexOut++] = rgb[width + x];
+                output.data[indexOut++] = rgb[2*width + x];
+            }
+        }
+    }
+
+    /**
+     * Vectorized version of {@link #yuv420ToRgb(byte[], int, int, YuvFormat, Planar)}
+     */
+    public static void yuv420ToRgb_vector( byte[] yuv, int width, int height, YuvFormat format,
+                                           Planar<GrayU8> output ) {
+        output.reshape(width, height);
+        GrayU8 r = output.getBand(0), g = output.getBand(1), b = output.getBand(2);
+        for (int y = 0; y < height; y++) {
+            yuvRow_vector(yuv, width, height, y, format, r.data, r.startIndex + y*r.stride,
+                    g.data, g.startIndex + y*g.stride, b.data, b.startIndex + y*b.stride);
+        }
+    }
+
+    /**
+     * Converts one row of a YUV image from x0 to x1 into RGB
+     *
+     * @param pixelStride Distance between pixels in the output arrays
+     */
+    static void yuvRow( byte[] yuv, int width, int height, int y, YuvFormat format, int x0, int x1,
+                        byte[] r, int indexR, byte[] g, int indexG, byte[] b, int indexB, int pixelStride ) {
+        final int chromaWidth = (width + 1)/2;
+        final int chromaHeight = (height + 1)/2;
+        final int indexY = y*width;
+
+        // Location of the U and V values in the row and distance between them
+        final int indexU, indexV, step;
+        if (format == YuvFormat.I420) {
+            indexU = width*height + (y/2)*chromaWidth;
+            indexV = indexU + chromaWidth*chromaHeight;
+            step = 1;
+        } else {
+            indexV = width*height + (y/2)*2*chromaWidth;
+            indexU = indexV + 1;
+            step = 2;
+        }
+
+        for (int x = x0; x < x1; x++) {
+            int luma = 1192*((yuv[indexY + x] & 0xFF) - 16);
+            int cb = (yuv[indexU + (x/2)*step] & 0xFF) - 128;
+            int cr = (yuv[indexV + (x/2)*step] & 0xFF) - 128;
+
+            int offset = (x - x0)*pixelStride;
+            r[indexR + offset] = (byte)clampU8((luma + 1634*cr) >> 10);
+            g[indexG + offset] = (byte)clampU8((luma - 833*cr - 400*cb) >> 10);
+            b[indexB + offset] = (byte)clampU8((luma + 2066*cb) >> 10);
+        }
+    }
+
+    /**
+     * Vectorized version of {@link #yuvRow}. Computations are done in ints and then clamped to 0 to 255 before
+     * narrowing to bytes. Output arrays are written to sequentially.
+     */
+    static void yuvRow_vector( byte[] yuv, int width, int height, int y, YuvFormat format,
+                               byte[] r, int indexR, byte[] g, int indexG, byte[] b, int indexB ) {
+        final int chromaWidth = (width + 1)/2;
+        final int chromaHeight = (height + 1)/2;
+        final int indexY = y*width;
+
+        // A method for each format keeps the compiled loop small. When it gets too big the JIT stops inlining
+        // the functions which return vectors and every vector is boxed.
+        int x;
+        if (format == YuvFormat.I420) {
+            int indexU = width*height + (y/2)*chromaWidth;
+            x = yuvRowI420_vector(yuv, width, indexY, indexU, indexU + chromaWidth*chromaHeight,
+                    r, indexR, g, indexG, b, indexB);
+        } else {
+            x = yuvRowNV21_vector(yuv, width, indexY, width*height + (y/2)*2*chromaWidth,
+                    r, indexR, g, indexG, b, indexB);
+        }
+
+        yuvRow(yuv, width, height, y, format, x, width, r, indexR + x, g, indexG + x, b, indexB + x, 1);
+    }
+
+    /**
+     * Each chroma value is loaded once and copied into the two lanes it's used by
+     *
+     * @return Number of pixels which were converted
+     */
+    private static int yuvRowI420_vector( byte[] yuv, int width, int indexY, int indexU, int indexV,
+                                          byte[] r, int indexR, byte[] g, int indexG, byte[] b, int indexB ) {
+        // Chroma loads read U8_BYTES.length() bytes starting at x/2
+        int x = 0;
+        for (; x + 2*U8_BYTES.length() <= width; x += U8_INTS.length()) {
+            var luma = ((IntVector)ByteVector.fromArray(U8_BYTES, yuv, indexY + x).
+                    convertShape(VectorOperators.B2I, U8_INTS, 0)).and(0xFF);
+            var cb = ((IntVector)ByteVector.fromArray(U8_BYTES, yuv, indexU + x/2).
+                    convertShape(VectorOperators.B2I, U8_INTS, 0)).and(0xFF).rearrange(YUV_DUPLICATE);
+            var cr = ((IntVector)ByteVector.fromArray(U8_BYTES, yuv, indexV + x/2).
+                    convertShape(VectorOperators.B2I, U8_INTS, 0)).and(0xFF).rearrange(YUV_DUPLICATE);
+
+            luma = luma.sub(16).mul(1192);
+            cb = cb.sub(128);
+            cr = cr.sub(128);
+
+            // Written out instead of calling a helper since the JIT would stop inlining before the end
+            var red = luma.add(cr.mul(1634)).lanewise(VectorOperators.ASHR, 10).max(0).min(255);
+            var green = luma.sub(cr.mul(833)).sub(cb.mul(400)).lanewise(VectorOperators.ASHR, 10).max(0).min(255);
+            var blue = luma.add(cb.mul(2066)).lanewise(VectorOperators.ASHR, 10).max(0).min(255);
+
+            ((ByteVector)red.convertShape(VectorOperators.I2B, U8_BYTES, 0)).intoArray(r, indexR + x);
+            ((ByteVector)green.convertShape(VectorOperators.I2B, U8_BYTES, 0)).intoArray(g, indexG + x);
+            ((ByteVector)blue.convertShape(VectorOperators.I2B, U8_BYTES, 0)).intoArray(b, indexB + x);
+        }
+        return x;
+    }
+
+    /**
+     * V and U are interleaved. Even lanes are copied into both lanes of a pair for V and odd lanes for U.
+     *
+     * @return Number of pixels which were converted
+     */
+    private static int yuvRowNV21_vector( byte[] yuv, int width, int indexY, int indexVU,
+                                          byte[] r, int indexR, byte[] g, int indexG, byte[] b, int indexB ) {
+        int x = 0;
+        for (; x + U8_BYTES.length() <= width; x += U8_INTS.length()) {
+            var luma = ((IntVector)ByteVector.fromArray(U8_BYTES, yuv, indexY + x).
+                    convertShape(VectorOperators.B2I, U8_INTS, 0)).and(0xFF);
+            var vu = ((IntVector)ByteVector.fromArray(U8_BYTES, yuv, indexVU + x).
+                    convertShape(VectorOperators.B2I, U8_INTS, 0)).and(0xFF).sub(128);
+            var cb = vu.rearrange(YUV_ODD);
+            var cr = vu.rearrange(YUV_EVEN);
+
+            luma = luma.sub(16).mul(1192);
+
+            // Written out instead of calling a helper since the JIT would stop inlining before the end
+            var red = luma.add(cr.mul(1634)).lanewise(VectorOperators.ASHR, 10).max(0).min(255);
+            var green = luma.sub(cr.mul(833)).sub(cb.mul(400)).lanewise(VectorOperators.ASHR, 10).max(0).min(255);
+            var blue = luma.add(cb.mul(2066)).lanewise(VectorOperators.ASHR, 10).max(0).min(255);
+
+            ((ByteVector)red.convertShape(VectorOperators.I2B, U8_BYTES, 0)).intoArray(r, indexR + x);
+            ((ByteVector)green.convertShape(VectorOperators.I2B, U8_BYTES, 0)).intoArray(g, indexG + x);
+            ((ByteVector)blue.convertShape(VectorOperators.I2B, U8_BYTES, 0)).intoArray(b, indexB + x);
+        }
+        return x;
+    }
+
+    /**
+     * Converts a raw Bayer image into planar RGB using bilinear interpolation. Green at a red or blue pixel is the
+     * average of the 4 adjacent pixels. Red and blue at a green pixel is the average of the two adjacent pixels of
+     * that color, and red at a blue pixel (or blue at red) is the average of the 4 diagonal pixels. The image border
+     * is reflected, which keeps the pattern intact.
+     *
+     * @param input Raw image. Must be at least 2x2.
+     * @param output Output RGB image. Reshaped to match the input.
+     */
+    public static void debayer( GrayU8 input, BayerPattern pattern, Planar<GrayU8> output ) {
+        checkBayerShape(input.width, input.height);
+        output.reshape(input.width, input.height);
+
+        for (int y = 0; y < input.height; y++) {
+            debayerRow(input, pattern, y, 0, input.width, output);
+        }
+    }
+
+    /**
+     * Vectorized version of {@link #debayer(GrayU8, BayerPattern, Planar)}. The same interpolated values are
+     * computed for every pixel and then even and odd lanes are picked from them. Border pixels are done by the
+     * scalar code.
+     */
+    public static void debayer_vector( GrayU8 input, BayerPattern pattern, Planar<GrayU8> output ) {
+        checkBayerShape(input.width, input.height);
+        output.reshape(input.width, input.height);
+
+        final int width = input.width;
+        final int height = input.height;
+
+        debayerRow(input, pattern, 0, 0, width, output);
+        for (int y = 1; y < height - 1; y++) {
+            int indexIn = input.startIndex + y*input.stride;
+            boolean redRow = pattern.isRedRow(y);
+
+            // Red and blue rows are the same with the two colors swapped
+            GrayU8 same = output.getBand(redRow ? 0 : 2);
+            GrayU8 green = output.getBand(1);
+            GrayU8 other = output.getBand(redRow ? 2 : 0);
+
+            // Starting at an even x makes the lane index have the same parity as x
+            int x0 = 2;
+            int x1 = debayerRow_vector(input.data, indexIn, input.stride, x0, width, pattern.isGreenEven(y),
+                    same.data, same.startIndex + y*same.stride,
+                    green.data, green.startIndex + y*green.stride,
+                    other.data, other.startIndex + y*other.stride);
+
+            debayerRow(input, pattern, y, 0, x0, output);
+            debayerRow(input, pattern, y, x1, width, output);
+        }
+        debayerRow(input, pattern, height - 1, 0, width, output);
+    }
+
+    /**
+     * Interpolates the row from x0 until there isn't room for another vector
+     *
+     * @param same Output for the color in this row which isn't green
+     * @param other Output for the color which isn't in this row
+     * @return Where it stopped
+     */
+    private static int debayerRow_vector( byte[] data, int indexIn, int stride, int x0, int width,
+                                          boolean greenEven, byte[] same, int indexSame,
+                                          byte[] green, int indexGreen, byte[] other, int indexOther ) {
+        final var greenLanes = IntVector.zero(U8_INTS).addIndex(1).and(1).compare(VectorOperators.EQ,
+                greenEven ? 0 : 1);
+
+        int x = x0;
+        for (; x + 1 + U8_BYTES.length() <= width; x += U8_INTS.length()) {
+            int index = indexIn + x;
+            // Loads and narrowing are written out. When put into functions the JIT stops inlining them part way
+            // through and the vectors get boxed
+            var center = ((IntVector)ByteVector.fromArray(U8_BYTES, data, index).
+                    convertShape(VectorOperators.B2I, U8_INTS, 0)).and(0xFF);
+            var left = ((IntVector)ByteVector.fromArray(U8_BYTES, data, index - 1).
+                    convertShape(VectorOperators.B2I, U8_INTS, 0)).and(0xFF);
+            var right = ((IntVector)ByteVector.fromArray(U8_BYTES, data, index + 1).
+                    convertShape(VectorOperators.B2I, U8_INTS, 0)).and(0xFF);
+            var up = ((IntVector)ByteVector.fromArray(U8_BYTES, data, index - stride).
+                    convertShape(VectorOperators.B2I, U8_INTS, 0)).and(0xFF);
+            var down = ((IntVector)ByteVector.fromArray(U8_BYTES, data, index + stride).
+                    convertShape(VectorOperators.B2I, U8_INTS, 0)).and(0xFF);
+            var upLeft = ((IntVector)ByteVector.fromArray(U8_BYTES, data, index - stride - 1).
+                    convertShape(VectorOperators.B2I, U8_INTS, 0)).and(0xFF);
+            var upRight = ((IntVector)ByteVector.fromArray(U8_BYTES, data, index - stride + 1).
+                    convertShape(VectorOperators.B2I, U8_INTS, 0)).and(0xFF);
+            var downLeft = ((IntVector)ByteVector.fromArray(U8_BYTES, data, index + stride - 1).
+                    convertShape(VectorOperators.B2I, U8_INTS, 0)).and(0xFF);
+            var downRight = ((IntVector)ByteVector.fromArray(U8_BYTES, data, index + stride + 1).
+                    convertShape(VectorOperators.B2I, U8_INTS, 0)).and(0xFF);
+
+            var horizontal = left.add(right);
+            var vertical = up.add(down);
+            var cross = horizontal.add(vertical).add(2).lanewise(VectorOperators.LSHR, 2);
+            var diagonal = upLeft.add(upRight).add(downLeft).add(downRight).add(2).lanewise(VectorOperators.LSHR, 2);
+            horizontal = horizontal.add(1).lanewise(VectorOperators.LSHR, 1);
+            vertical = vertical.add(1).lanewise(VectorOperators.LSHR, 1);
+
+            ((ByteVector)center.blend(horizontal, greenLanes).convertShape(VectorOperators.I2B, U8_BYTES, 0)).
+                    intoArray(same, indexSame + x);
+            ((ByteVector)cross.blend(center, greenLanes).convertShape(VectorOperators.I2B, U8_BYTES, 0)).
+                    intoArray(green, indexGreen + x);
+            ((ByteVector)diagonal.blend(vertical, greenLanes).convertShape(VectorOperators.I2B, U8_BYTES, 0)).
+                    intoArray(other, indexOther + x);
+        }
+        return x;
+    }
+
+    /**
+     * Scalar interpolation of pixels from x0 to x1 in row y. Handles the image border.
+     */
+    static void debayerRow( GrayU8 input, BayerPattern pattern, int y, int x0, int x1, Planar<GrayU8> output ) {
+        final int width = input.width;
+        final int indexUp = input.startIndex + borderIndex(BorderType.REFLECT, y - 1, input.height)*input.stride;
+        final int indexCenter = input.startIndex + y*input.stride;
+        final int indexDown = input.startIndex + borderIndex(BorderType.REFLECT, y + 1, input.height)*input.stride;
+        final byte[] data = input.data;
+
+        final boolean redRow = pattern.isRedRow(y);
+        final boolean greenEven = pattern.isGreenEven(y);
+        final GrayU8 same = output.getBand(redRow ? 0 : 2);
+        final GrayU8 green = output.getBand(1);
+        final GrayU8 other = output.getBand(redRow ? 2 : 0);
+        int indexSame = same.startIndex + y*same.stride;
+        int indexGreen = green.startIndex + y*green.stride;
+        int indexOther = other.startIndex + y*other.stride;
+
+        for (int x = x0; x < x1; x++) {
+            int left = borderIndex(BorderType.REFLECT, x - 1, width);
+            int right = borderIndex(BorderType.REFLECT, x + 1, width);
+
+            int center = data[indexCenter + x] & 0xFF;
+            int horizontal = (data[indexCenter + left] & 0xFF) + (data[indexCenter + right] & 0xFF);
+            int vertical = (data[indexUp + x] & 0xFF) + (data[indexDown + x] & 0xFF);
+
+            if (greenEven == (x % 2 == 0)) {
+                same.data[indexSame + x] = (byte)((horizontal + 1) >> 1);
+                green.data[indexGreen + x] = (byte)center;
+                other.data[indexOther + x] = (byte)((vertical + 1) >> 1);
+            } else {
+                int diagonal = (data[indexUp + left] & 0xFF) + (data[indexUp + right] & 0xFF) +
+                        (data[indexDown + left] & 0xFF) + (data[indexDown + right] & 0xFF);
+                same.data[indexSame + x] = (byte)center;
+                green.data[indexGreen + x] = (byte)((horizontal + vertical + 2) >> 2);
+                other.data[indexOther + x] = (byte)((diagonal + 2) >> 2);
             }
         }
     }
+
+    /**
+     * Same as {@link #debayer(GrayU8, BayerPattern, Planar)} but for sensors with more than 8-bits
+     */
+    public static void debayer( GrayU16 input, BayerPattern pattern, Planar<GrayU16> output ) {
+        checkBayerShape(input.width, input.height);
+        output.reshape(input.width, input.height);
+
+        for (int y = 0; y < input.height; y++) {
+            debayerRow(input, pattern, y, 0, input.width, output);
+        }
+    }
+
+    /**
+     * Vectorized version of {@link #debayer(GrayU16, BayerPattern, Planar)}
+     */
+    public static void debayer_vector( GrayU16 input, BayerPattern pattern, Planar<GrayU16> output ) {
+        checkBayerShape(input.width, input.height);
+        output.reshape(input.width, input.height);
+
+        final int width = input.width;
+        final int height = input.height;
+
+        debayerRow(input, pattern, 0, 0, width, output);
+        for (int y = 1; y < height - 1; y++) {
+            int indexIn = input.startIndex + y*input.stride;
+            boolean redRow = pattern.isRedRow(y);
+
+            GrayU16 same = output.getBand(redRow ? 0 : 2);
+            GrayU16 green = output.getBand(1);
+            GrayU16 other = output.getBand(redRow ? 2 : 0);
+
+            int x0 = 2;
+            int x1 = debayerRow_vector(input.data, indexIn, input.stride, x0, width, pattern.isGreenEven(y),
+                    same.data, same.startIndex + y*same.stride,
+                    green.data, green.startIndex + y*green.stride,
+                    other.data, other.startIndex + y*other.stride);
+
+            debayerRow(input, pattern, y, 0, x0, output);
+            debayerRow(input, pattern, y, x1, width, output);
+        }
+        debayerRow(input, pattern, height - 1, 0, width, output);
+    }
+
+    private static int debayerRow_vector( short[] data, int indexIn, int stride, int x0, int width,
+                                          boolean greenEven, short[] same, int indexSame,
+                                          short[] green, int indexGreen, short[] other, int indexOther ) {
+        final var greenLanes = IntVector.zero(U8_INTS).addIndex(1).and(1).compare(VectorOperators.EQ,
+                greenEven ? 0 : 1);
+
+        int x = x0;
+        for (; x + 1 + U16_SHORTS.length() <= width; x += U8_INTS.length()) {
+            int index = indexIn + x;
+            var center = ((IntVector)ShortVector.fromArray(U16_SHORTS, data, index).
+                    convertShape(VectorOperators.S2I, U8_INTS, 0)).and(0xFFFF);
+            var left = ((IntVector)ShortVector.fromArray(U16_SHORTS, data, index - 1).
+                    convertShape(VectorOperators.S2I, U8_INTS, 0)).and(0xFFFF);
+            var right = ((IntVector)ShortVector.fromArray(U16_SHORTS, data, index + 1).
+                    convertShape(VectorOperators.S2I, U8_INTS, 0)).and(0xFFFF);
+            var up = ((IntVector)ShortVector.fromArray(U16_SHORTS, data, index - stride).
+                    convertShape(VectorOperators.S2I, U8_INTS, 0)).and(0xFFFF);
+            var down = ((IntVector)ShortVector.fromArray(U16_SHORTS, data, index + stride).
+                    convertShape(VectorOperators.S2I, U8_INTS, 0)).and(0xFFFF);
+            var upLeft = ((IntVector)ShortVector.fromArray(U16_SHORTS, data, index - stride - 1).
+                    convertShape(VectorOperators.S2I, U8_INTS, 0)).and(0xFFFF);
+            var upRight = ((IntVector)ShortVector.fromArray(U16_SHORTS, data, index - stride + 1).
+                    convertShape(VectorOperators.S2I, U8_INTS, 0)).and(0xFFFF);
+            var downLeft = ((IntVector)ShortVector.fromArray(U16_SHORTS, data, index + stride - 1).
+                    convertShape(VectorOperators.S2I, U8_INTS, 0)).and(0xFFFF);
+            var downRight = ((IntVector)ShortVector.fromArray(U16_SHORTS, data, index + stride + 1).
+                    convertShape(VectorOperators.S2I, U8_INTS, 0)).and(0xFFFF);
+
+            var horizontal = left.add(right);
+            var vertical = up.add(down);
+            var cross = horizontal.add(vertical).add(2).lanewise(VectorOperators.LSHR, 2);
+            var diagonal = upLeft.add(upRight).add(downLeft).add(downRight).add(2).lanewise(VectorOperators.LSHR, 2);
+            horizontal = horizontal.add(1).lanewise(VectorOperators.LSHR, 1);
+            vertical = vertical.add(1).lanewise(VectorOperators.LSHR, 1);
+
+            ((ShortVector)center.blend(horizontal, greenLanes).convertShape(VectorOperators.I2S, U16_SHORTS, 0)).
+                    intoArray(same, indexSame + x);
+            ((ShortVector)cross.blend(center, greenLanes).convertShape(VectorOperators.I2S, U16_SHORTS, 0)).
+                    intoArray(green, indexGreen + x);
+            ((ShortVector)diagonal.blend(vertical, greenLanes).convertShape(VectorOperators.I2S, U16_SHORTS, 0)).
+                    intoArray(other, indexOther + x);
+        }
+        return x;
+    }
+
+    static void debayerRow( GrayU16 input, BayerPattern pattern, int y, int x0, int x1, Planar<GrayU16> output ) {
+        final int width = input.width;
+        final int indexUp = input.startIndex + borderIndex(BorderType.REFLECT, y - 1, input.height)*input.stride;
+        final int indexCenter = input.startIndex + y*input.stride;
+        final int indexDown = input.startIndex + borderIndex(BorderType.REFLECT, y + 1, input.height)*input.stride;
+        final short[] data = input.data;
+
+        final boolean redRow = pattern.isRedRow(y);
+        final boolean greenEven = pattern.isGreenEven(y);
+        final GrayU16 same = output.getBand(redRow ? 0 : 2);
+        final GrayU16 green = output.getBand(1);
+        final GrayU16 other = output.getBand(redRow ? 2 : 0);
+        int indexSame = same.startIndex + y*same.stride;
+        int indexGreen = green.startIndex + y*green.stride;
+        int indexOther = other.startIndex + y*other.stride;
+
+        for (int x = x0; x < x1; x++) {
+            int left = borderIndex(BorderType.REFLECT, x - 1, width);
+            int right = borderIndex(BorderType.REFLECT, x + 1, width);
+
+            int center = data[indexCenter + x] & 0xFFFF;
+            int horizontal = (data[indexCenter + left] & 0xFFFF) + (data[indexCenter + right] & 0xFFFF);
+            int vertical = (data[indexUp + x] & 0xFFFF) + (data[indexDown + x] & 0xFFFF);
+
+            if (greenEven == (x % 2 == 0)) {
+                same.data[indexSame + x] = (short)((horizontal + 1) >> 1);
+                green.data[indexGreen + x] = (short)center;
+                other.data[indexOther + x] = (short)((vertical + 1) >> 1);
+            } else {
+                int diagonal = (data[indexUp + left] & 0xFFFF) + (data[indexUp + right] & 0xFFFF) +
+                        (data[indexDown + left] & 0xFFFF) + (data[indexDown + right] & 0xFFFF);
+                same.data[indexSame + x] = (short)center;
+                green.data[indexGreen + x] = (short)((horizontal + vertical + 2) >> 2);
+                other.data[indexOther + x] = (short)((diagonal + 2) >> 2);
+            }
+        }
+    }
+
+    private static void checkBayerShape( int width, int height ) {
+        if (width < 2 || height < 2)
+            throw new IllegalArgumentException("Bayer image must be at least 2x2");
+    }
+
+    private static int clampU8( int value ) {
+        return Math.max(0, Math.min(value, 255));
+    }
 }
@@ -0,0 +1,182 @@
+package benchmark;
+
+import boofcv.struct.border.BorderType;
+import boofcv.struct.convolve.Kernel1D_F32;
+import boofcv.struct.image.GrayF32;
+import boofcv.struct.image.GrayU16;
+import boofcv.struct.image.GrayU8;
+
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Concurrent versions of the vectorized functions in {@link ImageProcessing}. The image is split into bands of
+ * rows and each band is processed in its own task with the single threaded code applied to a sub-image.
+ * Operations which read rows above or below the output row are given a band of input which includes those rows.
+ * Each thread has its own {@link Workspace}.
+ *
+ * @author Peter Abeles
+ */
+public class ImageProcessing_MT {
+    /**
+     * Minimum number of pixels in a band before it's worth creating a task for it. Cheap operations like
+     * threshold are limited by memory and the cost of synchronizing threads dominates on small images.
+     */
+    static final int MIN_PIXELS = 20_000;
+
+    /** Workspace for each thread. Threads in a ForkJoinPool live for a long time so these are reused */
+    private static final ThreadLocal<Workspace> WORKSPACE = ThreadLocal.withInitial(Workspace::new);
+
+    public static void horizontal_vector(Kernel1D_F32 kernel, GrayF32 image, GrayF32 dest, ForkJoinPool pool) {
+        Concurrency.loopBlocks(pool, 0, image.height, minRows(image.width), (y0, y1) ->
+                ImageProcessing.horizontal_vector(kernel, rows(image, y0, y1), rows(dest, y0, y1)));
+    }
+
+    public static void horizontal_vector_v2(Kernel1D_F32 kernel, GrayF32 image, GrayF32 dest, ForkJoinPool pool) {
+        Concurrency.loopBlocks(pool, 0, image.height, minRows(image.width), (y0, y1) ->
+                ImageProcessing.horizontal_vector_v2(kernel, rows(image, y0, y1), rows(dest, y0, y1)));
+    }
+
+    public static void horizontal_vector_border(Kernel1D_F32 kernel, GrayF32 image, GrayF32 dest,
+                                                BorderType border, ForkJoinPool pool) {
+        Concurrency.loopBlocks(pool, 0, image.height, minRows(image.width), (y0, y1) ->
+                ImageProcessing.horizontal_vector_border(kernel, rows(image, y0, y1), rows(dest, y0, y1),
+                        border, WORKSPACE.get()));
+    }
+
+    /**
+     * Each band reads kernel.width-1 rows past its end
+     */
+    public static void vertical_vector(Kernel1D_F32 kernel, GrayF32 image, GrayF32 dest, ForkJoinPool pool) {
+        final int halo = kernel.getWidth() - 1;
+        Concurrency.loopBlocks(pool, 0, image.height - halo, minRows(image.width), (y0, y1) ->
+                ImageProcessing.vertical_vector(kernel, rows(image, y0, y1 + halo), rows(dest, y0, y1 + halo)));
+    }
+
+    public static void vertical_vector_border(Kernel1D_F32 kernel, GrayF32 image, GrayF32 dest,
+                                              BorderType border, ForkJoinPool pool) {
+        Concurrency.loopBlocks(pool, 0, image.height, minRows(image.width), (y0, y1) ->
+                ImageProcessing.vertical_vector_border(kernel, image, dest, border, y0, y1));
+    }
+
+    public static void convolveSeparable_vector(Kernel1D_F32 horizontal, Kernel1D_F32 vertical,
+                                                GrayF32 src, GrayF32 dst, ForkJoinPool pool) {
+        final int halo = vertical.getWidth() - 1;
+        Concurrency.loopBlocks(pool, 0, src.height - halo, minRows(src.width), (y0, y1) ->
+                ImageProcessing.convolveSeparable_vector(horizontal, vertical,
+                        rows(src, y0, y1 + halo), rows(dst, y0, y1 + halo), WORKSPACE.get()));
+    }
+
+    public static void mean_horizontal_vector(GrayU8 input, GrayU8 output, int offset, int length,
+                                              ForkJoinPool pool) {
+        Concurrency.loopBlocks(pool, 0, input.height, minRows(input.width), (y0, y1) ->
+                ImageProcessing.mean_horizontal_vector(rows(input, y0, y1), rows(output, y0, y1),
+                        offset, length, WORKSPACE.get()));
+    }
+
+    public static void mean_horizontal_vector_border(GrayU8 input, GrayU8 output, int offset, int length,
+                                                     BorderType border, ForkJoinPool pool) {
+        Concurrency.loopBlocks(pool, 0, input.height, minRows(input.width), (y0, y1) ->
+                ImageProcessing.mean_horizontal_vector_border(rows(input, y0, y1), rows(output, y0, y1),
+                        offset, length, border, WORKSPACE.get()));
+    }
+
+    public static void mean_vertical_vector(GrayU8 input, GrayU8 output, int offset, int length,
+                                            ForkJoinPool pool) {
+        final int halo = length - 1;
+        Concurrency.loopBlocks(pool, 0, input.height - halo, minRows(input.width), (y0, y1) ->
+                ImageProcessing.mean_vertical_vector(rows(input, y0, y1 + halo), rows(output, y0, y1 + halo),
+                        offset, length, WORKSPACE.get()));
+    }
+
+    /**
+     * Each band computes the horizontal mean for the extra rows its vertical pass needs. This duplicates
+     * a little bit of work but the bands don't need to wait on each other.
+     */
+    public static void mean_vector(GrayU8 input, GrayU8 output, int offset, int length, ForkJoinPool pool) {
+        final int halo = length - 1;
+        Concurrency.loopBlocks(pool, 0, input.height - halo, minRows(input.width), (y0, y1) ->
+                ImageProcessing.mean_vector(rows(input, y0, y1 + halo), rows(output, y0, y1 + halo),
+                        offset, length, WORKSPACE.get()));
+    }
+
+    public static GrayU8 threshold_vector_v1(GrayU8 input, GrayU8 output, int threshold, ForkJoinPool pool) {
+        Concurrency.loopBlocks(pool, 0, input.height, minRows(input.width), (y0, y1) ->
+                ImageProcessing.threshold_vector_v1(rows(input, y0, y1), rows(output, y0, y1),
+                        threshold, WORKSPACE.get()));
+        return output;
+    }
+
+    public static GrayU8 threshold_vector_v2(GrayU8 input, GrayU8 output, int threshold, ForkJoinPool pool) {
+        Concurrency.loopBlocks(pool, 0, input.height, minRows(input.width), (y0, y1) ->
+                ImageProcessing.threshold_vector_v2(rows(input, y0, y1), rows(output, y0, y1), threshold));
+        return output;
+    }
+
+    public static GrayU8 threshold_vector(GrayU8 input, GrayU8 output, int threshold, boolean down, int value,
+                                          ForkJoinPool pool) {
+        Concurrency.loopBlocks(pool, 0, input.height, minRows(input.width), (y0, y1) ->
+                ImageProcessing.threshold_vector(rows(input, y0, y1), rows(output, y0, y1), threshold, down, value));
+        return output;
+    }
+
+    public static GrayU8 thresholdRange_vector(GrayU8 input, GrayU8 output, int lower, int upper, int value,
+                                               ForkJoinPool pool) {
+        Concurrency.loopBlocks(pool, 0, input.height, minRows(input.width), (y0, y1) ->
+                ImageProcessing.thresholdRange_vector(rows(input, y0, y1), rows(output, y0, y1), lower, upper, value));
+        return output;
+    }
+
+    /**
+     * Each band computes its own histogram, which is then added to the output histogram
+     */
+    public static void histogram_vector(GrayU16 input, int minValue, int[] histogram, ForkJoinPool pool) {
+        Arrays.fill(histogram, 0);
+        Concurrency.loopBlocks(pool, 0, input.height, minRows(input.width), (y0, y1) -> {
+            Workspace work = WORKSPACE.get();
+            int[] band = work.bandHistogram(histogram.length);
+            ImageProcessing.histogram_vector(rows(input, y0, y1), minValue, band, work);
+            addHistogram(band, histogram);
+        });
+    }
+
+    public static void histogram_gather(GrayU16 input, int minValue, int[] histogram, ForkJoinPool pool) {
+        Arrays.fill(histogram, 0);
+        Concurrency.loopBlocks(pool, 0, input.height, minRows(input.width), (y0, y1) -> {
+            Workspace work = WORKSPACE.get();
+            int[] band = work.bandHistogram(histogram.length);
+            ImageProcessing.histogram_gather(rows(input, y0, y1), minValue, band, work);
+            addHistogram(band, histogram);
+        });
+    }
+
+    /**
+     * Adds a band's histogram to the total. Only one band can add at a time.
+     */
+    private static void addHistogram(int[] band, int[] histogram) {
+        synchronized (histogram) {
+            for (int i = 0; i < histogram.length; i++) {
+                histogram[i] += band[i];
+            }
+        }
+    }
+
+    private static GrayF32 rows(GrayF32 image, int y0, int y1) {
+        return image.subimage(0, y0, image.width, y1);
+    }
+
+    private static GrayU8 rows(GrayU8 image, int y0, int y1) {
+        return image.subimage(0, y0, image.width, y1);
+    }
+
+    private static GrayU16 rows(GrayU16 image, int y0, int y1) {
+        return image.subimage(0, y0, image.width, y1);
+    }
+
+    /**
+     * Number of rows needed to reach {@link #MIN_PIXELS}
+     */
+    static int minRows(int width) {
+        return Math.max(1, MIN_PIXELS/Math.max(1, width));
+    }
+}
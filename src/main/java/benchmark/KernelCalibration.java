@@ -0,0 +1,204 @@
+package benchmark;
+
+import boofcv.alg.filter.convolve.ConvolveImageNoBorder;
+import boofcv.alg.misc.ImageMiscOps;
+import boofcv.factory.filter.kernel.FactoryKernelGaussian;
+import boofcv.struct.convolve.Kernel1D_F32;
+import boofcv.struct.image.GrayF32;
+import boofcv.struct.image.GrayU8;
+import org.ejml.data.DMatrixRMaj;
+import org.ejml.dense.row.RandomMatrices_DDRM;
+
+import java.io.File;
+import java.util.Random;
+
+/**
+ * Finds the crossover points in {@link Kernels.Thresholds} by timing each variant over a range of sizes. This is
+ * a crude benchmark compared to JMH. Each measurement is the best of a few trials after a warmup, which is good
+ * enough to find where one variant starts to win and only takes a few seconds.
+ *
+ * @author Peter Abeles
+ */
+public class KernelCalibration {
+    // How long a single trial runs for
+    static final long TRIAL_NANO = 10_000_000L;
+    // Number of trials. The fastest is used.
+    static final int TRIALS = 3;
+    // Calls made to each variant with a tiny input before anything is timed. Interpreted vector code is
+    // several orders of magnitude slower, so it needs to be compiled by C2 first
+    static final int WARMUP_CALLS = 10_000;
+
+    static final int[] MATRIX_SIZES = {4, 8, 16, 32, 64, 128, 256, 384, 512};
+    static final int[] KERNEL_WIDTHS = {3, 5, 7, 9, 11, 13, 15, 21, 31};
+    static final int[] IMAGE_WIDTHS = {8, 16, 32, 64, 128, 256, 512, 1024};
+
+    /**
+     * Runs all the benchmarks and returns the crossover points
+     */
+    public static Kernels.Thresholds calibrate() {
+        var found = new Kernels.Thresholds();
+        var rand = new Random(234);
+        var work = new Workspace();
+
+        warmup(rand, work);
+
+        // Only calibrate the fixed size kernels if they are allowed to run
+        if (found.multFixedMaxSize > 0) {
+            boolean[] faster = new boolean[5];
+            for (int i = 0; i < faster.length; i++) {
+                int N = i + 2;
+                var A = RandomMatrices_DDRM.rectangle(N, N, -1, 1, rand);
+                var B = RandomMatrices_DDRM.rectangle(N, N, -1, 1, rand);
+                var C = new DMatrixRMaj(N, N);
+                faster[i] = time(() -> MatrixMultiplication.mult_fixed(A, B, C)) <
+                        time(() -> MatrixMultiplication.mult_ikj(A, B, C));
+            }
+            // Largest size where it's faster for it and every smaller size
+            int size = 0;
+            while (size < faster.length && faster[size])
+                size++;
+            found.multFixedMaxSize = size == 0 ? 0 : size + 1;
+        }
+
+        boolean[] vectorFaster = new boolean[MATRIX_SIZES.length];
+        boolean[] blockedFaster = new boolean[MATRIX_SIZES.length];
+        for (int i = 0; i < MATRIX_SIZES.length; i++) {
+            int N = MATRIX_SIZES[i];
+            var A = RandomMatrices_DDRM.rectangle(N, N, -1, 1, rand);
+            var B = RandomMatrices_DDRM.rectangle(N, N, -1, 1, rand);
+            var C = new DMatrixRMaj(N, N);
+            double timeScalar = time(() -> MatrixMultiplication.mult_ikj(A, B, C));
+            double timeVector = time(() -> MatrixMultiplication.mult_ikj_vector(A, B, C));
+            double timeBlocked = time(() -> MatrixMultiplication.mult_blocked_vector(A, B, C, work));
+            vectorFaster[i] = timeVector < timeScalar;
+            blockedFaster[i] = timeBlocked < timeVector;
+        }
+        found.multVectorMinCols = crossover(MATRIX_SIZES, vectorFaster);
+        found.multBlockedMinSize = crossover(MATRIX_SIZES, blockedFaster);
+
+        var src = new GrayF32(640, 480);
+        var dst = src.createSameShape();
+        ImageMiscOps.fillUniform(src, rand, 0, 255);
+        boolean[] horizontalFaster = new boolean[KERNEL_WIDTHS.length];
+        boolean[] verticalFaster = new boolean[KERNEL_WIDTHS.length];
+        for (int i = 0; i < KERNEL_WIDTHS.length; i++) {
+            Kernel1D_F32 kernel = FactoryKernelGaussian.gaussian1D(GrayF32.class, -1, KERNEL_WIDTHS[i]/2);
+            horizontalFaster[i] = time(() -> ImageProcessing.horizontal_vector_v2(kernel, src, dst)) <
+                    time(() -> ConvolveImageNoBorder.horizontal(kernel, src, dst));
+            verticalFaster[i] = time(() -> ImageProcessing.vertical_vector(kernel, src, dst)) <
+                    time(() -> ConvolveImageNoBorder.vertical(kernel, src, dst));
+        }
+        found.convolveHorizontalMinWidth = crossover(KERNEL_WIDTHS, horizontalFaster);
+        found.convolveVerticalMinWidth = crossover(KERNEL_WIDTHS, verticalFaster);
+
+        boolean[] meanFaster = new boolean[IMAGE_WIDTHS.length];
+        boolean[] thresholdFaster = new boolean[IMAGE_WIDTHS.length];
+        for (int i = 0; i < IMAGE_WIDTHS.length; i++) {
+            var input = new GrayU8(IMAGE_WIDTHS[i], 100);
+            var output = input.createSameShape();
+            ImageMiscOps.fillUniform(input, rand, 0, 255);
+            int length = Math.min(7, input.width);
+            double timeMean = time(() -> ImageProcessing.mean_horizontal(input, output, length/2, length));
+            meanFaster[i] = timeMean >
+                    time(() -> ImageProcessing.mean_horizontal_vector(input, output, length/2, length, work));
+            thresholdFaster[i] = time(() -> ImageProcessing.threshold_vector_v2(input, output, 100)) <
+                    time(() -> ImageProcessing.threshold(input, output, 100));
+        }
+        found.meanVectorMinWidth = crossover(IMAGE_WIDTHS, meanFaster);
+        found.thresholdVectorMinWidth = crossover(IMAGE_WIDTHS, thresholdFaster);
+
+        return found;
+    }
+
+    /**
+     * Runs every variant on a tiny input until the JIT has compiled it. If a variant is timed before then
+     * it will be much slower than it really is.
+     */
+    static void warmup( Random rand, Workspace work ) {
+        var A = RandomMatrices_DDRM.rectangle(8, 8, -1, 1, rand);
+        var B = RandomMatrices_DDRM.rectangle(8, 8, -1, 1, rand);
+        var C = new DMatrixRMaj(8, 8);
+        var src = new GrayF32(64, 8);
+        var dst = src.createSameShape();
+        var input = new GrayU8(64, 8);
+        var output = input.createSameShape();
+        Kernel1D_F32 kernel = FactoryKernelGaussian.gaussian1D(GrayF32.class, -1, 2);
+
+        for (int i = 0; i < WARMUP_CALLS; i++) {
+            MatrixMultiplication.mult_ikj(A, B, C);
+            MatrixMultiplication.mult_ikj_vector(A, B, C);
+            MatrixMultiplication.mult_blocked_vector(A, B, C, work);
+            ImageProcessing.horizontal_vector_v2(kernel, src, dst);
+            ConvolveImageNoBorder.horizontal(kernel, src, dst);
+            ImageProcessing.vertical_vector(kernel, src, dst);
+            ConvolveImageNoBorder.vertical(kernel, src, dst);
+            ImageProcessing.mean_horizontal(input, output, 2, 5);
+            ImageProcessing.mean_horizontal_vector(input, output, 2, 5, work);
+            ImageProcessing.threshold(input, output, 100);
+            ImageProcessing.threshold_vector_v2(input, output, 100);
+        }
+    }
+
+    /**
+     * Returns the smallest size where the variant is faster at that size and every larger size. Noise can make
+     * a slower variant look faster at one size, this ignores those. If it's never faster then
+     * {@link Integer#MAX_VALUE} is returned.
+     */
+    static int crossover( int[] sizes, boolean[] faster ) {
+        int i = sizes.length;
+        while (i > 0 && faster[i - 1])
+            i--;
+        if (i == sizes.length)
+            return Integer.MAX_VALUE;
+        return i == 0 ? 0 : sizes[i];
+    }
+
+    /**
+     * Average time in nanoseconds for a single call. The best of several trials is returned.
+     */
+    static double time( Runnable operation ) {
+        // Warm up so that it has a chance to be compiled
+        runFor(operation, TRIAL_NANO);
+
+        double best = Double.MAX_VALUE;
+        for (int trial = 0; trial < TRIALS; trial++) {
+            best = Math.min(best, runFor(operation, TRIAL_NANO));
+        }
+        return best;
+    }
+
+    /**
+     * Calls the operation until the time has elapsed
+     *
+     * @return Average time per call
+     */
+    private static double runFor( Runnable operation, long nano ) {
+        long start = System.nanoTime();
+        long elapsed;
+        int calls = 0;
+        do {
+            operation.run();
+            calls++;
+            elapsed = System.nanoTime() - start;
+        } while (elapsed < nano);
+        return elapsed/(double)calls;
+    }
+
+    public static void main( String[] args ) {
+        var file = new File(args.length > 0 ? args[0] : "kernel_thresholds.properties");
+        if (file.exists() && !file.delete())
+            throw new RuntimeException("Can't delete " + file.getPath());
+
+        long start = System.currentTimeMillis();
+        Kernels.Thresholds found = Kernels.initialize(file, true);
+        System.out.println("Calibration took " + (System.currentTimeMillis() - start) + " ms");
+        System.out.println("  multFixedMaxSize           = " + found.multFixedMaxSize);
+        System.out.println("  multVectorMinCols          = " + found.multVectorMinCols);
+        System.out.println("  multBlockedMinSize         = " + found.multBlockedMinSize);
+        System.out.println("  convolveHorizontalMinWidth = " + found.convolveHorizontalMinWidth);
+        System.out.println("  convolveVerticalMinWidth   = " + found.convolveVerticalMinWidth);
+        System.out.println("  meanVectorMinWidth         = " + found.meanVectorMinWidth);
+        System.out.println("  thresholdVectorMinWidth    = " + found.thresholdVectorMinWidth);
+        System.out.println("Saved to " + file.getPath());
+    }
+}
@@ -0,0 +1,236 @@
+package benchmark;
+
+import boofcv.alg.filter.convolve.ConvolveImageNoBorder;
+import boofcv.struct.convolve.Kernel1D_F32;
+import boofcv.struct.image.GrayF32;
+import boofcv.struct.image.GrayI8;
+import boofcv.struct.image.GrayU8;
+import org.ejml.data.DMatrix1Row;
+
+import java.io.File;
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.util.Properties;
+
+/**
+ * Calls the fastest variant of an operation in {@link MatrixMultiplication} or {@link ImageProcessing}. Which one
+ * is fastest depends on the size of the problem. Vectors have overhead which isn't paid back on small
+ * matrices, and for small kernels BoofCV's unrolled convolution beats the vector code. The crossover points are
+ * stored in {@link Thresholds}. The defaults are rough guesses scaled by the vector length, so
+ * {@link KernelCalibration} should be used to measure them on the host the code runs on.
+ *
+ * @author Peter Abeles
+ */
+public class Kernels {
+    /** Crossover points used to select a variant. Replace it with calibrated values. */
+    public static volatile Thresholds thresholds = new Thresholds();
+
+    /**
+     * Loads thresholds from the file if it was calibrated on a matching host. If not, and calibrate is true,
+     * then short benchmarks are run and the results are saved to the file. Intended to be called at startup.
+     *
+     * @return The thresholds which are now in use
+     */
+    public static Thresholds initialize( File file, boolean calibrate ) {
+        var found = new Thresholds();
+        try {
+            if (file.exists() && found.load(file)) {
+                thresholds = found;
+                return found;
+            }
+        } catch (IOException e) {
+            System.err.println("Failed to read " + file.getPath() + ". " + e.getMessage());
+        }
+
+        if (!calibrate)
+            return thresholds;
+
+        found = KernelCalibration.calibrate();
+        try {
+            found.save(file);
+        } catch (IOException e) {
+            System.err.println("Failed to save " + file.getPath() + ". " + e.getMessage());
+        }
+        thresholds = found;
+        return found;
+    }
+
+    /**
+     * Matrix multiplication, C = A*B
+     */
+    public static void mult( DMatrix1Row A, DMatrix1Row B, DMatrix1Row C, Workspace work ) {
+        Thresholds t = thresholds;
+        int size = Math.min(A.numRows, Math.min(A.numCols, B.numCols));
+
+        if (A.numRows == A.numCols && A.numCols == B.numCols && size <= t.multFixedMaxSize) {
+            MatrixMultiplication.mult_fixed(A, B, C);
+        } else if (B.numCols < t.multVectorMinCols) {
+            MatrixMultiplication.mult_ikj(A, B, C);
+        } else if (size < t.multBlockedMinSize) {
+            MatrixMultiplication.mult_ikj_vector(A, B, C);
+        } else {
+            MatrixMultiplication.mult_blocked_vector(A, B, C, work);
+        }
+    }
+
+    /**
+     * Horizontal convolution which skips the image border
+     */
+    public static void convolveHorizontal( Kernel1D_F32 kernel, GrayF32 image, GrayF32 dest ) {
+        if (kernel.getWidth() < thresholds.convolveHorizontalMinWidth) {
+            ConvolveImageNoBorder.horizontal(kernel, image, dest);
+        } else {
+            ImageProcessing.horizontal_vector_v2(kernel, image, dest);
+        }
+    }
+
+    /**
+     * Vertical convolution which skips the image border
+     */
+    public static void convolveVertical( Kernel1D_F32 kernel, GrayF32 image, GrayF32 dest ) {
+        if (kernel.getWidth() < thresholds.convolveVerticalMinWidth) {
+            ConvolveImageNoBorder.vertical(kernel, image, dest);
+        } else {
+            ImageProcessing.vertical_vector(kernel, image, dest);
+        }
+    }
+
+    /**
+     * Horizontal mean which skips the image border
+     */
+    public static void meanHorizontal( GrayU8 input, GrayI8 output, int offset, int length, Workspace work ) {
+        if (input.width < thresholds.meanVectorMinWidth || !ImageProcessing.isMeanVectorSupported(length)) {
+            ImageProcessing.mean_horizontal(input, output, offset, length);
+        } else {
+            ImageProcessing.mean_horizontal_vector(input, output, offset, length, work);
+        }
+    }
+
+    /**
+     * Sets pixels which are &le; threshold to 1 and the rest to 0
+     */
+    public static GrayU8 threshold( GrayU8 input, GrayU8 output, int threshold ) {
+        if (input.width < thresholds.thresholdVectorMinWidth) {
+            return ImageProcessing.threshold(input, output, threshold);
+        } else {
+            return ImageProcessing.threshold_vector_v2(input, output, threshold);
+        }
+    }
+
+    /**
+     * Crossover points between variants. A variant is used once the size is at or above its threshold, so
+     * setting a threshold to {@link Integer#MAX_VALUE} disables the variant.
+     */
+    public static class Thresholds {
+        /** Square matrices up to this size use the fixed size kernels. 0 disables them. */
+        public int multFixedMaxSize;
+        /** Minimum columns in B for mult_ikj_vector to be used */
+        public int multVectorMinCols;
+        /** Minimum size of all the matrix dimensions for mult_blocked_vector to be used */
+        public int multBlockedMinSize;
+        /** Minimum kernel width for the vector horizontal convolution. Smaller kernels use BoofCV. */
+        public int convolveHorizontalMinWidth;
+        /** Minimum kernel width for the vector vertical convolution. Smaller kernels use BoofCV. */
+        public int convolveVerticalMinWidth;
+        /** Minimum image width for the vector horizontal mean */
+        public int meanVectorMinWidth;
+        /** Minimum image width for the vector threshold */
+        public int thresholdVectorMinWidth;
+
+        /**
+         * Initializes to the default values
+         */
+        public Thresholds() {
+            int doubles = MatrixMultiplication.SPECIES.length();
+            int bytes = ImageProcessing.U8.length();
+
+            // The fixed size kernels use 256-bit vectors. Mixing them with other shapes causes vectors to be boxed
+            multFixedMaxSize = MatrixMultiplication.FIXED_SUPPORTED ? 6 : 0;
+            multVectorMinCols = 4*doubles;
+            multBlockedMinSize = MatrixMultiplication.BLOCK_KC;
+            // BoofCV has unrolled code for kernels up to 11 wide
+            convolveHorizontalMinWidth = 13;
+            convolveVerticalMinWidth = 13;
+            meanVectorMinWidth = 4*ImageProcessing.U8_INTS.length();
+            thresholdVectorMinWidth = bytes;
+        }
+
+        public Thresholds setTo( Thresholds src ) {
+            multFixedMaxSize = src.multFixedMaxSize;
+            multVectorMinCols = src.multVectorMinCols;
+            multBlockedMinSize = src.multBlockedMinSize;
+            convolveHorizontalMinWidth = src.convolveHorizontalMinWidth;
+            convolveVerticalMinWidth = src.convolveVerticalMinWidth;
+            meanVectorMinWidth = src.meanVectorMinWidth;
+            thresholdVectorMinWidth = src.thresholdVectorMinWidth;
+            return this;
+        }
+
+        /**
+         * Saves the thresholds along with a description of the host they were measured on
+         */
+        public void save( File file ) throws IOException {
+            var p = new Properties();
+            host(p);
+            p.setProperty("multFixedMaxSize", "" + multFixedMaxSize);
+            p.setProperty("multVectorMinCols", "" + multVectorMinCols);
+            p.setProperty("multBlockedMinSize", "" + multBlockedMinSize);
+            p.setProperty("convolveHorizontalMinWidth", "" + convolveHorizontalMinWidth);
+            p.setProperty("convolveVerticalMinWidth", "" + convolveVerticalMinWidth);
+            p.setProperty("meanVectorMinWidth", "" + meanVectorMinWidth);
+            p.setProperty("thresholdVectorMinWidth", "" + thresholdVectorMinWidth);
+
+            try (Writer writer = new FileWriter(file)) {
+                p.store(writer, "Crossover points between scalar and vector code. Delete to re-calibrate.");
+            }
+        }
+
+        /**
+         * Loads thresholds which were saved by {@link #save}. If they were measured on a different host, e.g.
+         * the vector size or JVM changed, then nothing is modified.
+         *
+         * @return true if the thresholds were loaded
+         */
+        public boolean load( File file ) throws IOException {
+            var p = new Properties();
+            try (Reader reader = new FileReader(file)) {
+                p.load(reader);
+            }
+
+            var expected = new Properties();
+            host(expected);
+            for (String key : expected.stringPropertyNames()) {
+                if (!expected.getProperty(key).equals(p.getProperty(key)))
+                    return false;
+            }
+
+            try {
+                var found = new Thresholds();
+                found.multFixedMaxSize = Integer.parseInt(p.getProperty("multFixedMaxSize"));
+                found.multVectorMinCols = Integer.parseInt(p.getProperty("multVectorMinCols"));
+                found.multBlockedMinSize = Integer.parseInt(p.getProperty("multBlockedMinSize"));
+                found.convolveHorizontalMinWidth = Integer.parseInt(p.getProperty("convolveHorizontalMinWidth"));
+                found.convolveVerticalMinWidth = Integer.parseInt(p.getProperty("convolveVerticalMinWidth"));
+                found.meanVectorMinWidth = Integer.parseInt(p.getProperty("meanVectorMinWidth"));
+                found.thresholdVectorMinWidth = Integer.parseInt(p.getProperty("thresholdVectorMinWidth"));
+                setTo(found);
+            } catch (NumberFormatException e) {
+                throw new IOException("Bad value in " + file.getPath(), e);
+            }
+            return true;
+        }
+
+        /**
+         * Properties which need to match for saved thresholds to be valid
+         */
+        static void host( Properties p ) {
+            p.setProperty("host.arch", System.getProperty("os.arch"));
+            p.setProperty("host.processors", "" + Runtime.getRuntime().availableProcessors());
+            p.setProperty("host.vectorBits", "" + VectorShapes.SHAPE.vectorBitSize());
+            p.setProperty("host.java", System.getProperty("java.vm.version"));
+        }
+    }
+}
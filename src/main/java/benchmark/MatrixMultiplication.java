@@ -1,15 +1,55 @@
 package benchmark;
 
 import jdk.incubator.vector.DoubleVector;
+import jdk.incubator.vector.FloatVector;
+import jdk.incubator.vector.VectorMask;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorShape;
+import jdk.incubator.vector.VectorShuffle;
 import jdk.incubator.vector.VectorSpecies;
 import org.ejml.data.DMatrix1Row;
+import org.ejml.data.DSubmatrixD1;
+import org.ejml.data.FMatrix1Row;
 import org.ejml.data.ZMatrixRMaj;
 
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Arrays;
+
 /**
  * @author Peter Abeles
  */
 public class MatrixMultiplication {
-    static final VectorSpecies<Double> SPECIES = DoubleVector.SPECIES_PREFERRED;
+    static final VectorSpecies<Double> SPECIES = VectorSpecies.of(double.class, VectorShapes.SHAPE);
+    static final VectorSpecies<Float> F_SPECIES = VectorSpecies.of(float.class, VectorShapes.SHAPE);
+
+    // Block sizes used by mult_blocked_vector(). A packed KC x MC panel of A is intended to sit in L2 and
+    // a KC x NR sliver of B in L1. The micro kernel computes a MR x NR tile of C where NR is two vectors wide
+    static final int BLOCK_MC = 64;
+    static final int BLOCK_KC = 256;
+    static final int BLOCK_NC = 2048;
+    static final int MICRO_MR = 4;
+
+    // Number of matrices processed at once by multBatch()
+    static final int BATCH_BLOCK = 256;
+
+    // The fixed size kernels, e.g. mult4x4(), are all written for 256-bit vectors. They're only used when it's
+    // also the shape of SPECIES, since mixing shapes boxes vectors
+    static final VectorSpecies<Double> FIXED_SPECIES = DoubleVector.SPECIES_256;
+    static final boolean FIXED_SUPPORTED = SPECIES.vectorShape() == VectorShape.S_256_BIT;
+    static final VectorShuffle<Double> SHUFFLE_2X2_A0 = VectorShuffle.fromValues(FIXED_SPECIES, 0, 0, 2, 2);
+    static final VectorShuffle<Double> SHUFFLE_2X2_A1 = VectorShuffle.fromValues(FIXED_SPECIES, 1, 1, 3, 3);
+    static final VectorShuffle<Double> SHUFFLE_2X2_B0 = VectorShuffle.fromValues(FIXED_SPECIES, 0, 1, 0, 1);
+    static final VectorShuffle<Double> SHUFFLE_2X2_B1 = VectorShuffle.fromValues(FIXED_SPECIES, 2, 3, 2, 3);
+    static final VectorMask<Double> LAST_LANE_3X3 = VectorMask.fromValues(FIXED_SPECIES, false, false, false, true);
+
+    // Used by complex multiplication to swap the real and imaginary components and to flip the sign of the
+    // real lanes
+    static final VectorShuffle<Double> SWAP_PAIRS = VectorShuffle.fromOp(SPECIES, i -> i ^ 1);
+    static final VectorMask<Double> REAL_LANES = realLanes();
+
+    // Byte order of matrices which are stored in a ByteBuffer
+    static final ByteOrder ORDER = ByteOrder.nativeOrder();
 
     /**
      * Matrix multiplication with IKJ ordering from EJML. This is designed to minimize cache misses and is a
@@ -18,7 +58,13 @@ public class MatrixMultiplication {
      */
     public static void mult_ikj(DMatrix1Row A, DMatrix1Row B, DMatrix1Row C) {
         C.reshape(A.numRows, B.numCols);
+        mult_ikj(A, B, C, 0, A.numRows);
+    }
 
+    /**
+     * Computes rows [rowStart, rowEnd) of C. C must already have the correct shape.
+     */
+    static void mult_ikj(DMatrix1Row A, DMatrix1Row B, DMatrix1Row C, int rowStart, int rowEnd) {
         // Note to people looking at this code. It might look like there is a bunch of unnecessary hand optimizations.
         // You might be right, but this code goes back to probably Java 1.7 and when you're writing high
         // performance code that needs to be high performance on a wide range of platforms and JVM versions,
@@ -32,7 +78,7 @@ public class MatrixMultiplication {
 
         final int endOfKLoop = B.numRows * B.numCols;
 
-        for (int i = 0; i < A.numRows; i++) {
+        for (int i = rowStart; i < rowEnd; i++) {
             int indexCbase = i * C.numCols;
             int indexA = i * A.numCols;
 
@@ -90,8 +136,14 @@ public class MatrixMultiplication {
 
     public static void mult_ikj_vector(DMatrix1Row A, DMatrix1Row B, DMatrix1Row C) {
         C.reshape(A.numRows, B.numCols);
+        mult_ikj_vector(A, B, C, 0, A.numRows);
+    }
 
-        for (int i = 0; i < A.numRows; i++) {
+    /**
+     * Computes rows [rowStart, rowEnd) of C. C must already have the correct shape.
+     */
+    static void mult_ikj_vector(DMatrix1Row A, DMatrix1Row B, DMatrix1Row C, int rowStart, int rowEnd) {
+        for (int i = rowStart; i < rowEnd; i++) {
             int indexCbase = i * C.numCols;
             {
                 double valA = A.data[i * A.numCols];
@@ -124,17 +176,570 @@ public class MatrixMultiplication {
         }
     }
 
+    /**
+     * Same as {@link #mult_ikj_vector(DMatrix1Row, DMatrix1Row, DMatrix1Row)} but each matrix is a view into a
+     * larger matrix, e.g. a block of a partitioned matrix. The end of each row in C is written by scalar code
+     * since writing a full vector would modify elements which are outside of the view. Masked loads and stores
+     * would also work but are much slower on JDK 17.
+     */
+    public static void mult_ikj_vector(DSubmatrixD1 A, DSubmatrixD1 B, DSubmatrixD1 C) {
+        final int M = A.getRows();
+        final int K = A.getCols();
+        final int N = B.getCols();
+        if (B.getRows() != K || C.getRows() != M || C.getCols() != N)
+            throw new IllegalArgumentException("Incompatible matrix shapes");
+        if (K == 0) {
+            for (int i = 0; i < M; i++) {
+                int indexC = (C.row0 + i)*C.original.numCols + C.col0;
+                Arrays.fill(C.original.data, indexC, indexC + N, 0.0);
+            }
+            return;
+        }
+
+        final double[] dataA = A.original.data;
+        final double[] dataB = B.original.data;
+        final double[] dataC = C.original.data;
+        final int strideA = A.original.numCols;
+        final int strideB = B.original.numCols;
+        final int strideC = C.original.numCols;
+        final int bound = SPECIES.loopBound(N);
+
+        for (int i = 0; i < M; i++) {
+            final int indexA = (A.row0 + i)*strideA + A.col0;
+            final int indexC = (C.row0 + i)*strideC + C.col0;
+            {
+                double valA = dataA[indexA];
+                int indexB = B.row0*strideB + B.col0;
+                int j;
+                for (j = 0; j < bound; j += SPECIES.length()) {
+                    var vb = DoubleVector.fromArray(SPECIES, dataB, indexB + j);
+                    vb.mul(valA).intoArray(dataC, indexC + j);
+                }
+                for (; j < N; j++) {
+                    dataC[indexC + j] = valA*dataB[indexB + j];
+                }
+            }
+
+            for (int k = 1; k < K; k++) {
+                double valA = dataA[indexA + k];
+                int indexB = (B.row0 + k)*strideB + B.col0;
+
+                int j;
+                for (j = 0; j < bound; j += SPECIES.length()) {
+                    var vb = DoubleVector.fromArray(SPECIES, dataB, indexB + j);
+                    var vc = DoubleVector.fromArray(SPECIES, dataC, indexC + j);
+                    vc.add(vb.mul(valA)).intoArray(dataC, indexC + j);
+                }
+                for (; j < N; j++) {
+                    dataC[indexC + j] += valA*dataB[indexB + j];
+                }
+            }
+        }
+    }
+
+    /**
+     * Same as {@link #mult_ikj_vector(DMatrix1Row, DMatrix1Row, DMatrix1Row)} but the matrices are stored off
+     * heap. Vectors are loaded from and stored into the buffers directly. C must already have the correct shape.
+     */
+    public static void mult_ikj_vector(DMatrixDirect A, DMatrixDirect B, DMatrixDirect C) {
+        if (A.numCols != B.numRows || C.numRows != A.numRows || C.numCols != B.numCols)
+            throw new IllegalArgumentException("Incompatible matrix shapes");
+
+        final ByteBuffer dataA = A.data;
+        final ByteBuffer dataB = B.data;
+        final ByteBuffer dataC = C.data;
+        final int N = B.numCols;
+        final int bound = SPECIES.loopBound(N);
+
+        for (int i = 0; i < A.numRows; i++) {
+            // Index of the row in C, in bytes
+            final int indexCbase = i*N*Double.BYTES;
+            {
+                double valA = dataA.getDouble(i*A.numCols*Double.BYTES);
+                int j;
+                for (j = 0; j < bound; j += SPECIES.length()) {
+                    var vb = DoubleVector.fromByteBuffer(SPECIES, dataB, j*Double.BYTES, ORDER);
+                    vb.mul(valA).intoByteBuffer(dataC, indexCbase + j*Double.BYTES, ORDER);
+                }
+                for (; j < N; j++) {
+                    dataC.putDouble(indexCbase + j*Double.BYTES, valA*dataB.getDouble(j*Double.BYTES));
+                }
+            }
+
+            for (int k = 1; k < B.numRows; k++) {
+                final int indexB = k*N*Double.BYTES;
+
+                double valA = dataA.getDouble((i*A.numCols + k)*Double.BYTES);
+
+                int j;
+                for (j = 0; j < bound; j += SPECIES.length()) {
+                    int offsetC = indexCbase + j*Double.BYTES;
+                    var vb = DoubleVector.fromByteBuffer(SPECIES, dataB, indexB + j*Double.BYTES, ORDER);
+                    var vc = DoubleVector.fromByteBuffer(SPECIES, dataC, offsetC, ORDER);
+                    vc.add(vb.mul(valA)).intoByteBuffer(dataC, offsetC, ORDER);
+                }
+
+                for (; j < N; j++) {
+                    int offsetC = indexCbase + j*Double.BYTES;
+                    dataC.putDouble(offsetC, dataC.getDouble(offsetC) + valA*dataB.getDouble(indexB + j*Double.BYTES));
+                }
+            }
+        }
+    }
+
+    /**
+     * Cache blocked matrix multiplication, similar in spirit to GotoBLAS. Panels of A and B are packed into
+     * contiguous arrays so that the micro kernel reads memory sequentially, then the micro kernel keeps a
+     * {@link #MICRO_MR} by 2*SPECIES.length() tile of C in registers and accumulates into it using fma. Unlike
+     * {@link #mult_ikj_vector} a row of C is only read and written once for every {@link #BLOCK_KC} values of k.
+     */
+    public static void mult_blocked_vector(DMatrix1Row A, DMatrix1Row B, DMatrix1Row C) {
+        mult_blocked_vector(A, B, C, new Workspace());
+    }
+
+    /**
+     * Same as {@link #mult_blocked_vector(DMatrix1Row, DMatrix1Row, DMatrix1Row)} but the packed panels are
+     * stored in the workspace, so nothing is allocated once the workspace has grown to the needed size.
+     */
+    public static void mult_blocked_vector(DMatrix1Row A, DMatrix1Row B, DMatrix1Row C, Workspace work) {
+        C.reshape(A.numRows, B.numCols);
+        mult_blocked_vector(A, B, C, 0, A.numRows, work);
+    }
+
+    /**
+     * Computes C = C + A*B using {@link #mult_blocked_vector(DMatrix1Row, DMatrix1Row, DMatrix1Row)}.
+     * C must already have the correct shape.
+     */
+    public static void multAdd_blocked_vector(DMatrix1Row A, DMatrix1Row B, DMatrix1Row C, Workspace work) {
+        mult_blocked_vector(A, B, C, 0, A.numRows, true, work);
+    }
+
+    /**
+     * Computes rows [rowStart, rowEnd) of C. C must already have the correct shape.
+     */
+    static void mult_blocked_vector(DMatrix1Row A, DMatrix1Row B, DMatrix1Row C, int rowStart, int rowEnd,
+                                    Workspace work) {
+        mult_blocked_vector(A, B, C, rowStart, rowEnd, false, work);
+    }
+
+    /**
+     * Computes rows [rowStart, rowEnd) of C. If add is true then the product is added to C.
+     */
+    static void mult_blocked_vector(DMatrix1Row A, DMatrix1Row B, DMatrix1Row C, int rowStart, int rowEnd,
+                                    boolean add, Workspace work) {
+        final int M = rowEnd - rowStart;
+        final int N = B.numCols;
+        final int K = A.numCols;
+
+        if (K == 0) {
+            if (!add)
+                Arrays.fill(C.data, rowStart*N, rowEnd*N, 0.0);
+            return;
+        }
+
+        final int NR = 2*SPECIES.length();
+        final double[] packA = work.packA(roundUp(Math.min(M, BLOCK_MC), MICRO_MR)*Math.min(K, BLOCK_KC));
+        final double[] packB = work.packB(roundUp(Math.min(N, BLOCK_NC), NR)*Math.min(K, BLOCK_KC));
+        final double[] edgeTile = work.tile(MICRO_MR*NR);
+
+        for (int jc = 0; jc < N; jc += BLOCK_NC) {
+            final int nc = Math.min(BLOCK_NC, N - jc);
+
+            for (int pc = 0; pc < K; pc += BLOCK_KC) {
+                final int kc = Math.min(BLOCK_KC, K - pc);
+                // The first block of k overwrites C, which avoids needing to zero C first
+                final boolean first = !add && pc == 0;
+
+                packB(B, pc, kc, jc, nc, NR, packB);
+
+                for (int ic = rowStart; ic < rowEnd; ic += BLOCK_MC) {
+                    final int mc = Math.min(BLOCK_MC, rowEnd - ic);
+
+                    packA(A, ic, mc, pc, kc, packA);
+
+                    for (int jr = 0; jr < nc; jr += NR) {
+                        final int nr = Math.min(NR, nc - jr);
+                        final int offsetB = jr*kc;
+
+                        for (int ir = 0; ir < mc; ir += MICRO_MR) {
+                            final int mr = Math.min(MICRO_MR, mc - ir);
+                            final int indexC = (ic + ir)*N + jc + jr;
+
+                            if (mr == MICRO_MR && nr == NR) {
+                                microKernel(packA, ir*kc, packB, offsetB, kc, C.data, indexC, N, first);
+                            } else {
+                                // The tile extends past the edge of C. Compute the whole tile into scratch
+                                // space and copy the part which exists. Masked stores were tried here and were
+                                // several times slower with 512-bit vectors
+                                microKernel(packA, ir*kc, packB, offsetB, kc, edgeTile, 0, NR, true);
+                                copyEdgeTile(edgeTile, NR, C.data, indexC, N, mr, nr, first);
+                            }
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Copies the mc x kc block of A starting at (row0, col0) into slivers that are MICRO_MR rows tall. Inside
+     * a sliver the values are stored column by column so the micro kernel can walk it sequentially. Rows past
+     * the end of A are filled with zero.
+     */
+    static void packA(DMatrix1Row A, int row0, int mc, int col0, int kc, double[] packA) {
+        int index = 0;
+        for (int ir = 0; ir < mc; ir += MICRO_MR) {
+            final int mr = Math.min(MICRO_MR, mc - ir);
+            for (int k = 0; k < kc; k++) {
+                int indexA = (row0 + ir)*A.numCols + col0 + k;
+                int r = 0;
+                for (; r < mr; r++, indexA += A.numCols) {
+                    packA[index++] = A.data[indexA];
+                }
+                for (; r < MICRO_MR; r++) {
+                    packA[index++] = 0.0;
+                }
+            }
+        }
+    }
+
+    /**
+     * Copies the kc x nc block of B starting at (row0, col0) into slivers that are NR columns wide. Inside
+     * a sliver the values are stored row by row. Columns past the end of B are filled with zero.
+     */
+    static void packB(DMatrix1Row B, int row0, int kc, int col0, int nc, int NR, double[] packB) {
+        int index = 0;
+        for (int jr = 0; jr < nc; jr += NR) {
+            final int nr = Math.min(NR, nc - jr);
+            for (int k = 0; k < kc; k++) {
+                int indexB = (row0 + k)*B.numCols + col0 + jr;
+                System.arraycopy(B.data, indexB, packB, index, nr);
+                if (nr < NR)
+                    Arrays.fill(packB, index + nr, index + NR, 0.0);
+                index += NR;
+            }
+        }
+    }
+
+    /**
+     * Computes a MICRO_MR x NR tile of C from packed slivers of A and B. Accumulators are held in registers
+     * and all MICRO_MR rows of the tile are written to the output.
+     *
+     * @param output Array the tile is written to. Either C.data or scratch space for a tile along the edge
+     * @param stride Number of elements between rows in output
+     * @param first If true the tile is overwritten, otherwise the results are added to it.
+     */
+    static void microKernel(double[] packA, int indexA, double[] packB, int indexB, int kc,
+                            double[] output, int indexC, int stride, boolean first) {
+        final int L = SPECIES.length();
+
+        var c00 = DoubleVector.zero(SPECIES);
+        var c01 = DoubleVector.zero(SPECIES);
+        var c10 = DoubleVector.zero(SPECIES);
+        var c11 = DoubleVector.zero(SPECIES);
+        var c20 = DoubleVector.zero(SPECIES);
+        var c21 = DoubleVector.zero(SPECIES);
+        var c30 = DoubleVector.zero(SPECIES);
+        var c31 = DoubleVector.zero(SPECIES);
+
+        for (int k = 0; k < kc; k++, indexA += MICRO_MR, indexB += 2*L) {
+            var b0 = DoubleVector.fromArray(SPECIES, packB, indexB);
+            var b1 = DoubleVector.fromArray(SPECIES, packB, indexB + L);
+
+            var a = DoubleVector.broadcast(SPECIES, packA[indexA]);
+            c00 = a.fma(b0, c00);
+            c01 = a.fma(b1, c01);
+            a = DoubleVector.broadcast(SPECIES, packA[indexA + 1]);
+            c10 = a.fma(b0, c10);
+            c11 = a.fma(b1, c11);
+            a = DoubleVector.broadcast(SPECIES, packA[indexA + 2]);
+            c20 = a.fma(b0, c20);
+            c21 = a.fma(b1, c21);
+            a = DoubleVector.broadcast(SPECIES, packA[indexA + 3]);
+            c30 = a.fma(b0, c30);
+            c31 = a.fma(b1, c31);
+        }
+
+        storeRow(c00, c01, output, indexC, first);
+        storeRow(c10, c11, output, indexC + stride, first);
+        storeRow(c20, c21, output, indexC + 2*stride, first);
+        storeRow(c30, c31, output, indexC + 3*stride, first);
+    }
+
+    private static void storeRow(DoubleVector v0, DoubleVector v1, double[] data, int index, boolean first) {
+        final int L = SPECIES.length();
+        if (!first) {
+            v0 = v0.add(DoubleVector.fromArray(SPECIES, data, index));
+            v1 = v1.add(DoubleVector.fromArray(SPECIES, data, index + L));
+        }
+        v0.intoArray(data, index);
+        v1.intoArray(data, index + L);
+    }
+
+    private static void copyEdgeTile(double[] tile, int NR, double[] output, int indexC, int stride,
+                                     int mr, int nr, boolean first) {
+        for (int r = 0; r < mr; r++, indexC += stride) {
+            int indexTile = r*NR;
+            if (first) {
+                System.arraycopy(tile, indexTile, output, indexC, nr);
+            } else {
+                for (int j = 0; j < nr; j++) {
+                    output[indexC + j] += tile[indexTile + j];
+                }
+            }
+        }
+    }
+
+    static int roundUp(int value, int multiple) {
+        return ((value + multiple - 1)/multiple)*multiple;
+    }
+
+    /**
+     * Multiplies square matrices with a hand written kernel when they are 2x2 to 6x6 and falls back on
+     * {@link #mult_ikj_vector} otherwise. The fixed size kernels only use 256-bit vectors, so they are only used
+     * when the selected shape, see {@link VectorShapes}, is 256-bit. On hosts without 256-bit vectors they would
+     * be emulated, and on AVX-512 hosts they would be mixed with 512-bit code.
+     *
+     * NOTE: All kernels use the same shape on purpose. When 128-bit and 256-bit vectors were mixed, e.g. a
+     *       3x3 kernel with 128-bit vectors and the 4x4 kernel, the JIT would start boxing vectors once both
+     *       had been called and each kernel became about 10x slower. The same thing happens to any vector code
+     *       when different shapes are used in one JVM, e.g. these kernels and code using 512-bit SPECIES on an
+     *       AVX-512 host. Broadcasting A explicitly and calling fma() is also intentional,
+     *       lanewise(FMA, double, Vector) caused similar problems in larger kernels.
+     */
+    public static void mult_fixed(DMatrix1Row A, DMatrix1Row B, DMatrix1Row C) {
+        final int N = A.numRows;
+        if (!FIXED_SUPPORTED || A.numCols != N || B.numRows != N || B.numCols != N) {
+            mult_ikj_vector(A, B, C);
+            return;
+        }
+
+        switch (N) {
+            case 2 -> mult2x2(A, B, C);
+            case 3 -> mult3x3(A, B, C);
+            case 4 -> mult4x4(A, B, C);
+            case 5 -> mult5x5(A, B, C);
+            case 6 -> mult6x6(A, B, C);
+            default -> mult_ikj_vector(A, B, C);
+        }
+    }
+
+    /**
+     * The entire matrix fits inside a single vector. Rows of A and B are duplicated using shuffles so that all
+     * of C is computed with one multiply and one fma.
+     */
+    public static void mult2x2(DMatrix1Row A, DMatrix1Row B, DMatrix1Row C) {
+        C.reshape(2, 2);
+        final VectorSpecies<Double> S = FIXED_SPECIES;
+
+        var a = DoubleVector.fromArray(S, A.data, 0);
+        var b = DoubleVector.fromArray(S, B.data, 0);
+
+        // [a00 a00 a10 a10]*[b00 b01 b00 b01] + [a01 a01 a11 a11]*[b10 b11 b10 b11]
+        var c = a.rearrange(SHUFFLE_2X2_A0).mul(b.rearrange(SHUFFLE_2X2_B0));
+        c = a.rearrange(SHUFFLE_2X2_A1).fma(b.rearrange(SHUFFLE_2X2_B1), c);
+        c.intoArray(C.data, 0);
+    }
+
+    /**
+     * Each row of B is loaded into a vector with an unused 4th lane. The last row can't be read directly since
+     * it would go past the end of the array, so it's read one element early and shifted. When writing, the
+     * last row is written first and the extra lane of the middle row is filled in with the first element of
+     * the last row, so that overlapping writes don't corrupt the results.
+     */
+    public static void mult3x3(DMatrix1Row A, DMatrix1Row B, DMatrix1Row C) {
+        C.reshape(3, 3);
+        final VectorSpecies<Double> S = FIXED_SPECIES;
+        final double[] a = A.data;
+        final double[] b = B.data;
+
+        var b0 = DoubleVector.fromArray(S, b, 0);
+        var b1 = DoubleVector.fromArray(S, b, 3);
+        var b2 = DoubleVector.fromArray(S, b, 5).slice(1);
+
+        var c0 = b0.mul(DoubleVector.broadcast(S, a[0]));
+        c0 = b1.fma(DoubleVector.broadcast(S, a[1]), c0);
+        c0 = b2.fma(DoubleVector.broadcast(S, a[2]), c0);
+
+        var c1 = b0.mul(DoubleVector.broadcast(S, a[3]));
+        c1 = b1.fma(DoubleVector.broadcast(S, a[4]), c1);
+        c1 = b2.fma(DoubleVector.broadcast(S, a[5]), c1);
+
+        var c2 = b0.mul(DoubleVector.broadcast(S, a[6]));
+        c2 = b1.fma(DoubleVector.broadcast(S, a[7]), c2);
+        c2 = b2.fma(DoubleVector.broadcast(S, a[8]), c2);
+
+        c2.unslice(1).intoArray(C.data, 5);
+        c0.intoArray(C.data, 0);
+        c1.blend(c2.unslice(3), LAST_LANE_3X3).intoArray(C.data, 3);
+    }
+
+    /**
+     * Each row of B is exactly one vector.
+     */
+    public static void mult4x4(DMatrix1Row A, DMatrix1Row B, DMatrix1Row C) {
+        C.reshape(4, 4);
+        final VectorSpecies<Double> S = FIXED_SPECIES;
+        final double[] a = A.data;
+        final double[] b = B.data;
+
+        var b0 = DoubleVector.fromArray(S, b, 0);
+        var b1 = DoubleVector.fromArray(S, b, 4);
+        var b2 = DoubleVector.fromArray(S, b, 8);
+        var b3 = DoubleVector.fromArray(S, b, 12);
+
+        for (int i = 0; i < 16; i += 4) {
+            var c = b0.mul(DoubleVector.broadcast(S, a[i]));
+            c = b1.fma(DoubleVector.broadcast(S, a[i + 1]), c);
+            c = b2.fma(DoubleVector.broadcast(S, a[i + 2]), c);
+            c = b3.fma(DoubleVector.broadcast(S, a[i + 3]), c);
+            c.intoArray(C.data, i);
+        }
+    }
+
+    /**
+     * The first four columns of each row are a vector and the last column is computed with scalar math.
+     */
+    public static void mult5x5(DMatrix1Row A, DMatrix1Row B, DMatrix1Row C) {
+        C.reshape(5, 5);
+        final VectorSpecies<Double> S = FIXED_SPECIES;
+        final double[] a = A.data;
+        final double[] b = B.data;
+
+        var b0 = DoubleVector.fromArray(S, b, 0);
+        var b1 = DoubleVector.fromArray(S, b, 5);
+        var b2 = DoubleVector.fromArray(S, b, 10);
+        var b3 = DoubleVector.fromArray(S, b, 15);
+        var b4 = DoubleVector.fromArray(S, b, 20);
+
+        final double b04 = b[4], b14 = b[9], b24 = b[14], b34 = b[19], b44 = b[24];
+
+        for (int i = 0; i < 25; i += 5) {
+            final double a0 = a[i], a1 = a[i + 1], a2 = a[i + 2], a3 = a[i + 3], a4 = a[i + 4];
+
+            var c = b0.mul(DoubleVector.broadcast(S, a0));
+            c = b1.fma(DoubleVector.broadcast(S, a1), c);
+            c = b2.fma(DoubleVector.broadcast(S, a2), c);
+            c = b3.fma(DoubleVector.broadcast(S, a3), c);
+            c = b4.fma(DoubleVector.broadcast(S, a4), c);
+            c.intoArray(C.data, i);
+            C.data[i + 4] = a0*b04 + a1*b14 + a2*b24 + a3*b34 + a4*b44;
+        }
+    }
+
+    /**
+     * Each row is covered by two overlapping vectors, columns 0 to 3 and 2 to 5. The two sets of columns are
+     * computed in separate passes to reduce the number of live vectors.
+     */
+    public static void mult6x6(DMatrix1Row A, DMatrix1Row B, DMatrix1Row C) {
+        C.reshape(6, 6);
+        final VectorSpecies<Double> S = FIXED_SPECIES;
+        final double[] a = A.data;
+        final double[] b = B.data;
+
+        for (int col = 0; col <= 2; col += 2) {
+            var b0 = DoubleVector.fromArray(S, b, col);
+            var b1 = DoubleVector.fromArray(S, b, col + 6);
+            var b2 = DoubleVector.fromArray(S, b, col + 12);
+            var b3 = DoubleVector.fromArray(S, b, col + 18);
+            var b4 = DoubleVector.fromArray(S, b, col + 24);
+            var b5 = DoubleVector.fromArray(S, b, col + 30);
+
+            for (int i = 0; i < 36; i += 6) {
+                var c = b0.mul(DoubleVector.broadcast(S, a[i]));
+                c = b1.fma(DoubleVector.broadcast(S, a[i + 1]), c);
+                c = b2.fma(DoubleVector.broadcast(S, a[i + 2]), c);
+                c = b3.fma(DoubleVector.broadcast(S, a[i + 3]), c);
+                c = b4.fma(DoubleVector.broadcast(S, a[i + 4]), c);
+                c = b5.fma(DoubleVector.broadcast(S, a[i + 5]), c);
+                c.intoArray(C.data, i + col);
+            }
+        }
+    }
+
+    /**
+     * Multiplies every matrix in batch A by the matrix in batch B with the same index, C[m] = A[m]*B[m]. Each
+     * lane in a vector handles a different matrix, so unlike {@link #mult_fixed} all lanes are used no matter
+     * how small the matrices are. Matrices are processed in blocks of {@link #BATCH_BLOCK} so that the
+     * part of A, B, and C which is being worked on stays inside the cache.
+     */
+    public static void multBatch(DMatrixBatch A, DMatrixBatch B, DMatrixBatch C) {
+        if (A.numCols != B.numRows || A.batchSize != B.batchSize)
+            throw new IllegalArgumentException("Incompatible batches");
+        C.reshape(A.numRows, B.numCols, A.batchSize);
+
+        final int L = SPECIES.length();
+        final int inner = A.numCols;
+        // All the batches have the same stride since they have the same batch size
+        final int stride = A.stride;
+
+        for (int m0 = 0; m0 < stride; m0 += BATCH_BLOCK) {
+            final int m1 = Math.min(stride, m0 + BATCH_BLOCK);
+
+            for (int i = 0; i < A.numRows; i++) {
+                for (int j = 0; j < B.numCols; j++) {
+                    final int indexC = (i*C.numCols + j)*stride;
+
+                    for (int m = m0; m < m1; m += L) {
+                        int indexA = i*inner*stride + m;
+                        int indexB = j*stride + m;
+
+                        var sum = DoubleVector.fromArray(SPECIES, A.data, indexA).mul(
+                                DoubleVector.fromArray(SPECIES, B.data, indexB));
+                        for (int k = 1; k < inner; k++) {
+                            indexA += stride;
+                            indexB += B.numCols*stride;
+                            var va = DoubleVector.fromArray(SPECIES, A.data, indexA);
+                            var vb = DoubleVector.fromArray(SPECIES, B.data, indexB);
+                            sum = va.fma(vb, sum);
+                        }
+                        sum.intoArray(C.data, indexC + m);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Multiplies the first n matrices, C[m] = A[m]*B[m]. The matrices are copied into {@link DMatrixBatch}
+     * internally. If the same batch is multiplied more than once it's better to convert it once yourself and
+     * call {@link #multBatch(DMatrixBatch, DMatrixBatch, DMatrixBatch)} directly.
+     */
+    public static void multBatch(int n, DMatrix1Row[] A, DMatrix1Row[] B, DMatrix1Row[] C) {
+        multBatch(n, A, B, C, new Workspace());
+    }
+
+    /**
+     * Same as {@link #multBatch(int, DMatrix1Row[], DMatrix1Row[], DMatrix1Row[])} but the batches are stored
+     * in the workspace.
+     */
+    public static void multBatch(int n, DMatrix1Row[] A, DMatrix1Row[] B, DMatrix1Row[] C, Workspace work) {
+        if (n == 0)
+            return;
+        work.batchA().setTo(n, A);
+        work.batchB().setTo(n, B);
+        multBatch(work.batchA(), work.batchB(), work.batchC());
+        work.batchC().copyTo(C);
+    }
+
     // Matrix multiplication for a complex matrix
     public static void mult_ikj(ZMatrixRMaj A, ZMatrixRMaj B, ZMatrixRMaj C) {
+        mult_ikj(A, B, C, 0, A.numRows);
+    }
+
+    /**
+     * Computes rows [rowStart, rowEnd) of C. C must already have the correct shape.
+     */
+    static void mult_ikj(ZMatrixRMaj A, ZMatrixRMaj B, ZMatrixRMaj C, int rowStart, int rowEnd) {
         double realA, imagA;
 
-        int indexCbase = 0;
+        int indexCbase = rowStart*C.getRowStride();
         int strideA = A.getRowStride();
         int strideB = B.getRowStride();
         int strideC = C.getRowStride();
         int endOfKLoop = B.numRows * strideB;
 
-        for (int i = 0; i < A.numRows; i++) {
+        for (int i = rowStart; i < rowEnd; i++) {
             int indexA = i * strideA;
 
             // need to assign c.data to a value initially
@@ -173,81 +778,429 @@ public class MatrixMultiplication {
         }
     }
 
+    /**
+     * Complex matrix multiplication with IKJ ordering. Real and imaginary components are left interleaved in the
+     * vectors. The product of a scalar 'a' and B is computed as real(a)*B + imag(a)*swap(B)*[-1, 1, -1, 1, ...],
+     * where swap() exchanges each real and imaginary pair with a shuffle. The sign flip is applied to the
+     * broadcast value of imag(a) once per k, leaving two fma for each vector in the inner loop.
+     */
     public static void mult_ikj_vector(ZMatrixRMaj A, ZMatrixRMaj B, ZMatrixRMaj C) {
-        double realA, imagA;
+        mult_ikj_vector(A, B, C, 0, A.numRows);
+    }
 
-        int indexCbase = 0;
-        int strideA = A.getRowStride();
-        int strideB = B.getRowStride();
-        int strideC = C.getRowStride();
-        int endOfKLoop = B.numRows * strideB;
+    /**
+     * Computes rows [rowStart, rowEnd) of C. C must already have the correct shape.
+     */
+    static void mult_ikj_vector(ZMatrixRMaj A, ZMatrixRMaj B, ZMatrixRMaj C, int rowStart, int rowEnd) {
+        // A 64-bit vector only has room for one double, so it can't hold a complex number. With a 128-bit vector
+        // the shuffle isn't intrinsified by JDK 17 on x86 and it's about 50x slower than the scalar code
+        if (SPECIES.length() < 4) {
+            mult_ikj(A, B, C, rowStart, rowEnd);
+            return;
+        }
 
-        final int speciesLength = SPECIES.length();
-        double[] multiRealA = new double[speciesLength];
-        double[] multiImagA = new double[speciesLength];
+        final int strideA = A.getRowStride();
+        final int strideB = B.getRowStride();
+        final int strideC = C.getRowStride();
 
-        if (speciesLength % 2 != 0)
-            throw new RuntimeException("Code below assumes an even length");
+        // Number of lanes is a power of two, so complex numbers are never split across two vectors
+        final int endJ = SPECIES.loopBound(strideB);
 
-        for (int i = 0; i < A.numRows; i++) {
-            int indexA = i * strideA;
+        for (int i = rowStart; i < rowEnd; i++) {
+            int indexCbase = i*strideC;
+            int indexA = i*strideA;
 
             // need to assign c.data to a value initially
-            int indexB = 0;
-            int indexC = indexCbase;
-            int end = indexB + strideB;
+            {
+                double realA = A.data[indexA++];
+                double imagA = A.data[indexA++];
+                var vr = DoubleVector.broadcast(SPECIES, realA);
+                var vi = DoubleVector.broadcast(SPECIES, imagA).lanewise(VectorOperators.NEG, REAL_LANES);
 
-            realA = A.data[indexA++];
-            imagA = A.data[indexA++];
+                int j = 0;
+                for (; j < endJ; j += SPECIES.length()) {
+                    var vb = DoubleVector.fromArray(SPECIES, B.data, j);
+                    vb.rearrange(SWAP_PAIRS).fma(vi, vb.mul(vr)).intoArray(C.data, indexCbase + j);
+                }
 
-            for (; indexB < SPECIES.loopBound(B.numCols); indexB += SPECIES.length()) {
-                var vb = DoubleVector.fromArray(SPECIES, B.data, indexB);
-                vb.mul(realA).intoArray(multiRealA, 0);
-                vb.mul(imagA).intoArray(multiImagA, 0);
+                for (; j < strideB; j += 2) {
+                    double realB = B.data[j];
+                    double imagB = B.data[j + 1];
 
-                // TODO figure out how to use shuffle to re-order the arrays quickly
-                for (int j = 0; j < speciesLength; j += 2) {
-                    C.data[indexC++] = multiRealA[j] - multiImagA[j + 1];
-                    C.data[indexC++] = multiRealA[j + 1] + multiImagA[j];
+                    C.data[indexCbase + j] = realA*realB - imagA*imagB;
+                    C.data[indexCbase + j + 1] = realA*imagB + imagA*realB;
                 }
             }
 
-            while (indexB < end) {
-                double realB = B.data[indexB++];
-                double imagB = B.data[indexB++];
+            // now add to it
+            for (int k = 1; k < B.numRows; k++) {
+                int indexB = k*strideB;
 
-                C.data[indexC++] = realA * realB - imagA * imagB;
-                C.data[indexC++] = realA * imagB + imagA * realB;
+                double realA = A.data[indexA++];
+                double imagA = A.data[indexA++];
+                var vr = DoubleVector.broadcast(SPECIES, realA);
+                var vi = DoubleVector.broadcast(SPECIES, imagA).lanewise(VectorOperators.NEG, REAL_LANES);
+
+                int j = 0;
+                for (; j < endJ; j += SPECIES.length()) {
+                    var vb = DoubleVector.fromArray(SPECIES, B.data, indexB + j);
+                    var vc = DoubleVector.fromArray(SPECIES, C.data, indexCbase + j);
+                    vc = vb.fma(vr, vc);
+                    vc = vb.rearrange(SWAP_PAIRS).fma(vi, vc);
+                    vc.intoArray(C.data, indexCbase + j);
+                }
+
+                for (; j < strideB; j += 2) {
+                    double realB = B.data[indexB + j];
+                    double imagB = B.data[indexB + j + 1];
+
+                    C.data[indexCbase + j] += realA*realB - imagA*imagB;
+                    C.data[indexCbase + j + 1] += realA*imagB + imagA*realB;
+                }
+            }
+        }
+    }
+
+    /**
+     * Single precision version of {@link #mult_ikj(DMatrix1Row, DMatrix1Row, DMatrix1Row)}
+     */
+    public static void mult_ikj(FMatrix1Row A, FMatrix1Row B, FMatrix1Row C) {
+        C.reshape(A.numRows, B.numCols);
+        mult_ikj(A, B, C, 0, A.numRows);
+    }
+
+    /**
+     * Computes rows [rowStart, rowEnd) of C. C must already have the correct shape.
+     */
+    static void mult_ikj(FMatrix1Row A, FMatrix1Row B, FMatrix1Row C, int rowStart, int rowEnd) {
+        final int endOfKLoop = B.numRows * B.numCols;
+
+        for (int i = rowStart; i < rowEnd; i++) {
+            int indexCbase = i * C.numCols;
+            int indexA = i * A.numCols;
+
+            // need to assign C.data to a value initially
+            int indexB = 0;
+            int indexC = indexCbase;
+            int end = indexB + B.numCols;
+
+            float valA = A.data[indexA++];
+
+            while (indexB < end) {
+                C.data[indexC++] = valA * B.data[indexB++];
             }
 
             // now add to it
             while (indexB != endOfKLoop) { // k loop
                 indexC = indexCbase;
-                end = indexB + strideB;
+                end = indexB + B.numCols;
 
-                realA = A.data[indexA++];
-                imagA = A.data[indexA++];
+                valA = A.data[indexA++];
+
+                while (indexB < end) { // j loop
+                    C.data[indexC++] += valA * B.data[indexB++];
+                }
+            }
+        }
+    }
+
+    /**
+     * Single precision version of {@link #mult_ikj_vector(DMatrix1Row, DMatrix1Row, DMatrix1Row)}. Twice as
+     * many elements fit inside a vector.
+     */
+    public static void mult_ikj_vector(FMatrix1Row A, FMatrix1Row B, FMatrix1Row C) {
+        C.reshape(A.numRows, B.numCols);
+        mult_ikj_vector(A, B, C, 0, A.numRows);
+    }
+
+    /**
+     * Computes rows [rowStart, rowEnd) of C. C must already have the correct shape.
+     */
+    static void mult_ikj_vector(FMatrix1Row A, FMatrix1Row B, FMatrix1Row C, int rowStart, int rowEnd) {
+        for (int i = rowStart; i < rowEnd; i++) {
+            int indexCbase = i * C.numCols;
+            {
+                float valA = A.data[i * A.numCols];
+                int j;
+                for (j = 0; j < F_SPECIES.loopBound(B.numCols); j += F_SPECIES.length()) {
+                    var vb = FloatVector.fromArray(F_SPECIES, B.data, j);
+                    vb.mul(valA).intoArray(C.data, indexCbase + j);
+                }
+                for (; j < B.numCols; j++) {
+                    C.data[indexCbase + j] = valA * B.data[j];
+                }
+            }
+
+            for (int k = 1; k < B.numRows; k++) {
+                int indexB = k * B.numCols;
+
+                float valA = A.data[i * A.numCols + k];
+
+                int j;
+                for (j = 0; j < F_SPECIES.loopBound(B.numCols); j += F_SPECIES.length()) {
+                    var vb = FloatVector.fromArray(F_SPECIES, B.data, indexB + j);
+                    var vc = FloatVector.fromArray(F_SPECIES, C.data, indexCbase + j);
+                    vc.add(vb.mul(valA)).intoArray(C.data, indexCbase + j);
+                }
+
+                for (; j < B.numCols; j++) {
+                    C.data[indexCbase + j] += valA * B.data[indexB + j];
+                }
+            }
+        }
+    }
+
+    /**
+     * Single precision version of {@link #mult_blocked_vector(DMatrix1Row, DMatrix1Row, DMatrix1Row)}
+     */
+    public static void mult_blocked_vector(FMatrix1Row A, FMatrix1Row B, FMatrix1Row C) {
+        mult_blocked_vector(A, B, C, new Workspace());
+    }
+
+    /**
+     * Single precision version of {@link #mult_blocked_vector(DMatrix1Row, DMatrix1Row, DMatrix1Row, Workspace)}
+     */
+    public static void mult_blocked_vector(FMatrix1Row A, FMatrix1Row B, FMatrix1Row C, Workspace work) {
+        C.reshape(A.numRows, B.numCols);
+        mult_blocked_vector(A, B, C, 0, A.numRows, work);
+    }
+
+    /**
+     * Computes rows [rowStart, rowEnd) of C. C must already have the correct shape.
+     */
+    static void mult_blocked_vector(FMatrix1Row A, FMatrix1Row B, FMatrix1Row C, int rowStart, int rowEnd,
+                                    Workspace work) {
+        final int M = rowEnd - rowStart;
+        final int N = B.numCols;
+        final int K = A.numCols;
+
+        if (K == 0) {
+            Arrays.fill(C.data, rowStart*N, rowEnd*N, 0.0f);
+            return;
+        }
+
+        final int NR = 2*F_SPECIES.length();
+        final float[] packA = work.packAF32(roundUp(Math.min(M, BLOCK_MC), MICRO_MR)*Math.min(K, BLOCK_KC));
+        final float[] packB = work.packBF32(roundUp(Math.min(N, BLOCK_NC), NR)*Math.min(K, BLOCK_KC));
+        final float[] edgeTile = work.tileF32(MICRO_MR*NR);
 
-                for (; indexB < SPECIES.loopBound(B.numCols); indexB += SPECIES.length()) {
-                    var vb = DoubleVector.fromArray(SPECIES, B.data, indexB);
-                    vb.mul(realA).intoArray(multiRealA, 0);
-                    vb.mul(imagA).intoArray(multiImagA, 0);
+        for (int jc = 0; jc < N; jc += BLOCK_NC) {
+            final int nc = Math.min(BLOCK_NC, N - jc);
 
-                    for (int j = 0; j < speciesLength; j += 2) {
-                        C.data[indexC++] += multiRealA[j] - multiImagA[j + 1];
-                        C.data[indexC++] += multiRealA[j + 1] + multiImagA[j];
+            for (int pc = 0; pc < K; pc += BLOCK_KC) {
+                final int kc = Math.min(BLOCK_KC, K - pc);
+                final boolean first = pc == 0;
+
+                packB(B, pc, kc, jc, nc, NR, packB);
+
+                for (int ic = rowStart; ic < rowEnd; ic += BLOCK_MC) {
+                    final int mc = Math.min(BLOCK_MC, rowEnd - ic);
+
+                    packA(A, ic, mc, pc, kc, packA);
+
+                    for (int jr = 0; jr < nc; jr += NR) {
+                        final int nr = Math.min(NR, nc - jr);
+                        final int offsetB = jr*kc;
+
+                        for (int ir = 0; ir < mc; ir += MICRO_MR) {
+                            final int mr = Math.min(MICRO_MR, mc - ir);
+                            final int indexC = (ic + ir)*N + jc + jr;
+
+                            if (mr == MICRO_MR && nr == NR) {
+                                microKernel(packA, ir*kc, packB, offsetB, kc, C.data, indexC, N, first);
+                            } else {
+                                microKernel(packA, ir*kc, packB, offsetB, kc, edgeTile, 0, NR, true);
+                                copyEdgeTile(edgeTile, NR, C.data, indexC, N, mr, nr, first);
+                            }
+                        }
                     }
                 }
+            }
+        }
+    }
 
-                while (indexB < end) { // j loop
-                    double realB = B.data[indexB++];
-                    double imgB = B.data[indexB++];
+    static void packA(FMatrix1Row A, int row0, int mc, int col0, int kc, float[] packA) {
+        int index = 0;
+        for (int ir = 0; ir < mc; ir += MICRO_MR) {
+            final int mr = Math.min(MICRO_MR, mc - ir);
+            for (int k = 0; k < kc; k++) {
+                int indexA = (row0 + ir)*A.numCols + col0 + k;
+                int r = 0;
+                for (; r < mr; r++, indexA += A.numCols) {
+                    packA[index++] = A.data[indexA];
+                }
+                for (; r < MICRO_MR; r++) {
+                    packA[index++] = 0.0f;
+                }
+            }
+        }
+    }
+
+    static void packB(FMatrix1Row B, int row0, int kc, int col0, int nc, int NR, float[] packB) {
+        int index = 0;
+        for (int jr = 0; jr < nc; jr += NR) {
+            final int nr = Math.min(NR, nc - jr);
+            for (int k = 0; k < kc; k++) {
+                int indexB = (row0 + k)*B.numCols + col0 + jr;
+                System.arraycopy(B.data, indexB, packB, index, nr);
+                if (nr < NR)
+                    Arrays.fill(packB, index + nr, index + NR, 0.0f);
+                index += NR;
+            }
+        }
+    }
 
-                    C.data[indexC++] += realA * realB - imagA * imgB;
-                    C.data[indexC++] += realA * imgB + imagA * realB;
+    static void microKernel(float[] packA, int indexA, float[] packB, int indexB, int kc,
+                            float[] output, int indexC, int stride, boolean first) {
+        final int L = F_SPECIES.length();
+
+        var c00 = FloatVector.zero(F_SPECIES);
+        var c01 = FloatVector.zero(F_SPECIES);
+        var c10 = FloatVector.zero(F_SPECIES);
+        var c11 = FloatVector.zero(F_SPECIES);
+        var c20 = FloatVector.zero(F_SPECIES);
+        var c21 = FloatVector.zero(F_SPECIES);
+        var c30 = FloatVector.zero(F_SPECIES);
+        var c31 = FloatVector.zero(F_SPECIES);
+
+        for (int k = 0; k < kc; k++, indexA += MICRO_MR, indexB += 2*L) {
+            var b0 = FloatVector.fromArray(F_SPECIES, packB, indexB);
+            var b1 = FloatVector.fromArray(F_SPECIES, packB, indexB + L);
+
+            var a = FloatVector.broadcast(F_SPECIES, packA[indexA]);
+            c00 = a.fma(b0, c00);
+            c01 = a.fma(b1, c01);
+            a = FloatVector.broadcast(F_SPECIES, packA[indexA + 1]);
+            c10 = a.fma(b0, c10);
+            c11 = a.fma(b1, c11);
+            a = FloatVector.broadcast(F_SPECIES, packA[indexA + 2]);
+            c20 = a.fma(b0, c20);
+            c21 = a.fma(b1, c21);
+            a = FloatVector.broadcast(F_SPECIES, packA[indexA + 3]);
+            c30 = a.fma(b0, c30);
+            c31 = a.fma(b1, c31);
+        }
+
+        storeRow(c00, c01, output, indexC, first);
+        storeRow(c10, c11, output, indexC + stride, first);
+        storeRow(c20, c21, output, indexC + 2*stride, first);
+        storeRow(c30, c31, output, indexC + 3*stride, first);
+    }
+
+    private static void storeRow(FloatVector v0, FloatVector v1, float[] data, int index, boolean first) {
+        final int L = F_SPECIES.length();
+        if (!first) {
+            v0 = v0.add(FloatVector.fromArray(F_SPECIES, data, index));
+            v1 = v1.add(FloatVector.fromArray(F_SPECIES, data, index + L));
+        }
+        v0.intoArray(data, index);
+        v1.intoArray(data, index + L);
+    }
+
+    private static void copyEdgeTile(float[] tile, int NR, float[] output, int indexC, int stride,
+                                     int mr, int nr, boolean first) {
+        for (int r = 0; r < mr; r++, indexC += stride) {
+            int indexTile = r*NR;
+            if (first) {
+                System.arraycopy(tile, indexTile, output, indexC, nr);
+            } else {
+                for (int j = 0; j < nr; j++) {
+                    output[indexC + j] += tile[indexTile + j];
                 }
             }
-            indexCbase += strideC;
         }
     }
+
+    /**
+     * Mixed precision multiplication. A and B are stored as float, which halves the memory, and the sums are
+     * accumulated in double. This avoids the round off error which builds up when long rows are summed in float.
+     */
+    public static void mult_ikj_mixed(FMatrix1Row A, FMatrix1Row B, DMatrix1Row C) {
+        C.reshape(A.numRows, B.numCols);
+
+        for (int i = 0; i < A.numRows; i++) {
+            int indexCbase = i * C.numCols;
+
+            double valA = A.data[i * A.numCols];
+            for (int j = 0; j < B.numCols; j++) {
+                C.data[indexCbase + j] = valA * B.data[j];
+            }
+
+            for (int k = 1; k < B.numRows; k++) {
+                int indexB = k * B.numCols;
+
+                valA = A.data[i * A.numCols + k];
+                for (int j = 0; j < B.numCols; j++) {
+                    C.data[indexCbase + j] += valA * B.data[indexB + j];
+                }
+            }
+        }
+    }
+
+    /**
+     * Vectorized version of {@link #mult_ikj_mixed}. A float vector from B is converted into two double vectors
+     * with convertShape(), one for each half of its lanes.
+     */
+    public static void mult_ikj_mixed_vector(FMatrix1Row A, FMatrix1Row B, DMatrix1Row C) {
+        C.reshape(A.numRows, B.numCols);
+
+        // The float vector needs at least two lanes to be split into halves
+        if (F_SPECIES.length() < 2) {
+            mult_ikj_mixed(A, B, C);
+            return;
+        }
+
+        final int L = SPECIES.length();
+        final int endJ = F_SPECIES.loopBound(B.numCols);
+
+        for (int i = 0; i < A.numRows; i++) {
+            int indexCbase = i * C.numCols;
+            {
+                double valA = A.data[i * A.numCols];
+                int j;
+                for (j = 0; j < endJ; j += F_SPECIES.length()) {
+                    var vb = FloatVector.fromArray(F_SPECIES, B.data, j);
+                    var vb0 = (DoubleVector)vb.convertShape(VectorOperators.F2D, SPECIES, 0);
+                    var vb1 = (DoubleVector)vb.convertShape(VectorOperators.F2D, SPECIES, 1);
+                    vb0.mul(valA).intoArray(C.data, indexCbase + j);
+                    vb1.mul(valA).intoArray(C.data, indexCbase + j + L);
+                }
+                for (; j < B.numCols; j++) {
+                    C.data[indexCbase + j] = valA * B.data[j];
+                }
+            }
+
+            for (int k = 1; k < B.numRows; k++) {
+                int indexB = k * B.numCols;
+
+                double valA = A.data[i * A.numCols + k];
+
+                int j;
+                for (j = 0; j < endJ; j += F_SPECIES.length()) {
+                    var vb = FloatVector.fromArray(F_SPECIES, B.data, indexB + j);
+                    var vb0 = (DoubleVector)vb.convertShape(VectorOperators.F2D, SPECIES, 0);
+                    var vb1 = (DoubleVector)vb.convertShape(VectorOperators.F2D, SPECIES, 1);
+                    var vc0 = DoubleVector.fromArray(SPECIES, C.data, indexCbase + j);
+                    var vc1 = DoubleVector.fromArray(SPECIES, C.data, indexCbase + j + L);
+                    vc0.add(vb0.mul(valA)).intoArray(C.data, indexCbase + j);
+                    vc1.add(vb1.mul(valA)).intoArray(C.data, indexCbase + j + L);
+                }
+
+                for (; j < B.numCols; j++) {
+                    C.data[indexCbase + j] += valA * B.data[indexB + j];
+                }
+            }
+        }
+    }
+
+    /**
+     * Lanes which contain the real component of an interleaved complex number, i.e. even lanes
+     */
+    private static VectorMask<Double> realLanes() {
+        boolean[] even = new boolean[SPECIES.length()];
+        for (int i = 0; i < even.length; i += 2) {
+            even[i] = true;
+        }
+        return VectorMask.fromArray(SPECIES, even, 0);
+    }
 }
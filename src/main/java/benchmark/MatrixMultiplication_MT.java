@@ -0,0 +1,64 @@
+package benchmark;
+
+import org.ejml.data.DMatrix1Row;
+import org.ejml.data.ZMatrixRMaj;
+
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Concurrent versions of functions in {@link MatrixMultiplication}. C is split into bands of rows and each
+ * band is computed in its own task using the single threaded code. Rows of C are independent, so no
+ * synchronization is needed beyond waiting for all the tasks to finish.
+ *
+ * @author Peter Abeles
+ */
+public class MatrixMultiplication_MT {
+    /**
+     * Minimum number of multiply-adds a band needs before it's worth creating a task for it. Prevents small
+     * matrices from paying the cost of thread synchronization.
+     */
+    static final int MIN_OPERATIONS = 20_000;
+
+    public static void mult_ikj(DMatrix1Row A, DMatrix1Row B, DMatrix1Row C, ForkJoinPool pool) {
+        C.reshape(A.numRows, B.numCols);
+        Concurrency.loopBlocks(pool, 0, A.numRows, minRows(A.numCols, B.numCols), (row0, row1) ->
+                MatrixMultiplication.mult_ikj(A, B, C, row0, row1));
+    }
+
+    public static void mult_ikj_vector(DMatrix1Row A, DMatrix1Row B, DMatrix1Row C, ForkJoinPool pool) {
+        C.reshape(A.numRows, B.numCols);
+        Concurrency.loopBlocks(pool, 0, A.numRows, minRows(A.numCols, B.numCols), (row0, row1) ->
+                MatrixMultiplication.mult_ikj_vector(A, B, C, row0, row1));
+    }
+
+    /**
+     * Each band packs its own copy of B, so bands are kept at least {@link MatrixMultiplication#BLOCK_MC}
+     * rows tall to amortize that cost. A new {@link Workspace} is created for each band.
+     */
+    public static void mult_blocked_vector(DMatrix1Row A, DMatrix1Row B, DMatrix1Row C, ForkJoinPool pool) {
+        C.reshape(A.numRows, B.numCols);
+        int minRows = Math.max(MatrixMultiplication.BLOCK_MC, minRows(A.numCols, B.numCols));
+        Concurrency.loopBlocks(pool, 0, A.numRows, minRows, (row0, row1) ->
+                MatrixMultiplication.mult_blocked_vector(A, B, C, row0, row1, new Workspace()));
+    }
+
+    public static void mult_ikj(ZMatrixRMaj A, ZMatrixRMaj B, ZMatrixRMaj C, ForkJoinPool pool) {
+        C.reshape(A.numRows, B.numCols);
+        Concurrency.loopBlocks(pool, 0, A.numRows, minRows(A.numCols, B.numCols), (row0, row1) ->
+                MatrixMultiplication.mult_ikj(A, B, C, row0, row1));
+    }
+
+    public static void mult_ikj_vector(ZMatrixRMaj A, ZMatrixRMaj B, ZMatrixRMaj C, ForkJoinPool pool) {
+        C.reshape(A.numRows, B.numCols);
+        Concurrency.loopBlocks(pool, 0, A.numRows, minRows(A.numCols, B.numCols), (row0, row1) ->
+                MatrixMultiplication.mult_ikj_vector(A, B, C, row0, row1));
+    }
+
+    /**
+     * Number of rows of C which need to be computed to reach {@link #MIN_OPERATIONS}
+     */
+    static int minRows(int inner, int cols) {
+        long operationsPerRow = Math.max(1L, (long)inner*cols);
+        return (int)Math.max(1L, MIN_OPERATIONS/operationsPerRow);
+    }
+}
@@ -0,0 +1,180 @@
+package benchmark;
+
+import org.ejml.data.DMatrixRMaj;
+
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Out of core matrix multiplication for matrices in memory mapped files, see {@link DMatrixMapped}. C is
+ * computed one square tile at a time. For each tile of C the matching tiles of A and B are copied onto the heap
+ * and multiplied with {@link MatrixMultiplication#mult_blocked_vector}. While one pair of tiles is being
+ * multiplied a second thread copies the next pair, which is when the OS reads them from disk if they aren't in
+ * the page cache. Once a tile of C is finished it's written back into its file.
+ *
+ * Every tile of C reads a full row of tiles from A and a full column of tiles from B, so the amount read is
+ * proportional to 1/tileSize. Memory used is about 5*tileSize^2 doubles.
+ *
+ * @author Peter Abeles
+ */
+public class MatrixMultiplication_Mapped {
+    /** Tiles with this many rows and columns are 32 MB each */
+    public static final int DEFAULT_TILE = 2048;
+
+    public static void mult(DMatrixMapped A, DMatrixMapped B, DMatrixMapped C) {
+        mult(A, B, C, DEFAULT_TILE);
+    }
+
+    public static void mult(DMatrixMapped A, DMatrixMapped B, DMatrixMapped C, int tileSize) {
+        mult(A, B, C, 0, A.numRows, tileSize);
+    }
+
+    /**
+     * Computes rows [rowStart, rowEnd) of C
+     */
+    public static void mult(DMatrixMapped A, DMatrixMapped B, DMatrixMapped C, int rowStart, int rowEnd,
+                            int tileSize) {
+        mult(A, B, C, rowStart, rowEnd, tileSize, (row0, col0, rows, cols) -> true);
+    }
+
+    /**
+     * Computes rows [rowStart, rowEnd) of C and calls the listener after each tile of C has been written. If the
+     * listener returns false then it stops and the remaining tiles aren't computed.
+     */
+    public static void mult(DMatrixMapped A, DMatrixMapped B, DMatrixMapped C, int rowStart, int rowEnd,
+                            int tileSize, TileListener listener) {
+        if (A.numCols != B.numRows || C.numRows != A.numRows || C.numCols != B.numCols)
+            throw new IllegalArgumentException("Incompatible matrix shapes");
+        if (tileSize <= 0)
+            throw new IllegalArgumentException("tileSize must be positive");
+
+        final int T = tileSize;
+        final int tilesI = (rowEnd - rowStart + T - 1)/T;
+        final int tilesJ = (B.numCols + T - 1)/T;
+        final int tilesK = (A.numCols + T - 1)/T;
+        final int steps = tilesI*tilesJ*tilesK;
+
+        if (rowEnd <= rowStart || B.numCols == 0)
+            return;
+        if (A.numCols == 0) {
+            zero(C, rowStart, rowEnd);
+            return;
+        }
+
+        var tileC = new DMatrixRMaj(T, T);
+        var current = new Tiles(T);
+        var next = new Tiles(T);
+        var work = new Workspace();
+
+        ExecutorService prefetch = Executors.newSingleThreadExecutor(r -> {
+            var thread = new Thread(r, "TilePrefetch");
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        try {
+            Future<?> pending = prefetch.submit(load(A, B, current, rowStart, rowEnd, T, tilesJ, tilesK, 0));
+
+            for (int step = 0; step < steps; step++) {
+                waitFor(pending);
+                // Start reading the next tiles before computing with the current ones
+                if (step + 1 < steps)
+                    pending = prefetch.submit(load(A, B, next, rowStart, rowEnd, T, tilesJ, tilesK, step + 1));
+
+                int tileK = step%tilesK;
+                if (tileK == 0) {
+                    MatrixMultiplication.mult_blocked_vector(current.A, current.B, tileC, work);
+                } else {
+                    MatrixMultiplication.multAdd_blocked_vector(current.A, current.B, tileC, work);
+                }
+
+                if (tileK == tilesK - 1) {
+                    int row0 = rowStart + (step/(tilesJ*tilesK))*T;
+                    int col0 = ((step/tilesK)%tilesJ)*T;
+                    for (int row = 0; row < tileC.numRows; row++) {
+                        C.setRow(row0 + row, col0, tileC.data, row*tileC.numCols, tileC.numCols);
+                    }
+                    if (!listener.tileFinished(row0, col0, tileC.numRows, tileC.numCols))
+                        return;
+                }
+
+                Tiles tmp = current;
+                current = next;
+                next = tmp;
+            }
+        } finally {
+            prefetch.shutdownNow();
+        }
+    }
+
+    /**
+     * Called after a tile of C has been written to its file
+     */
+    @FunctionalInterface
+    public interface TileListener {
+        /**
+         * @return true to keep going or false to stop
+         */
+        boolean tileFinished( int row0, int col0, int rows, int cols );
+    }
+
+    /**
+     * Tiles of A and B on the heap
+     */
+    static class Tiles {
+        final DMatrixRMaj A, B;
+
+        Tiles(int tileSize) {
+            A = new DMatrixRMaj(tileSize, tileSize);
+            B = new DMatrixRMaj(tileSize, tileSize);
+        }
+    }
+
+    /**
+     * Returns a task which copies the tiles of A and B used by the step into the heap
+     */
+    static Runnable load(DMatrixMapped A, DMatrixMapped B, Tiles tiles, int rowStart, int rowEnd, int T,
+                         int tilesJ, int tilesK, int step) {
+        final int row0 = rowStart + (step/(tilesJ*tilesK))*T;
+        final int col0 = ((step/tilesK)%tilesJ)*T;
+        final int k0 = (step%tilesK)*T;
+        // Tiles along the bottom and right edges are smaller
+        final int rows = Math.min(T, rowEnd - row0);
+        final int cols = Math.min(T, B.numCols - col0);
+        final int inner = Math.min(T, A.numCols - k0);
+        return () -> {
+            copyTile(A, row0, k0, rows, inner, tiles.A);
+            copyTile(B, k0, col0, inner, cols, tiles.B);
+        };
+    }
+
+    /**
+     * Copies the rows x cols tile which starts at (row0, col0) into dst
+     */
+    static void copyTile(DMatrixMapped src, int row0, int col0, int rows, int cols, DMatrixRMaj dst) {
+        dst.reshape(rows, cols);
+        for (int row = 0; row < rows; row++) {
+            src.getRow(row0 + row, col0, dst.data, row*cols, cols);
+        }
+    }
+
+    static void zero(DMatrixMapped C, int rowStart, int rowEnd) {
+        var row = new double[C.numCols];
+        for (int i = rowStart; i < rowEnd; i++) {
+            C.setRow(i, 0, row, 0, C.numCols);
+        }
+    }
+
+    static void waitFor(Future<?> future) {
+        try {
+            future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException(e);
+        } catch (ExecutionException e) {
+            throw new RuntimeException(e.getCause());
+        }
+    }
+}
@@ -0,0 +1,334 @@
+package benchmark;
+
+import jdk.incubator.vector.DoubleVector;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+import org.ejml.data.DMatrix1Row;
+
+import java.util.Arrays;
+
+/**
+ * Vectorized matrix-vector and vector-vector operations, i.e. BLAS level 1 and 2. These are what solvers spend
+ * most of their time in and are compared against EJML's CommonOps_DDRM and VectorVectorMult_DDRM. Vectors
+ * are any matrix with the correct number of elements, like in EJML.
+ *
+ * Operations which sum along a row or vector are limited by the latency of fma, not its throughput. Each
+ * sum is split across several accumulators, or several rows are processed at once, so that there are always
+ * independent fma's in flight.
+ *
+ * @author Peter Abeles
+ */
+public class MatrixVectorOps {
+    static final VectorSpecies<Double> SPECIES = MatrixMultiplication.SPECIES;
+
+    // Rows of A which are processed at once by multVec() and multTransAVec()
+    static final int ROWS = 4;
+
+    // Width and height of the blocks that transpose() copies
+    static final int TRANSPOSE_BLOCK = 32;
+
+    // norm2() scales the elements when the sum of squares is smaller than this. Squares far below it could
+    // have been rounded into subnormal numbers or zero, while a sum above it is dominated by squares which
+    // weren't rounded
+    static final double NORM_MIN_SUM = 0x1p-900;
+
+    /**
+     * Computes y = A*x. Four rows are multiplied at once so that each element of x is loaded once for all of
+     * them and there are four independent sums.
+     */
+    public static void multVec( DMatrix1Row A, DMatrix1Row x, DMatrix1Row y ) {
+        if (x.getNumElements() != A.numCols)
+            throw new IllegalArgumentException("x must have the same number of elements as columns in A");
+        if (x == y)
+            throw new IllegalArgumentException("x and y can't be the same matrix");
+        y.reshape(A.numRows, 1);
+
+        final int N = A.numCols;
+        final int bound = SPECIES.loopBound(N);
+        final double[] dataA = A.data;
+        final double[] dataX = x.data;
+
+        int i = 0;
+        for (; i + ROWS <= A.numRows; i += ROWS) {
+            final int index0 = i*N;
+            final int index1 = index0 + N;
+            final int index2 = index1 + N;
+            final int index3 = index2 + N;
+
+            var sum0 = DoubleVector.zero(SPECIES);
+            var sum1 = DoubleVector.zero(SPECIES);
+            var sum2 = DoubleVector.zero(SPECIES);
+            var sum3 = DoubleVector.zero(SPECIES);
+            int j = 0;
+            for (; j < bound; j += SPECIES.length()) {
+                var vx = DoubleVector.fromArray(SPECIES, dataX, j);
+                sum0 = DoubleVector.fromArray(SPECIES, dataA, index0 + j).fma(vx, sum0);
+                sum1 = DoubleVector.fromArray(SPECIES, dataA, index1 + j).fma(vx, sum1);
+                sum2 = DoubleVector.fromArray(SPECIES, dataA, index2 + j).fma(vx, sum2);
+                sum3 = DoubleVector.fromArray(SPECIES, dataA, index3 + j).fma(vx, sum3);
+            }
+            double total0 = sum0.reduceLanes(VectorOperators.ADD);
+            double total1 = sum1.reduceLanes(VectorOperators.ADD);
+            double total2 = sum2.reduceLanes(VectorOperators.ADD);
+            double total3 = sum3.reduceLanes(VectorOperators.ADD);
+            for (; j < N; j++) {
+                double valX = dataX[j];
+                total0 += dataA[index0 + j]*valX;
+                total1 += dataA[index1 + j]*valX;
+                total2 += dataA[index2 + j]*valX;
+                total3 += dataA[index3 + j]*valX;
+            }
+            y.data[i] = total0;
+            y.data[i + 1] = total1;
+            y.data[i + 2] = total2;
+            y.data[i + 3] = total3;
+        }
+        for (; i < A.numRows; i++) {
+            y.data[i] = dot(dataA, i*N, dataX, 0, N);
+        }
+    }
+
+    /**
+     * Computes y = A<sup>T</sup>*x without transposing A. Each row of A is scaled by an element of x and added to
+     * y, so A is read in order. Four rows are added at once so y is only loaded and stored once for every four
+     * rows.
+     */
+    public static void multTransAVec( DMatrix1Row A, DMatrix1Row x, DMatrix1Row y ) {
+        if (x.getNumElements() != A.numRows)
+            throw new IllegalArgumentException("x must have the same number of elements as rows in A");
+        if (x == y)
+            throw new IllegalArgumentException("x and y can't be the same matrix");
+        y.reshape(A.numCols, 1);
+
+        final int N = A.numCols;
+        final int bound = SPECIES.loopBound(N);
+        final double[] dataA = A.data;
+        final double[] dataY = y.data;
+
+        Arrays.fill(dataY, 0, N, 0.0);
+
+        int i = 0;
+        for (; i + ROWS <= A.numRows; i += ROWS) {
+            final int index0 = i*N;
+            final int index1 = index0 + N;
+            final int index2 = index1 + N;
+            final int index3 = index2 + N;
+            final double x0 = x.data[i];
+            final double x1 = x.data[i + 1];
+            final double x2 = x.data[i + 2];
+            final double x3 = x.data[i + 3];
+            final var vx0 = DoubleVector.broadcast(SPECIES, x0);
+            final var vx1 = DoubleVector.broadcast(SPECIES, x1);
+            final var vx2 = DoubleVector.broadcast(SPECIES, x2);
+            final var vx3 = DoubleVector.broadcast(SPECIES, x3);
+
+            int j = 0;
+            for (; j < bound; j += SPECIES.length()) {
+                var vy = DoubleVector.fromArray(SPECIES, dataY, j);
+                vy = DoubleVector.fromArray(SPECIES, dataA, index0 + j).fma(vx0, vy);
+                vy = DoubleVector.fromArray(SPECIES, dataA, index1 + j).fma(vx1, vy);
+                vy = DoubleVector.fromArray(SPECIES, dataA, index2 + j).fma(vx2, vy);
+                vy = DoubleVector.fromArray(SPECIES, dataA, index3 + j).fma(vx3, vy);
+                vy.intoArray(dataY, j);
+            }
+            for (; j < N; j++) {
+                dataY[j] += dataA[index0 + j]*x0 + dataA[index1 + j]*x1 + dataA[index2 + j]*x2 + dataA[index3 + j]*x3;
+            }
+        }
+        for (; i < A.numRows; i++) {
+            axpy(x.data[i], dataA, i*N, dataY, 0, N);
+        }
+    }
+
+    /**
+     * Transposes A into AT one {@link #TRANSPOSE_BLOCK} square block at a time, so that the rows of A being read
+     * and the rows of AT being written both stay in the cache. Inside a block, each row of AT is a column of A
+     * which is read with a gather and written with a regular store. Gathering from A was faster than reading
+     * rows of A and scattering them into AT.
+     *
+     * @param work Stores the gather's index map
+     */
+    public static void transpose( DMatrix1Row A, DMatrix1Row AT, Workspace work ) {
+        if (A == AT)
+            throw new IllegalArgumentException("A and AT can't be the same matrix");
+        AT.reshape(A.numCols, A.numRows);
+
+        final int rows = A.numRows;
+        final int cols = A.numCols;
+        final int lanes = SPECIES.length();
+        final double[] dataA = A.data;
+        final double[] dataT = AT.data;
+
+        // Offset of each lane from the first element of the column being gathered
+        final int[] indexes = work.rowS32(lanes);
+        for (int lane = 0; lane < lanes; lane++) {
+            indexes[lane] = lane*cols;
+        }
+
+        for (int i0 = 0; i0 < rows; i0 += TRANSPOSE_BLOCK) {
+            final int i1 = Math.min(rows, i0 + TRANSPOSE_BLOCK);
+            for (int j0 = 0; j0 < cols; j0 += TRANSPOSE_BLOCK) {
+                final int j1 = Math.min(cols, j0 + TRANSPOSE_BLOCK);
+                for (int j = j0; j < j1; j++) {
+                    final int indexT = j*rows;
+                    int i = i0;
+                    for (; i + lanes <= i1; i += lanes) {
+                        DoubleVector.fromArray(SPECIES, dataA, i*cols + j, indexes, 0).intoArray(dataT, indexT + i);
+                    }
+                    for (; i < i1; i++) {
+                        dataT[indexT + i] = dataA[i*cols + j];
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Computes A = A + gamma*x*y<sup>T</sup>, a rank one update. Each row of A has a scaled copy of y added
+     * to it.
+     */
+    public static void addOuterProduct( double gamma, DMatrix1Row x, DMatrix1Row y, DMatrix1Row A ) {
+        if (x.getNumElements() != A.numRows || y.getNumElements() != A.numCols)
+            throw new IllegalArgumentException("x must have an element for each row and y for each column");
+
+        for (int i = 0; i < A.numRows; i++) {
+            axpy(gamma*x.data[i], y.data, 0, A.data, i*A.numCols, A.numCols);
+        }
+    }
+
+    /**
+     * Inner product of two vectors, x<sup>T</sup>*y
+     */
+    public static double dot( DMatrix1Row x, DMatrix1Row y ) {
+        if (x.getNumElements() != y.getNumElements())
+            throw new IllegalArgumentException("Vectors must have the same number of elements");
+        return dot(x.data, 0, y.data, 0, x.getNumElements());
+    }
+
+    /**
+     * Computes y = alpha*x + y
+     */
+    public static void axpy( double alpha, DMatrix1Row x, DMatrix1Row y ) {
+        if (x.getNumElements() != y.getNumElements())
+            throw new IllegalArgumentException("Vectors must have the same number of elements");
+        axpy(alpha, x.data, 0, y.data, 0, x.getNumElements());
+    }
+
+    /**
+     * Euclidean norm of a vector, or the Frobenius norm of a matrix. The sum of squares is computed directly and
+     * only if it overflows or is smaller than {@link #NORM_MIN_SUM} is it computed again with every element
+     * divided by the largest, which is what EJML's normF() always does.
+     */
+    public static double norm2( DMatrix1Row x ) {
+        final double[] data = x.data;
+        final int length = x.getNumElements();
+        final int lanes = SPECIES.length();
+
+        var sum0 = DoubleVector.zero(SPECIES);
+        var sum1 = DoubleVector.zero(SPECIES);
+        var sum2 = DoubleVector.zero(SPECIES);
+        var sum3 = DoubleVector.zero(SPECIES);
+        int i = 0;
+        for (; i + 4*lanes <= length; i += 4*lanes) {
+            var v0 = DoubleVector.fromArray(SPECIES, data, i);
+            var v1 = DoubleVector.fromArray(SPECIES, data, i + lanes);
+            var v2 = DoubleVector.fromArray(SPECIES, data, i + 2*lanes);
+            var v3 = DoubleVector.fromArray(SPECIES, data, i + 3*lanes);
+            sum0 = v0.fma(v0, sum0);
+            sum1 = v1.fma(v1, sum1);
+            sum2 = v2.fma(v2, sum2);
+            sum3 = v3.fma(v3, sum3);
+        }
+        for (; i + lanes <= length; i += lanes) {
+            var v = DoubleVector.fromArray(SPECIES, data, i);
+            sum0 = v.fma(v, sum0);
+        }
+        double total = sum0.add(sum1).add(sum2.add(sum3)).reduceLanes(VectorOperators.ADD);
+        for (; i < length; i++) {
+            total += data[i]*data[i];
+        }
+
+        if (Double.isFinite(total) && total >= NORM_MIN_SUM)
+            return Math.sqrt(total);
+        return norm2Scaled(data, length);
+    }
+
+    /**
+     * Norm where each element is divided by the largest magnitude first, so that squaring doesn't overflow
+     * or underflow
+     */
+    static double norm2Scaled( double[] data, int length ) {
+        final int lanes = SPECIES.length();
+        var max = DoubleVector.zero(SPECIES);
+        int i = 0;
+        for (; i + lanes <= length; i += lanes) {
+            max = max.max(DoubleVector.fromArray(SPECIES, data, i).abs());
+        }
+        double scale = max.reduceLanes(VectorOperators.MAX);
+        for (; i < length; i++) {
+            scale = Math.max(scale, Math.abs(data[i]));
+        }
+        if (scale == 0.0 || !Double.isFinite(scale))
+            return scale;
+
+        var sum = DoubleVector.zero(SPECIES);
+        for (i = 0; i + lanes <= length; i += lanes) {
+            var v = DoubleVector.fromArray(SPECIES, data, i).div(scale);
+            sum = v.fma(v, sum);
+        }
+        double total = sum.reduceLanes(VectorOperators.ADD);
+        for (; i < length; i++) {
+            double v = data[i]/scale;
+            total += v*v;
+        }
+        return scale*Math.sqrt(total);
+    }
+
+    /**
+     * Dot product of 'length' elements with four accumulators
+     */
+    static double dot( double[] x, int indexX, double[] y, int indexY, int length ) {
+        final int lanes = SPECIES.length();
+        var sum0 = DoubleVector.zero(SPECIES);
+        var sum1 = DoubleVector.zero(SPECIES);
+        var sum2 = DoubleVector.zero(SPECIES);
+        var sum3 = DoubleVector.zero(SPECIES);
+        int i = 0;
+        for (; i + 4*lanes <= length; i += 4*lanes) {
+            sum0 = DoubleVector.fromArray(SPECIES, x, indexX + i)
+                    .fma(DoubleVector.fromArray(SPECIES, y, indexY + i), sum0);
+            sum1 = DoubleVector.fromArray(SPECIES, x, indexX + i + lanes)
+                    .fma(DoubleVector.fromArray(SPECIES, y, indexY + i + lanes), sum1);
+            sum2 = DoubleVector.fromArray(SPECIES, x, indexX + i + 2*lanes)
+                    .fma(DoubleVector.fromArray(SPECIES, y, indexY + i + 2*lanes), sum2);
+            sum3 = DoubleVector.fromArray(SPECIES, x, indexX + i + 3*lanes)
+                    .fma(DoubleVector.fromArray(SPECIES, y, indexY + i + 3*lanes), sum3);
+        }
+        for (; i + lanes <= length; i += lanes) {
+            sum0 = DoubleVector.fromArray(SPECIES, x, indexX + i)
+                    .fma(DoubleVector.fromArray(SPECIES, y, indexY + i), sum0);
+        }
+        double total = sum0.add(sum1).add(sum2.add(sum3)).reduceLanes(VectorOperators.ADD);
+        for (; i < length; i++) {
+            total += x[indexX + i]*y[indexY + i];
+        }
+        return total;
+    }
+
+    /**
+     * Adds alpha times 'length' elements of x to y. There's no dependency between iterations so a single
+     * vector per iteration is enough.
+     */
+    static void axpy( double alpha, double[] x, int indexX, double[] y, int indexY, int length ) {
+        final int bound = SPECIES.loopBound(length);
+        final var va = DoubleVector.broadcast(SPECIES, alpha);
+        int i = 0;
+        for (; i < bound; i += SPECIES.length()) {
+            var vy = DoubleVector.fromArray(SPECIES, y, indexY + i);
+            DoubleVector.fromArray(SPECIES, x, indexX + i).fma(va, vy).intoArray(y, indexY + i);
+        }
+        for (; i < length; i++) {
+            y[indexY + i] += alpha*x[indexX + i];
+        }
+    }
+}
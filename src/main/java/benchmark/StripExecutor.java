@@ -0,0 +1,214 @@
+package benchmark;
+
+import boofcv.struct.image.ImageGray;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Runs a chain of image operations, e.g. blur then mean then threshold, on strips of rows instead of running
+ * each operation across the entire image. The output of each operation is written into a scratch image which
+ * is only a strip tall, so it can stay in the L1 or L2 cache until the next operation reads it. When each
+ * operation is a separate pass over a large image every intermediate image goes out to DRAM and back.
+ *
+ * Operations which read rows above or below the output row, e.g. vertical convolution, declare how many rows
+ * they need. Each strip computes those extra rows, the halo, for the operations before it. Halo rows are
+ * computed by both strips they touch, so short strips waste more work while tall strips fall out of cache.
+ * {@link BenchmarkStripExecutor} measures where the balance is on a host.
+ *
+ * Operations are the same functions that would be called on the whole image. They are called on sub-images
+ * which have the same rows for the input and output, and must only write to output rows which they have all
+ * the input rows for. This is how the "no border" functions in {@link ImageProcessing} work. Output rows along
+ * the top and bottom of the image which need rows outside of the image are not written to.
+ *
+ * @author Peter Abeles
+ */
+public class StripExecutor<I extends ImageGray<I>, O extends ImageGray<O>> {
+    private final List<Stage> stages;
+    private final int stripHeight;
+
+    // Rows which every stage from stage i onwards needs above and below its output
+    private final int[] haloAbove;
+    private final int[] haloBelow;
+
+    // Strip tall output of every stage except the last
+    private final ImageGray<?>[] scratch;
+    // Full sized output of every stage except the last. Only used by processPasses()
+    private final ImageGray<?>[] passes;
+
+    private final Workspace work = new Workspace();
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private StripExecutor( List<Stage> stages, int stripHeight ) {
+        if (stages.isEmpty())
+            throw new IllegalArgumentException("There must be at least one stage");
+        if (stripHeight <= 0)
+            throw new IllegalArgumentException("Strip height must be positive");
+        this.stages = new ArrayList<>(stages);
+        this.stripHeight = stripHeight;
+
+        int N = stages.size();
+        haloAbove = new int[N + 1];
+        haloBelow = new int[N + 1];
+        for (int i = N - 1; i >= 0; i--) {
+            haloAbove[i] = haloAbove[i + 1] + stages.get(i).above;
+            haloBelow[i] = haloBelow[i + 1] + stages.get(i).below;
+        }
+        scratch = new ImageGray[N - 1];
+        passes = new ImageGray[N - 1];
+    }
+
+    /**
+     * Starts a chain of operations which reads images of type I
+     */
+    public static <I extends ImageGray<I>> Builder<I, I> builder() {
+        return new Builder<>();
+    }
+
+    /**
+     * Runs all the operations one strip at a time
+     */
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    public void process( I input, O output ) {
+        final int width = input.width;
+        final int N = stages.size();
+        final int rowStart = haloAbove[0];
+        final int rowEnd = input.height - haloBelow[0];
+
+        for (int i = 0; i < N - 1; i++) {
+            scratch[i] = declare(scratch[i], stages.get(i).factory, width,
+                    stripHeight + haloAbove[i] + haloBelow[i]);
+        }
+
+        for (int y0 = rowStart; y0 < rowEnd; y0 += stripHeight) {
+            final int y1 = Math.min(rowEnd, y0 + stripHeight);
+
+            // Image rows which are stored in the previous stage's scratch image, starting at row 0
+            int previousStart = 0;
+            for (int i = 0; i < N; i++) {
+                // Rows read by this stage. It writes to the rows inside of the halo.
+                final int in0 = y0 - haloAbove[i];
+                final int in1 = y1 + haloBelow[i];
+
+                ImageGray src = i == 0 ? rows(input, in0, in1) :
+                        rows(scratch[i - 1], in0 - previousStart, in1 - previousStart);
+                ImageGray dst = i == N - 1 ? rows(output, in0, in1) : rows(scratch[i], 0, in1 - in0);
+
+                stages.get(i).operation.process(src, dst, work);
+                previousStart = in0;
+            }
+        }
+    }
+
+    /**
+     * Runs each operation across the entire image before moving onto the next, using full sized intermediate
+     * images. Produces the same output as {@link #process} and is what it's compared against.
+     */
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    public void processPasses( I input, O output ) {
+        final int N = stages.size();
+        ImageGray src = input;
+        for (int i = 0; i < N; i++) {
+            ImageGray dst;
+            if (i == N - 1) {
+                dst = output;
+            } else {
+                passes[i] = declare(passes[i], stages.get(i).factory, input.width, input.height);
+                dst = passes[i];
+            }
+            stages.get(i).operation.process(src, dst, work);
+            src = dst;
+        }
+    }
+
+    /** Number of rows in each strip */
+    public int getStripHeight() {
+        return stripHeight;
+    }
+
+    /** Number of rows at the top of the image which aren't written to */
+    public int getRowsAbove() {
+        return haloAbove[0];
+    }
+
+    /** Number of rows at the bottom of the image which aren't written to */
+    public int getRowsBelow() {
+        return haloBelow[0];
+    }
+
+    /**
+     * Creates a new image if the one passed in is null or the wrong shape
+     */
+    private static ImageGray<?> declare( ImageGray<?> image, Factory<?> factory, int width, int height ) {
+        if (image == null || image.width != width || image.height != height)
+            return factory.create(width, height);
+        return image;
+    }
+
+    private static ImageGray<?> rows( ImageGray<?> image, int y0, int y1 ) {
+        return image.subimage(0, y0, image.width, y1);
+    }
+
+    /**
+     * Adds operations to the chain. O is the image type written by the last operation.
+     */
+    public static class Builder<I extends ImageGray<I>, O extends ImageGray<O>> {
+        final List<Stage> stages = new ArrayList<>();
+
+        /**
+         * Adds an operation which reads the output of the previous one. Rows are specified relative to the
+         * output row, e.g. a vertical kernel with an offset of 2 and a width of 5 needs 2 rows above and 2 below.
+         *
+         * @param factory Creates images of the type it writes to
+         * @param above Number of rows above an output row which it reads
+         * @param below Number of rows below an output row which it reads
+         * @param operation Reads the first image and writes to the second
+         */
+        @SuppressWarnings({"unchecked", "rawtypes"})
+        public <N extends ImageGray<N>> Builder<I, N> then( Factory<N> factory, int above, int below,
+                                                            FramePipeline.Operation<O, N> operation ) {
+            if (above < 0 || below < 0)
+                throw new IllegalArgumentException("Rows can't be negative");
+            stages.add(new Stage(factory, above, below, (FramePipeline.Operation)operation));
+            return (Builder<I, N>)(Builder)this;
+        }
+
+        /**
+         * Same as {@link #then(Factory, int, int, FramePipeline.Operation)} for operations which only read the
+         * output row, e.g. horizontal convolution or threshold
+         */
+        public <N extends ImageGray<N>> Builder<I, N> then( Factory<N> factory,
+                                                            FramePipeline.Operation<O, N> operation ) {
+            return then(factory, 0, 0, operation);
+        }
+
+        /**
+         * @param stripHeight Number of output rows computed at once
+         */
+        public StripExecutor<I, O> build( int stripHeight ) {
+            return new StripExecutor<>(stages, stripHeight);
+        }
+    }
+
+    /**
+     * Creates an image with the specified shape, e.g. GrayU8::new
+     */
+    @FunctionalInterface
+    public interface Factory<T extends ImageGray<T>> {
+        T create( int width, int height );
+    }
+
+    private static class Stage {
+        final Factory<?> factory;
+        final int above, below;
+        final FramePipeline.Operation<ImageGray<?>, ImageGray<?>> operation;
+
+        Stage( Factory<?> factory, int above, int below,
+               FramePipeline.Operation<ImageGray<?>, ImageGray<?>> operation ) {
+            this.factory = factory;
+            this.above = above;
+            this.below = below;
+            this.operation = operation;
+        }
+    }
+}
@@ -0,0 +1,79 @@
+package benchmark;
+
+import jdk.incubator.vector.VectorShape;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * Selects the vector shape which every species in this project is created from. By default it's the host's
+ * preferred shape. A different one is selected by launching the JVM with -Dvector.bits=64, 128, 256, 512,
+ * or MAX.
+ *
+ * The shape is fixed when the JVM starts instead of being passed into each function as a species. The Vector
+ * API is only compiled into vector instructions when the species is a constant. A species passed in as an
+ * argument is only a constant if the function happens to be inlined, and when it's not every vector is boxed.
+ * Mixing shapes in one JVM has the same problem, see {@link MatrixMultiplication#mult_fixed}.
+ *
+ * A few species in {@link ImageProcessing}, e.g. U8_BYTES, have a smaller shape so that bytes loaded with
+ * them widen into exactly one int vector of this shape. Those shapes are also constants which are fixed at
+ * startup, and they only meet this shape inside of convertShape(), which is compiled into a single widening
+ * or narrowing instruction. They're never used in place of this shape.
+ *
+ * @author Peter Abeles
+ */
+public class VectorShapes {
+    /** System property which selects the shape */
+    public static final String PROPERTY = "vector.bits";
+
+    /** Names of all the shapes which can be selected */
+    public static final String[] NAMES = {"64", "128", "256", "512", "MAX"};
+
+    /** Shape which all the vector code uses */
+    public static final VectorShape SHAPE = select(System.getProperty(PROPERTY));
+
+    /**
+     * Returns the shape with the name, e.g. "256" or "MAX". If null then the preferred shape is returned.
+     *
+     * @throws IllegalArgumentException if the name is unknown or the host doesn't support it
+     */
+    static VectorShape select( String name ) {
+        if (name == null)
+            return VectorShape.preferredShape();
+        VectorShape shape = parse(name);
+        if (!isSupported(shape))
+            throw new IllegalArgumentException("Host doesn't support " + name + "-bit vectors. Max is " +
+                    VectorShape.S_Max_BIT.vectorBitSize());
+        return shape;
+    }
+
+    /**
+     * Converts the name of a shape into a shape
+     */
+    public static VectorShape parse( String name ) {
+        return switch (name.toUpperCase()) {
+            case "64" -> VectorShape.S_64_BIT;
+            case "128" -> VectorShape.S_128_BIT;
+            case "256" -> VectorShape.S_256_BIT;
+            case "512" -> VectorShape.S_512_BIT;
+            case "MAX" -> VectorShape.S_Max_BIT;
+            default -> throw new IllegalArgumentException("Unknown shape " + name);
+        };
+    }
+
+    /**
+     * True if the hardware has registers which are at least this large. Larger shapes still run but are
+     * emulated in Java and are very slow.
+     */
+    public static boolean isSupported( VectorShape shape ) {
+        return shape.vectorBitSize() <= VectorShape.S_Max_BIT.vectorBitSize();
+    }
+
+    /**
+     * True if every species created from this shape has at least two lanes. A vector with one lane isn't
+     * compiled into vector instructions and is emulated in Java, even if the hardware supports the shape.
+     * Doubles are the largest element, so they have the fewest lanes. The smaller shapes in
+     * {@link ImageProcessing} are never less than 64-bits and hold 32-bit or smaller elements.
+     */
+    public static boolean isIntrinsic( VectorShape shape ) {
+        return VectorSpecies.of(double.class, shape).length() >= 2;
+    }
+}
@@ -0,0 +1,143 @@
+package benchmark;
+
+import boofcv.struct.image.GrayU8;
+
+/**
+ * Memory which is reused between calls to vectorized functions so that they don't need to allocate arrays
+ * every time they are called. Arrays only grow. A workspace must not be shared between threads.
+ *
+ * Nothing is allocated until a function asks for it, so functions which create a temporary workspace only pay
+ * for the memory they use.
+ *
+ * @author Peter Abeles
+ */
+public class Workspace {
+    // Used by MatrixMultiplication.mult_blocked_vector()
+    double[] packA;
+    double[] packB;
+    double[] tile;
+    float[] packAF32;
+    float[] packBF32;
+    float[] tileF32;
+
+    // Used by MatrixMultiplication.multBatch()
+    private DMatrixBatch batchA, batchB, batchC;
+
+    // Used by image processing functions for temporary storage along a row
+    int[] rowS32;
+    boolean[] rowBool;
+    byte[] rowU8;
+    float[] rowF32;
+    float[] kernelF32;
+
+    // Used by ImageProcessing for sub-histograms
+    int[] histogram;
+    // Used by ImageProcessing_MT to store the histogram of a single band
+    int[] bandHistogram;
+
+    // Used by ImageProcessing.mean_vector()
+    private GrayU8 imageU8;
+
+    double[] packA(int length) {
+        if (packA == null || packA.length < length)
+            packA = new double[length];
+        return packA;
+    }
+
+    double[] packB(int length) {
+        if (packB == null || packB.length < length)
+            packB = new double[length];
+        return packB;
+    }
+
+    double[] tile(int length) {
+        if (tile == null || tile.length < length)
+            tile = new double[length];
+        return tile;
+    }
+
+    float[] packAF32(int length) {
+        if (packAF32 == null || packAF32.length < length)
+            packAF32 = new float[length];
+        return packAF32;
+    }
+
+    float[] packBF32(int length) {
+        if (packBF32 == null || packBF32.length < length)
+            packBF32 = new float[length];
+        return packBF32;
+    }
+
+    float[] tileF32(int length) {
+        if (tileF32 == null || tileF32.length < length)
+            tileF32 = new float[length];
+        return tileF32;
+    }
+
+    int[] rowS32(int length) {
+        if (rowS32 == null || rowS32.length < length)
+            rowS32 = new int[length];
+        return rowS32;
+    }
+
+    boolean[] rowBool(int length) {
+        if (rowBool == null || rowBool.length < length)
+            rowBool = new boolean[length];
+        return rowBool;
+    }
+
+    float[] rowF32(int length) {
+        if (rowF32 == null || rowF32.length < length)
+            rowF32 = new float[length];
+        return rowF32;
+    }
+
+    float[] kernelF32(int length) {
+        if (kernelF32 == null || kernelF32.length < length)
+            kernelF32 = new float[length];
+        return kernelF32;
+    }
+
+    byte[] rowU8(int length) {
+        if (rowU8 == null || rowU8.length < length)
+            rowU8 = new byte[length];
+        return rowU8;
+    }
+
+    int[] histogram(int length) {
+        if (histogram == null || histogram.length < length)
+            histogram = new int[length];
+        return histogram;
+    }
+
+    /** Must be exactly the requested length since the length is the number of bins */
+    int[] bandHistogram(int length) {
+        if (bandHistogram == null || bandHistogram.length != length)
+            bandHistogram = new int[length];
+        return bandHistogram;
+    }
+
+    DMatrixBatch batchA() {
+        if (batchA == null)
+            batchA = new DMatrixBatch();
+        return batchA;
+    }
+
+    DMatrixBatch batchB() {
+        if (batchB == null)
+            batchB = new DMatrixBatch();
+        return batchB;
+    }
+
+    DMatrixBatch batchC() {
+        if (batchC == null)
+            batchC = new DMatrixBatch();
+        return batchC;
+    }
+
+    GrayU8 imageU8() {
+        if (imageU8 == null)
+            imageU8 = new GrayU8(1, 1);
+        return imageU8;
+    }
+}
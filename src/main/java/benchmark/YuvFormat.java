@@ -0,0 +1,14 @@
+package benchmark;
+
+/**
+ * Memory layout of a YUV 420 image. Chroma has half the resolution of luma in both directions, rounded up.
+ * In both formats the luma (Y) plane comes first with one byte per pixel.
+ *
+ * @author Peter Abeles
+ */
+public enum YuvFormat {
+    /** Planar. Y plane, then the U plane, then the V plane. Also known as YU12. */
+    I420,
+    /** Semi-planar. Y plane, then a plane with V and U interleaved, V first. Android's camera default. */
+    NV21
+}
@@ -0,0 +1,130 @@
+package benchmark;
+
+import boofcv.alg.misc.ImageMiscOps;
+import boofcv.struct.image.GrayU8;
+import boofcv.testing.BoofTesting;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * @author Peter Abeles
+ */
+class FramePipelineTest {
+    Random rand = new Random(234);
+    int width = 67;
+    int height = 41;
+
+    /**
+     * Results should be the same as calling each operation one after another and come out in the same order
+     */
+    @Test void matchesSequential() throws InterruptedException {
+        var frames = new ArrayList<GrayU8>();
+        for (int i = 0; i < 30; i++) {
+            var frame = new GrayU8(width, height);
+            ImageMiscOps.fillUniform(frame, rand, 0, 256);
+            frames.add(frame);
+        }
+
+        List<GrayU8> found = new ArrayList<>();
+        try (var pipeline = FramePipeline.builder(3, () -> new GrayU8(width, height))
+                .then("mean", () -> new GrayU8(width, height),
+                        ( GrayU8 a, GrayU8 b, Workspace work ) -> ImageProcessing.mean_vector(a, b, 2, 5, work))
+                .then("threshold", () -> new GrayU8(width, height),
+                        ( GrayU8 a, GrayU8 b, Workspace work ) -> ImageProcessing.threshold_vector_v2(a, b, 125))
+                .build(output -> found.add(output.clone()))) {
+            for (GrayU8 frame : frames) {
+                GrayU8 input = pipeline.acquire();
+                input.setTo(frame);
+                pipeline.submit(input);
+            }
+            pipeline.flush();
+
+            assertEquals(frames.size(), pipeline.getCompleted());
+            assertEquals(frames.size(), pipeline.getTotalLatency().getCount());
+            for (FramePipeline.Latency latency : pipeline.getStageLatency()) {
+                assertEquals(frames.size(), latency.getCount());
+            }
+            assertTrue(pipeline.getFramesPerSecond() > 0);
+        }
+
+        var work = new Workspace();
+        var mean = new GrayU8(width, height);
+        var expected = new GrayU8(width, height);
+        for (int i = 0; i < frames.size(); i++) {
+            ImageProcessing.mean_vector(frames.get(i), mean, 2, 5, work);
+            ImageProcessing.threshold_vector_v2(mean, expected, 125);
+            BoofTesting.assertEquals(expected, found.get(i), 0);
+        }
+    }
+
+    /**
+     * When the sink is stuck the pipeline should fill up and stop accepting frames instead of allocating more
+     */
+    @Test void backpressure() throws InterruptedException {
+        var blocked = new CountDownLatch(1);
+        try (var pipeline = FramePipeline.builder(2, () -> new GrayU8(width, height))
+                .then("threshold", () -> new GrayU8(width, height),
+                        ( GrayU8 a, GrayU8 b, Workspace work ) -> ImageProcessing.threshold_vector_v2(a, b, 125))
+                .build(output -> {
+                    try {
+                        blocked.await();
+                    } catch (InterruptedException ignore) {}
+                })) {
+            // The stage's two output images and the two input images can all be in use
+            int submitted = 0;
+            for (int i = 0; i < 20; i++) {
+                GrayU8 input = pipeline.tryAcquire();
+                if (input == null)
+                    break;
+                pipeline.submit(input);
+                submitted++;
+                // Give the stage a chance to take the frame
+                Thread.sleep(10);
+            }
+            assertTrue(submitted >= 2 && submitted <= 4, "submitted " + submitted);
+            assertNull(pipeline.tryAcquire());
+
+            blocked.countDown();
+            pipeline.flush();
+            assertEquals(submitted, pipeline.getCompleted());
+            assertNotNull(pipeline.tryAcquire());
+        }
+    }
+
+    @Test void stageFails() throws InterruptedException {
+        try (var pipeline = FramePipeline.builder(2, () -> new GrayU8(width, height))
+                .then("fails", () -> new GrayU8(width, height), ( GrayU8 a, GrayU8 b, Workspace work ) -> {
+                    throw new IllegalArgumentException("Stage failed");
+                })
+                .build(output -> {})) {
+            pipeline.submit(pipeline.acquire());
+            assertThrows(IllegalStateException.class, pipeline::flush);
+            assertThrows(IllegalStateException.class, pipeline::acquire);
+        }
+    }
+
+    @Test void pool() throws InterruptedException {
+        var pool = new ImagePool<>(2, () -> new GrayU8(width, height));
+        GrayU8 a = pool.acquire();
+        GrayU8 b = pool.acquire();
+        assertNull(pool.tryAcquire());
+        assertEquals(2, pool.getCreated());
+
+        pool.release(a);
+        assertTrue(a == pool.acquire());
+        pool.release(a);
+        pool.release(b);
+        assertThrows(IllegalStateException.class, () -> pool.release(new GrayU8(width, height)));
+        assertEquals(2, pool.getCreated());
+    }
+}
@@ -1,22 +1,39 @@
 package benchmark;
 
+import boofcv.alg.misc.GImageMiscOps;
 import boofcv.alg.misc.ImageMiscOps;
+import boofcv.alg.transform.ii.IntegralImageOps;
 import boofcv.factory.filter.kernel.FactoryKernel;
+import boofcv.struct.border.BorderType;
 import boofcv.struct.convolve.Kernel1D_F32;
 import boofcv.struct.image.GrayF32;
+import boofcv.struct.image.GrayF64;
+import boofcv.struct.image.GrayS32;
+import boofcv.struct.image.GrayU16;
 import boofcv.struct.image.GrayU8;
+import boofcv.struct.image.ImageGray;
+import boofcv.struct.image.InterleavedU8;
+import boofcv.struct.image.Planar;
 import boofcv.testing.BoofTesting;
 import org.ejml.UtilEjml;
-import org.junit.jupiter.api.Disabled;
 import org.junit.jupiter.api.Test;
 
+import java.nio.ByteBuffer;
 import java.util.Random;
+import java.util.function.BiConsumer;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
 class ImageProcessingTest {
     int imageSize = 100;
     int kernelSize = 11;
     Random rand = new Random(345);
 
+    static final BorderType[] BORDERS =
+            {BorderType.EXTENDED, BorderType.REFLECT, BorderType.WRAP, BorderType.ZERO};
+
     @Test void horizontal_vector() {
         GrayF32 src = new GrayF32(imageSize, imageSize);
         GrayF32 expected = src.createSameShape();
@@ -32,7 +49,194 @@ class ImageProcessingTest {
         BoofTesting.assertEquals(expected, found, UtilEjml.TEST_F32);
     }
 
-    @Disabled
+    @Test void horizontal_vector_v2() {
+        // Widths which do and don't require the masked tail. Small kernels use a fraction of a vector
+        for (int width : new int[]{imageSize, 64 + kernelSize - 1, kernelSize}) {
+            for (int kernelSize : new int[]{1, 3, 5, this.kernelSize, 31}) {
+                if (kernelSize > width)
+                    continue;
+                GrayF32 src = new GrayF32(width, 30);
+                GrayF32 expected = src.createSameShape();
+                GrayF32 found = src.createSameShape();
+
+                Kernel1D_F32 kernel = FactoryKernel.random1D_F32(kernelSize,kernelSize/2,0.0f,1.0f,rand);
+
+                ImageMiscOps.fillUniform(src, rand, -1, 1);
+
+                ImageProcessing.horizontal(kernel, src, expected);
+                ImageProcessing.horizontal_vector_v2(kernel, src, found);
+
+                BoofTesting.assertEquals(expected, found, UtilEjml.TEST_F32);
+            }
+        }
+    }
+
+    @Test void horizontal_vector_v2_direct() {
+        for (int width : new int[]{imageSize, 64 + kernelSize - 1}) {
+            GrayF32 src = new GrayF32(width, 30);
+            GrayF32 expected = src.createSameShape();
+            GrayF32 found = src.createSameShape();
+            ImageMiscOps.fillUniform(src, rand, -1, 1);
+
+            Kernel1D_F32 kernel = FactoryKernel.random1D_F32(kernelSize,kernelSize/2,0.0f,1.0f,rand);
+
+            // Wrap a buffer where the image doesn't start at zero and rows are padded. The buffer's position
+            // must not change where pixels are copied to
+            int stride = width + 3;
+            var directSrc = new DirectGrayF32(ByteBuffer.allocateDirect((5 + stride*30)*4).position(12),
+                    5, stride, width, 30);
+            var directDst = new DirectGrayF32(width, 30);
+            directSrc.setTo(src);
+
+            ImageProcessing.horizontal_vector_v2(kernel, src, expected);
+            ImageProcessing.horizontal_vector_v2(kernel, directSrc, directDst);
+            directDst.copyTo(found);
+
+            BoofTesting.assertEquals(expected, found, 0.0);
+        }
+    }
+
+    @Test void vertical_vector() {
+        for (int width : new int[]{imageSize, 65, 3}) {
+            for (int kernelSize : new int[]{1, 3, this.kernelSize, 31}) {
+                GrayF32 src = new GrayF32(width, 40);
+                GrayF32 expected = src.createSameShape();
+                GrayF32 found = src.createSameShape();
+
+                Kernel1D_F32 kernel = FactoryKernel.random1D_F32(kernelSize,kernelSize/2,0.0f,1.0f,rand);
+
+                ImageMiscOps.fillUniform(src, rand, -1, 1);
+
+                ImageProcessing.vertical(kernel, src, expected);
+                ImageProcessing.vertical_vector(kernel, src, found);
+
+                BoofTesting.assertEquals(expected, found, UtilEjml.TEST_F32);
+            }
+        }
+    }
+
+    /**
+     * Compare the fused version against running horizontal then vertical. Only pixels inside both kernels
+     * are compared since the border is not written to
+     */
+    @Test void convolveSeparable_vector() {
+        Workspace work = new Workspace();
+        for (int width : new int[]{imageSize, 64 + 4, 9}) {
+            for (int kernelSize : new int[]{1, 3, this.kernelSize, 9}) {
+                if (kernelSize > width)
+                    continue;
+                GrayF32 src = new GrayF32(width, 35);
+                GrayF32 tmp = src.createSameShape();
+                GrayF32 expected = src.createSameShape();
+                GrayF32 found = src.createSameShape();
+
+                Kernel1D_F32 kernelH = FactoryKernel.random1D_F32(kernelSize,kernelSize/2,0.0f,1.0f,rand);
+                Kernel1D_F32 kernelV = FactoryKernel.random1D_F32(kernelSize,kernelSize/2,0.0f,1.0f,rand);
+
+                ImageMiscOps.fillUniform(src, rand, -1, 1);
+
+                ImageProcessing.horizontal(kernelH, src, tmp);
+                ImageProcessing.vertical(kernelV, tmp, expected);
+                // the same workspace is reused to make sure stale data doesn't matter
+                ImageProcessing.convolveSeparable_vector(kernelH, kernelV, src, found, work);
+
+                int r = kernelSize/2;
+                BoofTesting.assertEquals(
+                        expected.subimage(r, r, width - r, src.height - r),
+                        found.subimage(r, r, width - r, src.height - r), UtilEjml.TEST_F32);
+            }
+        }
+    }
+
+    @Test void horizontal_vector_border() {
+        Workspace work = new Workspace();
+        for (BorderType border : BORDERS) {
+            // includes a kernel which is larger than the image
+            for (int width : new int[]{imageSize, 17, 4}) {
+                GrayF32 src = new GrayF32(width, 20);
+                GrayF32 found = src.createSameShape();
+                ImageMiscOps.fillUniform(src, rand, -1, 1);
+
+                Kernel1D_F32 kernel = FactoryKernel.random1D_F32(kernelSize,kernelSize/2,0.0f,1.0f,rand);
+                ImageProcessing.horizontal_vector_border(kernel, src, found, border, work);
+
+                for (int y = 0; y < src.height; y++) {
+                    for (int x = 0; x < width; x++) {
+                        float expected = 0;
+                        for (int k = 0; k < kernel.width; k++) {
+                            int i = ImageProcessing.borderIndex(border, x - kernel.offset + k, width);
+                            expected += i < 0 ? 0 : src.get(i, y)*kernel.data[k];
+                        }
+                        assertEquals(expected, found.get(x, y), UtilEjml.TEST_F32);
+                    }
+                }
+            }
+        }
+    }
+
+    @Test void vertical_vector_border() {
+        for (BorderType border : BORDERS) {
+            for (int height : new int[]{imageSize, 17, 4}) {
+                GrayF32 src = new GrayF32(21, height);
+                GrayF32 found = src.createSameShape();
+                ImageMiscOps.fillUniform(src, rand, -1, 1);
+
+                Kernel1D_F32 kernel = FactoryKernel.random1D_F32(kernelSize,kernelSize/2,0.0f,1.0f,rand);
+                ImageProcessing.vertical_vector_border(kernel, src, found, border);
+
+                for (int y = 0; y < height; y++) {
+                    for (int x = 0; x < src.width; x++) {
+                        float expected = 0;
+                        for (int k = 0; k < kernel.width; k++) {
+                            int i = ImageProcessing.borderIndex(border, y - kernel.offset + k, height);
+                            expected += i < 0 ? 0 : src.get(x, i)*kernel.data[k];
+                        }
+                        assertEquals(expected, found.get(x, y), UtilEjml.TEST_F32);
+                    }
+                }
+            }
+        }
+    }
+
+    @Test void mean_horizontal_vector_border() {
+        Workspace work = new Workspace();
+        for (BorderType border : BORDERS) {
+            for (int width : new int[]{imageSize, 5}) {
+                // 200 is too large for the fixed-point divide and uses the scalar code
+                for (int length : new int[]{11, 200}) {
+                    GrayU8 src = new GrayU8(width, 10);
+                    GrayU8 found = src.createSameShape();
+                    ImageMiscOps.fillUniform(src, rand, 0, 255);
+
+                    int offset = length/2;
+                    ImageProcessing.mean_horizontal_vector_border(src, found, offset, length, border, work);
+
+                    for (int y = 0; y < src.height; y++) {
+                        for (int x = 0; x < width; x++) {
+                            int total = 0;
+                            for (int k = 0; k < length; k++) {
+                                int i = ImageProcessing.borderIndex(border, x - offset + k, width);
+                                total += i < 0 ? 0 : src.get(i, y);
+                            }
+                            assertEquals((total + length/2)/length, found.get(x, y));
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    @Test void borderIndex() {
+        assertEquals(0, ImageProcessing.borderIndex(BorderType.EXTENDED, -2, 5));
+        assertEquals(4, ImageProcessing.borderIndex(BorderType.EXTENDED, 6, 5));
+        assertEquals(2, ImageProcessing.borderIndex(BorderType.REFLECT, -2, 5));
+        assertEquals(3, ImageProcessing.borderIndex(BorderType.REFLECT, 5, 5));
+        assertEquals(3, ImageProcessing.borderIndex(BorderType.WRAP, -2, 5));
+        assertEquals(1, ImageProcessing.borderIndex(BorderType.WRAP, 6, 5));
+        assertEquals(-1, ImageProcessing.borderIndex(BorderType.ZERO, -2, 5));
+        assertEquals(2, ImageProcessing.borderIndex(BorderType.ZERO, 2, 5));
+    }
+
     @Test void threshold_vector_v1() {
         GrayU8 src = new GrayU8(imageSize, imageSize);
         GrayU8 expected = src.createSameShape();
@@ -46,7 +250,6 @@ class ImageProcessingTest {
         BoofTesting.assertEquals(expected, found, UtilEjml.TEST_F32);
     }
 
-    @Disabled
     @Test void threshold_vector_v2() {
         GrayU8 src = new GrayU8(imageSize, imageSize);
         GrayU8 expected = src.createSameShape();
@@ -59,4 +262,546 @@ class ImageProcessingTest {
 
         BoofTesting.assertEquals(expected, found, UtilEjml.TEST_F32);
     }
-}
\ No newline at end of file
+
+    /** Values near and outside of the signed byte boundary are where a signed compare fails */
+    static final int[] THRESHOLDS = {-1, 0, 1, 100, 127, 128, 200, 254, 255, 300};
+
+    @Test void threshold_vector_v2_direct() {
+        GrayU8 src = new GrayU8(imageSize, imageSize);
+        GrayU8 expected = src.createSameShape();
+        GrayU8 found = src.createSameShape();
+        ImageMiscOps.fillUniform(src, rand, 0, 256);
+
+        // Wrap a buffer where the image doesn't start at zero and rows are padded
+        int stride = imageSize + 7;
+        var directSrc = new DirectGrayU8(ByteBuffer.allocateDirect(3 + stride*imageSize), 3, stride,
+                imageSize, imageSize);
+        var directDst = new DirectGrayU8(imageSize, imageSize);
+        directSrc.setTo(src);
+
+        for (int threshold : THRESHOLDS) {
+            ImageProcessing.threshold(src, expected, threshold);
+            ImageProcessing.threshold_vector_v2(directSrc, directDst, threshold);
+            directDst.copyTo(found);
+            BoofTesting.assertEquals(expected, found, 0.0);
+
+            ImageProcessing.threshold(directSrc, directDst, threshold);
+            directDst.copyTo(found);
+            BoofTesting.assertEquals(expected, found, 0.0);
+        }
+    }
+
+    @Test void threshold_vector() {
+        for (int width : new int[]{imageSize, 64, 5}) {
+            GrayU8 src = new GrayU8(width, 20);
+            GrayU8 expected = src.createSameShape();
+            GrayU8 found = src.createSameShape();
+            ImageMiscOps.fillUniform(src, rand, 0, 256);
+
+            for (int threshold : THRESHOLDS) {
+                for (boolean down : new boolean[]{true, false}) {
+                    ImageProcessing.threshold(src, expected, threshold, down, 255);
+                    ImageProcessing.threshold_vector(src, found, threshold, down, 255);
+                    BoofTesting.assertEquals(expected, found, 0);
+                }
+            }
+
+            // the default output value and the original function should agree
+            ImageProcessing.threshold(src, expected, 150);
+            ImageProcessing.threshold_vector(src, found, 150, true);
+            BoofTesting.assertEquals(expected, found, 0);
+        }
+    }
+
+    @Test void thresholdRange_vector() {
+        for (int width : new int[]{imageSize, 64, 5}) {
+            GrayU8 src = new GrayU8(width, 20);
+            GrayU8 expected = src.createSameShape();
+            GrayU8 found = src.createSameShape();
+            ImageMiscOps.fillUniform(src, rand, 0, 256);
+
+            for (int lower : THRESHOLDS) {
+                for (int upper : THRESHOLDS) {
+                    ImageProcessing.thresholdRange(src, expected, lower, upper, 7);
+                    ImageProcessing.thresholdRange_vector(src, found, lower, upper, 7);
+                    BoofTesting.assertEquals(expected, found, 0);
+                }
+            }
+        }
+    }
+
+    /** Window lengths including even, one, and the largest supported by the fixed-point divide */
+    static final int[] MEAN_LENGTHS = {1, 2, 5, 11, 31, 64, 128, 200};
+
+    @Test void mean_horizontal_vector() {
+        Workspace work = new Workspace();
+        for (int width : new int[]{imageSize, 256 + 7, 12}) {
+            for (int length : MEAN_LENGTHS) {
+                if (length > width)
+                    continue;
+                GrayU8 src = new GrayU8(width, 15);
+                GrayU8 expected = src.createSameShape();
+                GrayU8 found = src.createSameShape();
+
+                // A bright image has the largest sums and is where the fixed-point divide can break
+                ImageMiscOps.fillUniform(src, rand, 200, 256);
+
+                ImageProcessing.mean_horizontal(src, expected, length/2, length);
+                ImageProcessing.mean_horizontal_vector(src, found, length/2, length, work);
+                BoofTesting.assertEquals(expected, found, 0);
+
+                ImageMiscOps.fillUniform(src, rand, 0, 256);
+                ImageProcessing.mean_horizontal(src, expected, length/2, length);
+                ImageProcessing.mean_horizontal_vector(src, found, length/2, length, work);
+                BoofTesting.assertEquals(expected, found, 0);
+            }
+        }
+    }
+
+    @Test void mean_vertical() {
+        GrayU8 src = new GrayU8(23, 30);
+        GrayU8 found = src.createSameShape();
+        ImageMiscOps.fillUniform(src, rand, 0, 256);
+
+        int length = 7, offset = 3;
+        ImageProcessing.mean_vertical(src, found, offset, length);
+        for (int y = offset; y < src.height - length + 1 + offset; y++) {
+            for (int x = 0; x < src.width; x++) {
+                int total = 0;
+                for (int k = 0; k < length; k++) {
+                    total += src.get(x, y - offset + k);
+                }
+                assertEquals((total + length/2)/length, found.get(x, y));
+            }
+        }
+    }
+
+    @Test void mean_vertical_vector() {
+        Workspace work = new Workspace();
+        for (int width : new int[]{imageSize, 256 + 7, 12}) {
+            for (int length : MEAN_LENGTHS) {
+                GrayU8 src = new GrayU8(width, 140);
+                GrayU8 expected = src.createSameShape();
+                GrayU8 found = src.createSameShape();
+                ImageMiscOps.fillUniform(src, rand, 0, 256);
+
+                ImageProcessing.mean_vertical(src, expected, length/2, length);
+                ImageProcessing.mean_vertical_vector(src, found, length/2, length, work);
+                BoofTesting.assertEquals(expected, found, 0);
+            }
+        }
+    }
+
+    @Test void mean_vector() {
+        Workspace work = new Workspace();
+        for (int length : new int[]{1, 4, 11, 31}) {
+            GrayU8 src = new GrayU8(imageSize + 3, imageSize);
+            GrayU8 expected = src.createSameShape();
+            GrayU8 found = src.createSameShape();
+            ImageMiscOps.fillUniform(src, rand, 0, 256);
+
+            ImageProcessing.mean(src, expected, length/2, length, new Workspace());
+            ImageProcessing.mean_vector(src, found, length/2, length, work);
+            BoofTesting.assertEquals(expected, found, 0);
+        }
+    }
+
+    @Test void isMeanVectorSupported() {
+        for (int length = 1; length <= 300; length++) {
+            if (!ImageProcessing.isMeanVectorSupported(length))
+                continue;
+            // brute force check of every possible sum
+            int reciprocal = ImageProcessing.meanReciprocal(length);
+            for (int total = 0; total <= 255*length; total++) {
+                int found = ((total + length/2)*reciprocal) >>> ImageProcessing.MEAN_SHIFT;
+                assertEquals((total + length/2)/length, found);
+            }
+        }
+        assertTrue(ImageProcessing.isMeanVectorSupported(128));
+    }
+
+    @Test void integral() {
+        var src = new GrayF32(23, 17);
+        ImageMiscOps.fillUniform(src, rand, -1, 1);
+        var found = new GrayF64(1, 1);
+        ImageProcessing.integral(src, found);
+
+        for (int y = 0; y < src.height; y++) {
+            for (int x = 0; x < src.width; x++) {
+                double sum = 0;
+                for (int i = 0; i <= y; i++) {
+                    for (int j = 0; j <= x; j++) {
+                        sum += src.get(j, i);
+                    }
+                }
+                assertEquals(sum, found.get(x, y), UtilEjml.TEST_F64);
+            }
+        }
+    }
+
+    @Test void integral_vector() {
+        for (int width : new int[]{imageSize, 67, 13, 1}) {
+            var src = new GrayU8(width, 31);
+            ImageMiscOps.fillUniform(src, rand, 0, 256);
+            GrayS32 expected = IntegralImageOps.transform(src, null);
+            var found = new GrayS32(1, 1);
+            ImageProcessing.integral_vector(src, found);
+            BoofTesting.assertEquals(expected, found, 0);
+
+            var srcF = new GrayF32(width, 31);
+            ImageMiscOps.fillUniform(srcF, rand, -1, 1);
+            var expectedF = new GrayF64(1, 1);
+            ImageProcessing.integral(srcF, expectedF);
+            var foundF = new GrayF64(1, 1);
+            ImageProcessing.integral_vector(srcF, foundF);
+            BoofTesting.assertEquals(expectedF, foundF, UtilEjml.TEST_F64);
+
+            // Sub-images for the input and output
+            GrayU8 subSrc = new GrayU8(width + 9, 35).subimage(3, 2, 3 + width, 33);
+            subSrc.setTo(src);
+            GrayS32 subFound = new GrayS32(width + 9, 35).subimage(5, 1, 5 + width, 32);
+            ImageProcessing.integral_vector(subSrc, subFound);
+            BoofTesting.assertEquals(expected, subFound, 0);
+        }
+    }
+
+    /** Box radii including a single pixel and boxes as wide as the narrowest image */
+    static final int[] BOX_RADII = {0, 1, 2, 5, 6, 20};
+
+    @Test void boxMean() {
+        var src = new GrayU8(40, 31);
+        ImageMiscOps.fillUniform(src, rand, 0, 256);
+        var found = src.createSameShape();
+        var integral = IntegralImageOps.transform(src, null);
+
+        for (int radius : BOX_RADII) {
+            ImageMiscOps.fill(found, 0);
+            ImageProcessing.boxMean(integral, radius, found);
+
+            // Compare against summing every pixel inside the box. Pixels near the border aren't written to
+            int area = (2*radius + 1)*(2*radius + 1);
+            for (int y = 0; y < src.height; y++) {
+                for (int x = 0; x < src.width; x++) {
+                    if (x < radius || y < radius || x >= src.width - radius || y >= src.height - radius) {
+                        assertEquals(0, found.get(x, y));
+                        continue;
+                    }
+                    int sum = 0;
+                    for (int i = -radius; i <= radius; i++) {
+                        for (int j = -radius; j <= radius; j++) {
+                            sum += src.get(x + j, y + i);
+                        }
+                    }
+                    assertEquals((sum + area/2)/area, found.get(x, y));
+                }
+            }
+        }
+    }
+
+    @Test void boxMean_vector() {
+        for (int width : new int[]{imageSize, 67, 13}) {
+            // Bright and constant images have the largest sums and are where the division can be off by one
+            for (int distribution = 0; distribution < 3; distribution++) {
+                var src = new GrayU8(width, 41);
+                switch (distribution) {
+                    case 0 -> ImageMiscOps.fillUniform(src, rand, 0, 256);
+                    case 1 -> ImageMiscOps.fillUniform(src, rand, 200, 256);
+                    default -> ImageMiscOps.fill(src, 255);
+                }
+                var integral = IntegralImageOps.transform(src, null);
+
+                for (int radius : BOX_RADII) {
+                    var expected = src.createSameShape();
+                    var found = src.createSameShape();
+                    ImageProcessing.boxMean(integral, radius, expected);
+                    ImageProcessing.boxMean_vector(integral, radius, found);
+                    BoofTesting.assertEquals(expected, found, 0);
+                }
+            }
+
+            var srcF = new GrayF32(width, 41);
+            ImageMiscOps.fillUniform(srcF, rand, -1, 1);
+            var integralF = new GrayF64(1, 1);
+            ImageProcessing.integral(srcF, integralF);
+            for (int radius : BOX_RADII) {
+                var expected = srcF.createSameShape();
+                var found = srcF.createSameShape();
+                ImageProcessing.boxMean(integralF, radius, expected);
+                ImageProcessing.boxMean_vector(integralF, radius, found);
+                BoofTesting.assertEquals(expected, found, UtilEjml.TEST_F32);
+            }
+        }
+    }
+
+    @Test void histogram_vector() {
+        Workspace work = new Workspace();
+        for (int width : new int[]{imageSize, 67, 3}) {
+            for (int distribution = 0; distribution < 3; distribution++) {
+                GrayU16 src = createHistogramImage(width, distribution);
+                int[] expected = new int[1100];
+                int[] found = new int[1100];
+
+                ImageProcessing.histogram(src, 100, expected);
+                ImageProcessing.histogram_vector(src, 100, found, work);
+                assertArrayEquals(expected, found);
+
+                // Make sure the previous histogram doesn't leak through
+                ImageProcessing.histogram_gather(src, 100, found, work);
+                assertArrayEquals(expected, found);
+            }
+        }
+    }
+
+    /**
+     * Uniform, narrow peak, and constant images. Images with a lot of repeated values are where a naive
+     * vectorized histogram will break.
+     */
+    private GrayU16 createHistogramImage( int width, int distribution ) {
+        GrayU16 image = new GrayU16(width, 31);
+        switch (distribution) {
+            case 0 -> ImageMiscOps.fillUniform(image, rand, 100, 1200);
+            case 1 -> ImageMiscOps.fillUniform(image, rand, 500, 503);
+            default -> ImageMiscOps.fill(image, 1199);
+        }
+        return image;
+    }
+
+    /** Widths of the sub-images. Rows with and without a tail, and narrower than a vector */
+    static final int[] SUBIMAGE_WIDTHS = {100, 67, 13};
+
+    @Test void subimage_convolution() {
+        Kernel1D_F32 kernel = FactoryKernel.random1D_F32(kernelSize,kernelSize/2,0.0f,1.0f,rand);
+        Kernel1D_F32 vertical = FactoryKernel.random1D_F32(5,2,0.0f,1.0f,rand);
+        Workspace work = new Workspace();
+
+        for (int width : SUBIMAGE_WIDTHS) {
+            var input = new GrayF32(width + 9, 35);
+            var output = input.createSameShape();
+            checkSubimage(input, output, (a, b) -> ImageProcessing.horizontal_vector(kernel, a, b));
+            checkSubimage(input, output, (a, b) -> ImageProcessing.horizontal_vector_v2(kernel, a, b));
+            checkSubimage(input, output, (a, b) -> ImageProcessing.vertical_vector(kernel, a, b));
+            checkSubimage(input, output, (a, b) -> ImageProcessing.convolveSeparable_vector(kernel, vertical, a, b, work));
+            for (BorderType border : BORDERS) {
+                checkSubimage(input, output, (a, b) -> ImageProcessing.horizontal_vector_border(kernel, a, b, border, work));
+                checkSubimage(input, output, (a, b) -> ImageProcessing.vertical_vector_border(kernel, a, b, border));
+            }
+        }
+    }
+
+    @Test void subimage_mean() {
+        Workspace work = new Workspace();
+        for (int width : SUBIMAGE_WIDTHS) {
+            var input = new GrayU8(width + 9, 35);
+            var output = input.createSameShape();
+            checkSubimage(input, output, (a, b) -> ImageProcessing.mean_horizontal_vector(a, b, 5, 11, work));
+            checkSubimage(input, output, (a, b) -> ImageProcessing.mean_vertical_vector(a, b, 5, 11, work));
+            checkSubimage(input, output, (a, b) -> ImageProcessing.mean_vector(a, b, 5, 11, work));
+            checkSubimage(input, output, (a, b) ->
+                    ImageProcessing.mean_horizontal_vector_border(a, b, 5, 11, BorderType.REFLECT, work));
+        }
+    }
+
+    @Test void subimage_threshold() {
+        Workspace work = new Workspace();
+        for (int width : SUBIMAGE_WIDTHS) {
+            var input = new GrayU8(width + 9, 35);
+            var output = input.createSameShape();
+            checkSubimage(input, output, (a, b) -> ImageProcessing.threshold_vector_v1(a, b, 125, work));
+            checkSubimage(input, output, (a, b) -> ImageProcessing.threshold_vector_v2(a, b, 125));
+            checkSubimage(input, output, (a, b) -> ImageProcessing.threshold_vector(a, b, 125, true, 1));
+            checkSubimage(input, output, (a, b) -> ImageProcessing.threshold_vector(a, b, 125, false, 255));
+            checkSubimage(input, output, (a, b) -> ImageProcessing.thresholdRange_vector(a, b, 50, 150, 3));
+
+            // When the output is the input a pixel can't be thresholded twice
+            GrayU8 found = input.subimage(3, 2, 3 + width, 30);
+            GrayU8 expected = found.createSameShape();
+            ImageProcessing.threshold(found, expected, 125, true, 1);
+            ImageProcessing.threshold_vector(found, found, 125, true, 1);
+            BoofTesting.assertEquals(expected, found, 0);
+        }
+    }
+
+    @Test void subimage_histogram() {
+        Workspace work = new Workspace();
+        for (int width : SUBIMAGE_WIDTHS) {
+            var parent = new GrayU16(width + 9, 31);
+            // Pixels outside of the sub-image are out of range and will blow up if they are counted
+            ImageMiscOps.fill(parent, 5000);
+            GrayU16 input = parent.subimage(3, 2, 3 + width, 30);
+            ImageMiscOps.fillUniform(input, rand, 100, 1200);
+
+            int[] expected = new int[1100];
+            int[] found = new int[1100];
+            ImageProcessing.histogram(input, 100, expected);
+            ImageProcessing.histogram_vector(input, 100, found, work);
+            assertArrayEquals(expected, found);
+            ImageProcessing.histogram_gather(input, 100, found, work);
+            assertArrayEquals(expected, found);
+        }
+    }
+
+    /**
+     * Runs the operation on sub-images of the two images and compares it against running it on regular images.
+     * Sub-images start at different odd columns and there are pixels on both sides of each row, so code which
+     * ignores startIndex and stride or writes past the end of a row will fail.
+     */
+    private <T extends ImageGray<T>> void checkSubimage( T parentIn, T parentOut, BiConsumer<T, T> operation ) {
+        GImageMiscOps.fillUniform(parentIn, rand, 0, 200);
+        GImageMiscOps.fillUniform(parentOut, rand, 0, 200);
+
+        int width = parentIn.width - 9;
+        int height = parentIn.height - 5;
+        T input = parentIn.subimage(3, 2, 3 + width, 2 + height);
+        T output = parentOut.subimage(5, 1, 5 + width, 1 + height);
+
+        // Run on regular images then copy the results into what the parent should look like
+        T denseIn = input.createSameShape();
+        T denseOut = output.createSameShape();
+        denseIn.setTo(input);
+        denseOut.setTo(output);
+        operation.accept(denseIn, denseOut);
+        T expected = parentOut.clone();
+        expected.subimage(5, 1, 5 + width, 1 + height).setTo(denseOut);
+
+        operation.accept(input, output);
+        BoofTesting.assertEquals(expected, parentOut, UtilEjml.TEST_F32);
+    }
+
+    @Test void yuv420ToRgb() {
+        for (YuvFormat format : YuvFormat.values()) {
+            // odd sizes have chroma which is rounded up
+            for (int[] shape : new int[][]{{imageSize, 60}, {131, 31}, {6, 4}}) {
+                int width = shape[0], height = shape[1];
+                byte[] yuv = createYuv(width, height);
+
+                var interleaved = new InterleavedU8(1, 1, 3);
+                ImageProcessing.yuv420ToRgb(yuv, width, height, format, interleaved);
+
+                // Compare against floating point equations
+                int chromaWidth = (width + 1)/2, chromaHeight = (height + 1)/2;
+                for (int y = 0; y < height; y++) {
+                    for (int x = 0; x < width; x++) {
+                        double luma = 1.164*((yuv[y*width + x] & 0xFF) - 16);
+                        int indexChroma = format == YuvFormat.I420 ?
+                                width*height + (y/2)*chromaWidth + x/2 : width*height + (y/2)*2*chromaWidth + (x/2)*2;
+                        int offsetU = format == YuvFormat.I420 ? 0 : 1;
+                        int offsetV = format == YuvFormat.I420 ? chromaWidth*chromaHeight : 0;
+                        double cb = (yuv[indexChroma + offsetU] & 0xFF) - 128;
+                        double cr = (yuv[indexChroma + offsetV] & 0xFF) - 128;
+
+                        assertEquals(clamp(luma + 1.596*cr), interleaved.getBand(x, y, 0), 2.0);
+                        assertEquals(clamp(luma - 0.813*cr - 0.391*cb), interleaved.getBand(x, y, 1), 2.0);
+                        assertEquals(clamp(luma + 2.018*cb), interleaved.getBand(x, y, 2), 2.0);
+                    }
+                }
+
+                // Vector and planar should exactly match the scalar interleaved
+                var found = new InterleavedU8(1, 1, 3);
+                ImageProcessing.yuv420ToRgb_vector(yuv, width, height, format, found, new Workspace());
+                assertArrayEquals(interleaved.data, found.data);
+
+                Planar<GrayU8> planar = new Planar<>(GrayU8.class, 1, 1, 3);
+                ImageProcessing.yuv420ToRgb(yuv, width, height, format, planar);
+                checkSame(interleaved, planar);
+                ImageProcessing.yuv420ToRgb_vector(yuv, width, height, format, planar);
+                checkSame(interleaved, planar);
+            }
+        }
+    }
+
+    @Test void debayer() {
+        for (BayerPattern pattern : BayerPattern.values()) {
+            // Raw pixel values should be passed through and the color of a flat scene shouldn't change
+            var raw = new GrayU8(31, 12);
+            var flat = raw.createSameShape();
+            int[] color = {200, 100, 30};
+            for (int y = 0; y < raw.height; y++) {
+                for (int x = 0; x < raw.width; x++) {
+                    raw.set(x, y, rand.nextInt(256));
+                    flat.set(x, y, color[bayerBand(pattern, x, y)]);
+                }
+            }
+
+            Planar<GrayU8> found = new Planar<>(GrayU8.class, 1, 1, 3);
+            ImageProcessing.debayer(raw, pattern, found);
+            for (int y = 0; y < raw.height; y++) {
+                for (int x = 0; x < raw.width; x++) {
+                    assertEquals(raw.get(x, y), found.getBand(bayerBand(pattern, x, y)).get(x, y));
+                }
+            }
+
+            ImageProcessing.debayer(flat, pattern, found);
+            for (int band = 0; band < 3; band++) {
+                for (int y = 0; y < raw.height; y++) {
+                    for (int x = 0; x < raw.width; x++) {
+                        assertEquals(color[band], found.getBand(band).get(x, y));
+                    }
+                }
+            }
+        }
+    }
+
+    @Test void debayer_vector() {
+        for (BayerPattern pattern : BayerPattern.values()) {
+            for (int[] shape : new int[][]{{imageSize, 60}, {37, 5}, {3, 3}, {2, 2}}) {
+                var raw = new GrayU8(shape[0], shape[1]);
+                ImageMiscOps.fillUniform(raw, rand, 0, 256);
+                // Odd offset inside a larger image makes sure the pattern isn't assumed to start on an even index
+                var sub = new GrayU8(shape[0] + 3, shape[1] + 2).subimage(1, 1, shape[0] + 1, shape[1] + 1);
+                sub.setTo(raw);
+
+                Planar<GrayU8> expected = new Planar<>(GrayU8.class, 1, 1, 3);
+                Planar<GrayU8> found = new Planar<>(GrayU8.class, 1, 1, 3);
+                ImageProcessing.debayer(raw, pattern, expected);
+                ImageProcessing.debayer_vector(raw, pattern, found);
+                checkSame(expected, found);
+                ImageProcessing.debayer_vector(sub, pattern, found);
+                checkSame(expected, found);
+
+                // Use values with the upper bit set to make sure they are treated as unsigned
+                var raw16 = new GrayU16(shape[0], shape[1]);
+                ImageMiscOps.fillUniform(raw16, rand, 0, 65536);
+                Planar<GrayU16> expected16 = new Planar<>(GrayU16.class, 1, 1, 3);
+                Planar<GrayU16> found16 = new Planar<>(GrayU16.class, 1, 1, 3);
+                ImageProcessing.debayer(raw16, pattern, expected16);
+                ImageProcessing.debayer_vector(raw16, pattern, found16);
+                for (int band = 0; band < 3; band++) {
+                    assertArrayEquals(expected16.getBand(band).data, found16.getBand(band).data);
+                }
+            }
+        }
+    }
+
+    /** Which color is sampled at this pixel */
+    private static int bayerBand( BayerPattern pattern, int x, int y ) {
+        if (pattern.isGreenEven(y) == (x % 2 == 0))
+            return 1;
+        return pattern.isRedRow(y) ? 0 : 2;
+    }
+
+    private static void checkSame( Planar<GrayU8> expected, Planar<GrayU8> found ) {
+        for (int band = 0; band < 3; band++) {
+            BoofTesting.assertEquals(expected.getBand(band), found.getBand(band), 0);
+        }
+    }
+
+    private byte[] createYuv( int width, int height ) {
+        byte[] yuv = new byte[width*height + 2*((width + 1)/2)*((height + 1)/2)];
+        rand.nextBytes(yuv);
+        return yuv;
+    }
+
+    private static double clamp( double value ) {
+        return Math.max(0, Math.min(255, value));
+    }
+
+    private static void checkSame( InterleavedU8 expected, Planar<GrayU8> found ) {
+        for (int band = 0; band < 3; band++) {
+            for (int y = 0; y < expected.height; y++) {
+                for (int x = 0; x < expected.width; x++) {
+                    assertEquals(expected.getBand(x, y, band), found.getBand(band).get(x, y));
+                }
+            }
+        }
+    }
+}
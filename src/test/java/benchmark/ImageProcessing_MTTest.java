@@ -0,0 +1,123 @@
+package benchmark;
+
+import boofcv.alg.misc.ImageMiscOps;
+import boofcv.factory.filter.kernel.FactoryKernel;
+import boofcv.struct.border.BorderType;
+import boofcv.struct.convolve.Kernel1D_F32;
+import boofcv.struct.image.GrayF32;
+import boofcv.struct.image.GrayU16;
+import boofcv.struct.image.GrayU8;
+import boofcv.testing.BoofTesting;
+import org.ejml.UtilEjml;
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+
+/**
+ * Compares concurrent against single threaded code. Images are large enough to be split into several bands
+ * and the number of rows isn't evenly divisible by the number of threads.
+ *
+ * @author Peter Abeles
+ */
+class ImageProcessing_MTTest {
+    Random rand = new Random(345);
+    int width = 320, height = 241;
+
+    ForkJoinPool pool = new ForkJoinPool(3);
+
+    Kernel1D_F32 kernel = FactoryKernel.random1D_F32(7, 3, 0.0f, 1.0f, rand);
+
+    @Test void convolution() {
+        GrayF32 src = new GrayF32(width, height);
+        GrayF32 expected = src.createSameShape();
+        GrayF32 found = src.createSameShape();
+        ImageMiscOps.fillUniform(src, rand, -1, 1);
+
+        ImageProcessing.horizontal_vector(kernel, src, expected);
+        ImageProcessing_MT.horizontal_vector(kernel, src, found, pool);
+        BoofTesting.assertEquals(expected, found, UtilEjml.TEST_F32);
+
+        ImageProcessing.horizontal_vector_v2(kernel, src, expected);
+        ImageProcessing_MT.horizontal_vector_v2(kernel, src, found, pool);
+        BoofTesting.assertEquals(expected, found, UtilEjml.TEST_F32);
+
+        ImageProcessing.horizontal_vector_border(kernel, src, expected, BorderType.REFLECT, new Workspace());
+        ImageProcessing_MT.horizontal_vector_border(kernel, src, found, BorderType.REFLECT, pool);
+        BoofTesting.assertEquals(expected, found, UtilEjml.TEST_F32);
+
+        ImageProcessing.vertical_vector(kernel, src, expected);
+        ImageProcessing_MT.vertical_vector(kernel, src, found, pool);
+        BoofTesting.assertEquals(expected, found, UtilEjml.TEST_F32);
+
+        ImageProcessing.vertical_vector_border(kernel, src, expected, BorderType.WRAP);
+        ImageProcessing_MT.vertical_vector_border(kernel, src, found, BorderType.WRAP, pool);
+        BoofTesting.assertEquals(expected, found, UtilEjml.TEST_F32);
+
+        ImageProcessing.convolveSeparable_vector(kernel, kernel, src, expected);
+        ImageProcessing_MT.convolveSeparable_vector(kernel, kernel, src, found, pool);
+        BoofTesting.assertEquals(expected, found, UtilEjml.TEST_F32);
+    }
+
+    @Test void mean() {
+        GrayU8 src = new GrayU8(width, height);
+        GrayU8 expected = src.createSameShape();
+        GrayU8 found = src.createSameShape();
+        ImageMiscOps.fillUniform(src, rand, 0, 256);
+
+        ImageProcessing.mean_horizontal_vector(src, expected, 4, 9);
+        ImageProcessing_MT.mean_horizontal_vector(src, found, 4, 9, pool);
+        BoofTesting.assertEquals(expected, found, 0);
+
+        ImageProcessing.mean_horizontal_vector_border(src, expected, 4, 9, BorderType.EXTENDED, new Workspace());
+        ImageProcessing_MT.mean_horizontal_vector_border(src, found, 4, 9, BorderType.EXTENDED, pool);
+        BoofTesting.assertEquals(expected, found, 0);
+
+        ImageProcessing.mean_vertical_vector(src, expected, 4, 9);
+        ImageProcessing_MT.mean_vertical_vector(src, found, 4, 9, pool);
+        BoofTesting.assertEquals(expected, found, 0);
+
+        ImageProcessing.mean_vector(src, expected, 4, 9, new Workspace());
+        ImageProcessing_MT.mean_vector(src, found, 4, 9, pool);
+        BoofTesting.assertEquals(expected, found, 0);
+    }
+
+    @Test void threshold() {
+        GrayU8 src = new GrayU8(width, height);
+        GrayU8 expected = src.createSameShape();
+        GrayU8 found = src.createSameShape();
+        ImageMiscOps.fillUniform(src, rand, 0, 256);
+
+        ImageProcessing.threshold_vector_v1(src, expected, 140);
+        ImageProcessing_MT.threshold_vector_v1(src, found, 140, pool);
+        BoofTesting.assertEquals(expected, found, 0);
+
+        ImageProcessing.threshold_vector_v2(src, expected, 140);
+        ImageProcessing_MT.threshold_vector_v2(src, found, 140, pool);
+        BoofTesting.assertEquals(expected, found, 0);
+
+        ImageProcessing.threshold_vector(src, expected, 140, false, 255);
+        ImageProcessing_MT.threshold_vector(src, found, 140, false, 255, pool);
+        BoofTesting.assertEquals(expected, found, 0);
+
+        ImageProcessing.thresholdRange_vector(src, expected, 30, 140, 2);
+        ImageProcessing_MT.thresholdRange_vector(src, found, 30, 140, 2, pool);
+        BoofTesting.assertEquals(expected, found, 0);
+    }
+
+    @Test void histogram() {
+        GrayU16 src = new GrayU16(width, height);
+        ImageMiscOps.fillUniform(src, rand, 10, 1000);
+        int[] expected = new int[1000];
+        int[] found = new int[1000];
+
+        ImageProcessing.histogram(src, 10, expected);
+        ImageProcessing_MT.histogram_vector(src, 10, found, pool);
+        assertArrayEquals(expected, found);
+
+        ImageProcessing_MT.histogram_gather(src, 10, found, pool);
+        assertArrayEquals(expected, found);
+    }
+}
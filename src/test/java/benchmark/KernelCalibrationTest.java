@@ -0,0 +1,21 @@
+package benchmark;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * @author Peter Abeles
+ */
+class KernelCalibrationTest {
+    @Test void crossover() {
+        int[] sizes = {1, 2, 4, 8};
+        assertEquals(0, KernelCalibration.crossover(sizes, new boolean[]{true, true, true, true}));
+        assertEquals(4, KernelCalibration.crossover(sizes, new boolean[]{false, false, true, true}));
+        assertEquals(Integer.MAX_VALUE, KernelCalibration.crossover(sizes, new boolean[]{false, false, false, false}));
+        // Noise made it look faster at a small size
+        assertEquals(8, KernelCalibration.crossover(sizes, new boolean[]{false, true, false, true}));
+        // Only faster at a small size
+        assertEquals(Integer.MAX_VALUE, KernelCalibration.crossover(sizes, new boolean[]{true, true, true, false}));
+    }
+}
@@ -0,0 +1,175 @@
+package benchmark;
+
+import boofcv.alg.misc.ImageMiscOps;
+import boofcv.factory.filter.kernel.FactoryKernel;
+import boofcv.struct.convolve.Kernel1D_F32;
+import boofcv.struct.image.GrayF32;
+import boofcv.struct.image.GrayU8;
+import boofcv.testing.BoofTesting;
+import org.ejml.UtilEjml;
+import org.ejml.data.DMatrixRMaj;
+import org.ejml.dense.row.MatrixFeatures_DDRM;
+import org.ejml.dense.row.RandomMatrices_DDRM;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.File;
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.util.Properties;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Each operation is checked with thresholds which force every variant to be selected
+ *
+ * @author Peter Abeles
+ */
+class KernelsTest {
+    Random rand = new Random(234);
+
+    @AfterEach void restoreDefaults() {
+        Kernels.thresholds = new Kernels.Thresholds();
+    }
+
+    @Test void mult() {
+        // fixed, scalar, vector, and blocked. The fixed kernels are ignored if the matrix isn't square
+        int[][] settings = {{6, 0, 0}, {0, Integer.MAX_VALUE, Integer.MAX_VALUE},
+                {0, 0, Integer.MAX_VALUE}, {0, 0, 0}};
+        int[][] shapes = {{3, 3, 3}, {6, 6, 6}, {7, 13, 3}, {65, 40, 35}};
+
+        for (int[] setting : settings) {
+            var t = new Kernels.Thresholds();
+            t.multFixedMaxSize = MatrixMultiplication.FIXED_SUPPORTED ? setting[0] : 0;
+            t.multVectorMinCols = setting[1];
+            t.multBlockedMinSize = setting[2];
+            Kernels.thresholds = t;
+
+            for (int[] shape : shapes) {
+                DMatrixRMaj A = RandomMatrices_DDRM.rectangle(shape[0], shape[1], rand);
+                DMatrixRMaj B = RandomMatrices_DDRM.rectangle(shape[1], shape[2], rand);
+                DMatrixRMaj found = new DMatrixRMaj(1, 1);
+                DMatrixRMaj expected = new DMatrixRMaj(1, 1);
+
+                Kernels.mult(A, B, found, new Workspace());
+                MatrixMultiplication.mult_ikj_simple(A, B, expected);
+
+                assertTrue(MatrixFeatures_DDRM.isIdentical(found, expected, UtilEjml.TEST_F64));
+            }
+        }
+    }
+
+    @Test void convolve() {
+        GrayF32 src = new GrayF32(70, 50);
+        ImageMiscOps.fillUniform(src, rand, -1, 1);
+
+        for (int minWidth : new int[]{0, Integer.MAX_VALUE}) {
+            Kernels.thresholds.convolveHorizontalMinWidth = minWidth;
+            Kernels.thresholds.convolveVerticalMinWidth = minWidth;
+
+            for (int width : new int[]{3, 5, 11, 15}) {
+                Kernel1D_F32 kernel = FactoryKernel.random1D_F32(width, width/2, 0.0f, 1.0f, rand);
+                GrayF32 expected = src.createSameShape();
+                GrayF32 found = src.createSameShape();
+
+                ImageProcessing.horizontal(kernel, src, expected);
+                Kernels.convolveHorizontal(kernel, src, found);
+                BoofTesting.assertEquals(expected, found, UtilEjml.TEST_F32);
+
+                ImageProcessing.vertical(kernel, src, expected);
+                Kernels.convolveVertical(kernel, src, found);
+                BoofTesting.assertEquals(expected, found, UtilEjml.TEST_F32);
+            }
+        }
+    }
+
+    @Test void meanHorizontal_threshold() {
+        for (int width : new int[]{5, 100}) {
+            GrayU8 src = new GrayU8(width, 20);
+            ImageMiscOps.fillUniform(src, rand, 0, 256);
+            GrayU8 expected = src.createSameShape();
+            GrayU8 found = src.createSameShape();
+
+            for (int minWidth : new int[]{0, Integer.MAX_VALUE}) {
+                Kernels.thresholds.meanVectorMinWidth = minWidth;
+                Kernels.thresholds.thresholdVectorMinWidth = minWidth;
+
+                ImageProcessing.mean_horizontal(src, expected, 2, 5);
+                Kernels.meanHorizontal(src, found, 2, 5, new Workspace());
+                BoofTesting.assertEquals(expected, found, 0);
+
+                ImageProcessing.threshold(src, expected, 120);
+                Kernels.threshold(src, found, 120);
+                BoofTesting.assertEquals(expected, found, 0);
+            }
+        }
+    }
+
+    @Test void saveLoad() throws IOException {
+        File file = File.createTempFile("thresholds", ".properties");
+        try {
+            var original = new Kernels.Thresholds();
+            original.multFixedMaxSize = 1;
+            original.multVectorMinCols = 2;
+            original.multBlockedMinSize = 3;
+            original.convolveHorizontalMinWidth = 4;
+            original.convolveVerticalMinWidth = 5;
+            original.meanVectorMinWidth = 6;
+            original.thresholdVectorMinWidth = Integer.MAX_VALUE;
+            original.save(file);
+
+            var found = new Kernels.Thresholds();
+            assertTrue(found.load(file));
+            assertEquals(1, found.multFixedMaxSize);
+            assertEquals(2, found.multVectorMinCols);
+            assertEquals(3, found.multBlockedMinSize);
+            assertEquals(4, found.convolveHorizontalMinWidth);
+            assertEquals(5, found.convolveVerticalMinWidth);
+            assertEquals(6, found.meanVectorMinWidth);
+            assertEquals(Integer.MAX_VALUE, found.thresholdVectorMinWidth);
+
+            // initialize() should use the file and not calibrate
+            assertEquals(4, Kernels.initialize(file, true).convolveHorizontalMinWidth);
+            assertEquals(4, Kernels.thresholds.convolveHorizontalMinWidth);
+        } finally {
+            file.delete();
+        }
+    }
+
+    /**
+     * Thresholds from a host with a different vector size should be ignored
+     */
+    @Test void load_differentHost() throws IOException {
+        File file = File.createTempFile("thresholds", ".properties");
+        try {
+            var original = new Kernels.Thresholds();
+            original.multVectorMinCols = 2;
+            original.save(file);
+
+            var p = new Properties();
+            try (Reader reader = new FileReader(file)) {
+                p.load(reader);
+            }
+            p.setProperty("host.vectorBits", "1");
+            try (Writer writer = new FileWriter(file)) {
+                p.store(writer, null);
+            }
+
+            var found = new Kernels.Thresholds();
+            assertFalse(found.load(file));
+            assertEquals(new Kernels.Thresholds().multVectorMinCols, found.multVectorMinCols);
+
+            // Without calibration the current thresholds are kept
+            Kernels.thresholds.multVectorMinCols = 7;
+            assertEquals(7, Kernels.initialize(file, false).multVectorMinCols);
+        } finally {
+            file.delete();
+        }
+    }
+}
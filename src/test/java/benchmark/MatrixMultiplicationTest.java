@@ -2,14 +2,19 @@ package benchmark;
 
 import org.ejml.UtilEjml;
 import org.ejml.data.DMatrixRMaj;
+import org.ejml.data.DSubmatrixD1;
+import org.ejml.data.FMatrixRMaj;
 import org.ejml.data.ZMatrixRMaj;
 import org.ejml.dense.row.MatrixFeatures_DDRM;
+import org.ejml.dense.row.MatrixFeatures_FDRM;
 import org.ejml.dense.row.MatrixFeatures_ZDRM;
 import org.ejml.dense.row.RandomMatrices_DDRM;
+import org.ejml.dense.row.RandomMatrices_FDRM;
 import org.ejml.dense.row.RandomMatrices_ZDRM;
 import org.ejml.sparse.csc.RandomMatrices_DSCC;
 import org.junit.jupiter.api.Test;
 
+import java.nio.ByteBuffer;
 import java.util.Random;
 
 import static org.ejml.UtilEjml.assertTrue;
@@ -46,6 +51,86 @@ class MatrixMultiplicationTest {
         assertTrue(MatrixFeatures_DDRM.isIdentical(found, expected, UtilEjml.TEST_F64));
     }
 
+    @Test void vectorCompareToSimple_direct() {
+        int[][] shapes = {{1, 1, 1}, {4, 4, 4}, {7, 13, 3}, {65, 57, 35}};
+        for (int[] shape : shapes) {
+            DMatrixRMaj A = RandomMatrices_DDRM.rectangle(shape[0], shape[1], rand);
+            DMatrixRMaj B = RandomMatrices_DDRM.rectangle(shape[1], shape[2], rand);
+            DMatrixRMaj expected = new DMatrixRMaj(1, 1);
+            MatrixMultiplication.mult_ikj_vector(A, B, expected);
+
+            // The buffer's position is ignored
+            var directA = new DMatrixDirect(
+                    ByteBuffer.allocateDirect(A.getNumElements()*Double.BYTES).position(8), A.numRows, A.numCols);
+            var directB = new DMatrixDirect(B.numRows, B.numCols);
+            var directC = new DMatrixDirect(A.numRows, B.numCols);
+            directA.setTo(A);
+            directB.setTo(B);
+
+            MatrixMultiplication.mult_ikj_vector(directA, directB, directC);
+
+            var found = new DMatrixRMaj(1, 1);
+            directC.copyTo(found);
+            assertTrue(MatrixFeatures_DDRM.isIdentical(found, expected, UtilEjml.TEST_F64));
+        }
+    }
+
+    @Test void vectorCompareToSimple_submatrix() {
+        int[][] shapes = {{1, 1, 1}, {4, 4, 4}, {7, 13, 3}, {65, 57, 35}};
+        for (int[] shape : shapes) {
+            // Views are offset inside of larger matrices so that rows aren't aligned to the vectors
+            var A = new DSubmatrixD1(RandomMatrices_DDRM.rectangle(shape[0] + 4, shape[1] + 5, rand),
+                    3, 3 + shape[0], 1, 1 + shape[1]);
+            var B = new DSubmatrixD1(RandomMatrices_DDRM.rectangle(shape[1] + 2, shape[2] + 7, rand),
+                    2, 2 + shape[1], 5, 5 + shape[2]);
+            var C = new DSubmatrixD1(RandomMatrices_DDRM.rectangle(shape[0] + 3, shape[2] + 9, rand),
+                    1, 1 + shape[0], 2, 2 + shape[2]);
+            DMatrixRMaj original = ((DMatrixRMaj)C.original).copy();
+
+            MatrixMultiplication.mult_ikj_vector(A, B, C);
+
+            DMatrixRMaj expected = new DMatrixRMaj(1, 1);
+            MatrixMultiplication.mult_ikj_simple(extract(A), extract(B), expected);
+            assertTrue(MatrixFeatures_DDRM.isIdentical(extract(C), expected, UtilEjml.TEST_F64));
+
+            // Elements outside of the view must not be modified
+            for (int row = 0; row < original.numRows; row++) {
+                for (int col = 0; col < original.numCols; col++) {
+                    if (row >= C.row0 && row < C.row1 && col >= C.col0 && col < C.col1)
+                        continue;
+                    assertTrue(original.get(row, col) == C.original.get(row, col));
+                }
+            }
+        }
+    }
+
+    private static DMatrixRMaj extract( DSubmatrixD1 view ) {
+        var found = new DMatrixRMaj(view.getRows(), view.getCols());
+        for (int row = 0; row < found.numRows; row++) {
+            for (int col = 0; col < found.numCols; col++) {
+                found.set(row, col, view.get(row, col));
+            }
+        }
+        return found;
+    }
+
+    @Test void blockedCompareToSimple() {
+        // sizes which are smaller than, equal to, and larger than the block sizes and are not a multiple of the
+        // number of lanes in a vector
+        int[][] shapes = {{1, 1, 1}, {4, 4, 4}, {10, 10, 10}, {7, 13, 3}, {65, 257, 35}, {130, 300, 2050}};
+        for (int[] shape : shapes) {
+            DMatrixRMaj A = RandomMatrices_DDRM.rectangle(shape[0], shape[1], rand);
+            DMatrixRMaj B = RandomMatrices_DDRM.rectangle(shape[1], shape[2], rand);
+            DMatrixRMaj found = RandomMatrices_DDRM.rectangle(shape[0], shape[2], rand);
+            DMatrixRMaj expected = found.copy();
+
+            MatrixMultiplication.mult_blocked_vector(A,B,found);
+            MatrixMultiplication.mult_ikj_simple(A,B,expected);
+
+            assertTrue(MatrixFeatures_DDRM.isIdentical(found, expected, UtilEjml.TEST_F64));
+        }
+    }
+
     @Test void vectorCompareToSimple_complex() {
         int N = 10;
         ZMatrixRMaj A = RandomMatrices_ZDRM.rectangle(N, N, rand);
@@ -58,4 +143,151 @@ class MatrixMultiplicationTest {
 
         assertTrue(MatrixFeatures_ZDRM.isIdentical(found, expected, UtilEjml.TEST_F64));
     }
-}
\ No newline at end of file
+
+    @Test void vectorCompareToSimple_complex_shapes() {
+        // Includes shapes where the row length isn't a multiple of the number of lanes and large enough
+        // that the vectorized inner loop is used for every row
+        int[][] shapes = {{1, 1, 1}, {4, 4, 4}, {3, 5, 7}, {33, 65, 129}, {100, 100, 100}};
+        for (int[] shape : shapes) {
+            ZMatrixRMaj A = RandomMatrices_ZDRM.rectangle(shape[0], shape[1], rand);
+            ZMatrixRMaj B = RandomMatrices_ZDRM.rectangle(shape[1], shape[2], rand);
+            ZMatrixRMaj found = RandomMatrices_ZDRM.rectangle(shape[0], shape[2], rand);
+            ZMatrixRMaj expected = found.copy();
+
+            MatrixMultiplication.mult_ikj_vector(A,B,found);
+            MatrixMultiplication.mult_ikj(A,B,expected);
+
+            assertTrue(MatrixFeatures_ZDRM.isIdentical(found, expected, UtilEjml.TEST_F64));
+        }
+    }
+
+    @Test void fixedCompareToSimple() {
+        // 1 and 7 are handled by the fallback
+        for (int N = 1; N <= 7; N++) {
+            DMatrixRMaj A = RandomMatrices_DDRM.rectangle(N, N, rand);
+            DMatrixRMaj B = RandomMatrices_DDRM.rectangle(N, N, rand);
+            DMatrixRMaj found = RandomMatrices_DDRM.rectangle(N, N, rand);
+            DMatrixRMaj expected = found.copy();
+
+            MatrixMultiplication.mult_fixed(A,B,found);
+            MatrixMultiplication.mult_ikj_simple(A,B,expected);
+
+            assertTrue(MatrixFeatures_DDRM.isIdentical(found, expected, UtilEjml.TEST_F64));
+        }
+    }
+
+    @Test void multBatch() {
+        // batch sizes which are and are not a multiple of the number of lanes and larger than a block
+        for (int batchSize : new int[]{1, 7, 16, 600}) {
+            for (int[] shape : new int[][]{{2, 2, 2}, {3, 4, 5}, {4, 4, 4}, {6, 1, 6}}) {
+                var A = new DMatrixRMaj[batchSize];
+                var B = new DMatrixRMaj[batchSize];
+                var found = new DMatrixRMaj[batchSize];
+                for (int m = 0; m < batchSize; m++) {
+                    A[m] = RandomMatrices_DDRM.rectangle(shape[0], shape[1], rand);
+                    B[m] = RandomMatrices_DDRM.rectangle(shape[1], shape[2], rand);
+                    found[m] = new DMatrixRMaj(1, 1);
+                }
+
+                MatrixMultiplication.multBatch(batchSize, A, B, found);
+
+                var expected = new DMatrixRMaj(1, 1);
+                for (int m = 0; m < batchSize; m++) {
+                    MatrixMultiplication.mult_ikj_simple(A[m], B[m], expected);
+                    assertTrue(MatrixFeatures_DDRM.isIdentical(found[m], expected, UtilEjml.TEST_F64));
+                }
+            }
+        }
+    }
+
+    @Test void floatCompareToDouble() {
+        int[][] shapes = {{1, 1, 1}, {4, 4, 4}, {10, 10, 10}, {7, 13, 3}, {65, 257, 35}, {130, 300, 2050}};
+        for (int[] shape : shapes) {
+            FMatrixRMaj A = RandomMatrices_FDRM.rectangle(shape[0], shape[1], rand);
+            FMatrixRMaj B = RandomMatrices_FDRM.rectangle(shape[1], shape[2], rand);
+            DMatrixRMaj expected = new DMatrixRMaj(1, 1);
+            MatrixMultiplication.mult_ikj_simple(toDouble(A), toDouble(B), expected);
+
+            // Round off error grows with the number of values which are summed
+            double tol = shape[1]*UtilEjml.F_EPS*4;
+
+            FMatrixRMaj found = RandomMatrices_FDRM.rectangle(shape[0], shape[2], rand);
+            MatrixMultiplication.mult_ikj(A, B, found);
+            assertTrue(MatrixFeatures_DDRM.isIdentical(toDouble(found), expected, tol));
+
+            found = RandomMatrices_FDRM.rectangle(shape[0], shape[2], rand);
+            MatrixMultiplication.mult_ikj_vector(A, B, found);
+            assertTrue(MatrixFeatures_DDRM.isIdentical(toDouble(found), expected, tol));
+
+            found = RandomMatrices_FDRM.rectangle(shape[0], shape[2], rand);
+            MatrixMultiplication.mult_blocked_vector(A, B, found);
+            assertTrue(MatrixFeatures_DDRM.isIdentical(toDouble(found), expected, tol));
+        }
+    }
+
+    @Test void vectorCompareToSimple_float() {
+        // Same order of operations, so the results should be almost identical
+        int N = 37;
+        FMatrixRMaj A = RandomMatrices_FDRM.rectangle(N, N, rand);
+        FMatrixRMaj B = RandomMatrices_FDRM.rectangle(N, N, rand);
+        FMatrixRMaj found = RandomMatrices_FDRM.rectangle(N, N, rand);
+        FMatrixRMaj expected = found.copy();
+
+        MatrixMultiplication.mult_ikj_vector(A, B, found);
+        MatrixMultiplication.mult_ikj(A, B, expected);
+
+        assertTrue(MatrixFeatures_FDRM.isIdentical(found, expected, UtilEjml.TEST_F32));
+    }
+
+    @Test void mixedCompareToDouble() {
+        int[][] shapes = {{1, 1, 1}, {4, 4, 4}, {7, 13, 3}, {65, 257, 35}, {20, 2000, 33}};
+        for (int[] shape : shapes) {
+            FMatrixRMaj A = RandomMatrices_FDRM.rectangle(shape[0], shape[1], rand);
+            FMatrixRMaj B = RandomMatrices_FDRM.rectangle(shape[1], shape[2], rand);
+            DMatrixRMaj expected = new DMatrixRMaj(1, 1);
+            MatrixMultiplication.mult_ikj_simple(toDouble(A), toDouble(B), expected);
+
+            // The inputs are exactly the same, so the only error is from summing in double
+            DMatrixRMaj found = RandomMatrices_DDRM.rectangle(shape[0], shape[2], rand);
+            MatrixMultiplication.mult_ikj_mixed(A, B, found);
+            assertTrue(MatrixFeatures_DDRM.isIdentical(found, expected, UtilEjml.TEST_F64));
+
+            found = RandomMatrices_DDRM.rectangle(shape[0], shape[2], rand);
+            MatrixMultiplication.mult_ikj_mixed_vector(A, B, found);
+            assertTrue(MatrixFeatures_DDRM.isIdentical(found, expected, UtilEjml.TEST_F64));
+        }
+    }
+
+    @Test void mixedMoreAccurateThanFloat() {
+        // With long rows the error from summing in float is much larger than in double
+        FMatrixRMaj A = RandomMatrices_FDRM.rectangle(10, 5000, rand);
+        FMatrixRMaj B = RandomMatrices_FDRM.rectangle(5000, 10, rand);
+        DMatrixRMaj expected = new DMatrixRMaj(1, 1);
+        MatrixMultiplication.mult_ikj_simple(toDouble(A), toDouble(B), expected);
+
+        FMatrixRMaj foundFloat = new FMatrixRMaj(1, 1);
+        DMatrixRMaj foundMixed = new DMatrixRMaj(1, 1);
+        MatrixMultiplication.mult_ikj_vector(A, B, foundFloat);
+        MatrixMultiplication.mult_ikj_mixed_vector(A, B, foundMixed);
+
+        double errorFloat = maxError(toDouble(foundFloat), expected);
+        double errorMixed = maxError(foundMixed, expected);
+        assertTrue(errorMixed*1000 < errorFloat, errorMixed + " " + errorFloat);
+    }
+
+    static DMatrixRMaj toDouble( FMatrixRMaj src ) {
+        var dst = new DMatrixRMaj(src.numRows, src.numCols);
+        for (int i = 0; i < src.getNumElements(); i++) {
+            dst.data[i] = src.data[i];
+        }
+        return dst;
+    }
+
+    static double maxError( DMatrixRMaj found, DMatrixRMaj expected ) {
+        double max = 0;
+        for (int i = 0; i < expected.getNumElements(); i++) {
+            max = Math.max(max, Math.abs(found.data[i] - expected.data[i]));
+        }
+        return max;
+    }
+}
@@ -0,0 +1,97 @@
+package benchmark;
+
+import org.ejml.UtilEjml;
+import org.ejml.data.DMatrixRMaj;
+import org.ejml.data.ZMatrixRMaj;
+import org.ejml.dense.row.MatrixFeatures_DDRM;
+import org.ejml.dense.row.MatrixFeatures_ZDRM;
+import org.ejml.dense.row.RandomMatrices_DDRM;
+import org.ejml.dense.row.RandomMatrices_ZDRM;
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.ejml.UtilEjml.assertTrue;
+
+/**
+ * @author Peter Abeles
+ */
+class MatrixMultiplication_MTTest {
+    Random rand = new Random(3453);
+
+    // Number of rows isn't evenly divisible by the number of threads
+    int[][] shapes = {{1, 1, 1}, {4, 4, 4}, {10, 10, 10}, {97, 33, 41}, {150, 200, 130}};
+
+    ForkJoinPool pool = new ForkJoinPool(3);
+
+    @Test void mult_ikj() {
+        for (int[] shape : shapes) {
+            DMatrixRMaj A = RandomMatrices_DDRM.rectangle(shape[0], shape[1], rand);
+            DMatrixRMaj B = RandomMatrices_DDRM.rectangle(shape[1], shape[2], rand);
+            DMatrixRMaj found = RandomMatrices_DDRM.rectangle(shape[0], shape[2], rand);
+            DMatrixRMaj expected = found.copy();
+
+            MatrixMultiplication_MT.mult_ikj(A, B, found, pool);
+            MatrixMultiplication.mult_ikj(A, B, expected);
+
+            assertTrue(MatrixFeatures_DDRM.isIdentical(found, expected, UtilEjml.TEST_F64));
+        }
+    }
+
+    @Test void mult_ikj_vector() {
+        for (int[] shape : shapes) {
+            DMatrixRMaj A = RandomMatrices_DDRM.rectangle(shape[0], shape[1], rand);
+            DMatrixRMaj B = RandomMatrices_DDRM.rectangle(shape[1], shape[2], rand);
+            DMatrixRMaj found = RandomMatrices_DDRM.rectangle(shape[0], shape[2], rand);
+            DMatrixRMaj expected = found.copy();
+
+            MatrixMultiplication_MT.mult_ikj_vector(A, B, found, pool);
+            MatrixMultiplication.mult_ikj_simple(A, B, expected);
+
+            assertTrue(MatrixFeatures_DDRM.isIdentical(found, expected, UtilEjml.TEST_F64));
+        }
+    }
+
+    @Test void mult_blocked_vector() {
+        for (int[] shape : shapes) {
+            DMatrixRMaj A = RandomMatrices_DDRM.rectangle(shape[0], shape[1], rand);
+            DMatrixRMaj B = RandomMatrices_DDRM.rectangle(shape[1], shape[2], rand);
+            DMatrixRMaj found = RandomMatrices_DDRM.rectangle(shape[0], shape[2], rand);
+            DMatrixRMaj expected = found.copy();
+
+            MatrixMultiplication_MT.mult_blocked_vector(A, B, found, pool);
+            MatrixMultiplication.mult_ikj_simple(A, B, expected);
+
+            assertTrue(MatrixFeatures_DDRM.isIdentical(found, expected, UtilEjml.TEST_F64));
+        }
+    }
+
+    @Test void mult_ikj_complex() {
+        for (int[] shape : shapes) {
+            ZMatrixRMaj A = RandomMatrices_ZDRM.rectangle(shape[0], shape[1], rand);
+            ZMatrixRMaj B = RandomMatrices_ZDRM.rectangle(shape[1], shape[2], rand);
+            ZMatrixRMaj found = RandomMatrices_ZDRM.rectangle(shape[0], shape[2], rand);
+            ZMatrixRMaj expected = found.copy();
+
+            MatrixMultiplication_MT.mult_ikj(A, B, found, pool);
+            MatrixMultiplication.mult_ikj(A, B, expected);
+
+            assertTrue(MatrixFeatures_ZDRM.isIdentical(found, expected, UtilEjml.TEST_F64));
+        }
+    }
+
+    @Test void mult_ikj_vector_complex() {
+        for (int[] shape : shapes) {
+            ZMatrixRMaj A = RandomMatrices_ZDRM.rectangle(shape[0], shape[1], rand);
+            ZMatrixRMaj B = RandomMatrices_ZDRM.rectangle(shape[1], shape[2], rand);
+            ZMatrixRMaj found = RandomMatrices_ZDRM.rectangle(shape[0], shape[2], rand);
+            ZMatrixRMaj expected = found.copy();
+
+            MatrixMultiplication_MT.mult_ikj_vector(A, B, found, pool);
+            MatrixMultiplication.mult_ikj(A, B, expected);
+
+            assertTrue(MatrixFeatures_ZDRM.isIdentical(found, expected, UtilEjml.TEST_F64));
+        }
+    }
+}
@@ -0,0 +1,154 @@
+package benchmark;
+
+import org.ejml.UtilEjml;
+import org.ejml.data.DMatrixRMaj;
+import org.ejml.dense.row.MatrixFeatures_DDRM;
+import org.ejml.dense.row.RandomMatrices_DDRM;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * @author Peter Abeles
+ */
+class MatrixMultiplication_MappedTest {
+    Random rand = new Random(234);
+    List<DMatrixMapped> opened = new ArrayList<>();
+    List<Path> files = new ArrayList<>();
+
+    @AfterEach void cleanUp() throws IOException {
+        for (DMatrixMapped m : opened) {
+            m.close();
+        }
+        for (Path p : files) {
+            Files.deleteIfExists(p);
+        }
+    }
+
+    @Test void mult() throws IOException {
+        // Tiles which are smaller than, not a multiple of, and larger than the matrices
+        int[][] shapes = {{1, 1, 1}, {10, 13, 7}, {20, 20, 20}, {33, 5, 40}};
+        for (int[] shape : shapes) {
+            DMatrixRMaj A = RandomMatrices_DDRM.rectangle(shape[0], shape[1], rand);
+            DMatrixRMaj B = RandomMatrices_DDRM.rectangle(shape[1], shape[2], rand);
+            DMatrixRMaj expected = new DMatrixRMaj(1, 1);
+            MatrixMultiplication.mult_ikj(A, B, expected);
+
+            for (int tileSize : new int[]{1, 3, 7, 64}) {
+                DMatrixMapped mappedA = create(A);
+                DMatrixMapped mappedB = create(B);
+                DMatrixMapped mappedC = create(new DMatrixRMaj(shape[0], shape[2]));
+
+                MatrixMultiplication_Mapped.mult(mappedA, mappedB, mappedC, tileSize);
+
+                assertTrue(MatrixFeatures_DDRM.isIdentical(toMatrix(mappedC), expected, UtilEjml.TEST_F64));
+            }
+        }
+    }
+
+    @Test void mult_rows() throws IOException {
+        DMatrixRMaj A = RandomMatrices_DDRM.rectangle(20, 15, rand);
+        DMatrixRMaj B = RandomMatrices_DDRM.rectangle(15, 12, rand);
+        DMatrixRMaj expected = new DMatrixRMaj(1, 1);
+        MatrixMultiplication.mult_ikj(A, B, expected);
+
+        DMatrixMapped mappedC = create(new DMatrixRMaj(20, 12));
+        MatrixMultiplication_Mapped.mult(create(A), create(B), mappedC, 5, 17, 4);
+
+        // Only rows inside the range should be modified
+        DMatrixRMaj found = toMatrix(mappedC);
+        for (int row = 0; row < 20; row++) {
+            for (int col = 0; col < 12; col++) {
+                double value = row >= 5 && row < 17 ? expected.get(row, col) : 0.0;
+                assertEquals(value, found.get(row, col), UtilEjml.TEST_F64);
+            }
+        }
+    }
+
+    /**
+     * The listener should see every tile of C once, in order, and stop the multiplication when it returns false
+     */
+    @Test void mult_listener() throws IOException {
+        DMatrixRMaj A = RandomMatrices_DDRM.rectangle(10, 9, rand);
+        DMatrixRMaj B = RandomMatrices_DDRM.rectangle(9, 11, rand);
+        DMatrixRMaj expected = new DMatrixRMaj(1, 1);
+        MatrixMultiplication.mult_ikj(A, B, expected);
+
+        DMatrixMapped mappedC = create(new DMatrixRMaj(10, 11));
+        List<int[]> tiles = new ArrayList<>();
+        MatrixMultiplication_Mapped.mult(create(A), create(B), mappedC, 0, 10, 4, (row0, col0, rows, cols) -> {
+            tiles.add(new int[]{row0, col0, rows, cols});
+            return tiles.size() < 4;
+        });
+
+        // The first row of tiles and the first tile in the second row
+        int[][] expectedTiles = {{0, 0, 4, 4}, {0, 4, 4, 4}, {0, 8, 4, 3}, {4, 0, 4, 4}};
+        assertEquals(expectedTiles.length, tiles.size());
+        for (int i = 0; i < expectedTiles.length; i++) {
+            assertArrayEquals(expectedTiles[i], tiles.get(i));
+        }
+
+        // Tiles after it stopped are never written to
+        DMatrixRMaj found = toMatrix(mappedC);
+        for (int row = 0; row < 10; row++) {
+            for (int col = 0; col < 11; col++) {
+                boolean written = row < 4 || (row < 8 && col < 4);
+                double value = written ? expected.get(row, col) : 0.0;
+                assertEquals(value, found.get(row, col), UtilEjml.TEST_F64);
+            }
+        }
+    }
+
+    @Test void mappedRegions() throws IOException {
+        // Force each region to hold 3 rows so that rows are spread across several mappings
+        DMatrixRMaj A = RandomMatrices_DDRM.rectangle(10, 4, rand);
+        Path file = Files.createTempFile("mapped", ".bin");
+        files.add(file);
+        var channel = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        var mapped = new DMatrixMapped(channel, 10, 4, 3*4*Double.BYTES + 5);
+        opened.add(mapped);
+        assertEquals(3, mapped.rowsPerRegion);
+        assertEquals(4, mapped.regions.length);
+
+        for (int row = 0; row < A.numRows; row++) {
+            mapped.setRow(row, 0, A.data, row*A.numCols, A.numCols);
+        }
+        for (int row = 0; row < A.numRows; row++) {
+            for (int col = 0; col < A.numCols; col++) {
+                assertEquals(A.get(row, col), mapped.get(row, col));
+            }
+        }
+        assertEquals(A.numRows*A.numCols*Double.BYTES, Files.size(file));
+    }
+
+    DMatrixMapped create( DMatrixRMaj src ) throws IOException {
+        Path file = Files.createTempFile("mapped", ".bin");
+        files.add(file);
+        DMatrixMapped mapped = DMatrixMapped.create(file, src.numRows, src.numCols);
+        opened.add(mapped);
+        for (int row = 0; row < src.numRows; row++) {
+            mapped.setRow(row, 0, src.data, row*src.numCols, src.numCols);
+        }
+        return mapped;
+    }
+
+    static DMatrixRMaj toMatrix( DMatrixMapped src ) {
+        var dst = new DMatrixRMaj(src.numRows, src.numCols);
+        for (int row = 0; row < src.numRows; row++) {
+            src.getRow(row, 0, dst.data, row*src.numCols, src.numCols);
+        }
+        return dst;
+    }
+}
@@ -0,0 +1,115 @@
+package benchmark;
+
+import org.ejml.UtilEjml;
+import org.ejml.data.DMatrixRMaj;
+import org.ejml.dense.row.CommonOps_DDRM;
+import org.ejml.dense.row.MatrixFeatures_DDRM;
+import org.ejml.dense.row.NormOps_DDRM;
+import org.ejml.dense.row.RandomMatrices_DDRM;
+import org.ejml.dense.row.mult.VectorVectorMult_DDRM;
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * @author Peter Abeles
+ */
+class MatrixVectorOpsTest {
+    Random rand = new Random(3453);
+
+    /** Rows and columns. Fewer rows than are processed at once, a row tail, and not a multiple of the lanes */
+    static final int[][] SHAPES = {{1, 1}, {3, 4}, {4, 4}, {7, 9}, {8, 8}, {9, 33}, {65, 17}, {100, 101}};
+
+    /** Vector lengths which do and don't fill all four accumulators */
+    static final int[] LENGTHS = {0, 1, 3, 8, 9, 31, 32, 33, 100, 1001};
+
+    @Test void multVec() {
+        for (int[] shape : SHAPES) {
+            DMatrixRMaj A = RandomMatrices_DDRM.rectangle(shape[0], shape[1], rand);
+            DMatrixRMaj x = RandomMatrices_DDRM.rectangle(shape[1], 1, rand);
+            DMatrixRMaj expected = new DMatrixRMaj(1, 1);
+            DMatrixRMaj found = new DMatrixRMaj(1, 1);
+
+            CommonOps_DDRM.mult(A, x, expected);
+            MatrixVectorOps.multVec(A, x, found);
+            assertTrue(MatrixFeatures_DDRM.isIdentical(expected, found, UtilEjml.TEST_F64));
+        }
+        assertThrows(IllegalArgumentException.class, () ->
+                MatrixVectorOps.multVec(new DMatrixRMaj(3, 4), new DMatrixRMaj(3, 1), new DMatrixRMaj(1, 1)));
+    }
+
+    @Test void multTransAVec() {
+        for (int[] shape : SHAPES) {
+            DMatrixRMaj A = RandomMatrices_DDRM.rectangle(shape[0], shape[1], rand);
+            DMatrixRMaj x = RandomMatrices_DDRM.rectangle(shape[0], 1, rand);
+            DMatrixRMaj expected = new DMatrixRMaj(1, 1);
+            // Previous values in y must be overwritten
+            DMatrixRMaj found = RandomMatrices_DDRM.rectangle(shape[1], 1, rand);
+
+            CommonOps_DDRM.multTransA(A, x, expected);
+            MatrixVectorOps.multTransAVec(A, x, found);
+            assertTrue(MatrixFeatures_DDRM.isIdentical(expected, found, UtilEjml.TEST_F64));
+        }
+    }
+
+    @Test void transpose() {
+        // Include shapes which are larger than a block and don't divide evenly into blocks
+        int[][] shapes = {{1, 1}, {1, 20}, {20, 1}, {7, 9}, {33, 65}, {70, 45}};
+        var work = new Workspace();
+        for (int[] shape : shapes) {
+            DMatrixRMaj A = RandomMatrices_DDRM.rectangle(shape[0], shape[1], rand);
+            DMatrixRMaj expected = CommonOps_DDRM.transpose(A, null);
+            DMatrixRMaj found = new DMatrixRMaj(1, 1);
+
+            MatrixVectorOps.transpose(A, found, work);
+            assertTrue(MatrixFeatures_DDRM.isIdentical(expected, found, 0.0));
+        }
+    }
+
+    @Test void addOuterProduct() {
+        for (int[] shape : SHAPES) {
+            DMatrixRMaj A = RandomMatrices_DDRM.rectangle(shape[0], shape[1], rand);
+            DMatrixRMaj x = RandomMatrices_DDRM.rectangle(shape[0], 1, rand);
+            DMatrixRMaj y = RandomMatrices_DDRM.rectangle(shape[1], 1, rand);
+            DMatrixRMaj expected = A.copy();
+
+            VectorVectorMult_DDRM.addOuterProd(-1.5, x, y, expected);
+            MatrixVectorOps.addOuterProduct(-1.5, x, y, A);
+            assertTrue(MatrixFeatures_DDRM.isIdentical(expected, A, UtilEjml.TEST_F64));
+        }
+    }
+
+    @Test void dot_axpy() {
+        for (int length : LENGTHS) {
+            DMatrixRMaj x = RandomMatrices_DDRM.rectangle(length, 1, rand);
+            DMatrixRMaj y = RandomMatrices_DDRM.rectangle(length, 1, rand);
+
+            assertEquals(VectorVectorMult_DDRM.innerProd(x, y), MatrixVectorOps.dot(x, y), UtilEjml.TEST_F64);
+
+            DMatrixRMaj expected = y.copy();
+            CommonOps_DDRM.addEquals(expected, 0.75, x);
+            MatrixVectorOps.axpy(0.75, x, y);
+            assertTrue(MatrixFeatures_DDRM.isIdentical(expected, y, UtilEjml.TEST_F64));
+        }
+    }
+
+    @Test void norm2() {
+        for (int length : LENGTHS) {
+            DMatrixRMaj x = RandomMatrices_DDRM.rectangle(length, 1, rand);
+            assertEquals(NormOps_DDRM.normF(x), MatrixVectorOps.norm2(x), UtilEjml.TEST_F64);
+
+            // Squaring these will overflow or underflow unless they are scaled first. With 1e-160 the squares
+            // are subnormal and lose precision without underflowing to zero
+            for (double scale : new double[]{1e200, 1e-160, 1e-200}) {
+                DMatrixRMaj scaled = x.copy();
+                CommonOps_DDRM.scale(scale, scaled);
+                double expected = NormOps_DDRM.normF(scaled);
+                assertEquals(expected, MatrixVectorOps.norm2(scaled), expected*UtilEjml.TEST_F64);
+            }
+        }
+    }
+}
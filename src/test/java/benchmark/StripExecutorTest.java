@@ -0,0 +1,69 @@
+package benchmark;
+
+import boofcv.alg.misc.ImageMiscOps;
+import boofcv.factory.filter.kernel.FactoryKernel;
+import boofcv.struct.convolve.Kernel1D_F32;
+import boofcv.struct.image.GrayF32;
+import boofcv.struct.image.GrayU8;
+import boofcv.testing.BoofTesting;
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * @author Peter Abeles
+ */
+class StripExecutorTest {
+    Random rand = new Random(234);
+
+    /**
+     * Processing strips should produce the same inner image as processing each operation across the whole image
+     */
+    @Test void compareToPasses() {
+        int width = 67;
+        int height = 53;
+        Kernel1D_F32 kernel = FactoryKernel.random1D_F32(5, 1, 0.0f, 0.2f, rand);
+
+        var input = new GrayF32(width, height);
+        ImageMiscOps.fillUniform(input, rand, 0, 255);
+
+        // Stages with different halos and a change in image type
+        for (int stripHeight : new int[]{1, 3, 16, 100}) {
+            StripExecutor<GrayF32, GrayU8> executor = StripExecutor.<GrayF32>builder()
+                    .then(GrayF32::new, ( GrayF32 a, GrayF32 b, Workspace work ) ->
+                            ImageProcessing.horizontal_vector_v2(kernel, a, b))
+                    .then(GrayF32::new, 1, 3, ( GrayF32 a, GrayF32 b, Workspace work ) ->
+                            ImageProcessing.vertical_vector(kernel, a, b))
+                    .then(GrayU8::new, ( GrayF32 a, GrayU8 b, Workspace work ) -> toU8(a, b))
+                    .then(GrayU8::new, 2, 4, ( GrayU8 a, GrayU8 b, Workspace work ) ->
+                            ImageProcessing.mean_vertical_vector(a, b, 2, 7, work))
+                    .then(GrayU8::new, ( GrayU8 a, GrayU8 b, Workspace work ) ->
+                            ImageProcessing.threshold_vector_v2(a, b, 100))
+                    .build(stripHeight);
+            assertEquals(3, executor.getRowsAbove());
+            assertEquals(7, executor.getRowsBelow());
+
+            var expected = new GrayU8(width, height);
+            var found = new GrayU8(width, height);
+            executor.processPasses(input, expected);
+            // Call it twice to make sure nothing from the previous call leaks through
+            executor.process(input, found);
+            executor.process(input, found);
+
+            int y0 = executor.getRowsAbove();
+            int y1 = height - executor.getRowsBelow();
+            BoofTesting.assertEquals(expected.subimage(0, y0, width, y1), found.subimage(0, y0, width, y1), 0);
+        }
+    }
+
+    private static void toU8( GrayF32 input, GrayU8 output ) {
+        for (int y = 0; y < input.height; y++) {
+            for (int x = 0; x < input.width; x++) {
+                output.data[output.startIndex + y*output.stride + x] =
+                        (byte)(int)input.data[input.startIndex + y*input.stride + x];
+            }
+        }
+    }
+}
@@ -0,0 +1,65 @@
+package benchmark;
+
+import jdk.incubator.vector.VectorShape;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * @author Peter Abeles
+ */
+class VectorShapesTest {
+    @Test void select() {
+        assertEquals(VectorShape.preferredShape(), VectorShapes.select(null));
+        assertEquals(VectorShape.S_128_BIT, VectorShapes.select("128"));
+        assertEquals(VectorShape.S_Max_BIT, VectorShapes.select("max"));
+        assertThrows(IllegalArgumentException.class, () -> VectorShapes.select("100"));
+
+        // Every species in the project should be created from the selected shape
+        assertEquals(VectorShapes.SHAPE, MatrixMultiplication.SPECIES.vectorShape());
+        assertEquals(VectorShapes.SHAPE, ImageProcessing.F32.vectorShape());
+        assertEquals(VectorShapes.SHAPE, ImageProcessing.U8.vectorShape());
+        assertEquals(VectorShapes.SHAPE, ImageProcessing.U8_INTS.vectorShape());
+        assertEquals(VectorShapes.SHAPE, ImageProcessing.F32_DOUBLES.vectorShape());
+    }
+
+    /**
+     * Species with a smaller shape must convert into exactly one vector of the selected shape. There is no
+     * 32-bit shape, so with 128-bit ints the byte vector has extra lanes.
+     */
+    @Test void smallerShapes() {
+        int ints = ImageProcessing.U8_INTS.length();
+        assertEquals(Math.max(8, ints), ImageProcessing.U8_BYTES.length());
+        assertEquals(Math.max(4, ints), ImageProcessing.U16_SHORTS.length());
+        int doubles = ImageProcessing.F32_DOUBLES.length();
+        assertEquals(Math.max(2, doubles), ImageProcessing.F32_FLOATS.length());
+
+        // The smaller shapes are never emulated when the selected shape isn't
+        if (VectorShapes.isIntrinsic(VectorShapes.SHAPE)) {
+            assertTrue(ImageProcessing.U8_BYTES.length() >= 2);
+            assertTrue(ImageProcessing.U16_SHORTS.length() >= 2);
+            assertTrue(ImageProcessing.F32_FLOATS.length() >= 2);
+        }
+    }
+
+    @Test void isIntrinsic() {
+        assertFalse(VectorShapes.isIntrinsic(VectorShape.S_64_BIT));
+        assertTrue(VectorShapes.isIntrinsic(VectorShape.S_128_BIT));
+        assertTrue(VectorShapes.isIntrinsic(VectorShape.S_256_BIT));
+        assertTrue(VectorShapes.isIntrinsic(VectorShape.S_512_BIT));
+    }
+
+    @Test void isSupported() {
+        // All hosts with vector hardware have at least 128-bit registers
+        assertTrue(VectorShapes.isSupported(VectorShape.S_64_BIT));
+        assertTrue(VectorShapes.isSupported(VectorShape.S_128_BIT));
+        assertTrue(VectorShapes.isSupported(VectorShape.S_Max_BIT));
+        assertTrue(VectorShapes.isSupported(VectorShape.preferredShape()));
+        // There are no shapes larger than 512-bit
+        if (VectorShape.S_Max_BIT.vectorBitSize() < 512)
+            assertFalse(VectorShapes.isSupported(VectorShape.S_512_BIT));
+    }
+}